@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.Layout;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import ch.qos.logback.core.pattern.PatternLayoutBase;
+import org.apache.sling.commons.log.logback.internal.util.JsonLinesEncoder;
+import org.apache.sling.commons.log.logback.internal.util.LoggerSpecificEncoder;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Determines which lines of a log file start a new (possibly multi-line) log event
+ */
+enum EventBoundary {
+    /**
+     * Each line is an event of its own
+     */
+    LINE {
+        @Override
+        boolean isStart(@NotNull CharSequence line) {
+            return true;
+        }
+    },
+    /**
+     * Events start with a timestamp, e.g. <code>18.10.2026 12:00:00.000</code>,
+     * <code>2026-10-18 12:00:00,000</code> or <code>12:00:00.000</code>
+     */
+    TIMESTAMP {
+        @Override
+        boolean isStart(@NotNull CharSequence line) {
+            return hasLeadingTimestamp(line);
+        }
+    },
+    /**
+     * Every line starts an event unless it looks like the continuation of a stack trace
+     * or is indented
+     */
+    CONTINUATION {
+        @Override
+        boolean isStart(@NotNull CharSequence line) {
+            return !isContinuation(line);
+        }
+    };
+
+    /**
+     * Checks if the line starts a new event
+     *
+     * @param line the line to check
+     * @return true if the line starts an event, false if it belongs to the previous one
+     */
+    abstract boolean isStart(@NotNull CharSequence line);
+
+    /**
+     * Derives the boundary from the layout patterns used by the appender. If all
+     * patterns start with a date the timestamp is used, otherwise stack trace and
+     * indented lines are attached to the previous line.
+     *
+     * @param appender the appender which wrote the file
+     * @return the boundary to use
+     */
+    static @NotNull EventBoundary forAppender(@NotNull FileAppender<ILoggingEvent> appender) {
+        if (appender.getEncoder() instanceof JsonLinesEncoder) {
+            // each event is written as a single line
+            return LINE;
+        }
+        List<String> patterns = getPatterns(appender.getEncoder());
+        if (patterns.isEmpty()) {
+            return CONTINUATION;
+        }
+        for (String pattern : patterns) {
+            String p = pattern.trim();
+            if (!p.startsWith("%d") && !p.startsWith("%date")) {
+                return CONTINUATION;
+            }
+        }
+        return TIMESTAMP;
+    }
+
+    private static List<String> getPatterns(Encoder<ILoggingEvent> encoder) {
+        List<String> patterns = new ArrayList<>();
+        Collection<Layout<ILoggingEvent>> layouts;
+        if (encoder instanceof LoggerSpecificEncoder) {
+            layouts = ((LoggerSpecificEncoder) encoder).getLayouts();
+        } else if (encoder instanceof LayoutWrappingEncoder) {
+            layouts = List.of(((LayoutWrappingEncoder<ILoggingEvent>) encoder).getLayout());
+        } else {
+            layouts = List.of();
+        }
+        for (Layout<ILoggingEvent> layout : layouts) {
+            if (layout instanceof PatternLayoutBase
+                    && ((PatternLayoutBase<ILoggingEvent>) layout).getPattern() != null) {
+                patterns.add(((PatternLayoutBase<ILoggingEvent>) layout).getPattern());
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * Checks for a leading group of 2 or 4 digits followed by a date or time separator
+     * and another digit
+     */
+    static boolean hasLeadingTimestamp(@NotNull CharSequence line) {
+        int digits = 0;
+        while (digits < line.length() && digits < 4 && isDigit(line.charAt(digits))) {
+            digits++;
+        }
+        if ((digits != 2 && digits != 4) || line.length() < digits + 2) {
+            return false;
+        }
+        char separator = line.charAt(digits);
+        return (separator == '-' || separator == '.' || separator == '/' || separator == ':')
+                && isDigit(line.charAt(digits + 1));
+    }
+
+    static boolean isContinuation(@NotNull CharSequence line) {
+        if (line.length() == 0) {
+            return false;
+        }
+        char first = line.charAt(0);
+        return first == ' '
+                || first == '\t'
+                || startsWith(line, "Caused by:")
+                || startsWith(line, "Suppressed:")
+                || startsWith(line, "...");
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean startsWith(CharSequence line, String prefix) {
+        if (line.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
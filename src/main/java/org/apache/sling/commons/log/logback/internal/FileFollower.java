@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.log.logback.internal.Tailer.LineSplitter;
+import org.apache.sling.commons.log.logback.internal.Tailer.TailerListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Streams the content appended to a file (like "tail -f"). The follower waits
+ * for a change notification, either via {@link #run()} called by the appender
+ * writing to the file or via a {@link WatchService}, and then only reads the
+ * bytes appended since the last read. If neither is available the file length
+ * is checked once per poll interval.
+ * <p>
+ * A rotation of the file is detected by the file being replaced or becoming
+ * shorter, in which case reading restarts at the beginning of the new file.
+ */
+class FileFollower implements Runnable {
+    static final long POLL_INTERVAL_MS = 1000;
+
+    private final File file;
+    private final LineSplitter splitter;
+    private final Semaphore changes = new Semaphore(0);
+    private final byte[] buffer = new byte[Tailer.BUFFER_SIZE];
+    private long position;
+    private Object fileKey;
+
+    /**
+     * Constructor
+     *
+     * @param file the file to follow
+     * @param position the position from which to start reading
+     * @param listener the listener to pass the new lines to
+     */
+    FileFollower(@NotNull File file, long position, @NotNull TailerListener listener) {
+        this.file = file;
+        this.position = position;
+        this.splitter = new LineSplitter(listener, 0);
+        this.fileKey = readFileKey();
+    }
+
+    /**
+     * Signals that content was appended to the file. Called on the logging thread.
+     */
+    @Override
+    public void run() {
+        if (changes.availablePermits() == 0) {
+            changes.release();
+        }
+    }
+
+    /**
+     * Streams the content appended to the file until the print writer reports an
+     * error (i.e. the client went away), the max duration passed or the thread
+     * got interrupted.
+     *
+     * @param pw the writer the listener writes to, flushed after each read
+     * @param maxDuration the max time to follow the file in milliseconds
+     * @param watchService the service to watch the parent directory of the file or null
+     *          if change notifications are delivered via {@link #run()}
+     * @throws IOException if the file cannot be read
+     * @throws InterruptedException if the thread got interrupted while waiting
+     */
+    void follow(@NotNull PrintWriter pw, long maxDuration, @Nullable WatchService watchService)
+            throws IOException, InterruptedException {
+        final long deadline = System.currentTimeMillis() + maxDuration;
+        // checkError flushes the writer
+        while (!pw.checkError()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            awaitChange(Math.min(remaining, POLL_INTERVAL_MS), watchService);
+            readAppended();
+        }
+    }
+
+    private void awaitChange(long timeout, WatchService watchService) throws InterruptedException {
+        if (watchService == null) {
+            if (changes.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                changes.drainPermits();
+            }
+        } else {
+            WatchKey key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                key.pollEvents();
+                key.reset();
+            }
+        }
+    }
+
+    /**
+     * Reads the bytes appended since the last read
+     */
+    void readAppended() throws IOException {
+        Object currentKey = readFileKey();
+        // the content up to the position is known, only the space after it is checked
+        long length = Objects.equals(fileKey, currentKey) ? LogFiles.textLength(file, position) : -1;
+        if (length < position) {
+            // file got rotated
+            splitter.drain();
+            fileKey = currentKey;
+            position = 0;
+            length = LogFiles.textLength(file, 0);
+        }
+        if (length == position) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(position);
+            int num;
+            // the space preallocated by the appender is read once written
+            while (position < length
+                    && (num = raf.read(buffer, 0, (int) Math.min(buffer.length, length - position))) != -1) {
+                splitter.split(buffer, num);
+                position += num;
+            }
+        } catch (FileNotFoundException e) {
+            // rotated in between, picked up by the next read
+        }
+    }
+
+    private Object readFileKey() {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class)
+                    .fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
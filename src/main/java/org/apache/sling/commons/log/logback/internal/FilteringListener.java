@@ -19,8 +19,9 @@
 package org.apache.sling.commons.log.logback.internal;
 
 import java.io.PrintWriter;
-import java.util.Locale;
-import java.util.regex.Pattern;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.sling.commons.log.logback.internal.Tailer.TailerListener;
 import org.jetbrains.annotations.NotNull;
@@ -28,13 +29,26 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * Implementation if TailerListener that filters the lines
- * based on matching a regex pattern
+ * based on matching a grep query, see {@link LineMatcher}.
+ * <p>
+ * Optionally lines are grouped into (multi-line) events which are included
+ * or excluded as a whole and a number of events before and after a matching
+ * one can be included as context (like grep -B and -A).
  */
 class FilteringListener implements TailerListener {
     public static final String MATCH_ALL = "*";
-    private final Pattern pattern;
-    private final String regex;
+    static final String GROUP_SEPARATOR = "--";
+    private final LineMatcher matcher;
     private final PrintWriter pw;
+    private final int linesBefore;
+    private final int linesAfter;
+    private final EventBoundary boundary;
+
+    private List<String> event = new ArrayList<>();
+    private final ArrayDeque<List<String>> before = new ArrayDeque<>();
+    private int afterRemaining;
+    private boolean printedAny;
+    private boolean skipped;
 
     /**
      * Constructs a FilteringListener which uses regex pattern to
@@ -44,12 +58,33 @@ class FilteringListener implements TailerListener {
      * @param regex pattern used to filter line. If null or "*"
      *              then all lines would be included. Regex can be simple
      *              string also. In that case search would be done in a
-     *              case insensitive way
+     *              case insensitive way. Prefixed with "query:" terms
+     *              can be combined with AND, OR and NOT
      */
     public FilteringListener(@NotNull PrintWriter pw, @Nullable String regex) {
+        this(pw, regex, 0, 0, EventBoundary.LINE);
+    }
+
+    /**
+     * Constructs a FilteringListener which includes context around the matches
+     *
+     * @param pw writer to write the tailed line
+     * @param regex pattern used to filter line, see {@link #FilteringListener(PrintWriter, String)}
+     * @param linesBefore the number of events to include before a matching event
+     * @param linesAfter the number of events to include after a matching event
+     * @param boundary determines the lines forming an event
+     */
+    FilteringListener(
+            @NotNull PrintWriter pw,
+            @Nullable String regex,
+            int linesBefore,
+            int linesAfter,
+            @NotNull EventBoundary boundary) {
         this.pw = pw;
-        this.regex = regex != null ? regex.toLowerCase(Locale.ENGLISH) : null;
-        this.pattern = createPattern(regex);
+        this.matcher = LineMatcher.compile(regex);
+        this.linesBefore = Math.max(0, linesBefore);
+        this.linesAfter = Math.max(0, linesAfter);
+        this.boundary = boundary;
     }
 
     /**
@@ -58,39 +93,83 @@ class FilteringListener implements TailerListener {
      */
     @Override
     public void handle(@NotNull String line) {
-        if (include(line)) {
-            pw.println(line);
+        if (boundary == EventBoundary.LINE && linesBefore == 0 && linesAfter == 0) {
+            if (include(line)) {
+                pw.println(line);
+            }
+            return;
+        }
+        if (!event.isEmpty() && boundary.isStart(line)) {
+            handleEvent(event);
+            event = new ArrayList<>();
+        }
+        event.add(line);
+        if (boundary == EventBoundary.LINE) {
+            handleEvent(event);
+            event = new ArrayList<>();
         }
     }
 
     /**
-     * Checks if the line should be included in the output
-     *
-     * @param line the line to check
-     * @return true to include the line, false otherwise
+     * Handles the pending event
      */
-    private boolean include(@NotNull String line) {
-        if (pattern == null) {
-            return true;
+    @Override
+    public void finish() {
+        if (!event.isEmpty()) {
+            handleEvent(event);
+            event = new ArrayList<>();
+        }
+    }
+
+    private void handleEvent(List<String> lines) {
+        if (include(lines)) {
+            if (printedAny && skipped && (linesBefore > 0 || linesAfter > 0)) {
+                pw.println(GROUP_SEPARATOR);
+            }
+            for (List<String> context : before) {
+                print(context);
+            }
+            before.clear();
+            print(lines);
+            afterRemaining = linesAfter;
+            skipped = false;
+        } else if (afterRemaining > 0) {
+            print(lines);
+            afterRemaining--;
+        } else if (linesBefore > 0) {
+            if (before.size() == linesBefore) {
+                before.removeFirst();
+                skipped = true;
+            }
+            before.addLast(lines);
+        } else {
+            skipped = true;
+        }
+    }
+
+    private void print(List<String> lines) {
+        for (String line : lines) {
+            pw.println(line);
         }
+        printedAny = true;
+    }
 
-        String lc = line.toLowerCase(Locale.ENGLISH);
-        if (lc.contains(regex)) {
-            return true;
+    private boolean include(@NotNull List<String> lines) {
+        for (String line : lines) {
+            if (include(line)) {
+                return true;
+            }
         }
-        return pattern.matcher(line).matches();
+        return false;
     }
 
     /**
-     * Creates the pattern to match lines against
+     * Checks if the line should be included in the output
      *
-     * @param regex the regex (null or * will match all)
-     * @return
+     * @param line the line to check
+     * @return true to include the line, false otherwise
      */
-    private static Pattern createPattern(@Nullable String regex) {
-        if (regex == null || MATCH_ALL.equals(regex)) {
-            return null;
-        }
-        return Pattern.compile(regex);
+    private boolean include(@NotNull String line) {
+        return matcher == null || matcher.matches(line);
     }
 }
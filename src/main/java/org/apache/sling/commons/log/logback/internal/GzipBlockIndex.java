@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Optional index stored next to a gzip archive which allows to start reading
+ * the archive close to a given line instead of inflating it from the start.
+ * <p>
+ * This only works for archives written as a sequence of independent gzip
+ * members (see {@link BlockWriter}). Such archives remain valid gzip files
+ * as the format permits concatenated members. The index records for each
+ * member the offset in the archive and the number of lines preceding it.
+ */
+final class GzipBlockIndex {
+    static final String SUFFIX_INDEX = ".idx";
+
+    /**
+     * Default number of uncompressed bytes per gzip member
+     */
+    static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private static final int MAGIC = 0x534C4958; // SLIX
+    private static final int VERSION = 1;
+
+    private final long[] offsets;
+    private final long[] firstLines;
+    private final long totalLines;
+
+    private GzipBlockIndex(long[] offsets, long[] firstLines, long totalLines) {
+        this.offsets = offsets;
+        this.firstLines = firstLines;
+        this.totalLines = totalLines;
+    }
+
+    /**
+     * Checks if the file name refers to an index file
+     *
+     * @param fileName the name to check
+     * @return true if this is the name of an index file
+     */
+    static boolean isIndexFile(@NotNull String fileName) {
+        return fileName.endsWith(SUFFIX_INDEX);
+    }
+
+    static @NotNull File indexFileFor(@NotNull File archive) {
+        return new File(archive.getPath() + SUFFIX_INDEX);
+    }
+
+    /**
+     * Reads the index stored for the archive
+     *
+     * @param archive the gzip archive
+     * @return the index or null if there is none or the stored one does not
+     *      match the archive anymore
+     */
+    static @Nullable GzipBlockIndex read(@NotNull File archive) {
+        File indexFile = indexFileFor(archive);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != archive.length()) {
+                return null;
+            }
+            long totalLines = in.readLong();
+            int count = in.readInt();
+            long[] offsets = new long[count];
+            long[] firstLines = new long[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readLong();
+                firstLines[i] = in.readLong();
+            }
+            return new GzipBlockIndex(offsets, firstLines, totalLines);
+        } catch (IOException e) {
+            // a broken index is just ignored
+            return null;
+        }
+    }
+
+    /**
+     * Number of lines in the archive (a trailing line without line feed is counted)
+     */
+    long getTotalLines() {
+        return totalLines;
+    }
+
+    int getBlockCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Determines the block from which reading has to start to reach the given line
+     *
+     * @param line the (0 based) line to read
+     * @return the index of the block
+     */
+    int blockForLine(long line) {
+        int result = 0;
+        // the block must start before the line feed terminating line - 1
+        for (int i = offsets.length - 1; i > 0; i--) {
+            if (firstLines[i] < line) {
+                result = i;
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Offset of the gzip member in the archive
+     */
+    long getOffset(int block) {
+        return offsets[block];
+    }
+
+    /**
+     * Number of line feeds in the content preceding the block
+     */
+    long getFirstLine(int block) {
+        return firstLines[block];
+    }
+
+    /**
+     * OutputStream which writes the content as a sequence of gzip members of a
+     * fixed uncompressed size and stores the {@link GzipBlockIndex} for the
+     * archive when closed.
+     */
+    static final class BlockWriter extends OutputStream {
+        private final File archive;
+        private final CountingOutputStream out;
+        private final int level;
+        private final int blockSize;
+
+        private LongList offsets = new LongList();
+        private LongList firstLines = new LongList();
+        private LevelGZIPOutputStream member;
+        private int memberSize;
+        private long lineFeeds;
+        private boolean pendingLine;
+
+        /**
+         * Constructor
+         *
+         * @param archive the gzip file to create
+         * @param level the compression level as defined by {@link Deflater}
+         * @param blockSize the uncompressed size of each gzip member
+         * @throws IOException if the archive cannot be created
+         */
+        BlockWriter(@NotNull File archive, int level, int blockSize) throws IOException {
+            this.archive = archive;
+            this.out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(archive)));
+            this.level = level;
+            this.blockSize = blockSize;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (member == null) {
+                    offsets.add(out.count);
+                    firstLines.add(lineFeeds);
+                    member = new LevelGZIPOutputStream(out, level);
+                    memberSize = 0;
+                }
+                int chunk = Math.min(len, blockSize - memberSize);
+                for (int i = off; i < off + chunk; i++) {
+                    if (b[i] == '\n') {
+                        lineFeeds++;
+                    }
+                }
+                pendingLine = b[off + chunk - 1] != '\n';
+                member.write(b, off, chunk);
+                memberSize += chunk;
+                off += chunk;
+                len -= chunk;
+                if (memberSize >= blockSize) {
+                    finishMember();
+                }
+            }
+        }
+
+        private void finishMember() throws IOException {
+            try {
+                member.finish();
+            } finally {
+                // finish leaves the native deflater alive, the member is not closed
+                // as that would close the archive
+                member.end();
+                member = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (member != null) {
+                finishMember();
+            }
+            out.close();
+            writeIndex();
+        }
+
+        private void writeIndex() throws IOException {
+            long totalLines = pendingLine ? lineFeeds + 1 : lineFeeds;
+            try (DataOutputStream index =
+                    new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFileFor(archive))))) {
+                index.writeInt(MAGIC);
+                index.writeInt(VERSION);
+                index.writeLong(archive.length());
+                index.writeLong(totalLines);
+                index.writeInt(offsets.size);
+                for (int i = 0; i < offsets.size; i++) {
+                    index.writeLong(offsets.values[i]);
+                    index.writeLong(firstLines.values[i]);
+                }
+            }
+        }
+    }
+
+    private static final class LevelGZIPOutputStream extends GZIPOutputStream {
+        LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+
+        /**
+         * Releases the resources of the deflater
+         */
+        void end() {
+            def.end();
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static final class LongList {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                long[] copy = new long[size * 2];
+                System.arraycopy(values, 0, copy, 0, size);
+                values = copy;
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Matches log lines against a grep query.
+ * <p>
+ * A query is a single term unless it starts with <code>query:</code>. In that
+ * case the (upper case) keywords <code>AND</code>, <code>OR</code> and
+ * <code>NOT</code> separated by whitespace combine the words between them as
+ * terms, <code>AND</code> binds stronger than <code>OR</code> and <code>NOT</code>
+ * negates the following term, e.g. <code>query:ERROR AND NOT timeout OR FATAL</code>.
+ * <p>
+ * A term without regular expression meta characters is searched as case insensitive
+ * literal without allocating anything per line. Any other term matches if the line
+ * contains it as a case insensitive literal or fully matches it as regular expression,
+ * a term which is no valid regular expression fails the compilation.
+ * <p>
+ * Instances are not thread safe.
+ */
+abstract class LineMatcher {
+    /**
+     * Prefix of queries combining terms with keywords
+     */
+    static final String QUERY_PREFIX = "query:";
+
+    private static final String KEYWORD_AND = "AND";
+    private static final String KEYWORD_OR = "OR";
+    private static final String KEYWORD_NOT = "NOT";
+    private static final String META_CHARS = "\\^$.|?*+()[]{}";
+
+    /**
+     * Checks if the line matches
+     *
+     * @param line the line to check
+     * @return true if the line matches
+     */
+    abstract boolean matches(@NotNull CharSequence line);
+
+    /**
+     * Creates the matcher for the query
+     *
+     * @param query the query, null or "*" to match all lines
+     * @return the matcher or null if all lines match
+     * @throws PatternSyntaxException if a term is no valid regular expression
+     */
+    static @Nullable LineMatcher compile(@Nullable String query) {
+        if (query == null || FilteringListener.MATCH_ALL.equals(query)) {
+            return null;
+        }
+        if (!query.startsWith(QUERY_PREFIX)) {
+            return term(query);
+        }
+        String[] tokens = query.substring(QUERY_PREFIX.length()).trim().split("\\s+");
+
+        List<LineMatcher> clauses = new ArrayList<>();
+        List<LineMatcher> terms = new ArrayList<>();
+        StringBuilder words = new StringBuilder();
+        boolean negate = false;
+        for (String token : tokens) {
+            if (KEYWORD_AND.equals(token) || KEYWORD_OR.equals(token) || KEYWORD_NOT.equals(token)) {
+                if (words.length() > 0) {
+                    terms.add(negate ? new Not(term(words.toString())) : term(words.toString()));
+                    words.setLength(0);
+                    negate = false;
+                }
+                if (KEYWORD_NOT.equals(token)) {
+                    negate = !negate;
+                } else if (KEYWORD_OR.equals(token) && !terms.isEmpty()) {
+                    clauses.add(And.of(terms));
+                    terms.clear();
+                }
+            } else {
+                if (words.length() > 0) {
+                    words.append(' ');
+                }
+                words.append(token);
+            }
+        }
+        if (words.length() > 0) {
+            terms.add(negate ? new Not(term(words.toString())) : term(words.toString()));
+        }
+        if (!terms.isEmpty()) {
+            clauses.add(And.of(terms));
+        }
+        if (clauses.isEmpty()) {
+            return null;
+        }
+        return clauses.size() == 1 ? clauses.get(0) : new Or(clauses.toArray(new LineMatcher[0]));
+    }
+
+    private static LineMatcher term(String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (META_CHARS.indexOf(term.charAt(i)) >= 0) {
+                return new Regex(term);
+            }
+        }
+        return new Literal(term);
+    }
+
+    /**
+     * Folds the character for a case insensitive comparison
+     */
+    static char fold(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Case insensitive Boyer-Moore-Horspool search for a literal
+     */
+    static final class Literal extends LineMatcher {
+        private final char[] pattern;
+        private final int[] shift = new int[256];
+
+        Literal(@NotNull String literal) {
+            pattern = new char[literal.length()];
+            for (int i = 0; i < pattern.length; i++) {
+                pattern[i] = fold(literal.charAt(i));
+            }
+            int m = pattern.length;
+            Arrays.fill(shift, Math.max(m, 1));
+            // characters sharing a slot end up with the smaller (safe) shift
+            for (int i = 0; i < m - 1; i++) {
+                shift[pattern[i] & 0xFF] = m - 1 - i;
+            }
+        }
+
+        @Override
+        boolean matches(@NotNull CharSequence line) {
+            final int m = pattern.length;
+            final int last = line.length() - m;
+            int i = 0;
+            while (i <= last) {
+                int j = m - 1;
+                while (j >= 0 && fold(line.charAt(i + j)) == pattern[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    return true;
+                }
+                i += shift[fold(line.charAt(i + m - 1)) & 0xFF];
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Matches lines containing the term as literal or fully matching it as regex
+     */
+    static final class Regex extends LineMatcher {
+        private final Literal literal;
+        private final Matcher matcher;
+
+        Regex(@NotNull String regex) {
+            this.literal = new Literal(regex);
+            this.matcher = Pattern.compile(regex).matcher("");
+        }
+
+        @Override
+        boolean matches(@NotNull CharSequence line) {
+            return literal.matches(line) || matcher.reset(line).matches();
+        }
+    }
+
+    static final class Not extends LineMatcher {
+        private final LineMatcher delegate;
+
+        Not(@NotNull LineMatcher delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        boolean matches(@NotNull CharSequence line) {
+            return !delegate.matches(line);
+        }
+    }
+
+    static final class And extends LineMatcher {
+        private final LineMatcher[] terms;
+
+        private And(LineMatcher[] terms) {
+            this.terms = terms;
+        }
+
+        static LineMatcher of(List<LineMatcher> terms) {
+            return terms.size() == 1 ? terms.get(0) : new And(terms.toArray(new LineMatcher[0]));
+        }
+
+        @Override
+        boolean matches(@NotNull CharSequence line) {
+            for (LineMatcher term : terms) {
+                if (!term.matches(line)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static final class Or extends LineMatcher {
+        private final LineMatcher[] clauses;
+
+        Or(LineMatcher[] clauses) {
+            this.clauses = clauses;
+        }
+
+        @Override
+        boolean matches(@NotNull CharSequence line) {
+            for (LineMatcher clause : clauses) {
+                if (clause.matches(line)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -35,6 +35,7 @@ import org.slf4j.LoggerFactory;
 
 public class LogConfig {
     private static final String[] LEGACY_MARKERS = {"{0}", "{1}", "{2}", "{3}", "{4}", "{5}"};
+    private static final Pattern LEGACY_DATE = Pattern.compile("\\{0,date,(.+?)\\}");
 
     private final String configPid;
     private final Set<String> categories;
@@ -46,6 +47,8 @@ public class LogConfig {
     private final boolean resetToDefault;
 
     private PostCompileProcessor<ILoggingEvent> postProcessor;
+    private PatternLayoutCache layoutCache;
+    private volatile String effectivePattern;
 
     @SuppressWarnings("java:S107")
     LogConfig(
@@ -100,6 +103,30 @@ public class LogConfig {
     }
 
     public @NotNull PatternLayout createLayout(@NotNull LoggerContext loggerContext) {
+        final String logBackPattern = getEffectivePattern();
+        if (layoutCache != null) {
+            return layoutCache.getLayout(loggerContext, logBackPattern, postProcessor);
+        }
+        return PatternLayoutCache.createLayout(loggerContext, logBackPattern, postProcessor);
+    }
+
+    /**
+     * Get the logback pattern for the configured pattern which may be a legacy
+     * {@link MessageFormat} pattern
+     *
+     * @return the logback pattern
+     */
+    @NotNull
+    String getEffectivePattern() {
+        String result = effectivePattern;
+        if (result == null) {
+            result = toLogbackPattern(pattern);
+            effectivePattern = result;
+        }
+        return result;
+    }
+
+    private @NotNull String toLogbackPattern(@NotNull String pattern) {
         // The java.util.MessageFormat pattern to use for formatting log
         // messages with the root logger.
         // This is a java.util.MessageFormat pattern supporting up to six
@@ -110,8 +137,7 @@ public class LogConfig {
         // {3} the name of the logger,
         // {4} the debug level and
         // {5} the actual debug message
-        Pattern date = Pattern.compile("\\{0,date,(.+?)\\}");
-        Matcher m = date.matcher(pattern);
+        Matcher m = LEGACY_DATE.matcher(pattern);
         String logBackPattern = pattern;
 
         if (m.matches()) {
@@ -141,19 +167,7 @@ public class LogConfig {
                 logBackPattern = LogConstants.LOG_PATTERN_DEFAULT;
             }
         }
-
-        final PatternLayout pl = new PatternLayout();
-        pl.setPattern(logBackPattern);
-        pl.setOutputPatternAsHeader(false);
-        pl.setContext(loggerContext);
-        MaskingMessageUtil.setMessageConverter(pl);
-
-        if (postProcessor != null) {
-            pl.setPostCompileProcessor(postProcessor);
-        }
-
-        pl.start();
-        return pl;
+        return logBackPattern;
     }
 
     @Override
@@ -166,6 +180,15 @@ public class LogConfig {
         this.postProcessor = postProcessor;
     }
 
+    /**
+     * Set the cache from which the layouts are taken instead of creating a new one per call
+     *
+     * @param layoutCache the cache or null to always create a new layout
+     */
+    void setLayoutCache(@Nullable PatternLayoutCache layoutCache) {
+        this.layoutCache = layoutCache;
+    }
+
     public interface LogWriterProvider {
         @NotNull
         LogWriter getLogWriter(@NotNull String writerName);
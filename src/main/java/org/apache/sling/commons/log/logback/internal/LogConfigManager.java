@@ -62,6 +62,7 @@ import ch.qos.logback.core.status.OnConsoleStatusListener;
 import ch.qos.logback.core.status.StatusListener;
 import ch.qos.logback.core.status.StatusListenerAsList;
 import ch.qos.logback.core.status.StatusUtil;
+import ch.qos.logback.core.util.FileSize;
 import org.apache.sling.commons.log.logback.internal.AppenderTracker.AppenderInfo;
 import org.apache.sling.commons.log.logback.internal.config.ConfigAdminSupport;
 import org.apache.sling.commons.log.logback.internal.config.ConfigurationException;
@@ -69,7 +70,14 @@ import org.apache.sling.commons.log.logback.internal.joran.JoranConfiguratorWrap
 import org.apache.sling.commons.log.logback.internal.stacktrace.OSGiAwareExceptionHandling;
 import org.apache.sling.commons.log.logback.internal.stacktrace.PackageInfoCollector;
 import org.apache.sling.commons.log.logback.internal.store.LogStoreRegistrar;
+import org.apache.sling.commons.log.logback.internal.util.AsyncSettings;
+import org.apache.sling.commons.log.logback.internal.util.AsyncWriterPool;
+import org.apache.sling.commons.log.logback.internal.util.BinaryLogEncoder;
+import org.apache.sling.commons.log.logback.internal.util.FlushSettings;
+import org.apache.sling.commons.log.logback.internal.util.JsonLinesEncoder;
 import org.apache.sling.commons.log.logback.internal.util.LoggerSpecificEncoder;
+import org.apache.sling.commons.log.logback.internal.util.RolloverSettings;
+import org.apache.sling.commons.log.logback.internal.util.SheddingSettings;
 import org.apache.sling.commons.log.logback.internal.util.SlingRollingFileAppender;
 import org.apache.sling.commons.log.logback.internal.util.SlingStatusPrinter;
 import org.apache.sling.commons.log.logback.spi.DefaultConfigurator;
@@ -163,11 +171,26 @@ public class LogConfigManager extends LoggerContextAwareBase
      */
     private boolean packagingDataEnabled;
 
+    /**
+     * The current value of the {@link #LOG_PACKAGING_DATA_MODE} configuration value
+     */
+    private String packagingDataMode = LogConstants.LOG_PACKAGING_DATA_MODE_WEAVING;
+
     /**
      * The current value of the {@link #LOG_MAX_CALLER_DEPTH} configuration value
      */
     private int maxCallerDataDepth;
 
+    /**
+     * The current value of the {@link #LOG_WRITER_THREADS} configuration value
+     */
+    private int writerThreads = LogConstants.LOG_WRITER_THREADS_DEFAULT;
+
+    /**
+     * The threads writing the events of the asynchronous file appenders, created on demand
+     */
+    private AsyncWriterPool writerPool;
+
     /**
      * The current value of the {@link #PRINTER_MAX_INCLUDED_FILES} configuration value
      */
@@ -253,6 +276,11 @@ public class LogConfigManager extends LoggerContextAwareBase
      */
     private final PackageInfoCollector packageInfoCollector = new PackageInfoCollector();
 
+    /**
+     * Layouts shared by the configs with the same pattern, also across resets
+     */
+    private final PatternLayoutCache layoutCache = new PatternLayoutCache();
+
     /**
      * Time at which reset started. Used as the threshold for logging error
      * messages from status printer
@@ -407,6 +435,11 @@ public class LogConfigManager extends LoggerContextAwareBase
         }
         registrations.clear();
 
+        if (packageInfoCollector.getBundleContext() != null) {
+            bundleContext.removeBundleListener(packageInfoCollector);
+            packageInfoCollector.setBundleContext(null);
+        }
+
         if (bridgeHandlerInstalled) {
             // restore the JUL to the original state
             SLF4JBridgeHandler.uninstall();
@@ -416,11 +449,21 @@ public class LogConfigManager extends LoggerContextAwareBase
         // remove any appenders we added
         clearAllAppenders();
 
+        AsyncWriterPool pool = getWriterPoolIfCreated();
+        if (pool != null) {
+            pool.shutdown();
+            if (!pool.awaitTermination(AsyncWriterPool.DEFAULT_MAX_WAIT)) {
+                logger.warn("Timed out waiting for the log writer threads to end");
+            }
+        }
+
         writerByPid.clear();
         writerByFileName.clear();
         configByPid.clear();
         configByCategory.clear();
 
+        MaskingMessageUtil.setMaskingEngine(null);
+
         // Reset and reload the default configuration to attach
         //   a console appender to handle logging until we configure one.
         loggerContext.reset();
@@ -583,9 +626,23 @@ public class LogConfigManager extends LoggerContextAwareBase
                     }
                 }
 
-                if (appender == null) {
+                if (appender == null && lw.isJsonFormat()) {
+                    // the JSON lines do not depend on the pattern of the configs
+                    JsonLinesEncoder encoder = new JsonLinesEncoder();
+                    encoder.setContext(loggerContext);
+                    encoder.start();
+                    appender = lw.createAppender(loggerContext, encoder, getWriterPool(lw));
+                    appendersByName.put(appenderName, appender);
+                } else if (appender == null && lw.isBinaryFormat()) {
+                    // the binary records are rendered with the default pattern when read
+                    BinaryLogEncoder encoder = new BinaryLogEncoder();
+                    encoder.setContext(loggerContext);
+                    encoder.start();
+                    appender = lw.createAppender(loggerContext, encoder, getWriterPool(lw));
+                    appendersByName.put(appenderName, appender);
+                } else if (appender == null) {
                     LoggerSpecificEncoder encoder = new LoggerSpecificEncoder(getDefaultLayout());
-                    appender = lw.createAppender(loggerContext, encoder);
+                    appender = lw.createAppender(loggerContext, encoder, getWriterPool(lw));
                     encoders.put(appender, encoder);
                     appendersByName.put(appenderName, appender);
                 }
@@ -619,6 +676,9 @@ public class LogConfigManager extends LoggerContextAwareBase
 
         // Record the config pids which have been picked up in this reset cycle
         context.putObject(LogConstants.CONFIG_PID_SET, configPids);
+
+        // drop the layouts of patterns which are not used anymore
+        layoutCache.prune();
     }
 
     // ---------- Configuration support
@@ -649,7 +709,7 @@ public class LogConfigManager extends LoggerContextAwareBase
         final String[] props = {
             LogConstants.LOG_LEVEL, LogConstants.LOG_FILE, LogConstants.LOG_FILE_NUMBER,
             LogConstants.LOG_FILE_SIZE, LogConstants.LOG_PATTERN, LogConstants.LOGBACK_FILE,
-            LogConstants.LOG_PACKAGING_DATA
+            LogConstants.LOG_PACKAGING_DATA, LogConstants.LOG_PACKAGING_DATA_MODE, LogConstants.LOG_WRITER_THREADS
         };
         for (String prop : props) {
             String value = bundleContext.getProperty(prop);
@@ -726,11 +786,25 @@ public class LogConfigManager extends LoggerContextAwareBase
                 .convert(configuration.get(LogConstants.LOG_PACKAGING_DATA))
                 .defaultValue(false) // Defaults to false i.e. disabled in OSGi env
                 .to(Boolean.TYPE);
+        this.packagingDataMode = converter
+                .convert(configuration.get(LogConstants.LOG_PACKAGING_DATA_MODE))
+                .defaultValue(LogConstants.LOG_PACKAGING_DATA_MODE_WEAVING)
+                .to(String.class);
 
         maxCallerDataDepth = converter
                 .convert(configuration.get(LogConstants.LOG_MAX_CALLER_DEPTH))
                 .defaultValue(ClassicConstants.DEFAULT_MAX_CALLEDER_DATA_DEPTH)
                 .to(Integer.TYPE);
+        writerThreads = Math.max(
+                0,
+                converter
+                        .convert(configuration.get(LogConstants.LOG_WRITER_THREADS))
+                        .defaultValue(LogConstants.LOG_WRITER_THREADS_DEFAULT)
+                        .to(Integer.TYPE));
+        AsyncWriterPool pool = getWriterPoolIfCreated();
+        if (pool != null && writerThreads > 0) {
+            pool.setThreadCount(writerThreads);
+        }
         maxOldFileCount = converter
                 .convert(configuration.get(LogConstants.PRINTER_MAX_INCLUDED_FILES))
                 .defaultValue(LogConstants.PRINTER_MAX_INCLUDED_FILES_DEFAULT)
@@ -739,6 +813,17 @@ public class LogConfigManager extends LoggerContextAwareBase
                 .convert(configuration.get(LogConstants.PRINTER_NUM_OF_LINES))
                 .defaultValue(LogConstants.PRINTER_NUM_OF_LINES_DEFAULT)
                 .to(Integer.TYPE);
+
+        // Process the redaction rules applied by the masking converters
+        String[] maskingRules = converter
+                .convert(configuration.get(LogConstants.LOG_MASKING_RULES))
+                .defaultValue(new String[0])
+                .to(String[].class);
+        String maskingReplacement = converter
+                .convert(configuration.get(LogConstants.LOG_MASKING_REPLACEMENT))
+                .defaultValue(MaskingEngine.DEFAULT_REPLACEMENT)
+                .to(String.class);
+        MaskingMessageUtil.setMaskingEngine(MaskingEngine.compile(maskingRules, maskingReplacement));
     }
 
     public void updateGlobalConfiguration(@Nullable Dictionary<String, String> configuration)
@@ -865,9 +950,56 @@ public class LogConfigManager extends LoggerContextAwareBase
                     .convert(configuration.get(LogConstants.LOG_FILE_BUFFERED))
                     .defaultValue(false)
                     .to(Boolean.TYPE);
+            FlushSettings flushSettings = bufferedLogging ? getFlushSettings(configuration) : null;
+
+            String format = converter
+                    .convert(configuration.get(LogConstants.LOG_FILE_FORMAT))
+                    .defaultValue(LogConstants.LOG_FILE_FORMAT_TEXT)
+                    .to(String.class);
+
+            boolean asyncLogging = converter
+                    .convert(configuration.get(LogConstants.LOG_FILE_ASYNC))
+                    .defaultValue(false)
+                    .to(Boolean.TYPE);
+            AsyncSettings asyncSettings = asyncLogging ? getAsyncSettings(configuration) : null;
+
+            boolean channelOutput = converter
+                    .convert(configuration.get(LogConstants.LOG_FILE_CHANNEL))
+                    .defaultValue(false)
+                    .to(Boolean.TYPE);
 
-            LogWriter newWriter =
-                    new LogWriter(pid, getAppenderName(logFileName), fileNum, fileSize, logFileName, bufferedLogging);
+            boolean asyncRollover = converter
+                    .convert(configuration.get(LogConstants.LOG_FILE_ASYNC_ROLLOVER))
+                    .defaultValue(false)
+                    .to(Boolean.TYPE);
+            RolloverSettings rolloverSettings = new RolloverSettings(
+                    getCompressionLevel(configuration),
+                    asyncRollover,
+                    getFileSize(configuration, LogConstants.LOG_FILE_MAX_SIZE),
+                    getFileSize(configuration, LogConstants.LOG_FILE_TOTAL_SIZE_CAP));
+
+            boolean shedding = converter
+                    .convert(configuration.get(LogConstants.LOG_FILE_SHEDDING))
+                    .defaultValue(false)
+                    .to(Boolean.TYPE);
+            SheddingSettings sheddingSettings = shedding ? getSheddingSettings(configuration) : null;
+
+            long preallocationSize = getFileSize(configuration, LogConstants.LOG_FILE_PREALLOCATION);
+
+            LogWriter newWriter = new LogWriter(
+                    pid,
+                    getAppenderName(logFileName),
+                    fileNum,
+                    fileSize,
+                    logFileName,
+                    new WriterSettings(
+                            flushSettings,
+                            format,
+                            asyncSettings,
+                            channelOutput,
+                            rolloverSettings,
+                            sheddingSettings,
+                            preallocationSize));
             if (oldWriter != null) {
                 writerByFileName.remove(oldWriter.getFileName());
             }
@@ -888,6 +1020,153 @@ public class LogConfigManager extends LoggerContextAwareBase
         }
     }
 
+    /**
+     * Reads a size like 500MB from a configuration
+     *
+     * @param configuration the configuration
+     * @param property the name of the property
+     * @return the size in bytes or 0 if not set
+     * @throws ConfigurationException if the size is not valid
+     */
+    private static long getFileSize(@NotNull Dictionary<?, ?> configuration, @NotNull String property)
+            throws ConfigurationException {
+        Object value = configuration.get(property);
+        if (value == null || value.toString().isEmpty()) {
+            return 0;
+        }
+        try {
+            return FileSize.valueOf(value.toString()).getSize();
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException(property, "Not a valid value", e);
+        }
+    }
+
+    /**
+     * Reads the compression of the rotated files of a log writer
+     *
+     * @param configuration the log writer configuration
+     * @return the gzip compression level or 0 if the rotated files are not compressed
+     * @throws ConfigurationException if the compression or its level is not valid
+     */
+    private int getCompressionLevel(@NotNull Dictionary<?, ?> configuration) throws ConfigurationException {
+        String compression = converter
+                .convert(configuration.get(LogConstants.LOG_FILE_COMPRESSION))
+                .defaultValue(LogConstants.LOG_FILE_COMPRESSION_NONE)
+                .to(String.class);
+        if (LogConstants.LOG_FILE_COMPRESSION_NONE.equalsIgnoreCase(compression)) {
+            return 0;
+        }
+        if (!LogConstants.LOG_FILE_COMPRESSION_GZIP.equalsIgnoreCase(compression)) {
+            throw new ConfigurationException(LogConstants.LOG_FILE_COMPRESSION, "Not a valid value");
+        }
+        int level = converter
+                .convert(configuration.get(LogConstants.LOG_FILE_COMPRESSION_LEVEL))
+                .defaultValue(LogConstants.LOG_FILE_COMPRESSION_LEVEL_DEFAULT)
+                .to(Integer.TYPE);
+        if (level < 1 || level > 9) {
+            throw new ConfigurationException(LogConstants.LOG_FILE_COMPRESSION_LEVEL, "Not a valid value");
+        }
+        return level;
+    }
+
+    /**
+     * Reads the settings to group the flushes of a buffered log writer
+     *
+     * @param configuration the log writer configuration
+     * @return the settings
+     * @throws ConfigurationException if the flush size or level is not valid
+     */
+    private @NotNull FlushSettings getFlushSettings(@NotNull Dictionary<?, ?> configuration)
+            throws ConfigurationException {
+        long maxInterval = converter
+                .convert(configuration.get(LogConstants.LOG_FILE_BUFFERED_FLUSH_INTERVAL))
+                .defaultValue(FlushSettings.DEFAULT.maxInterval())
+                .to(Long.TYPE);
+        Object flushSize = configuration.get(LogConstants.LOG_FILE_BUFFERED_FLUSH_SIZE);
+        int maxBytes = FlushSettings.DEFAULT.maxBytes();
+        if (flushSize != null) {
+            try {
+                maxBytes = (int) Math.min(FileSize.valueOf(flushSize.toString()).getSize(), Integer.MAX_VALUE);
+            } catch (IllegalArgumentException e) {
+                throw new ConfigurationException(LogConstants.LOG_FILE_BUFFERED_FLUSH_SIZE, "Not a valid value", e);
+            }
+        }
+        String flushLevelName = converter
+                .convert(configuration.get(LogConstants.LOG_FILE_BUFFERED_FLUSH_LEVEL))
+                .defaultValue(FlushSettings.DEFAULT.flushLevel().toString())
+                .to(String.class);
+        Level flushLevel = Level.toLevel(flushLevelName, null);
+        if (flushLevel == null) {
+            throw new ConfigurationException(LogConstants.LOG_FILE_BUFFERED_FLUSH_LEVEL, "Not a valid value");
+        }
+        return new FlushSettings(maxInterval, maxBytes, flushLevel);
+    }
+
+    /**
+     * Reads the settings to shed the events of a log writer while its file cannot be written
+     *
+     * @param configuration the log writer configuration
+     * @return the settings
+     * @throws ConfigurationException if the spill level or size is not valid
+     */
+    private @NotNull SheddingSettings getSheddingSettings(@NotNull Dictionary<?, ?> configuration)
+            throws ConfigurationException {
+        long maxLatency = converter
+                .convert(configuration.get(LogConstants.LOG_FILE_SHEDDING_MAX_LATENCY))
+                .defaultValue(SheddingSettings.DEFAULT.maxLatency())
+                .to(Long.TYPE);
+        String spillLevelName = converter
+                .convert(configuration.get(LogConstants.LOG_FILE_SHEDDING_SPILL_LEVEL))
+                .defaultValue(SheddingSettings.DEFAULT.spillLevel().toString())
+                .to(String.class);
+        Level spillLevel = Level.toLevel(spillLevelName, null);
+        if (spillLevel == null) {
+            throw new ConfigurationException(LogConstants.LOG_FILE_SHEDDING_SPILL_LEVEL, "Not a valid value");
+        }
+        int spillSize = SheddingSettings.DEFAULT.spillSize();
+        if (configuration.get(LogConstants.LOG_FILE_SHEDDING_SPILL_SIZE) != null) {
+            spillSize = (int)
+                    Math.min(getFileSize(configuration, LogConstants.LOG_FILE_SHEDDING_SPILL_SIZE), Integer.MAX_VALUE);
+        }
+        long probeInterval = converter
+                .convert(configuration.get(LogConstants.LOG_FILE_SHEDDING_PROBE_INTERVAL))
+                .defaultValue(SheddingSettings.DEFAULT.probeInterval())
+                .to(Long.TYPE);
+        return new SheddingSettings(maxLatency, spillLevel, spillSize, probeInterval);
+    }
+
+    /**
+     * Reads the settings of the queue for the asynchronous logging of a log writer
+     *
+     * @param configuration the log writer configuration
+     * @return the settings
+     * @throws ConfigurationException if the discard level is not valid
+     */
+    private @NotNull AsyncSettings getAsyncSettings(@NotNull Dictionary<?, ?> configuration)
+            throws ConfigurationException {
+        int queueSize = converter
+                .convert(configuration.get(LogConstants.LOG_FILE_ASYNC_QUEUE_SIZE))
+                .defaultValue(AsyncSettings.DEFAULT.queueSize())
+                .to(Integer.TYPE);
+        String discardLevelName = converter
+                .convert(configuration.get(LogConstants.LOG_FILE_ASYNC_DISCARD_LEVEL))
+                .defaultValue(AsyncSettings.DEFAULT.discardLevel().toString())
+                .to(String.class);
+        Level discardLevel = Level.toLevel(discardLevelName, null);
+        if (discardLevel == null) {
+            throw new ConfigurationException(LogConstants.LOG_FILE_ASYNC_DISCARD_LEVEL, "Not a valid value");
+        }
+        boolean neverBlock = converter
+                .convert(configuration.get(LogConstants.LOG_FILE_ASYNC_NEVER_BLOCK))
+                .defaultValue(AsyncSettings.DEFAULT.neverBlock())
+                .to(Boolean.TYPE);
+        long maxFlushTime = converter
+                .convert(configuration.get(LogConstants.LOG_FILE_ASYNC_MAX_FLUSH_TIME))
+                .defaultValue(AsyncSettings.DEFAULT.maxFlushTime())
+                .to(Long.TYPE);
+        return new AsyncSettings(queueSize, discardLevel, neverBlock, maxFlushTime);
+    }
+
     /**
      * Updates or removes the logger configuration indicated by the given
      * <code>pid</code>. If the case of modified categories or removal of the
@@ -1001,6 +1280,7 @@ public class LogConfigManager extends LoggerContextAwareBase
             if (packagingDataEnabled) {
                 newConfig.setPostProcessor(new OSGiAwareExceptionHandling(getPackageInfoCollector()));
             }
+            newConfig.setLayoutCache(layoutCache);
             LogConfig oldConfig = configByPid.get(pid);
             if (oldConfig != null) {
                 configByCategory.keySet().removeAll(oldConfig.getCategories());
@@ -1053,6 +1333,61 @@ public class LogConfigManager extends LoggerContextAwareBase
         return packagingDataEnabled;
     }
 
+    /**
+     * Returns the current value of the {@link #LOG_PACKAGING_DATA_MODE} configuration
+     *
+     * @return the mode used to determine the bundles for the packaging data
+     */
+    public @NotNull String getPackagingDataMode() {
+        return packagingDataMode;
+    }
+
+    /**
+     * Checks if the bundles for the packaging data are looked up on demand
+     *
+     * @return true if the lazy mode is configured, false otherwise
+     */
+    boolean isLazyPackagingData() {
+        return LogConstants.LOG_PACKAGING_DATA_MODE_LAZY.equalsIgnoreCase(packagingDataMode);
+    }
+
+    /**
+     * Returns the current value of the {@link #LOG_WRITER_THREADS} configuration
+     *
+     * @return the number of shared writer threads, 0 for a dedicated thread per appender
+     */
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    /**
+     * Returns the pool writing the events of the asynchronous appenders if it was
+     * created already
+     *
+     * @return the pool or null
+     */
+    synchronized @Nullable AsyncWriterPool getWriterPoolIfCreated() {
+        return writerPool;
+    }
+
+    /**
+     * Returns the pool which writes the events of the asynchronous appender created
+     * for the writer, creating it on demand
+     *
+     * @param lw the writer to create the appender for
+     * @return the pool or null if the appender does not write asynchronously or
+     *         dedicated writer threads are configured
+     */
+    synchronized @Nullable AsyncWriterPool getWriterPool(@NotNull LogWriter lw) {
+        if (lw.getAsyncSettings() == null || writerThreads <= 0) {
+            return null;
+        }
+        if (writerPool == null || !writerPool.isRunning()) {
+            writerPool = new AsyncWriterPool("sling-log-writer", writerThreads);
+        }
+        return writerPool;
+    }
+
     /**
      * Returns the current value of the {@link #LOG_MAX_CALLER_DEPTH} configuration
      *
@@ -1118,6 +1453,25 @@ public class LogConfigManager extends LoggerContextAwareBase
         addedAppenderRef(origin, appenderName, loggers);
     }
 
+    /**
+     * Reads the size limits of the rotation by date of an appender configuration,
+     * invalid values are reported and ignored
+     *
+     * @param config the appender configuration
+     * @return the settings
+     */
+    private @NotNull RolloverSettings getRolloverSettings(@NotNull Dictionary<String, ?> config) {
+        long maxFileSize = 0;
+        long totalSizeCap = 0;
+        try {
+            maxFileSize = getFileSize(config, LogConstants.LOG_FILE_MAX_SIZE);
+            totalSizeCap = getFileSize(config, LogConstants.LOG_FILE_TOTAL_SIZE_CAP);
+        } catch (ConfigurationException e) {
+            addError("Ignoring the invalid value of " + e.getProperty(), e);
+        }
+        return new RolloverSettings(0, false, maxFileSize, totalSizeCap);
+    }
+
     /**
      * Add or update an appender with the supplied configuration
      *
@@ -1160,17 +1514,20 @@ public class LogConfigManager extends LoggerContextAwareBase
             fileAppender.setFile(file);
             fileAppender.setAppend(true);
 
+            RolloverSettings rolloverSettings = getRolloverSettings(config);
             String fileNamePattern = LogWriter.createFileNamePattern(
                     file,
                     converter
                             .convert(config.get(LogConstants.LOG_FILE_SIZE))
                             .defaultValue(LogConstants.LOG_FILE_SIZE_DEFAULT)
-                            .to(String.class));
+                            .to(String.class),
+                    rolloverSettings);
 
             // resolve the path relative to the sling home folder
             fileNamePattern = getAbsoluteFilePath(fileNamePattern);
 
-            TimeBasedRollingPolicy<Object> rollingPolicy = new TimeBasedRollingPolicy<>();
+            TimeBasedRollingPolicy<ILoggingEvent> rollingPolicy =
+                    LogWriter.createTimeBasedRollingPolicy(rolloverSettings);
             rollingPolicy.setContext(loggerContext);
             rollingPolicy.setParent(fileAppender);
             rollingPolicy.setFileNamePattern(fileNamePattern);
@@ -1824,11 +2181,17 @@ public class LogConfigManager extends LoggerContextAwareBase
     }
 
     /**
-     * Register the PackageInfoCollector as an OSGi service
+     * Register the PackageInfoCollector as an OSGi service or, in the lazy mode,
+     * as a bundle listener which looks up the bundles on demand
      */
     void registerPackageInfoCollector() {
         // Weaving hook once registered would not be removed upon config changed
-        if (packagingDataEnabled) {
+        if (packagingDataEnabled && isLazyPackagingData()) {
+            if (packageInfoCollector.getBundleContext() == null) {
+                bundleContext.addBundleListener(packageInfoCollector);
+                packageInfoCollector.setBundleContext(bundleContext);
+            }
+        } else if (packagingDataEnabled) {
             Dictionary<String, Object> props = new Hashtable<>(); // NOSONAR
             props.put(Constants.SERVICE_VENDOR, LogConstants.ASF_SERVICE_VENDOR);
             props.put(Constants.SERVICE_DESCRIPTION, LogConstants.PACKAGE_INFO_COLLECTOR_DESC);
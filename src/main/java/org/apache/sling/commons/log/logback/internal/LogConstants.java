@@ -82,11 +82,51 @@ public class LogConstants {
      */
     public static final String LOG_PACKAGING_DATA = "org.apache.sling.commons.log.packagingDataEnabled";
 
+    /**
+     * Configuration key to specify how the bundles of the classes in a stack trace are
+     * determined if the packaging data is enabled
+     */
+    public static final String LOG_PACKAGING_DATA_MODE = "org.apache.sling.commons.log.packagingDataMode";
+
+    /**
+     * Value for the {@link #LOG_PACKAGING_DATA_MODE} configuration to record the bundle of
+     * every class via a weaving hook
+     */
+    public static final String LOG_PACKAGING_DATA_MODE_WEAVING = "weaving";
+
+    /**
+     * Value for the {@link #LOG_PACKAGING_DATA_MODE} configuration to lookup the bundle only
+     * for the classes found in a stack trace
+     */
+    public static final String LOG_PACKAGING_DATA_MODE_LAZY = "lazy";
+
     /**
      * Configuration key to specify the max stack data depth computed during caller data extraction
      */
     public static final String LOG_MAX_CALLER_DEPTH = "org.apache.sling.commons.log.maxCallerDataDepth";
 
+    /**
+     * Configuration key for the number of threads shared by the asynchronous file appenders
+     * to write their events, 0 to start a dedicated thread for each appender
+     */
+    public static final String LOG_WRITER_THREADS = "org.apache.sling.commons.log.writerThreads";
+
+    /**
+     * Default value for the {@link #LOG_WRITER_THREADS} configuration
+     */
+    public static final int LOG_WRITER_THREADS_DEFAULT = 1;
+
+    /**
+     * Configuration key for the redaction rules applied by the masking converters
+     * (email, jsessionid, bearer, key:&lt;name&gt; or literal:&lt;text&gt;)
+     */
+    public static final String LOG_MASKING_RULES = "org.apache.sling.commons.log.masking.rules";
+
+    /**
+     * Configuration key for the text replacing the values redacted by the masking rules
+     */
+    public static final String LOG_MASKING_REPLACEMENT = "org.apache.sling.commons.log.masking.replacement";
+
     /**
      * Configuration key to specify the max number of rolled over files to included in the webconsole
      * configuration printer
@@ -114,6 +154,159 @@ public class LogConstants {
      */
     public static final String LOG_FILE_BUFFERED = "org.apache.sling.commons.log.file.buffered";
 
+    /**
+     * Max time in milliseconds events written to a {@link #LOG_FILE_BUFFERED} file stay unflushed
+     */
+    public static final String LOG_FILE_BUFFERED_FLUSH_INTERVAL =
+            "org.apache.sling.commons.log.file.buffered.flushInterval";
+
+    /**
+     * Max size (like 256KB) of the unflushed output of a {@link #LOG_FILE_BUFFERED} file
+     */
+    public static final String LOG_FILE_BUFFERED_FLUSH_SIZE = "org.apache.sling.commons.log.file.buffered.flushSize";
+
+    /**
+     * Level from which the events written to a {@link #LOG_FILE_BUFFERED} file are flushed immediately
+     */
+    public static final String LOG_FILE_BUFFERED_FLUSH_LEVEL = "org.apache.sling.commons.log.file.buffered.flushLevel";
+
+    /**
+     * Boolean property to write the events of a file on a separate thread, the message is
+     * then formatted on that thread as well
+     */
+    public static final String LOG_FILE_ASYNC = "org.apache.sling.commons.log.file.async";
+
+    /**
+     * Boolean property to write a file through a file channel from a large direct buffer
+     */
+    public static final String LOG_FILE_CHANNEL = "org.apache.sling.commons.log.file.channel";
+
+    /**
+     * Size (like 64MB) of the chunks of zero bytes a file written through a file channel
+     * is extended by ahead of the writes, not preallocated if not set
+     */
+    public static final String LOG_FILE_PREALLOCATION = "org.apache.sling.commons.log.file.preallocation";
+
+    /**
+     * Configuration key for the compression of the rotated files of a log writer
+     */
+    public static final String LOG_FILE_COMPRESSION = "org.apache.sling.commons.log.file.compression";
+
+    /**
+     * Value for the {@link #LOG_FILE_COMPRESSION} configuration to keep the rotated files
+     * uncompressed (the default)
+     */
+    public static final String LOG_FILE_COMPRESSION_NONE = "none";
+
+    /**
+     * Value for the {@link #LOG_FILE_COMPRESSION} configuration to compress the rotated files
+     * with gzip on a background thread
+     */
+    public static final String LOG_FILE_COMPRESSION_GZIP = "gzip";
+
+    /**
+     * Level from 1 (fastest) to 9 (smallest) used for the {@link #LOG_FILE_COMPRESSION}
+     */
+    public static final String LOG_FILE_COMPRESSION_LEVEL = "org.apache.sling.commons.log.file.compression.level";
+
+    /**
+     * Default {@link #LOG_FILE_COMPRESSION_LEVEL}
+     */
+    public static final int LOG_FILE_COMPRESSION_LEVEL_DEFAULT = 6;
+
+    /**
+     * Boolean property to only rename the file of a log writer rotated by size on the logging
+     * thread and to shift the rotated files on a background thread
+     */
+    public static final String LOG_FILE_ASYNC_ROLLOVER = "org.apache.sling.commons.log.file.asyncRollover";
+
+    /**
+     * Max size (like 500MB) of a file rotated by date, the files of a period are numbered
+     * once they exceed it
+     */
+    public static final String LOG_FILE_MAX_SIZE = "org.apache.sling.commons.log.file.maxSize";
+
+    /**
+     * Max total size (like 10GB) of the files rotated by date, the oldest ones are deleted
+     * once it is exceeded
+     */
+    public static final String LOG_FILE_TOTAL_SIZE_CAP = "org.apache.sling.commons.log.file.totalSizeCap";
+
+    /**
+     * Number of events which can be queued for the {@link #LOG_FILE_ASYNC} writer thread
+     */
+    public static final String LOG_FILE_ASYNC_QUEUE_SIZE = "org.apache.sling.commons.log.file.async.queueSize";
+
+    /**
+     * Level below which events are discarded once the {@link #LOG_FILE_ASYNC} queue is nearly full
+     */
+    public static final String LOG_FILE_ASYNC_DISCARD_LEVEL = "org.apache.sling.commons.log.file.async.discardLevel";
+
+    /**
+     * Boolean property to drop the events instead of blocking the logging threads
+     * while the {@link #LOG_FILE_ASYNC} queue is full
+     */
+    public static final String LOG_FILE_ASYNC_NEVER_BLOCK = "org.apache.sling.commons.log.file.async.neverBlock";
+
+    /**
+     * Max time in milliseconds to wait for the queued events to be written when the
+     * {@link #LOG_FILE_ASYNC} writer is stopped
+     */
+    public static final String LOG_FILE_ASYNC_MAX_FLUSH_TIME = "org.apache.sling.commons.log.file.async.maxFlushTime";
+
+    /**
+     * Boolean property to shed the events for a while once a write to the file failed
+     * or took too long
+     */
+    public static final String LOG_FILE_SHEDDING = "org.apache.sling.commons.log.file.shedding";
+
+    /**
+     * Max time in milliseconds a write may take before the {@link #LOG_FILE_SHEDDING}
+     * writer sheds the events, 0 to only shed after failed writes
+     */
+    public static final String LOG_FILE_SHEDDING_MAX_LATENCY = "org.apache.sling.commons.log.file.shedding.maxLatency";
+
+    /**
+     * Level from which events are kept in memory instead of being dropped while the
+     * {@link #LOG_FILE_SHEDDING} writer sheds
+     */
+    public static final String LOG_FILE_SHEDDING_SPILL_LEVEL = "org.apache.sling.commons.log.file.shedding.spillLevel";
+
+    /**
+     * Max size (like 1MB) of the events kept in memory while the {@link #LOG_FILE_SHEDDING}
+     * writer sheds
+     */
+    public static final String LOG_FILE_SHEDDING_SPILL_SIZE = "org.apache.sling.commons.log.file.shedding.spillSize";
+
+    /**
+     * Time in milliseconds between the attempts of the {@link #LOG_FILE_SHEDDING} writer
+     * to write the file again
+     */
+    public static final String LOG_FILE_SHEDDING_PROBE_INTERVAL =
+            "org.apache.sling.commons.log.file.shedding.probeInterval";
+
+    /**
+     * Configuration key for the format of the log file written by a log writer
+     */
+    public static final String LOG_FILE_FORMAT = "org.apache.sling.commons.log.file.format";
+
+    /**
+     * Value for the {@link #LOG_FILE_FORMAT} configuration to write the events formatted with the pattern
+     * of the logger configurations (the default)
+     */
+    public static final String LOG_FILE_FORMAT_TEXT = "text";
+
+    /**
+     * Value for the {@link #LOG_FILE_FORMAT} configuration to write the events as JSON lines
+     */
+    public static final String LOG_FILE_FORMAT_JSON = "json";
+
+    /**
+     * Value for the {@link #LOG_FILE_FORMAT} configuration to write the events as compact binary
+     * records. Only supported for files, the console uses the text format.
+     */
+    public static final String LOG_FILE_FORMAT_BINARY = "binary";
+
     /**
      * Configuration key for the pattern to apply for the logging output
      */
@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.sling.commons.log.logback.internal.util.BinaryLogDecoder;
+import org.apache.sling.commons.log.logback.internal.util.BinaryLogEncoder;
+import org.apache.sling.commons.log.logback.internal.util.Util;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Helper methods to locate and read the (possibly compressed) files
+ * written by a file appender
+ */
+final class LogFiles {
+    static final String SUFFIX_GZ = ".gz";
+    static final String SUFFIX_ZIP = ".zip";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private LogFiles() {
+        // to hide public ctor
+    }
+
+    /**
+     * Checks if the file is a compressed archive as produced by the
+     * Logback rolling policies
+     *
+     * @param file the file to check
+     * @return true if the file is gzip or zip compressed
+     */
+    static boolean isCompressed(@NotNull File file) {
+        return isGzip(file) || isZip(file);
+    }
+
+    static boolean isGzip(@NotNull File file) {
+        return file.getName().endsWith(SUFFIX_GZ);
+    }
+
+    static boolean isZip(@NotNull File file) {
+        return file.getName().endsWith(SUFFIX_ZIP);
+    }
+
+    /**
+     * Checks if the (decompressed) content of the file consists of the binary
+     * records written by the {@link BinaryLogEncoder}
+     *
+     * @param file the file to check
+     * @return true if the file is a binary log file
+     */
+    static boolean isBinary(@NotNull File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try (InputStream in = openRawStream(file)) {
+            return BinaryLogDecoder.isBinary(in);
+        } catch (IOException e) {
+            // not readable, hence treated like a text file
+            return false;
+        }
+    }
+
+    /**
+     * Gets the length of the content of the file without the space preallocated
+     * by the appender. Compressed and binary files are never preallocated.
+     *
+     * @param file the file to check
+     * @return the length of the content in bytes
+     */
+    static long logicalLength(@NotNull File file) {
+        return isCompressed(file) || isBinary(file) ? file.length() : textLength(file);
+    }
+
+    /**
+     * Gets the length of the content of an uncompressed text file without the space
+     * preallocated by the appender
+     *
+     * @param file the file to check
+     * @return the length of the content in bytes, the length of the file if it cannot be read
+     */
+    static long textLength(@NotNull File file) {
+        return textLength(file, 0);
+    }
+
+    /**
+     * Gets the length of the content of an uncompressed text file without the space
+     * preallocated by the appender, only checking the file after the given length
+     *
+     * @param file the file to check
+     * @param minLength the length the content has at least
+     * @return the length of the content in bytes, the length of the file if it cannot be read
+     */
+    static long textLength(@NotNull File file, long minLength) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return Util.logicalLength(channel, minLength);
+        } catch (IOException e) {
+            return file.length();
+        }
+    }
+
+    /**
+     * Opens a stream over the (decompressed) content of the file. The content is
+     * decompressed while reading so the archive is never fully inflated in memory.
+     * Binary log files are decoded to text the same way, the space preallocated
+     * at the end of a text file is skipped.
+     *
+     * @param file the file to open
+     * @return the stream with the plain text content of the file
+     * @throws IOException if the file cannot be opened
+     */
+    static @NotNull InputStream openStream(@NotNull File file) throws IOException {
+        InputStream in = openRawStream(file);
+        try {
+            if (BinaryLogDecoder.isBinary(in)) {
+                return new BinaryLogDecoder(in);
+            }
+            return isCompressed(file) ? in : new BoundedInputStream(in, textLength(file));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a stream supporting mark and reset over the decompressed content of the file
+     */
+    private static @NotNull InputStream openRawStream(@NotNull File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            if (isGzip(file)) {
+                return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+            } else if (isZip(file)) {
+                ZipInputStream zin = new ZipInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+                ZipEntry entry = zin.getNextEntry();
+                while (entry != null && entry.isDirectory()) {
+                    entry = zin.getNextEntry();
+                }
+                return new BufferedInputStream(zin, BUFFER_SIZE);
+            }
+            return new BufferedInputStream(in, BUFFER_SIZE);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Lists all the files which were created for the active file including the
+     * ones created via rotation. Files which do not share the name of the active
+     * file as prefix are not found.
+     *
+     * @param file the active file of the appender
+     * @return the files sorted by last modification with the most recent one first
+     */
+    static @NotNull File[] listRotatedFiles(@NotNull File file) {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        final String baseName = file.getName();
+        File[] result = dir == null
+                ? null
+                : dir.listFiles((d, name) -> name.startsWith(baseName) && !GzipBlockIndex.isIndexFile(name));
+        if (result == null) {
+            return new File[0];
+        }
+
+        // Sort the files in reverse
+        Arrays.sort(result, Collections.reverseOrder(Comparator.comparing(File::lastModified)));
+        return result;
+    }
+
+    /**
+     * Ends a stream after the given number of bytes
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            int num = super.read(b, off, (int) Math.min(len, remaining));
+            if (num > 0) {
+                remaining -= num;
+            }
+            return num;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
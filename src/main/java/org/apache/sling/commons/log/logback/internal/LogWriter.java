@@ -28,10 +28,15 @@ import ch.qos.logback.core.Context;
 import ch.qos.logback.core.OutputStreamAppender;
 import ch.qos.logback.core.encoder.Encoder;
 import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
-import ch.qos.logback.core.rolling.FixedWindowRollingPolicy;
+import ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy;
 import ch.qos.logback.core.rolling.SizeBasedTriggeringPolicy;
 import ch.qos.logback.core.rolling.TimeBasedRollingPolicy;
 import ch.qos.logback.core.util.FileSize;
+import org.apache.sling.commons.log.logback.internal.util.AsyncSettings;
+import org.apache.sling.commons.log.logback.internal.util.AsyncWriterPool;
+import org.apache.sling.commons.log.logback.internal.util.FlushSettings;
+import org.apache.sling.commons.log.logback.internal.util.RolloverSettings;
+import org.apache.sling.commons.log.logback.internal.util.SheddingSettings;
 import org.apache.sling.commons.log.logback.internal.util.SlingContextUtil;
 import org.apache.sling.commons.log.logback.internal.util.SlingRollingFileAppender;
 import org.jetbrains.annotations.NotNull;
@@ -76,7 +81,19 @@ public class LogWriter {
 
     private final String appenderName;
 
-    private final boolean bufferedLogging;
+    private final FlushSettings flushSettings;
+
+    private final String format;
+
+    private final AsyncSettings asyncSettings;
+
+    private final boolean channelOutput;
+
+    private final RolloverSettings rolloverSettings;
+
+    private final SheddingSettings sheddingSettings;
+
+    private final long preallocationSize;
 
     public LogWriter(
             @Nullable String configurationPID,
@@ -85,6 +102,34 @@ public class LogWriter {
             @Nullable String logRotation,
             @Nullable String fileName,
             boolean bufferedLogging) {
+        this(
+                configurationPID,
+                appenderName,
+                logNumber,
+                logRotation,
+                fileName,
+                bufferedLogging
+                        ? WriterSettings.DEFAULT.withFlushSettings(FlushSettings.DEFAULT)
+                        : WriterSettings.DEFAULT);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param configurationPID the pid of the writer configuration (null for implicit writers)
+     * @param appenderName the name of the appender
+     * @param logNumber the number of rotated files to keep
+     * @param logRotation the rotation (size or date pattern)
+     * @param fileName the name of the file or {@link #FILE_NAME_CONSOLE}
+     * @param settings the format and the settings of the output
+     */
+    public LogWriter(
+            @Nullable String configurationPID,
+            @NotNull String appenderName,
+            int logNumber,
+            @Nullable String logRotation,
+            @Nullable String fileName,
+            @NotNull WriterSettings settings) {
         this.appenderName = appenderName;
         if (fileName == null || fileName.length() == 0) {
             fileName = FILE_NAME_CONSOLE;
@@ -102,7 +147,13 @@ public class LogWriter {
         this.fileName = fileName;
         this.logNumber = logNumber;
         this.logRotation = logRotation;
-        this.bufferedLogging = bufferedLogging;
+        this.flushSettings = settings.flushSettings();
+        this.format = settings.format();
+        this.asyncSettings = settings.asyncSettings();
+        this.channelOutput = settings.channelOutput();
+        this.rolloverSettings = settings.rolloverSettings();
+        this.sheddingSettings = settings.sheddingSettings();
+        this.preallocationSize = settings.preallocationSize();
     }
 
     public LogWriter(
@@ -134,12 +185,128 @@ public class LogWriter {
         return logRotation;
     }
 
+    public @NotNull String getFormat() {
+        return format;
+    }
+
+    /**
+     * Checks if the events are written as JSON lines instead of being formatted
+     * with the patterns of the logger configurations
+     *
+     * @return true for the JSON lines format
+     */
+    public boolean isJsonFormat() {
+        return LogConstants.LOG_FILE_FORMAT_JSON.equalsIgnoreCase(format);
+    }
+
+    /**
+     * Checks if the events are written as binary records. The console is always
+     * written as text.
+     *
+     * @return true for the binary format
+     */
+    public boolean isBinaryFormat() {
+        return LogConstants.LOG_FILE_FORMAT_BINARY.equalsIgnoreCase(format) && !FILE_NAME_CONSOLE.equals(fileName);
+    }
+
+    /**
+     * Checks if the events are formatted and written on a separate thread. The
+     * console is always written on the logging thread.
+     *
+     * @return true if the events are written asynchronously
+     */
+    public boolean isAsyncLogging() {
+        return asyncSettings != null && !FILE_NAME_CONSOLE.equals(fileName);
+    }
+
+    /**
+     * Returns the settings used to group the flushes of several events
+     *
+     * @return the settings or null if the output is flushed after each event
+     */
+    public @Nullable FlushSettings getFlushSettings() {
+        return flushSettings;
+    }
+
+    /**
+     * Returns the settings of the queue used for the asynchronous logging
+     *
+     * @return the settings or null if the events are written on the logging threads
+     */
+    public @Nullable AsyncSettings getAsyncSettings() {
+        return asyncSettings;
+    }
+
+    /**
+     * Checks if a file is written through a file channel from a large buffer
+     *
+     * @return true if the channel output is enabled, also implied by the preallocation
+     */
+    public boolean isChannelOutput() {
+        return (channelOutput && !FILE_NAME_CONSOLE.equals(fileName)) || getPreallocationSize() > 0;
+    }
+
+    /**
+     * Returns the gzip compression level of the rotated files. The console is
+     * never rotated.
+     *
+     * @return the level from 1 to 9 or 0 if the rotated files are not compressed
+     */
+    public int getCompressionLevel() {
+        return FILE_NAME_CONSOLE.equals(fileName) ? 0 : rolloverSettings.compressionLevel();
+    }
+
+    /**
+     * Returns the settings for the rotation of the file by size
+     *
+     * @return the settings
+     */
+    public @NotNull RolloverSettings getRolloverSettings() {
+        return rolloverSettings;
+    }
+
+    /**
+     * Returns the settings to shed the events while the file cannot be written
+     *
+     * @return the settings or null if the events are always written to the file
+     */
+    public @Nullable SheddingSettings getSheddingSettings() {
+        return sheddingSettings;
+    }
+
+    /**
+     * Returns the size of the chunks of zero bytes the file is extended by ahead of
+     * the writes. The console and the binary format are never preallocated as the
+     * zero bytes at the end of the file are taken as preallocated space.
+     *
+     * @return the size in bytes or 0 if the file is not preallocated
+     */
+    public long getPreallocationSize() {
+        return FILE_NAME_CONSOLE.equals(fileName) || isBinaryFormat() ? 0 : preallocationSize;
+    }
+
     public boolean isImplicit() {
         return configurationPID == null;
     }
 
     public @NotNull Appender<ILoggingEvent> createAppender(
             @NotNull final Context context, @NotNull final Encoder<ILoggingEvent> encoder) {
+        return createAppender(context, encoder, null);
+    }
+
+    /**
+     * Creates the appender for this writer
+     *
+     * @param context the logger context
+     * @param encoder the encoder for the events
+     * @param writerPool the pool whose threads write the events in the asynchronous mode,
+     *                   null for a dedicated writer thread
+     * @return the started appender
+     */
+    public @NotNull Appender<ILoggingEvent> createAppender(
+            @NotNull final Context context,
+            @NotNull final Encoder<ILoggingEvent> encoder,
+            @Nullable final AsyncWriterPool writerPool) {
         SlingContextUtil ctxUtil = new SlingContextUtil(context, this);
         OutputStreamAppender<ILoggingEvent> appender;
         if (FILE_NAME_CONSOLE.equals(fileName)) {
@@ -186,18 +353,16 @@ public class LogWriter {
                         maxSize = baseSize;
                 }
 
-                SizeBasedTriggeringPolicy<ILoggingEvent> triggeringPolicy = new SizeBasedTriggeringPolicy<>();
+                // the length of a preallocated file is not the length of its content
+                SizeBasedTriggeringPolicy<ILoggingEvent> triggeringPolicy = getPreallocationSize() > 0
+                        ? new SlingSizeBasedTriggeringPolicy<>()
+                        : new SizeBasedTriggeringPolicy<>();
                 triggeringPolicy.setMaxFileSize(FileSize.valueOf(String.valueOf(maxSize)));
                 triggeringPolicy.setContext(context);
                 triggeringPolicy.start();
                 rollingAppender.setTriggeringPolicy(triggeringPolicy);
 
-                FixedWindowRollingPolicy pol = new FixedWindowRollingPolicy() {
-                    @Override
-                    protected int getMaxWindowSize() {
-                        return Integer.MAX_VALUE;
-                    }
-                };
+                SlingFixedWindowRollingPolicy pol = new SlingFixedWindowRollingPolicy(rolloverSettings);
                 pol.setMinIndex(1);
                 pol.setMaxIndex(getLogNumber());
                 pol.setFileNamePattern(getFileName() + "%i");
@@ -205,9 +370,12 @@ public class LogWriter {
                 pol.setParent(rollingAppender);
                 pol.start();
                 rollingAppender.setRollingPolicy(pol);
+                if (rolloverSettings.isBackground()) {
+                    ctxUtil.addInfo("Rotating the file on a background thread with " + rolloverSettings);
+                }
             } else {
-                TimeBasedRollingPolicy<ILoggingEvent> policy = new TimeBasedRollingPolicy<>();
-                String fileNamePattern = createFileNamePattern(getFileName(), getLogRotation());
+                TimeBasedRollingPolicy<ILoggingEvent> policy = createTimeBasedRollingPolicy(rolloverSettings);
+                String fileNamePattern = createFileNamePattern(getFileName(), getLogRotation(), rolloverSettings);
                 policy.setFileNamePattern(fileNamePattern);
                 policy.setMaxHistory(getLogNumber());
                 policy.setContext(context);
@@ -215,18 +383,44 @@ public class LogWriter {
                 policy.start();
                 rollingAppender.setTriggeringPolicy(policy);
 
-                ctxUtil.addInfo("Configured TimeBasedRollingPolicy with pattern " + fileNamePattern);
+                ctxUtil.addInfo("Configured " + policy.getClass().getSimpleName() + " with pattern " + fileNamePattern);
             }
 
             rollingAppender.setLogWriter(this);
+            if (asyncSettings != null) {
+                rollingAppender.setAsync(true);
+                rollingAppender.setAsyncSettings(asyncSettings);
+                rollingAppender.setWriterPool(writerPool);
+                ctxUtil.addInfo("Writing the events on a separate thread with " + asyncSettings);
+            }
+            if (channelOutput || getPreallocationSize() > 0) {
+                rollingAppender.setChannelOutput(true);
+                ctxUtil.addInfo("Writing the file through a file channel");
+            }
+            if (getPreallocationSize() > 0) {
+                rollingAppender.setPreallocationSize(getPreallocationSize());
+                ctxUtil.addInfo("Preallocating the file in chunks of " + new FileSize(getPreallocationSize()));
+            } else if (preallocationSize > 0) {
+                ctxUtil.addInfo("Not preallocating the file of the binary format");
+            }
+            if (sheddingSettings != null) {
+                rollingAppender.setSheddingSettings(sheddingSettings);
+                ctxUtil.addInfo("Shedding the events while the file cannot be written with " + sheddingSettings);
+            }
             rollingAppender.setName(getAppenderName());
 
             appender = rollingAppender;
         }
 
-        if (bufferedLogging && encoder instanceof LayoutWrappingEncoder) {
+        if (flushSettings != null && appender instanceof SlingRollingFileAppender) {
+            ((SlingRollingFileAppender<ILoggingEvent>) appender).setFlushSettings(flushSettings);
+            ctxUtil.addInfo("Grouping the flushes with " + flushSettings);
+        } else if (flushSettings != null && encoder instanceof LayoutWrappingEncoder) {
             ((LayoutWrappingEncoder<ILoggingEvent>) encoder).setImmediateFlush(false);
             ctxUtil.addInfo("Setting immediateFlush to false");
+        } else if (flushSettings != null) {
+            appender.setImmediateFlush(false);
+            ctxUtil.addInfo("Setting immediateFlush of the appender to false");
         } else {
             ctxUtil.addInfo("immediateFlush property not modified. Defaults to true");
         }
@@ -255,9 +449,60 @@ public class LogWriter {
         return fileName + pattern;
     }
 
+    /**
+     * Creates the file name pattern for the rotation by date. With a max file size
+     * the files of a period are numbered, with compression the archive suffix is
+     * added. Logback compresses the rotated files asynchronously.
+     *
+     * @param fileName the name of the active file
+     * @param pattern the date pattern of the rotation
+     * @param settings the settings of the rotation
+     * @return the file name pattern
+     */
+    static @NotNull String createFileNamePattern(
+            @NotNull String fileName, @NotNull String pattern, @NotNull RolloverSettings settings) {
+        String fileNamePattern = createFileNamePattern(fileName, pattern);
+        String suffix = "";
+        if (fileNamePattern.endsWith(".gz") || fileNamePattern.endsWith(".zip")) {
+            suffix = fileNamePattern.substring(fileNamePattern.lastIndexOf('.'));
+            fileNamePattern = fileNamePattern.substring(0, fileNamePattern.length() - suffix.length());
+        } else if (settings.compressionLevel() > 0) {
+            suffix = SlingFixedWindowRollingPolicy.SUFFIX_GZIP;
+        }
+        if (settings.maxFileSize() > 0 && !fileNamePattern.contains("%i")) {
+            fileNamePattern += ".%i";
+        }
+        return fileNamePattern + suffix;
+    }
+
+    /**
+     * Creates the policy for the rotation by date with the size limits of the settings
+     *
+     * @param settings the settings of the rotation
+     * @return a {@link SizeAndTimeBasedRollingPolicy} if the size of a file is limited
+     * @param <E> the type of the events
+     */
+    static @NotNull <E> TimeBasedRollingPolicy<E> createTimeBasedRollingPolicy(@NotNull RolloverSettings settings) {
+        TimeBasedRollingPolicy<E> policy;
+        if (settings.maxFileSize() > 0) {
+            SlingSizeAndTimeBasedRollingPolicy<E> sizeAndTimePolicy = new SlingSizeAndTimeBasedRollingPolicy<>();
+            sizeAndTimePolicy.setMaxFileSize(new FileSize(settings.maxFileSize()));
+            policy = sizeAndTimePolicy;
+        } else {
+            policy = new SlingTimeBasedRollingPolicy<>();
+        }
+        if (settings.totalSizeCap() > 0) {
+            policy.setTotalSizeCap(new FileSize(settings.totalSizeCap()));
+        }
+        return policy;
+    }
+
     @Override
     public @NotNull String toString() {
         return "LogWriter{" + "configurationPID='" + configurationPID + '\'' + ", fileName='" + fileName + '\''
-                + ", logNumber=" + logNumber + ", logRotation='" + logRotation + '\'' + '}';
+                + ", logNumber=" + logNumber + ", logRotation='" + logRotation + '\'' + ", format='" + format + '\''
+                + ", flushSettings=" + flushSettings + ", asyncSettings=" + asyncSettings + ", channelOutput="
+                + channelOutput + ", rolloverSettings=" + rolloverSettings + ", sheddingSettings=" + sheddingSettings
+                + ", preallocationSize=" + preallocationSize + '}';
     }
 }
@@ -0,0 +1,442 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Masks log messages in a single pass. Carriage returns and line feeds are
+ * always replaced with an underscore. In addition configured redaction rules
+ * replace sensitive values with a replacement text.
+ * <p>
+ * Each rule has a trigger literal. All triggers are compiled into one
+ * (case insensitive) Aho-Corasick automaton so that the message is scanned
+ * only once regardless of the number of rules. Only when a trigger is found
+ * the rule checks the surrounding text, possibly with a small regular expression,
+ * to determine the range to redact.
+ * <p>
+ * The supported rules are
+ * <dl>
+ * <dt>email</dt><dd>email addresses</dd>
+ * <dt>jsessionid</dt><dd>the value of a jsessionid parameter or cookie</dd>
+ * <dt>bearer</dt><dd>the token of a bearer authorization</dd>
+ * <dt>key:&lt;name&gt;</dt><dd>the value following <code>name=</code> or <code>name:</code></dd>
+ * <dt>literal:&lt;text&gt;</dt><dd>each occurrence of the (case sensitive) text</dd>
+ * </dl>
+ */
+final class MaskingEngine {
+
+    static final String DEFAULT_REPLACEMENT = "****";
+
+    static final String RULE_EMAIL = "email";
+    static final String RULE_JSESSIONID = "jsessionid";
+    static final String RULE_BEARER = "bearer";
+    static final String RULE_PREFIX_KEY = "key:";
+    static final String RULE_PREFIX_LITERAL = "literal:";
+
+    /**
+     * Engine which only masks line breaks
+     */
+    static final MaskingEngine LINE_BREAKS_ONLY = new MaskingEngine(new Rule[0], DEFAULT_REPLACEMENT);
+
+    private static final Pattern KEY_VALUE = Pattern.compile("\"?\\s*[=:]\\s*\"?([^\\s\"'&,;]+)");
+    private static final Pattern BEARER_TOKEN = Pattern.compile("\\s+([A-Za-z0-9\\-._~+/]+=*)");
+    private static final Pattern EMAIL_DOMAIN = Pattern.compile("[A-Za-z0-9-]+(?:\\.[A-Za-z0-9-]+)+");
+
+    private static final long NO_MATCH = -1;
+
+    private final Rule[] rules;
+    private final String replacement;
+    private final int maxTriggerLength;
+
+    // the automaton as a transition table over the alphabet of the trigger characters
+    private final char[] alphabet;
+    private final int[] asciiClasses = new int[128];
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    private MaskingEngine(Rule[] rules, String replacement) {
+        this.rules = rules;
+        this.replacement = replacement;
+        int maxLength = 0;
+        for (Rule rule : rules) {
+            maxLength = Math.max(maxLength, rule.trigger.length());
+        }
+        this.maxTriggerLength = maxLength;
+
+        TreeSet<Character> chars = new TreeSet<>();
+        for (Rule rule : rules) {
+            for (char c : rule.trigger.toCharArray()) {
+                chars.add(c);
+            }
+        }
+        alphabet = new char[chars.size()];
+        int i = 0;
+        for (Character c : chars) {
+            alphabet[i++] = c;
+        }
+        for (char c = 0; c < asciiClasses.length; c++) {
+            asciiClasses[c] = lookupClass(c);
+        }
+
+        // build the trie of the triggers
+        List<Map<Integer, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> matches = new ArrayList<>();
+        trie.add(new HashMap<>());
+        matches.add(new ArrayList<>());
+        for (int r = 0; r < rules.length; r++) {
+            int state = 0;
+            for (char c : rules[r].trigger.toCharArray()) {
+                int cls = classOf(c);
+                Integer next = trie.get(state).get(cls);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<>());
+                    matches.add(new ArrayList<>());
+                    trie.get(state).put(cls, next);
+                }
+                state = next;
+            }
+            matches.get(state).add(r);
+        }
+
+        // turn it into a deterministic automaton following the failure links
+        int width = alphabet.length + 1;
+        int states = trie.size();
+        transitions = new int[states * width];
+        outputs = new int[states][];
+        int[] failure = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int cls = 0; cls < width; cls++) {
+            Integer next = trie.get(0).get(cls);
+            if (next != null) {
+                transitions[cls] = next;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            // rules of the longest suffix come after the ones ending in this state
+            matches.get(state).addAll(matches.get(failure[state]));
+            for (int cls = 0; cls < width; cls++) {
+                Integer next = trie.get(state).get(cls);
+                if (next != null) {
+                    failure[next] = transitions[failure[state] * width + cls];
+                    transitions[state * width + cls] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * width + cls] = transitions[failure[state] * width + cls];
+                }
+            }
+        }
+        for (int s = 0; s < states; s++) {
+            List<Integer> m = matches.get(s);
+            outputs[s] =
+                    m.isEmpty() ? null : m.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Compile the rules into an engine. Unknown rules are logged and ignored.
+     *
+     * @param ruleDefinitions the rules (see the class description)
+     * @param replacement the text replacing the redacted values
+     * @return the engine
+     */
+    static @NotNull MaskingEngine compile(@Nullable String[] ruleDefinitions, @Nullable String replacement) {
+        List<Rule> rules = new ArrayList<>();
+        if (ruleDefinitions != null) {
+            for (String definition : ruleDefinitions) {
+                Rule rule = definition == null ? null : createRule(definition.trim());
+                if (rule != null) {
+                    rules.add(rule);
+                } else if (definition != null && !definition.trim().isEmpty()) {
+                    LoggerFactory.getLogger(MaskingEngine.class).warn("Ignoring unknown masking rule [{}]", definition);
+                }
+            }
+        }
+        if (rules.isEmpty()) {
+            return LINE_BREAKS_ONLY;
+        }
+        return new MaskingEngine(rules.toArray(new Rule[0]), replacement == null ? DEFAULT_REPLACEMENT : replacement);
+    }
+
+    private static @Nullable Rule createRule(@NotNull String definition) {
+        String name = definition.toLowerCase(Locale.ROOT);
+        Rule rule = null;
+        if (RULE_EMAIL.equals(name)) {
+            rule = new EmailRule();
+        } else if (RULE_JSESSIONID.equals(name)) {
+            rule = new ValueRule(RULE_JSESSIONID, KEY_VALUE);
+        } else if (RULE_BEARER.equals(name)) {
+            rule = new ValueRule(RULE_BEARER, BEARER_TOKEN);
+        } else if (name.startsWith(RULE_PREFIX_KEY) && name.length() > RULE_PREFIX_KEY.length()) {
+            rule = new ValueRule(name.substring(RULE_PREFIX_KEY.length()), KEY_VALUE);
+        } else if (name.startsWith(RULE_PREFIX_LITERAL) && name.length() > RULE_PREFIX_LITERAL.length()) {
+            rule = new LiteralRule(definition.substring(RULE_PREFIX_LITERAL.length()));
+        }
+        return rule;
+    }
+
+    /**
+     * Number of redaction rules of the engine
+     */
+    int getRuleCount() {
+        return rules.length;
+    }
+
+    /**
+     * Mask the message
+     *
+     * @param msg the message
+     * @return the masked message or the same instance if nothing had to be masked
+     */
+    @Nullable
+    String mask(@Nullable String msg) {
+        if (msg == null) {
+            return null;
+        }
+        StringBuilder masked = process(msg, null);
+        return masked == null ? msg : masked.toString();
+    }
+
+    /**
+     * Append the masked message to the buffer
+     *
+     * @param buf the buffer to append to
+     * @param msg the message (null is appended as "null" like {@link StringBuilder#append(String)} does)
+     */
+    void appendMasked(@NotNull StringBuilder buf, @Nullable String msg) {
+        if (msg == null) {
+            buf.append((String) null);
+            return;
+        }
+        process(msg, buf);
+    }
+
+    /**
+     * Scans the message once and appends the masked output to the buffer.
+     * Overlapping ranges found by the rules are merged into one redaction.
+     *
+     * @param msg the message to mask
+     * @param out the buffer to append to or null to only create a buffer on
+     *      the first change
+     * @return the buffer with the masked message or null if out was null and nothing
+     *      had to be masked
+     */
+    private @Nullable StringBuilder process(@NotNull String msg, @Nullable StringBuilder out) {
+        final int length = msg.length();
+        final int width = alphabet.length + 1;
+        int emitted = 0;
+        int state = 0;
+        int pendingStart = -1;
+        int pendingEnd = -1;
+        for (int i = 0; i < length; i++) {
+            if (pendingStart >= 0 && i + 1 - maxTriggerLength >= pendingEnd) {
+                // no trigger ending from here on can overlap the pending range
+                out = redact(msg, out, emitted, pendingStart);
+                emitted = pendingEnd;
+                pendingStart = -1;
+            }
+            final char c = msg.charAt(i);
+            if (c == '\n' || c == '\r') {
+                if (pendingStart >= 0) {
+                    out = redact(msg, out, emitted, pendingStart);
+                    emitted = pendingEnd;
+                    pendingStart = -1;
+                }
+                if (out == null) {
+                    out = new StringBuilder(length + 16);
+                }
+                out.append(msg, emitted, i).append('_');
+                emitted = i + 1;
+                state = 0;
+                continue;
+            }
+            if (rules.length == 0) {
+                continue;
+            }
+            state = transitions[state * width + classOf(c)];
+            final int[] matched = outputs[state];
+            if (matched != null) {
+                for (int r : matched) {
+                    final Rule rule = rules[r];
+                    final long span = rule.find(msg, i + 1 - rule.trigger.length(), i + 1, emitted);
+                    if (span != NO_MATCH) {
+                        final int start = (int) (span >>> 32);
+                        final int end = (int) span;
+                        if (pendingStart < 0) {
+                            pendingStart = start;
+                            pendingEnd = end;
+                        } else if (start < pendingEnd) {
+                            pendingStart = Math.min(pendingStart, start);
+                            pendingEnd = Math.max(pendingEnd, end);
+                        } else {
+                            out = redact(msg, out, emitted, pendingStart);
+                            emitted = pendingEnd;
+                            pendingStart = start;
+                            pendingEnd = end;
+                        }
+                    }
+                }
+            }
+        }
+        if (pendingStart >= 0) {
+            out = redact(msg, out, emitted, pendingStart);
+            emitted = pendingEnd;
+        }
+        if (out != null) {
+            out.append(msg, emitted, length);
+        }
+        return out;
+    }
+
+    private @NotNull StringBuilder redact(@NotNull String msg, @Nullable StringBuilder out, int from, int start) {
+        if (out == null) {
+            out = new StringBuilder(msg.length() + 16);
+        }
+        return out.append(msg, from, start).append(replacement);
+    }
+
+    private int classOf(char c) {
+        return c < asciiClasses.length ? asciiClasses[c] : lookupClass(c);
+    }
+
+    private int lookupClass(char c) {
+        int index = Arrays.binarySearch(alphabet, LineMatcher.fold(c));
+        return index < 0 ? 0 : index + 1;
+    }
+
+    private static long span(int start, int end) {
+        return ((long) start << 32) | end;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * A redaction rule which is checked when its trigger was found
+     */
+    private abstract static class Rule {
+        final String trigger;
+
+        Rule(String trigger) {
+            this.trigger = fold(trigger);
+        }
+
+        private static String fold(String s) {
+            char[] chars = s.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = LineMatcher.fold(chars[i]);
+            }
+            return new String(chars);
+        }
+
+        /**
+         * Determine the range to redact
+         *
+         * @param text the message
+         * @param start the start of the trigger in the message
+         * @param end the end of the trigger in the message
+         * @param lowerBound the start of the text which can still be redacted
+         * @return the range as start (high bits) and end (low bits) or {@link #NO_MATCH}
+         */
+        abstract long find(String text, int start, int end, int lowerBound);
+    }
+
+    private static final class LiteralRule extends Rule {
+        private final String literal;
+
+        LiteralRule(String literal) {
+            super(literal);
+            this.literal = literal;
+        }
+
+        @Override
+        long find(String text, int start, int end, int lowerBound) {
+            return text.regionMatches(start, literal, 0, literal.length()) ? span(start, end) : NO_MATCH;
+        }
+    }
+
+    /**
+     * Redacts the first group of the pattern matched right after the trigger word
+     */
+    private static final class ValueRule extends Rule {
+        private final Pattern value;
+
+        ValueRule(String word, Pattern value) {
+            super(word);
+            this.value = value;
+        }
+
+        @Override
+        long find(String text, int start, int end, int lowerBound) {
+            if (start > 0 && isWordChar(text.charAt(start - 1))) {
+                return NO_MATCH;
+            }
+            Matcher m = value.matcher(text).region(end, text.length());
+            return m.lookingAt() ? span(m.start(1), m.end(1)) : NO_MATCH;
+        }
+    }
+
+    private static final class EmailRule extends Rule {
+        EmailRule() {
+            super("@");
+        }
+
+        @Override
+        long find(String text, int start, int end, int lowerBound) {
+            int localStart = start;
+            while (localStart > lowerBound && isLocalPartChar(text.charAt(localStart - 1))) {
+                localStart--;
+            }
+            if (localStart == start) {
+                return NO_MATCH;
+            }
+            Matcher m = EMAIL_DOMAIN.matcher(text).region(end, text.length());
+            return m.lookingAt() ? span(localStart, m.end()) : NO_MATCH;
+        }
+
+        private static boolean isLocalPartChar(char c) {
+            return (c >= 'a' && c <= 'z')
+                    || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9')
+                    || c == '.'
+                    || c == '_'
+                    || c == '%'
+                    || c == '+'
+                    || c == '-';
+        }
+    }
+}
@@ -18,7 +18,9 @@
  */
 package org.apache.sling.commons.log.logback.internal;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import ch.qos.logback.classic.LoggerContext;
@@ -31,18 +33,28 @@ import ch.qos.logback.classic.pattern.ThrowableProxyConverter;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
 import ch.qos.logback.core.Context;
+import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.encoder.Encoder;
 import ch.qos.logback.core.pattern.Converter;
 import ch.qos.logback.core.pattern.ConverterUtil;
 import ch.qos.logback.core.pattern.DynamicConverter;
+import ch.qos.logback.core.pattern.FormattingConverter;
 import ch.qos.logback.core.pattern.PatternLayoutEncoderBase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
- * Converter util to mask certain characters in messages
+ * Converter util to mask certain characters in messages and to redact
+ * sensitive values as configured for the {@link MaskingEngine}
  */
 public class MaskingMessageUtil {
 
+    private static volatile MaskingEngine maskingEngine = MaskingEngine.LINE_BREAKS_ONLY;
+
+    private static final AtomicInteger maskingVersion = new AtomicInteger();
+
     private MaskingMessageUtil() {
         // hide the public ctor
     }
@@ -88,37 +100,226 @@ public class MaskingMessageUtil {
     }
 
     /**
-     * Replace any carriage returns and line feeds with an underscore
+     * Get the engine used by the masking converters
+     *
+     * @return the active engine
+     */
+    static @NotNull MaskingEngine getMaskingEngine() {
+        return maskingEngine;
+    }
+
+    /**
+     * Checks if masking rules are configured besides the masking of the line breaks
+     *
+     * @return true if there are masking rules
+     */
+    public static boolean hasMaskingRules() {
+        return maskingEngine.getRuleCount() > 0;
+    }
+
+    /**
+     * Set the engine used by the masking converters. The change applies to
+     * all layouts immediately.
+     *
+     * @param engine the engine or null to only mask line breaks
+     */
+    static void setMaskingEngine(@Nullable MaskingEngine engine) {
+        maskingEngine = engine == null ? MaskingEngine.LINE_BREAKS_ONLY : engine;
+        maskingVersion.incrementAndGet();
+    }
+
+    /**
+     * Get a number which changes whenever the masking engine is replaced, allows
+     * to invalidate output which was masked and cached
+     *
+     * @return the version of the masking configuration
+     */
+    public static int getMaskingVersion() {
+        return maskingVersion.get();
+    }
+
+    /**
+     * Replace any carriage returns and line feeds with an underscore and
+     * redact the values matched by the rules of the masking engine
      *
      * @param msg The message
-     * @return converted string
+     * @return converted string (the same instance if there is nothing to mask)
      */
     static String mask(final String msg) {
-        if (msg == null) {
-            return null;
+        return maskingEngine.mask(msg);
+    }
+
+    /**
+     * Append the message to the buffer replacing any carriage returns and line
+     * feeds with an underscore and redacting the values matched by the rules of
+     * the masking engine
+     *
+     * @param buf the buffer to append to
+     * @param msg the message (null is appended as "null" like {@link StringBuilder#append(String)} does)
+     */
+    public static void appendMasked(final StringBuilder buf, final String msg) {
+        maskingEngine.appendMasked(buf, msg);
+    }
+
+    /**
+     * Append the first line of the exception with the message masked
+     */
+    static void appendExceptionMessage(final StringBuilder buf, final IThrowableProxy tp) {
+        if (tp.isCyclic()) {
+            buf.append("[CIRCULAR REFERENCE: ");
+            appendNominalOrOverridingMessage(buf, tp);
+            buf.append(']');
+        } else {
+            appendNominalOrOverridingMessage(buf, tp);
+        }
+    }
+
+    private static void appendNominalOrOverridingMessage(final StringBuilder buf, final IThrowableProxy tp) {
+        final String overridingMessage = tp.getOverridingMessage();
+        if (overridingMessage == null) {
+            buf.append(tp.getClassName()).append(": ");
+            appendMasked(buf, tp.getMessage());
+        } else {
+            appendMasked(buf, overridingMessage);
         }
-        return msg.replace('\n', '_').replace('\r', '_');
+    }
+
+    /**
+     * Append the throwable with the causes following the exception as done by the
+     * {@link ThrowableProxyConverter} but with the messages masked
+     */
+    static void appendThrowable(
+            final StringBuilder buf,
+            final String prefix,
+            final int indent,
+            final IThrowableProxy tp,
+            final StackTraceWriter stackTraceWriter) {
+        if (tp == null) {
+            return;
+        }
+        ThrowableProxyUtil.indent(buf, indent - 1);
+        if (prefix != null) {
+            buf.append(prefix);
+        }
+        appendExceptionMessage(buf, tp);
+        buf.append(CoreConstants.LINE_SEPARATOR);
+        stackTraceWriter.write(buf, indent, tp);
+        final IThrowableProxy[] suppressed = tp.getSuppressed();
+        if (suppressed != null) {
+            for (IThrowableProxy current : suppressed) {
+                appendThrowable(
+                        buf,
+                        CoreConstants.SUPPRESSED,
+                        indent + ThrowableProxyUtil.SUPPRESSED_EXCEPTION_INDENT,
+                        current,
+                        stackTraceWriter);
+            }
+        }
+        appendThrowable(buf, CoreConstants.CAUSED_BY, indent, tp.getCause(), stackTraceWriter);
+    }
+
+    /**
+     * Checks if the converter output does not need any formatting and
+     * there are no evaluators or ignored stack trace lines configured
+     */
+    static boolean canAppendDirectly(final FormattingConverter<?> converter, final List<String> options) {
+        return converter.getFormattingInfo() == null && (options == null || options.size() <= 1);
+    }
+
+    /**
+     * Callback to write the stack trace elements of a throwable
+     */
+    @FunctionalInterface
+    interface StackTraceWriter {
+        void write(StringBuilder buf, int indent, IThrowableProxy tp);
+    }
+
+    /**
+     * Converter which can append its masked output straight to the buffer of the
+     * layout instead of returning it as string
+     */
+    public interface MaskingConverter {
+        /**
+         * Checks if {@link #appendTo(StringBuilder, ILoggingEvent)} can be used for the
+         * configuration of the converter. If not the converter must be written as usual.
+         *
+         * @return true if the output can be appended directly
+         */
+        boolean isAppendable();
+
+        /**
+         * Append the masked output for the event
+         *
+         * @param buf the buffer to append to
+         * @param event the event to render
+         */
+        void appendTo(StringBuilder buf, ILoggingEvent event);
     }
 
     /**
      * Override the MessageConverter to provide masking of the output
      */
     @SuppressWarnings("java:S110")
-    public static final class MaskingMessageConverter extends MessageConverter {
+    public static final class MaskingMessageConverter extends MessageConverter implements MaskingConverter {
+        private boolean appendable;
+
+        @Override
+        public void start() {
+            appendable = canAppendDirectly(this, null);
+            super.start();
+        }
+
         @Override
         public String convert(final ILoggingEvent event) {
             return mask(super.convert(event));
         }
+
+        @Override
+        public boolean isAppendable() {
+            return appendable;
+        }
+
+        @Override
+        public void appendTo(final StringBuilder buf, final ILoggingEvent event) {
+            appendMasked(buf, event.getFormattedMessage());
+        }
     }
 
     /**
      * Override the ThrowableProxyConverter to provide masking of the output
      */
     @SuppressWarnings("java:S110")
-    public static final class MaskingThrowableProxyConverter extends ThrowableProxyConverter {
+    public static final class MaskingThrowableProxyConverter extends ThrowableProxyConverter
+            implements MaskingConverter {
+        private final StackTraceWriter stackTraceWriter = this::subjoinSTEPArray;
+        private boolean appendable;
+
+        @Override
+        public void start() {
+            appendable = canAppendDirectly(this, getOptionList());
+            super.start();
+        }
+
         @Override
         protected String throwableProxyToString(final IThrowableProxy tp) {
-            return super.throwableProxyToString(new MaskingThrowableProxy(tp));
+            final StringBuilder buf = new StringBuilder(BUILDER_CAPACITY);
+            appendThrowable(buf, null, ThrowableProxyUtil.REGULAR_EXCEPTION_INDENT, tp, stackTraceWriter);
+            return buf.toString();
+        }
+
+        @Override
+        public boolean isAppendable() {
+            return appendable;
+        }
+
+        @Override
+        public void appendTo(final StringBuilder buf, final ILoggingEvent event) {
+            appendThrowable(
+                    buf,
+                    null,
+                    ThrowableProxyUtil.REGULAR_EXCEPTION_INDENT,
+                    event.getThrowableProxy(),
+                    stackTraceWriter);
         }
     }
 
@@ -126,11 +327,63 @@ public class MaskingMessageUtil {
      * Override the RootCauseFirstThrowableProxyConverter to provide masking of the output
      */
     @SuppressWarnings("java:S110")
-    public static final class MaskingRootCauseFirstThrowableProxyConverter
-            extends RootCauseFirstThrowableProxyConverter {
+    public static final class MaskingRootCauseFirstThrowableProxyConverter extends RootCauseFirstThrowableProxyConverter
+            implements MaskingConverter {
+        private boolean appendable;
+
+        @Override
+        public void start() {
+            appendable = canAppendDirectly(this, getOptionList());
+            super.start();
+        }
+
         @Override
         protected String throwableProxyToString(final IThrowableProxy tp) {
-            return super.throwableProxyToString(new MaskingThrowableProxy(tp));
+            final StringBuilder buf = new StringBuilder(BUILDER_CAPACITY);
+            recursiveAppendRootCauseFirst(buf, null, ThrowableProxyUtil.REGULAR_EXCEPTION_INDENT, tp);
+            return buf.toString();
+        }
+
+        @Override
+        protected void recursiveAppendRootCauseFirst(
+                final StringBuilder sb, String prefix, final int indent, final IThrowableProxy tp) {
+            if (tp.getCause() != null) {
+                recursiveAppendRootCauseFirst(sb, prefix, indent, tp.getCause());
+                prefix = null; // to avoid adding it more than once
+            }
+            ThrowableProxyUtil.indent(sb, indent - 1);
+            if (prefix != null) {
+                sb.append(prefix);
+            }
+            if (tp.getCause() != null) {
+                sb.append(CoreConstants.WRAPPED_BY);
+            }
+            appendExceptionMessage(sb, tp);
+            sb.append(CoreConstants.LINE_SEPARATOR);
+            subjoinSTEPArray(sb, indent, tp);
+            final IThrowableProxy[] suppressed = tp.getSuppressed();
+            if (suppressed != null) {
+                for (IThrowableProxy current : suppressed) {
+                    recursiveAppendRootCauseFirst(
+                            sb,
+                            CoreConstants.SUPPRESSED,
+                            indent + ThrowableProxyUtil.SUPPRESSED_EXCEPTION_INDENT,
+                            current);
+                }
+            }
+        }
+
+        @Override
+        public boolean isAppendable() {
+            return appendable;
+        }
+
+        @Override
+        public void appendTo(final StringBuilder buf, final ILoggingEvent event) {
+            final IThrowableProxy tp = event.getThrowableProxy();
+            if (tp != null) {
+                recursiveAppendRootCauseFirst(buf, null, ThrowableProxyUtil.REGULAR_EXCEPTION_INDENT, tp);
+            }
         }
     }
 
@@ -138,15 +391,44 @@ public class MaskingMessageUtil {
      * Override the ExtendedThrowableProxyConverter to provide masking of the output
      */
     @SuppressWarnings("java:S110")
-    public static class MaskingExtendedThrowableProxyConverter extends ExtendedThrowableProxyConverter {
+    public static class MaskingExtendedThrowableProxyConverter extends ExtendedThrowableProxyConverter
+            implements MaskingConverter {
+        private final StackTraceWriter stackTraceWriter = this::subjoinSTEPArray;
+        private boolean appendable;
+
+        @Override
+        public void start() {
+            appendable = canAppendDirectly(this, getOptionList());
+            super.start();
+        }
+
         @Override
         protected String throwableProxyToString(final IThrowableProxy tp) {
-            return super.throwableProxyToString(new MaskingThrowableProxy(tp));
+            final StringBuilder buf = new StringBuilder(BUILDER_CAPACITY);
+            appendThrowable(buf, null, ThrowableProxyUtil.REGULAR_EXCEPTION_INDENT, tp, stackTraceWriter);
+            return buf.toString();
+        }
+
+        @Override
+        public boolean isAppendable() {
+            return appendable;
+        }
+
+        @Override
+        public void appendTo(final StringBuilder buf, final ILoggingEvent event) {
+            appendThrowable(
+                    buf,
+                    null,
+                    ThrowableProxyUtil.REGULAR_EXCEPTION_INDENT,
+                    event.getThrowableProxy(),
+                    stackTraceWriter);
         }
     }
 
     /**
-     * An implementation of IThrowableProxy to provide masking of the output
+     * An implementation of IThrowableProxy to provide masking of the output.
+     * The masking converters mask the messages while rendering and do not
+     * use this wrapper anymore.
      */
     public static final class MaskingThrowableProxy implements IThrowableProxy {
         private final IThrowableProxy proxied;
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.Executor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Tails and filters a set of log files (e.g. the active file of an appender
+ * and the files created via rotation). Each file is streamed to the writer in
+ * the order of the files, prefixed with a header naming the file. Whole files
+ * are searched region by region in parallel via {@link ParallelGrep}.
+ */
+class MultiFileTailer {
+    private final Executor executor;
+    private final int numOfLines;
+    private final String regex;
+    private final int linesBefore;
+    private final int linesAfter;
+    private final EventBoundary boundary;
+
+    /**
+     * Constructor
+     *
+     * @param executor the executor used to search whole files
+     * @param numOfLines the number of lines to include from each file (or a negative number for all)
+     * @param regex pattern used to filter line, see {@link FilteringListener}
+     */
+    MultiFileTailer(@NotNull Executor executor, int numOfLines, @Nullable String regex) {
+        this(executor, numOfLines, regex, 0, 0, EventBoundary.LINE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param executor the executor used to search whole files
+     * @param numOfLines the number of lines to include from each file (or a negative number for all)
+     * @param regex pattern used to filter line, see {@link FilteringListener}
+     * @param linesBefore the number of events to include before a matching event
+     * @param linesAfter the number of events to include after a matching event
+     * @param boundary determines the lines forming an event
+     */
+    MultiFileTailer(
+            @NotNull Executor executor,
+            int numOfLines,
+            @Nullable String regex,
+            int linesBefore,
+            int linesAfter,
+            @NotNull EventBoundary boundary) {
+        this.executor = executor;
+        this.numOfLines = numOfLines;
+        this.regex = regex;
+        this.linesBefore = linesBefore;
+        this.linesAfter = linesAfter;
+        this.boundary = boundary;
+    }
+
+    /**
+     * Tails the files to the print writer
+     *
+     * @param pw the writer to write to
+     * @param files the files to include in the order in which they should be written
+     * @throws IOException if any of the files could not be read
+     */
+    void tail(@NotNull PrintWriter pw, @NotNull File[] files) throws IOException {
+        // whole files are searched region by region, otherwise each file is read sequentially
+        // as context and events might span regions
+        final ParallelGrep grep =
+                numOfLines < 0 && linesBefore <= 0 && linesAfter <= 0 && boundary == EventBoundary.LINE
+                        ? new ParallelGrep(executor, regex)
+                        : null;
+        for (File file : files) {
+            writeHeader(pw, file);
+            if (numOfLines < 0 && (regex == null || FilteringListener.MATCH_ALL.equals(regex))) {
+                new Tailer(pw, numOfLines).tail(file);
+            } else if (grep != null) {
+                grep.grep(pw, file);
+            } else {
+                new Tailer(new FilteringListener(pw, regex, linesBefore, linesAfter, boundary), numOfLines).tail(file);
+            }
+        }
+    }
+
+    private static void writeHeader(PrintWriter pw, File file) {
+        pw.printf("==> %s <==%n", file.getName());
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.commons.log.logback.internal.util.Util;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Searches whole log files for lines matching a grep query (see {@link LineMatcher}).
+ * <p>
+ * Plain files are memory mapped and split into regions which are searched
+ * concurrently. Region boundaries are aligned to line feeds: a line belongs to
+ * the region it starts in. Only a few regions are searched ahead of the one
+ * being written, so the matches held in memory are bounded. Compressed files
+ * cannot be split and are searched on the calling thread. The matches are always
+ * written in file order.
+ */
+class ParallelGrep {
+    /**
+     * Default number of bytes searched by a single task
+     */
+    static final int REGION_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Max number of threads searching regions, shared by all searches
+     */
+    static final int MAX_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Default max number of regions of a search which are searched or wait to be written
+     */
+    static final int MAX_PENDING_REGIONS = 2 * MAX_THREADS;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private final Executor executor;
+    private final String query;
+    private final int regionSize;
+    private final int maxPending;
+
+    /**
+     * Constructor
+     *
+     * @param executor the executor to run the searches, usually {@link #executor()}
+     * @param query the query to match the lines with
+     */
+    ParallelGrep(@NotNull Executor executor, @Nullable String query) {
+        this(executor, query, REGION_SIZE, MAX_PENDING_REGIONS);
+    }
+
+    ParallelGrep(@NotNull Executor executor, @Nullable String query, int regionSize, int maxPending) {
+        this.executor = executor;
+        this.query = query;
+        this.regionSize = regionSize;
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    /**
+     * Executor dedicated to the searches with a bounded number of threads which
+     * end when idle
+     *
+     * @return the executor
+     */
+    static @NotNull Executor executor() {
+        return EXECUTOR;
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                MAX_THREADS, MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "sling-log-grep-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Searches the file and writes the matching lines
+     *
+     * @param pw the writer to write to
+     * @param file the file to search
+     * @throws IOException if the file could not be read
+     */
+    void grep(@NotNull PrintWriter pw, @NotNull File file) throws IOException {
+        if (LogFiles.isCompressed(file) || file.length() > Integer.MAX_VALUE || LogFiles.isBinary(file)) {
+            new Tailer(new FilteringListener(pw, query), -1).tail(file);
+            return;
+        }
+
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // the mapping stays valid once the channel is closed, the preallocated space is left out
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Util.logicalLength(channel));
+        }
+        final int size = buffer.limit();
+        ArrayDeque<CompletableFuture<String>> pending = new ArrayDeque<>(maxPending);
+        int next = 0;
+        try {
+            while (next < size || !pending.isEmpty()) {
+                while (next < size && pending.size() < maxPending) {
+                    final int regionStart = next;
+                    final int regionEnd = (int) Math.min(size, (long) next + regionSize);
+                    pending.add(
+                            CompletableFuture.supplyAsync(() -> grepRegion(buffer, regionStart, regionEnd), executor));
+                    next = regionEnd;
+                }
+                pw.print(pending.poll().join());
+            }
+        } finally {
+            // the client went away or a search failed
+            pending.forEach(result -> result.cancel(false));
+        }
+    }
+
+    /**
+     * Searches the lines starting within the region
+     */
+    private String grepRegion(ByteBuffer buffer, int start, int end) {
+        // each task needs its own matcher as those are not thread safe
+        final LineMatcher matcher = LineMatcher.compile(query);
+        final String lineSeparator = System.lineSeparator();
+        final int limit = buffer.limit();
+        final ByteSequence line = new ByteSequence(buffer);
+        StringBuilder sb = new StringBuilder();
+
+        int pos = start;
+        if (pos > 0 && buffer.get(pos - 1) != '\n') {
+            // the line started in the previous region
+            pos = indexOfLineFeed(buffer, pos, limit) + 1;
+        }
+        while (pos < end) {
+            int eol = indexOfLineFeed(buffer, pos, limit);
+            int lineEnd = eol > pos && buffer.get(eol - 1) == '\r' ? eol - 1 : eol;
+            line.set(pos, lineEnd);
+            if (matcher == null || matcher.matches(line)) {
+                sb.append(line).append(lineSeparator);
+            }
+            pos = eol + 1;
+        }
+        return sb.toString();
+    }
+
+    private static int indexOfLineFeed(ByteBuffer buffer, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Exposes a range of bytes as characters (one per byte like {@link Tailer})
+     * so lines can be matched without copying them
+     */
+    private static final class ByteSequence implements CharSequence {
+        private final ByteBuffer buffer;
+        private int start;
+        private int end;
+
+        ByteSequence(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void set(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public @NotNull CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public @NotNull String toString() {
+            char[] chars = new char[length()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = charAt(i);
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.pattern.PostCompileProcessor;
+import org.apache.sling.commons.log.logback.internal.util.SlingPatternLayout;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Cache of started pattern layouts so that configs using the same effective
+ * pattern share one converter chain, also across resets of the logger context.
+ * Layouts not requested since the last {@link #prune()} are dropped by it.
+ */
+final class PatternLayoutCache {
+
+    private record Key(
+            LoggerContext loggerContext, String pattern, PostCompileProcessor<ILoggingEvent> postProcessor) {}
+
+    private final Map<Key, PatternLayout> layouts = new ConcurrentHashMap<>();
+    private final Set<Key> used = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Get the started layout for the pattern, creating it if needed
+     *
+     * @param loggerContext the context of the layout
+     * @param pattern the logback pattern
+     * @param postProcessor the optional post compile processor (compared with equals)
+     * @return the shared layout
+     */
+    @NotNull
+    PatternLayout getLayout(
+            @NotNull LoggerContext loggerContext,
+            @NotNull String pattern,
+            @Nullable PostCompileProcessor<ILoggingEvent> postProcessor) {
+        Key key = new Key(loggerContext, pattern, postProcessor);
+        used.add(key);
+        return layouts.computeIfAbsent(key, k -> createLayout(loggerContext, pattern, postProcessor));
+    }
+
+    /**
+     * Drop the layouts which were not requested since the previous call
+     */
+    void prune() {
+        layouts.keySet().retainAll(used);
+        used.clear();
+    }
+
+    int size() {
+        return layouts.size();
+    }
+
+    /**
+     * Create and start a new layout with the masking converters
+     *
+     * @param loggerContext the context of the layout
+     * @param pattern the logback pattern
+     * @param postProcessor the optional post compile processor
+     * @return the started layout
+     */
+    static @NotNull PatternLayout createLayout(
+            @NotNull LoggerContext loggerContext,
+            @NotNull String pattern,
+            @Nullable PostCompileProcessor<ILoggingEvent> postProcessor) {
+        final PatternLayout pl = new SlingPatternLayout();
+        pl.setPattern(pattern);
+        pl.setOutputPatternAsHeader(false);
+        pl.setContext(loggerContext);
+        MaskingMessageUtil.setMessageConverter(pl);
+
+        if (postProcessor != null) {
+            pl.setPostCompileProcessor(postProcessor);
+        }
+
+        pl.start();
+        return pl;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import ch.qos.logback.core.rolling.RolloverFailure;
+import ch.qos.logback.core.rolling.TimeBasedRollingPolicy;
+import ch.qos.logback.core.rolling.helper.CompressionMode;
+import ch.qos.logback.core.rolling.helper.Compressor;
+import ch.qos.logback.core.rolling.helper.FileFilterUtil;
+import ch.qos.logback.core.rolling.helper.FileNamePattern;
+import ch.qos.logback.core.util.FileSize;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps track of the total size of the files rotated for an appender to delete
+ * the oldest ones once a cap is exceeded. Used by the time based rolling policies
+ * instead of the archive remover of logback which lists all the rotated files on
+ * each rotation, and unlike that does not require a max history.
+ * <p>
+ * The directory is only scanned once to find the existing rotated files. Each
+ * rotation then adds its file along with an estimate of its size, which is
+ * replaced by the actual size once the file was renamed or compressed. Only those
+ * recent files are checked again when the cap is enforced.
+ */
+final class RotatedFileSizeTracker {
+
+    private static final String SUFFIX_INDEX = ".idx";
+
+    private static final class Entry {
+        private final File file;
+        private final File archive;
+        private long size;
+        private boolean settled;
+
+        private Entry(@NotNull File file, @Nullable File archive, long size, boolean settled) {
+            this.file = file;
+            this.archive = archive;
+            this.size = size;
+            this.settled = settled;
+        }
+
+        private @NotNull File target() {
+            return archive == null ? file : archive;
+        }
+    }
+
+    private final long totalSizeCap;
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+
+    private long totalSize;
+
+    /**
+     * The rotation of the superclass of a policy
+     */
+    @FunctionalInterface
+    interface Rollover {
+        void run() throws RolloverFailure;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param totalSizeCap the max total size in bytes of the rotated files, 0 for no limit
+     */
+    RotatedFileSizeTracker(long totalSizeCap) {
+        this.totalSizeCap = totalSizeCap;
+    }
+
+    /**
+     * Creates the tracker for the total size cap of a policy
+     *
+     * @param totalSizeCap the max total size or null for no limit
+     * @return the tracker, which does not track any files if there is no limit
+     */
+    static @NotNull RotatedFileSizeTracker forCap(@Nullable FileSize totalSizeCap) {
+        return new RotatedFileSizeTracker(totalSizeCap == null ? 0 : Math.max(0, totalSizeCap.getSize()));
+    }
+
+    /**
+     * Adds the files already rotated by a policy once it started
+     *
+     * @param policy the policy
+     */
+    void start(@NotNull TimeBasedRollingPolicy<?> policy) {
+        if (totalSizeCap > 0 && policy.isStarted()) {
+            scan(policy);
+        }
+    }
+
+    /**
+     * Rotates the active file of a policy and adds the rotated file
+     *
+     * @param policy the policy rotating its active file
+     * @param rollover the rotation of the superclass of the policy
+     * @throws RolloverFailure if the rotation failed
+     */
+    void rollover(@NotNull TimeBasedRollingPolicy<?> policy, @NotNull Rollover rollover) throws RolloverFailure {
+        if (totalSizeCap <= 0) {
+            rollover.run();
+            return;
+        }
+        // the appender closed the active file before
+        long size = new File(policy.getActiveFileName()).length();
+        rollover.run();
+        rolledOver(policy, size);
+    }
+
+    /**
+     * Adds the files already rotated by a policy, these are the files in the directory
+     * of its archives whose names match its file name pattern, compressed or not
+     *
+     * @param policy the started policy
+     */
+    void scan(@NotNull TimeBasedRollingPolicy<?> policy) {
+        CompressionMode mode = policy.getCompressionMode();
+        FileNamePattern pattern = new FileNamePattern(
+                Compressor.computeFileNameStrWithoutCompSuffix(policy.getFileNamePattern(), mode), policy.getContext());
+        File dir = new File(pattern.convertMultipleArguments(Instant.now(), 0))
+                .getAbsoluteFile()
+                .getParentFile();
+        String suffix =
+                switch (mode) {
+                    case GZ -> "(\\.gz)?";
+                    case ZIP -> "(\\.zip)?";
+                    default -> "";
+                };
+        scan(dir, FileFilterUtil.afterLastSlash(pattern.toRegex()) + suffix, new File(policy.getActiveFileName()));
+    }
+
+    /**
+     * Adds the rotated files which already exist in a directory
+     *
+     * @param dir the directory of the rotated files
+     * @param nameRegex the regex the names of the rotated files match
+     * @param activeFile the active file of the appender, never added
+     */
+    synchronized void scan(@Nullable File dir, @NotNull String nameRegex, @NotNull File activeFile) {
+        Pattern name = Pattern.compile(nameRegex);
+        File active = activeFile.getAbsoluteFile();
+        File[] files = dir == null
+                ? null
+                : dir.listFiles(f -> name.matcher(f.getName()).matches()
+                        && !f.getAbsoluteFile().equals(active));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            add(new Entry(file, null, file.length(), true));
+        }
+    }
+
+    /**
+     * Adds a file created by a rotation
+     *
+     * @param file the rotated file
+     * @param archive the archive the file is compressed into or null if not compressed
+     * @param estimatedSize the size until the actual size is known
+     */
+    synchronized void rotated(@NotNull File file, @Nullable File archive, long estimatedSize) {
+        add(new Entry(file, archive, estimatedSize, false));
+    }
+
+    /**
+     * Adds the file rotated by a policy for the elapsed period and enforces the
+     * cap on the executor of the logback context
+     *
+     * @param policy the policy which just rotated the active file
+     * @param size the size of the active file before its rotation
+     */
+    void rolledOver(@NotNull TimeBasedRollingPolicy<?> policy, long size) {
+        String rotated = policy.getTimeBasedFileNamingAndTriggeringPolicy().getElapsedPeriodsFileName();
+        File archive =
+                switch (policy.getCompressionMode()) {
+                    case GZ -> new File(rotated + ".gz");
+                    case ZIP -> new File(rotated + ".zip");
+                    default -> null;
+                };
+        rotated(new File(rotated), archive, size);
+        policy.getContext().getExecutorService().execute(() -> {
+            for (File deleted : enforce()) {
+                policy.addInfo(
+                        "Deleted " + deleted + " as the rotated files exceed the total size cap of " + totalSizeCap);
+            }
+        });
+    }
+
+    private void add(@NotNull Entry entry) {
+        entries.addLast(entry);
+        totalSize += entry.size;
+    }
+
+    /**
+     * Returns the max total size of the rotated files
+     *
+     * @return the size in bytes or 0 if not limited
+     */
+    long getTotalSizeCap() {
+        return totalSizeCap;
+    }
+
+    /**
+     * Returns the tracked total size of the rotated files
+     *
+     * @return the size in bytes or -1 if not limited
+     */
+    synchronized long getTotalSize() {
+        return totalSizeCap > 0 ? totalSize : -1;
+    }
+
+    /**
+     * Returns the number of tracked rotated files
+     *
+     * @return the number of files
+     */
+    synchronized int getFileCount() {
+        return entries.size();
+    }
+
+    /**
+     * Deletes the oldest rotated files until their total size does not exceed
+     * the cap anymore. The most recent file is always kept.
+     *
+     * @return the deleted files
+     */
+    synchronized @NotNull List<File> enforce() {
+        for (Entry entry : entries) {
+            if (!entry.settled) {
+                settle(entry);
+            }
+        }
+        List<File> deleted = new ArrayList<>();
+        while (totalSize > totalSizeCap && entries.size() > 1) {
+            Entry oldest = entries.removeFirst();
+            totalSize -= oldest.size;
+            File target = oldest.target();
+            delete(oldest.file);
+            if (oldest.archive != null) {
+                delete(oldest.archive);
+                delete(new File(oldest.archive.getPath() + SUFFIX_INDEX));
+            }
+            deleted.add(target);
+        }
+        return deleted;
+    }
+
+    private void settle(@NotNull Entry entry) {
+        // the estimate is kept while the file is still being compressed
+        File target = entry.target();
+        if (target.isFile()) {
+            long size = target.length();
+            totalSize += size - entry.size;
+            entry.size = size;
+            entry.settled = true;
+        }
+    }
+
+    private static void delete(@NotNull File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            // left behind like the files which logback fails to delete
+        }
+    }
+}
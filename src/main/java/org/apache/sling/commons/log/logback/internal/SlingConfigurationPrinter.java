@@ -19,16 +19,16 @@
 package org.apache.sling.commons.log.logback.internal;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 
@@ -96,7 +96,10 @@ public class SlingConfigurationPrinter {
     }
 
     static void includeWholeFile(PrintWriter printWriter, File file) {
-        try (FileReader fr = new FileReader(file)) {
+        // the stream skips the space preallocated at the end of a text file
+        try (Reader fr = new InputStreamReader(
+                LogFiles.openStream(file),
+                LogFiles.isBinary(file) ? StandardCharsets.UTF_8 : Charset.defaultCharset())) {
             final char[] buffer = new char[512];
             int len;
             while ((len = fr.read(buffer)) != -1) {
@@ -126,7 +129,9 @@ public class SlingConfigurationPrinter {
                 pw.printf("%d. %s %n", ++counter, displayName);
                 final File[] files = getRotatedFiles((FileAppender<ILoggingEvent>) appender, -1);
                 for (File f : files) {
-                    pw.printf("  - %s, %s, %s %n", f.getName(), humanReadableByteCount(f.length()), getModifiedDate(f));
+                    pw.printf(
+                            "  - %s, %s, %s %n",
+                            f.getName(), humanReadableByteCount(LogFiles.logicalLength(f)), getModifiedDate(f));
                 }
             }
         }
@@ -189,12 +194,7 @@ public class SlingConfigurationPrinter {
         // This might not work in all cases if complex rolling patterns
         // are used in Logback
         if (app instanceof RollingFileAppender) {
-            final File dir = file.getParentFile();
-            final String baseName = file.getName();
-            File[] result = dir.listFiles((d, name) -> name.startsWith(baseName));
-
-            // Sort the files in reverse
-            Arrays.sort(result, Collections.reverseOrder(Comparator.comparing(File::lastModified)));
+            File[] result = LogFiles.listRotatedFiles(file);
 
             if (maxOldFileCount > 0) {
                 int maxCount = Math.min(getMaxOldFileCount(), result.length);
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.rolling.FixedWindowRollingPolicy;
+import ch.qos.logback.core.rolling.RolloverFailure;
+import ch.qos.logback.core.rolling.helper.FileNamePattern;
+import ch.qos.logback.core.rolling.helper.RenameUtil;
+import org.apache.sling.commons.log.logback.internal.util.RolloverSettings;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Fixed window rolling policy used for the size based rotation of a log writer.
+ * <p>
+ * With the {@link RolloverSettings#isBackground() background} rotation the active
+ * file is only renamed to a unique staging name while the appender is locked, the
+ * appender then reopens the file right away. The window of rotated files is shifted
+ * by a low priority background thread which finally moves the staging file to the
+ * first index of the window. Optionally the file is then compressed into a gzip
+ * archive with a {@link GzipBlockIndex} and deleted afterwards. Until then it stays
+ * readable under its uncompressed name.
+ * <p>
+ * All rotations of an appender are handled in order by the same thread, a staging
+ * file left over by a previous run is handed over when the policy is started.
+ */
+class SlingFixedWindowRollingPolicy extends FixedWindowRollingPolicy {
+
+    static final String SUFFIX_GZIP = ".gz";
+
+    static final String SUFFIX_STAGING = ".rolling";
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final RolloverSettings settings;
+
+    private final RenameUtil renameUtil = new RenameUtil();
+
+    private FileNamePattern rawFileNamePattern;
+
+    private FileNamePattern archiveFileNamePattern;
+
+    private ThreadPoolExecutor executor;
+
+    private volatile Future<?> lastRollover;
+
+    /**
+     * Constructor
+     *
+     * @param settings the settings of the rotation
+     */
+    SlingFixedWindowRollingPolicy(@NotNull RolloverSettings settings) {
+        this.settings = settings;
+    }
+
+    @NotNull
+    RolloverSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Sets the pattern of the rotated files, the archive suffix is added when
+     * the files are compressed
+     *
+     * @param fileNamePattern the pattern of the uncompressed rotated files
+     */
+    @Override
+    public void setFileNamePattern(String fileNamePattern) {
+        super.setFileNamePattern(settings.compressionLevel() > 0 ? fileNamePattern + SUFFIX_GZIP : fileNamePattern);
+    }
+
+    @Override
+    protected int getMaxWindowSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void start() {
+        renameUtil.setContext(context);
+        super.start();
+        if (settings.isBackground() && isStarted()) {
+            if (settings.compressionLevel() > 0) {
+                archiveFileNamePattern = new FileNamePattern(fileNamePatternStr, context);
+                rawFileNamePattern = new FileNamePattern(
+                        fileNamePatternStr.substring(0, fileNamePatternStr.length() - SUFFIX_GZIP.length()), context);
+            } else {
+                rawFileNamePattern = new FileNamePattern(fileNamePatternStr, context);
+            }
+            String threadName = "sling-log-rollover-" + new File(getActiveFileName()).getName();
+            executor = new ThreadPoolExecutor(
+                    1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r, threadName);
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+
+            for (File staging : listStagingFiles()) {
+                lastRollover = executor.submit(() -> shiftWindow(staging));
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(CoreConstants.SECONDS_TO_WAIT_FOR_COMPRESSION_JOBS, TimeUnit.SECONDS)) {
+                    addWarn("Timeout while waiting for the rotation of " + getActiveFileName());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+        super.stop();
+    }
+
+    @Override
+    public void rollover() throws RolloverFailure {
+        if (executor == null) {
+            super.rollover();
+            return;
+        }
+
+        File staging = new File(getActiveFileName() + "." + System.nanoTime() + SUFFIX_STAGING);
+        renameUtil.rename(getActiveFileName(), staging.getPath());
+        lastRollover = executor.submit(() -> shiftWindow(staging));
+    }
+
+    /**
+     * Waits for the pending rotations, only intended to be used by tests
+     */
+    void awaitRollover() {
+        Future<?> future = lastRollover;
+        if (future == null) {
+            return;
+        }
+        try {
+            future.get(CoreConstants.SECONDS_TO_WAIT_FOR_COMPRESSION_JOBS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            addError("Timeout while waiting for the rotation of " + getActiveFileName(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            addError("Unexpected exception while waiting for the rotation of " + getActiveFileName(), e);
+        }
+    }
+
+    private @NotNull File[] listStagingFiles() {
+        File active = new File(getActiveFileName()).getAbsoluteFile();
+        String prefix = active.getName() + ".";
+        File[] files = active.getParentFile()
+                .listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(SUFFIX_STAGING));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        return files;
+    }
+
+    private void shiftWindow(@NotNull File staging) {
+        if (!staging.exists()) {
+            return;
+        }
+        int minIndex = getMinIndex();
+        int maxIndex = getMaxIndex();
+        // the uncompressed file is left over if its compression failed
+        delete(rawFileNamePattern.convertInt(maxIndex));
+        if (archiveFileNamePattern != null) {
+            delete(archiveFileNamePattern.convertInt(maxIndex));
+        }
+        for (int i = maxIndex - 1; i >= minIndex; i--) {
+            shift(rawFileNamePattern.convertInt(i), rawFileNamePattern.convertInt(i + 1));
+            if (archiveFileNamePattern != null) {
+                shift(archiveFileNamePattern.convertInt(i), archiveFileNamePattern.convertInt(i + 1));
+            }
+        }
+
+        File raw = new File(rawFileNamePattern.convertInt(minIndex));
+        renameUtil.rename(staging.getPath(), raw.getPath());
+        if (archiveFileNamePattern != null) {
+            compress(raw, new File(archiveFileNamePattern.convertInt(minIndex)));
+        }
+    }
+
+    private void compress(@NotNull File raw, @NotNull File archive) {
+        if (!raw.isFile()) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(raw);
+                OutputStream out = new GzipBlockIndex.BlockWriter(
+                        archive, settings.compressionLevel(), GzipBlockIndex.DEFAULT_BLOCK_SIZE)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            addError("Failed to compress " + raw + " as " + archive, e);
+            delete(archive.getPath());
+            return;
+        }
+        if (!raw.delete()) {
+            addWarn("Failed to delete " + raw + " after its compression");
+        }
+    }
+
+    private void shift(@NotNull String source, @NotNull String target) {
+        if (new File(source).exists()) {
+            renameUtil.rename(source, target);
+            File sourceIndex = GzipBlockIndex.indexFileFor(new File(source));
+            if (sourceIndex.exists()) {
+                renameUtil.rename(
+                        sourceIndex.getPath(),
+                        GzipBlockIndex.indexFileFor(new File(target)).getPath());
+            }
+        }
+    }
+
+    private void delete(@NotNull String fileName) {
+        File file = new File(fileName);
+        try {
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(GzipBlockIndex.indexFileFor(file).toPath());
+        } catch (IOException e) {
+            addWarn("Failed to delete " + fileName, e);
+        }
+    }
+}
@@ -28,13 +28,20 @@ import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
@@ -44,6 +51,7 @@ import ch.qos.logback.classic.turbo.TurboFilter;
 import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.FileAppender;
 import ch.qos.logback.core.helpers.Transform;
+import ch.qos.logback.core.rolling.RollingFileAppender;
 import ch.qos.logback.core.status.Status;
 import ch.qos.logback.core.util.CachingDateFormatter;
 import org.apache.sling.commons.log.logback.internal.AppenderTracker.AppenderInfo;
@@ -89,6 +97,18 @@ public class SlingLogPanel implements LogPanel {
 
     private static final String PACKAGE_SEPARATOR = ".";
 
+    /**
+     * Max time a client can follow a log file
+     */
+    private static final long MAX_FOLLOW_DURATION = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Max number of clients following a log file at the same time, each holds a request thread
+     */
+    static final int MAX_FOLLOWERS = 4;
+
+    final Semaphore followers = new Semaphore(MAX_FOLLOWERS);
+
     private final LogConfigManager logConfigManger;
     private final BundleContext bundleContext;
 
@@ -356,6 +376,14 @@ public class SlingLogPanel implements LogPanel {
             } else {
                 pw.print(XmlUtil.escapeXml(getName(appender)));
             }
+            if (appender instanceof SlingRollingFileAppender
+                    && ((SlingRollingFileAppender<ILoggingEvent>) appender).isAsync()) {
+                pw.print(getAsyncStatus((SlingRollingFileAppender<ILoggingEvent>) appender));
+            }
+            if (appender instanceof SlingRollingFileAppender
+                    && ((SlingRollingFileAppender<ILoggingEvent>) appender).getSheddingStatus() != null) {
+                pw.print(getSheddingStatus((SlingRollingFileAppender<ILoggingEvent>) appender));
+            }
             pw.println("</td>");
             pw.print("<td>");
             pw.print(formatPid(consoleAppRoot, appender, ctx));
@@ -574,17 +602,90 @@ public class SlingLogPanel implements LogPanel {
             pw.printf("No file appender with name [%s] found", XmlUtil.escapeXml(appenderName));
         } else {
             final File file = new File(fileAppender.getFile());
-            if (file.exists()) {
-                if (opts.tailAll()) {
+            final EventBoundary boundary =
+                    opts.isGroupEvents() ? EventBoundary.forAppender(fileAppender) : EventBoundary.LINE;
+            final boolean withContext =
+                    opts.getLinesBefore() > 0 || opts.getLinesAfter() > 0 || boundary != EventBoundary.LINE;
+            final FilteringListener listener =
+                    new FilteringListener(pw, opts.getRegex(), opts.getLinesBefore(), opts.getLinesAfter(), boundary);
+            // for the rotated files the content read is not tracked, hence following
+            // starts at the length seen upfront and might repeat a few lines
+            long position = LogFiles.logicalLength(file);
+            if (opts.isIncludeRotated()) {
+                int numOfLines = opts.getNumOfLines();
+                if (numOfLines == 0) {
+                    numOfLines = logConfigManger.getNumOfLines();
+                }
+                // oldest file first so the output reads in chronological order
+                final File[] files;
+                if (fileAppender instanceof RollingFileAppender) {
+                    files = LogFiles.listRotatedFiles(file);
+                } else {
+                    files = file.exists() ? new File[] {file} : new File[0];
+                }
+                Collections.reverse(Arrays.asList(files));
+                new MultiFileTailer(
+                                ParallelGrep.executor(),
+                                numOfLines,
+                                opts.getRegex(),
+                                opts.getLinesBefore(),
+                                opts.getLinesAfter(),
+                                boundary)
+                        .tail(pw, files);
+            } else if (file.exists()) {
+                if (opts.tailAll() && !opts.isFollow() && LineMatcher.compile(opts.getRegex()) == null) {
                     SlingConfigurationPrinter.includeWholeFile(pw, file);
+                } else if (opts.tailAll() && !opts.isFollow() && !withContext) {
+                    new ParallelGrep(ParallelGrep.executor(), opts.getRegex()).grep(pw, file);
                 } else {
                     int numOfLines = opts.getNumOfLines();
                     if (numOfLines == 0) {
                         numOfLines = logConfigManger.getNumOfLines();
                     }
-                    new Tailer(new FilteringListener(pw, opts.getRegex()), numOfLines).tail(file);
+                    position = new Tailer(listener, numOfLines).tail(file);
+                }
+            }
+            // binary records can only be decoded from the start of the file, once all
+            // followers are taken the request ends after the initial content
+            if (opts.isFollow() && !LogFiles.isBinary(file) && followers.tryAcquire()) {
+                try {
+                    followAppenderContent(pw, fileAppender, file, position, listener);
+                } finally {
+                    followers.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams the lines appended to the file of the appender until the client goes away.
+     * Appenders configured by this bundle notify about new content directly, for
+     * other appenders the directory of the file is watched.
+     */
+    private void followAppenderContent(
+            PrintWriter pw, FileAppender<ILoggingEvent> appender, File file, long position, FilteringListener listener)
+            throws IOException {
+        final FileFollower follower = new FileFollower(file, position, listener);
+        try {
+            if (appender instanceof SlingRollingFileAppender) {
+                SlingRollingFileAppender<ILoggingEvent> slingAppender =
+                        (SlingRollingFileAppender<ILoggingEvent>) appender;
+                slingAppender.addAppendListener(follower);
+                try {
+                    follower.follow(pw, MAX_FOLLOW_DURATION, null);
+                } finally {
+                    slingAppender.removeAppendListener(follower);
+                }
+            } else {
+                final Path dir = file.getAbsoluteFile().getParentFile().toPath();
+                try (WatchService watchService = dir.getFileSystem().newWatchService()) {
+                    dir.register(
+                            watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    follower.follow(pw, MAX_FOLLOW_DURATION, watchService);
                 }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -723,6 +824,26 @@ public class SlingLogPanel implements LogPanel {
         }
     }
 
+    /**
+     * Describes the state of the queue of an asynchronous appender
+     */
+    String getAsyncStatus(final SlingRollingFileAppender<ILoggingEvent> appender) {
+        return String.format(
+                "<br/>Async: %d queued, %d written, %d discarded, %d dropped%s",
+                appender.getQueuedCount(),
+                appender.getWrittenCount(),
+                appender.getDiscardedCount(),
+                appender.getDroppedCount(),
+                appender.getWriterPool() != null ? " (shared writer threads)" : "");
+    }
+
+    /**
+     * Describes if the events of an appender are shed as its file cannot be written
+     */
+    String getSheddingStatus(final SlingRollingFileAppender<ILoggingEvent> appender) {
+        return "<br/>Shedding: " + XmlUtil.escapeXml(appender.getSheddingStatus());
+    }
+
     String formatPid(final String consoleAppRoot, final TurboFilter tf, final LoggerStateContext ctx) {
         ServiceReference<TurboFilter> sr = ctx.getTurboFilterRef(tf);
         if (sr != null) {
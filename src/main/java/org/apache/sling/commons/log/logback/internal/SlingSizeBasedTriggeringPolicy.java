@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+
+import ch.qos.logback.core.rolling.LengthCounter;
+import ch.qos.logback.core.rolling.LengthCounterBase;
+import ch.qos.logback.core.rolling.SizeBasedTriggeringPolicy;
+
+/**
+ * Size based triggering policy used for the rotation by size of a preallocated file.
+ * <p>
+ * The length of a preallocated file includes the zero bytes ahead of the written
+ * content, so the written bytes are counted like the size and time based policy
+ * does instead of checking the length of the file. The appender sets the counter to
+ * the length of the content when it opens the file.
+ *
+ * @param <E> the type of the events
+ */
+class SlingSizeBasedTriggeringPolicy<E> extends SizeBasedTriggeringPolicy<E> {
+
+    private final LengthCounter lengthCounter = new LengthCounterBase();
+
+    @Override
+    public boolean isTriggeringEvent(File activeFile, E event) {
+        if (lengthCounter.getLength() >= getMaxFileSize().getSize()) {
+            lengthCounter.reset();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public LengthCounter getLengthCounter() {
+        return lengthCounter;
+    }
+}
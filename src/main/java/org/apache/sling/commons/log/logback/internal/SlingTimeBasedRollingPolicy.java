@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import ch.qos.logback.core.rolling.RolloverFailure;
+import ch.qos.logback.core.rolling.TimeBasedRollingPolicy;
+import ch.qos.logback.core.util.FileSize;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Time based rolling policy used for the rotation by date of a log writer. The
+ * total size cap is enforced by a {@link RotatedFileSizeTracker}.
+ *
+ * @param <E> the type of the events
+ */
+class SlingTimeBasedRollingPolicy<E> extends TimeBasedRollingPolicy<E> {
+
+    private RotatedFileSizeTracker sizeTracker = RotatedFileSizeTracker.forCap(null);
+
+    @Override
+    public void setTotalSizeCap(@Nullable FileSize totalSizeCap) {
+        sizeTracker = RotatedFileSizeTracker.forCap(totalSizeCap);
+    }
+
+    long getTotalSizeCap() {
+        return sizeTracker.getTotalSizeCap();
+    }
+
+    long getRotatedFilesSize() {
+        return sizeTracker.getTotalSize();
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        sizeTracker.start(this);
+    }
+
+    @Override
+    public void rollover() throws RolloverFailure {
+        sizeTracker.rollover(this, super::rollover);
+    }
+}
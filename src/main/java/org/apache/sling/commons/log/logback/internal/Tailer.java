@@ -19,9 +19,15 @@
 package org.apache.sling.commons.log.logback.internal;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.sling.commons.log.logback.internal.util.Util;
 
 class Tailer {
     static final int BUFFER_SIZE = 1024;
@@ -33,6 +39,12 @@ class Tailer {
         this(new PrinterListener(printWriter), numOfLines);
     }
 
+    /**
+     * Constructor
+     *
+     * @param listener the listener to pass the lines to
+     * @param numOfLines the number of lines to include (or a negative number for all)
+     */
     public Tailer(TailerListener listener, int numOfLines) {
         this.listener = listener;
         this.numOfLines = numOfLines;
@@ -45,21 +57,80 @@ class Tailer {
          * @param line the line.
          */
         void handle(String line);
+
+        /**
+         * Called once the last line of a file was handled
+         */
+        default void finish() {
+            // nothing to do by default
+        }
+    }
+
+    /**
+     * Passes the last lines of the file to the listener
+     *
+     * @param file the file to tail
+     * @return the position in the file up to which the content was read
+     * @throws IOException if the file cannot be read
+     */
+    public long tail(File file) throws IOException {
+        long position;
+        if (LogFiles.isCompressed(file) || LogFiles.isBinary(file)) {
+            tailStream(file);
+            position = file.length();
+        } else {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                // the space preallocated by the appender is not part of the content
+                long length = Util.logicalLength(raf.getChannel());
+                long startPos = numOfLines < 0 ? 0 : getTailStartPos(raf, numOfLines, length);
+                position = readLines(raf, startPos, length);
+            }
+        }
+        listener.finish();
+        return position;
+    }
+
+    /**
+     * Tails a compressed archive or a binary log file. As these cannot be read backwards
+     * the content is streamed through a decompressor (or decoder) and the last lines are
+     * kept in a ring buffer. If a {@link GzipBlockIndex} is available for a text archive
+     * then decompression starts at the block containing the first requested line.
+     */
+    private void tailStream(File file) throws IOException {
+        GzipBlockIndex index =
+                numOfLines < 0 || !LogFiles.isGzip(file) || LogFiles.isBinary(file) ? null : GzipBlockIndex.read(file);
+        if (index != null) {
+            tailIndexed(file, index);
+            return;
+        }
+        try (InputStream in = LogFiles.openStream(file)) {
+            if (numOfLines < 0) {
+                readLines(in, listener, 0);
+            } else {
+                RingBufferListener ring = new RingBufferListener(numOfLines);
+                readLines(in, ring, 0);
+                ring.drainTo(listener);
+            }
+        }
     }
 
-    public void tail(File file) throws IOException {
-        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-            long startPos = getTailStartPos(raf, numOfLines);
-            readLines(raf, startPos);
+    private void tailIndexed(File file, GzipBlockIndex index) throws IOException {
+        long startLine = Math.max(0, index.getTotalLines() - numOfLines);
+        int block = index.blockForLine(startLine);
+        try (FileInputStream fin = new FileInputStream(file)) {
+            fin.getChannel().position(index.getOffset(block));
+            // GZIPInputStream transparently continues with the following members
+            try (InputStream in = new GZIPInputStream(fin, BUFFER_SIZE)) {
+                readLines(in, listener, startLine - index.getFirstLine(block));
+            }
         }
     }
 
     /**
      * Returns the starting position of UNIX "tail -n".
      */
-    private long getTailStartPos(RandomAccessFile file, int n) throws IOException {
+    private long getTailStartPos(RandomAccessFile file, int n, long length) throws IOException {
         int newlineCount = 0;
-        long length = file.length();
         long pos = length - BUFFER_SIZE;
         int buffLength = BUFFER_SIZE;
 
@@ -73,7 +144,8 @@ class Tailer {
             file.readFully(buffer, 0, buffLength);
 
             for (int i = buffLength - 1; i >= 0; i--) {
-                if ((char) buffer[i] == '\n') {
+                // a line feed terminating the file does not start another line
+                if ((char) buffer[i] == '\n' && pos + i != length - 1) {
                     newlineCount++;
 
                     if (newlineCount >= n) {
@@ -103,16 +175,55 @@ class Tailer {
      *
      * @throws java.io.IOException if an I/O error occurs.
      * @param startPos position in file from where to start reading
+     * @param length the length of the content of the file
+     * @return the position up to which the file was read
      */
-    private void readLines(RandomAccessFile file, long startPos) throws IOException {
-        StringBuilder sb = new StringBuilder();
-
+    private long readLines(RandomAccessFile file, long startPos, long length) throws IOException {
+        LineSplitter splitter = new LineSplitter(listener, 0);
         file.seek(startPos);
+        long endPos = startPos;
         int num;
-        boolean seenCR = false;
-        while (((num = file.read(buffer)) != -1)) {
+        while (endPos < length
+                && ((num = file.read(buffer, 0, (int) Math.min(buffer.length, length - endPos))) != -1)) {
+            splitter.split(buffer, num);
+            endPos += num;
+        }
+        splitter.drain();
+        return endPos;
+    }
+
+    private void readLines(InputStream in, TailerListener target, long linesToSkip) throws IOException {
+        LineSplitter splitter = new LineSplitter(target, linesToSkip);
+        int num;
+        while (((num = in.read(buffer)) != -1)) {
+            splitter.split(buffer, num);
+        }
+        splitter.drain();
+    }
+
+    /**
+     * Splits the bytes passed in into lines and passes them to the listener
+     */
+    static class LineSplitter {
+        private final StringBuilder sb = new StringBuilder();
+        private final TailerListener listener;
+        private long linesToSkip;
+        private boolean seenCR = false;
+
+        LineSplitter(TailerListener listener, long linesToSkip) {
+            this.listener = listener;
+            this.linesToSkip = linesToSkip;
+        }
+
+        void split(byte[] buffer, int num) {
             for (int i = 0; i < num; i++) {
                 byte ch = buffer[i];
+                if (linesToSkip > 0) {
+                    if (ch == '\n') {
+                        linesToSkip--;
+                    }
+                    continue;
+                }
                 switch (ch) {
                     case '\n':
                         seenCR = false; // swallow CR before LF
@@ -136,9 +247,42 @@ class Tailer {
             }
         }
 
-        // Drain the left over part
-        if (sb.length() != 0) {
-            listener.handle(sb.toString());
+        void drain() {
+            // Drain the left over part
+            if (sb.length() != 0) {
+                listener.handle(sb.toString());
+                sb.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Keeps the last lines seen
+     */
+    private static class RingBufferListener implements TailerListener {
+        private final ArrayDeque<String> lines = new ArrayDeque<>();
+        private final int capacity;
+
+        RingBufferListener(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void handle(String line) {
+            if (capacity == 0) {
+                return;
+            }
+            if (lines.size() == capacity) {
+                lines.removeFirst();
+            }
+            lines.addLast(line);
+        }
+
+        void drainTo(TailerListener target) {
+            for (String line : lines) {
+                target.handle(line);
+            }
+            lines.clear();
         }
     }
 
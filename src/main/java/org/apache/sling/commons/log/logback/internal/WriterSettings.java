@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import org.apache.sling.commons.log.logback.internal.util.AsyncSettings;
+import org.apache.sling.commons.log.logback.internal.util.FlushSettings;
+import org.apache.sling.commons.log.logback.internal.util.RolloverSettings;
+import org.apache.sling.commons.log.logback.internal.util.SheddingSettings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Settings of a {@link LogWriter} beyond the file and its rotation
+ *
+ * @param flushSettings the settings to group the flushes of several events or null to
+ *      flush after each event
+ * @param format the format of the output, {@link LogConstants#LOG_FILE_FORMAT_TEXT} if null
+ * @param asyncSettings the settings to format and write the events of a file on a separate
+ *      thread or null to write them on the logging threads
+ * @param channelOutput true to write a file through a file channel from a large buffer
+ * @param rolloverSettings the settings for the rotation by size, {@link RolloverSettings#DEFAULT}
+ *      if null
+ * @param sheddingSettings the settings to shed the events while the file cannot be written
+ *      or null to always write to the file
+ * @param preallocationSize the size of the chunks the file is extended by ahead of the writes
+ *      in bytes, 0 to not preallocate
+ */
+public record WriterSettings(
+        @Nullable FlushSettings flushSettings,
+        String format,
+        @Nullable AsyncSettings asyncSettings,
+        boolean channelOutput,
+        RolloverSettings rolloverSettings,
+        @Nullable SheddingSettings sheddingSettings,
+        long preallocationSize) {
+    /**
+     * Flushes each event and writes the text format on the logging threads
+     */
+    public static final WriterSettings DEFAULT = new WriterSettings(null, null, null, false, null, null, 0);
+
+    /**
+     * Constructor, missing values are replaced by the defaults
+     */
+    public WriterSettings {
+        if (format == null || format.isEmpty()) {
+            format = LogConstants.LOG_FILE_FORMAT_TEXT;
+        }
+        if (rolloverSettings == null) {
+            rolloverSettings = RolloverSettings.DEFAULT;
+        }
+        preallocationSize = Math.max(preallocationSize, 0);
+    }
+
+    public @NotNull WriterSettings withFlushSettings(@Nullable FlushSettings flushSettings) {
+        return new WriterSettings(
+                flushSettings,
+                format,
+                asyncSettings,
+                channelOutput,
+                rolloverSettings,
+                sheddingSettings,
+                preallocationSize);
+    }
+
+    public @NotNull WriterSettings withFormat(@Nullable String format) {
+        return new WriterSettings(
+                flushSettings,
+                format,
+                asyncSettings,
+                channelOutput,
+                rolloverSettings,
+                sheddingSettings,
+                preallocationSize);
+    }
+
+    public @NotNull WriterSettings withAsyncSettings(@Nullable AsyncSettings asyncSettings) {
+        return new WriterSettings(
+                flushSettings,
+                format,
+                asyncSettings,
+                channelOutput,
+                rolloverSettings,
+                sheddingSettings,
+                preallocationSize);
+    }
+
+    public @NotNull WriterSettings withChannelOutput(boolean channelOutput) {
+        return new WriterSettings(
+                flushSettings,
+                format,
+                asyncSettings,
+                channelOutput,
+                rolloverSettings,
+                sheddingSettings,
+                preallocationSize);
+    }
+
+    public @NotNull WriterSettings withRolloverSettings(@Nullable RolloverSettings rolloverSettings) {
+        return new WriterSettings(
+                flushSettings,
+                format,
+                asyncSettings,
+                channelOutput,
+                rolloverSettings,
+                sheddingSettings,
+                preallocationSize);
+    }
+
+    public @NotNull WriterSettings withSheddingSettings(@Nullable SheddingSettings sheddingSettings) {
+        return new WriterSettings(
+                flushSettings,
+                format,
+                asyncSettings,
+                channelOutput,
+                rolloverSettings,
+                sheddingSettings,
+                preallocationSize);
+    }
+
+    public @NotNull WriterSettings withPreallocationSize(long preallocationSize) {
+        return new WriterSettings(
+                flushSettings,
+                format,
+                asyncSettings,
+                channelOutput,
+                rolloverSettings,
+                sheddingSettings,
+                preallocationSize);
+    }
+}
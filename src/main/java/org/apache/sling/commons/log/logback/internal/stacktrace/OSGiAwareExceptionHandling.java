@@ -20,11 +20,13 @@ package org.apache.sling.commons.log.logback.internal.stacktrace;
 
 import ch.qos.logback.classic.pattern.EnsureExceptionHandling;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.StackTraceElementProxy;
 import ch.qos.logback.core.Context;
 import ch.qos.logback.core.pattern.Converter;
 import ch.qos.logback.core.pattern.ConverterUtil;
 import org.apache.sling.commons.log.logback.internal.MaskingMessageUtil;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Extend EnsureExceptionHandling to add extra OSGi bundle info to the lines
@@ -55,23 +57,63 @@ public class OSGiAwareExceptionHandling extends EnsureExceptionHandling {
         }
     }
 
+    /**
+     * Instances using the same collector process the converter chain the same way
+     * which allows to share the layouts created with them
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return collector == ((OSGiAwareExceptionHandling) obj).collector;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(collector);
+    }
+
     @SuppressWarnings("java:S110")
     static class OSGiAwareConverter extends MaskingMessageUtil.MaskingExtendedThrowableProxyConverter {
         private final PackageInfoCollector collector;
+        private final RenderedTraceCache traceCache;
 
         public OSGiAwareConverter(PackageInfoCollector collector) {
             this.collector = collector;
+            this.traceCache = new RenderedTraceCache(collector);
         }
 
         @Override
         protected void extraData(StringBuilder builder, StackTraceElementProxy step) {
             if (step != null) {
-                String bundleInfo =
-                        collector.getBundleInfo(step.getStackTraceElement().getClassName());
-                if (bundleInfo != null) {
-                    builder.append(" [").append(bundleInfo).append(']');
-                }
+                builder.append(
+                        collector.getBundleSuffix(step.getStackTraceElement().getClassName()));
             }
         }
+
+        /**
+         * Renders the throwable or returns the trace rendered for the same throwable before
+         */
+        @Override
+        protected String throwableProxyToString(IThrowableProxy tp) {
+            return traceCache.get(tp, super::throwableProxyToString);
+        }
+
+        @Override
+        public void appendTo(StringBuilder buf, ILoggingEvent event) {
+            IThrowableProxy tp = event.getThrowableProxy();
+            if (tp != null) {
+                buf.append(throwableProxyToString(tp));
+            }
+        }
+
+        @NotNull
+        RenderedTraceCache getTraceCache() {
+            return traceCache;
+        }
     }
 }
@@ -18,28 +18,84 @@
  */
 package org.apache.sling.commons.log.logback.internal.stacktrace;
 
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Version;
 import org.osgi.framework.hooks.weaving.WeavingHook;
 import org.osgi.framework.hooks.weaving.WovenClass;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleWiring;
 
 /**
  * WeavingHook to keep track of which bundle contains
- * the java package for each woven class
+ * the java package for each woven class.
+ * <p>
+ * Alternatively the bundle can be looked up lazily for the classes which
+ * actually appear in a stack trace, see {@link #setBundleContext(BundleContext)}.
+ * The hook must not be registered in that case, the packages of the bundles are
+ * then indexed once per bundle.
  */
-public class PackageInfoCollector implements WeavingHook {
+public class PackageInfoCollector implements WeavingHook, BundleListener {
     /**
-     * package to bundle mapping where the key is the package name and
-     * the value is the set of bundles that contain the package
+     * package to bundle mapping where the key is the package name and the value
+     * is either the interned info of the single bundle containing the package or,
+     * for the rare split packages, an immutable array of the interned infos
      */
-    private final ConcurrentMap<String, Set<String>> pkgInfoMapping = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> pkgInfoMapping = new ConcurrentHashMap<>();
+
+    /**
+     * canonical instance of each bundle info, allows to compare infos by identity
+     */
+    private final ConcurrentMap<String, String> internedInfos = new ConcurrentHashMap<>();
+
+    /**
+     * bundle id to the info last computed for it, avoids building the info string
+     * for every woven class
+     */
+    private final ConcurrentMap<Long, BundleInfo> infoByBundleId = new ConcurrentHashMap<>();
+
+    /**
+     * package to bundle mapping of the lazy lookup, the values are the same as
+     * for the woven classes
+     */
+    private final ConcurrentMap<String, Object> indexedPackages = new ConcurrentHashMap<>();
+
+    /**
+     * bundle id to the packages indexed for it, guarded by this instance
+     */
+    private final ConcurrentMap<Long, IndexedBundle> indexedBundles = new ConcurrentHashMap<>();
+
+    /**
+     * Max number of class names for which the rendered suffix is cached
+     */
+    static final int MAX_CACHED_CLASSES = 10000;
+
+    /**
+     * class name to rendered suffix mapping, replaced whenever the package mapping changes
+     */
+    private volatile ConcurrentMap<String, String> suffixByClass = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * context used to lookup the bundles of classes not seen by the hook, null if disabled
+     */
+    private volatile BundleContext bundleContext;
 
     @Override
     public void weave(@NotNull WovenClass wovenClass) {
@@ -63,10 +119,146 @@ public class PackageInfoCollector implements WeavingHook {
      */
     void add(@NotNull Bundle bundle, @NotNull String className) {
         String packageName = getPackageName(className);
+        String info = getInfo(bundle);
+
+        // most classes are woven for a package already mapped to the same bundle
+        if (pkgInfoMapping.get(packageName) == info) {
+            return;
+        }
+        boolean[] changed = new boolean[1];
+        pkgInfoMapping.compute(packageName, (k, current) -> {
+            Object merged = merge(current, info);
+            changed[0] = merged != current;
+            return merged;
+        });
+        if (changed[0]) {
+            // a new or updated bundle, the cached suffixes might not be valid anymore
+            invalidate();
+        }
+    }
+
+    private void invalidate() {
+        generation.incrementAndGet();
+        suffixByClass = new ConcurrentHashMap<>();
+    }
 
-        Set<String> infos =
-                pkgInfoMapping.computeIfAbsent(packageName, k -> Collections.synchronizedSet(new HashSet<>()));
-        infos.add(getInfo(bundle));
+    /**
+     * Enables the lazy lookup of the bundle for classes which were not woven. When
+     * a package is not known, the exported and private packages of the resolved
+     * bundles which were not indexed yet are added to the package mapping of the
+     * lookup. A bundle is indexed again once it was updated.
+     *
+     * @param bundleContext the context to get the bundles from or null to disable the lookup
+     */
+    public void setBundleContext(@Nullable BundleContext bundleContext) {
+        synchronized (this) {
+            this.bundleContext = bundleContext;
+            indexedBundles.clear();
+            indexedPackages.clear();
+        }
+        invalidate();
+    }
+
+    /**
+     * Returns the context used for the lazy lookup
+     *
+     * @return the context or null if the lazy lookup is disabled
+     */
+    public @Nullable BundleContext getBundleContext() {
+        return bundleContext;
+    }
+
+    @Override
+    public void bundleChanged(@NotNull BundleEvent event) {
+        switch (event.getType()) {
+            case BundleEvent.UPDATED:
+            case BundleEvent.UNINSTALLED:
+                if (bundleContext != null && removeIndexed(event.getBundle().getBundleId())) {
+                    // the packages of the bundle may have changed
+                    invalidate();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Removes the info from the value of the package mapping
+     *
+     * @param current the current value of the mapping
+     * @param info the interned info to remove
+     * @return the new value or null if no info is left
+     */
+    private static @Nullable Object remove(@NotNull Object current, @NotNull String info) {
+        if (current instanceof String) {
+            return current == info ? null : current;
+        }
+        String[] remaining =
+                Arrays.stream((String[]) current).filter(i -> i != info).toArray(String[]::new);
+        return remaining.length == 1 ? remaining[0] : remaining;
+    }
+
+    /**
+     * Adds the info to the value of the package mapping
+     *
+     * @param current the current value of the mapping (may be null)
+     * @param info the interned info to add
+     * @return the current value if the info is already contained or the new value
+     */
+    private static @NotNull Object merge(@Nullable Object current, @NotNull String info) {
+        if (current == null) {
+            return info;
+        }
+        if (current instanceof String) {
+            return current == info ? current : new String[] {(String) current, info};
+        }
+        String[] infos = (String[]) current;
+        for (String existing : infos) {
+            if (existing == info) {
+                return current;
+            }
+        }
+        // copy on write, readers never see a partially updated array
+        String[] copy = Arrays.copyOf(infos, infos.length + 1);
+        copy[infos.length] = info;
+        return copy;
+    }
+
+    /**
+     * Gets a number which changes whenever the package mapping changes, allows to
+     * invalidate output which was rendered with the bundle infos
+     *
+     * @return the generation of the package mapping
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Gets the text appended to the stack frames of the class. The result is cached
+     * per class name until the package mapping changes.
+     *
+     * @param className the class name to lookup
+     * @return " [bsn:version]" or an empty string if the bundle is not known or ambiguous
+     */
+    @NotNull
+    String getBundleSuffix(@Nullable String className) {
+        if (className == null) {
+            return "";
+        }
+        // a suffix computed while the mapping changes ends up in the replaced map
+        ConcurrentMap<String, String> cache = suffixByClass;
+        String suffix = cache.get(className);
+        if (suffix == null) {
+            String bundleInfo = getBundleInfo(className);
+            suffix = bundleInfo == null ? "" : " [" + bundleInfo + "]";
+            if (cache.size() >= MAX_CACHED_CLASSES) {
+                cache.clear();
+            }
+            cache.put(className, suffix);
+        }
+        return suffix;
     }
 
     /**
@@ -81,24 +273,144 @@ public class PackageInfoCollector implements WeavingHook {
             return null;
         }
         String packageName = getPackageName(className);
-        Set<String> infos = pkgInfoMapping.get(packageName);
+        Object infos = pkgInfoMapping.get(packageName);
+        if (infos == null) {
+            BundleContext context = bundleContext;
+            if (context != null) {
+                return lookupBundleInfo(context, packageName);
+            }
+        }
 
         // If multiple infos are found then we cannot determine the exact version
         // so better not to provide any info
-        if (infos == null || infos.size() > 1 || infos.isEmpty()) {
+        return infos instanceof String ? (String) infos : null;
+    }
+
+    /**
+     * Looks the package up in the index of the bundle packages, the bundles not
+     * indexed yet are indexed first if the package is not known
+     *
+     * @param context the context to get the bundles from
+     * @param packageName the package of the class
+     * @return the bundle info string or null if not found or ambiguous
+     */
+    private @Nullable String lookupBundleInfo(@NotNull BundleContext context, @NotNull String packageName) {
+        if (packageName.startsWith("java.")) {
+            // only provided by the system class loader
             return null;
         }
-        return infos.stream().findFirst().orElse(null);
+        Object infos = indexedPackages.get(packageName);
+        if (infos == null && indexBundles(context)) {
+            infos = indexedPackages.get(packageName);
+        }
+        // same as for the woven classes an ambiguous package gets no info
+        return infos instanceof String ? (String) infos : null;
+    }
+
+    /**
+     * Indexes the packages of the resolved bundles which were not indexed yet
+     *
+     * @return true if any bundle was indexed
+     */
+    private synchronized boolean indexBundles(@NotNull BundleContext context) {
+        Bundle[] bundles;
+        try {
+            bundles = context.getBundles();
+        } catch (IllegalStateException e) {
+            // the context is not valid anymore
+            return false;
+        }
+        if (context != bundleContext) {
+            // disabled or replaced meanwhile
+            return false;
+        }
+        boolean indexed = false;
+        for (Bundle bundle : bundles) {
+            if (!indexedBundles.containsKey(bundle.getBundleId())) {
+                BundleWiring wiring = bundle.adapt(BundleWiring.class);
+                if (wiring != null) {
+                    String info = getInfo(bundle);
+                    Set<String> packages = getPackages(wiring);
+                    for (String packageName : packages) {
+                        indexedPackages.merge(packageName, info, (current, i) -> merge(current, (String) i));
+                    }
+                    indexedBundles.put(bundle.getBundleId(), new IndexedBundle(info, packages));
+                    indexed = true;
+                }
+            }
+        }
+        if (indexed) {
+            // a class looked up before might be found now
+            invalidate();
+        }
+        return indexed;
     }
 
     /**
-     * Create an info string for the bundle
+     * Removes the packages of the bundle from the index
+     *
+     * @return true if the bundle was indexed
+     */
+    private synchronized boolean removeIndexed(long bundleId) {
+        IndexedBundle removed = indexedBundles.remove(bundleId);
+        if (removed == null) {
+            return false;
+        }
+        for (String packageName : removed.packages()) {
+            indexedPackages.computeIfPresent(packageName, (k, current) -> remove(current, removed.info()));
+        }
+        return true;
+    }
+
+    /**
+     * Collects the exported packages from the package capabilities of the wiring
+     * and the private ones from the class files of the bundle and its fragments
+     */
+    private static @NotNull Set<String> getPackages(@NotNull BundleWiring wiring) {
+        Set<String> packages = new HashSet<>();
+        List<BundleCapability> capabilities = wiring.getCapabilities(PackageNamespace.PACKAGE_NAMESPACE);
+        if (capabilities != null) {
+            for (BundleCapability capability : capabilities) {
+                Object packageName = capability.getAttributes().get(PackageNamespace.PACKAGE_NAMESPACE);
+                if (packageName instanceof String) {
+                    packages.add((String) packageName);
+                }
+            }
+        }
+        Collection<String> classFiles = wiring.listResources(
+                "/", "*.class", BundleWiring.LISTRESOURCES_LOCAL | BundleWiring.LISTRESOURCES_RECURSE);
+        if (classFiles != null) {
+            for (String classFile : classFiles) {
+                int index = classFile.lastIndexOf('/');
+                packages.add(index > 0 ? classFile.substring(0, index).replace('/', '.') : "");
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * Get the interned info string for the bundle
      *
      * @param bundle the bundle to process
      * @return information string describing the bundle
      */
-    private static @NotNull String getInfo(@NotNull Bundle bundle) {
-        return bundle.getSymbolicName() + ":" + bundle.getVersion();
+    @NotNull
+    String getInfo(@NotNull Bundle bundle) {
+        String symbolicName = bundle.getSymbolicName();
+        Version version = bundle.getVersion();
+        Long bundleId = bundle.getBundleId();
+        BundleInfo cached = infoByBundleId.get(bundleId);
+        if (cached != null && cached.matches(symbolicName, version)) {
+            return cached.text();
+        }
+        // first class of the bundle or the bundle was updated
+        String text = symbolicName + ":" + version;
+        String interned = internedInfos.putIfAbsent(text, text);
+        if (interned == null) {
+            interned = text;
+        }
+        infoByBundleId.put(bundleId, new BundleInfo(symbolicName, version, interned));
+        return interned;
     }
 
     /**
@@ -115,4 +427,18 @@ public class PackageInfoCollector implements WeavingHook {
         }
         return result;
     }
+
+    /**
+     * The packages indexed for a bundle along with the info they are mapped to
+     */
+    private record IndexedBundle(String info, Set<String> packages) {}
+
+    /**
+     * The info computed for a bundle along with the values it was computed from
+     */
+    private record BundleInfo(String symbolicName, Version version, String text) {
+        boolean matches(String symbolicName, Version version) {
+            return Objects.equals(this.symbolicName, symbolicName) && Objects.equals(this.version, version);
+        }
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.stacktrace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import org.apache.sling.commons.log.logback.internal.MaskingMessageUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Cache of fully rendered stack traces keyed by the structure of the throwable
+ * so an exception logged over and over again is only rendered once. The key
+ * holds the class names, messages and stack frames of the throwable including
+ * its causes and suppressed throwables and compares them exactly, so a cached
+ * trace is never printed for a different throwable.
+ * <p>
+ * The cached traces are dropped whenever the bundle infos of the
+ * {@link PackageInfoCollector} or the masking configuration change.
+ */
+final class RenderedTraceCache {
+    /**
+     * Max number of cached traces
+     */
+    static final int MAX_ENTRIES = 256;
+
+    /**
+     * Traces longer than this (in chars) are not cached
+     */
+    static final int MAX_TRACE_LENGTH = 64 * 1024;
+
+    private final PackageInfoCollector collector;
+    private volatile State state;
+
+    RenderedTraceCache(@NotNull PackageInfoCollector collector) {
+        this.collector = collector;
+        this.state = new State(collector.getGeneration(), MaskingMessageUtil.getMaskingVersion());
+    }
+
+    /**
+     * Get the rendered trace, rendering it if it is not cached yet
+     *
+     * @param tp the throwable to render
+     * @param renderer renders the throwable if not cached
+     * @return the rendered trace
+     */
+    @NotNull
+    String get(@NotNull IThrowableProxy tp, @NotNull Function<IThrowableProxy, String> renderer) {
+        State current = currentState();
+        Key key = Key.of(tp);
+        String trace = current.traces.get(key);
+        if (trace == null) {
+            trace = renderer.apply(tp);
+            if (trace.length() <= MAX_TRACE_LENGTH) {
+                if (current.traces.size() >= MAX_ENTRIES) {
+                    current.traces.clear();
+                }
+                current.traces.put(key, trace);
+            }
+        }
+        return trace;
+    }
+
+    int size() {
+        return state.traces.size();
+    }
+
+    private State currentState() {
+        State current = state;
+        long generation = collector.getGeneration();
+        int maskingVersion = MaskingMessageUtil.getMaskingVersion();
+        if (current.generation != generation || current.maskingVersion != maskingVersion) {
+            current = new State(generation, maskingVersion);
+            state = current;
+        }
+        return current;
+    }
+
+    /**
+     * Everything rendered for a throwable, compared by value
+     */
+    record Key(
+            String className,
+            String message,
+            String overridingMessage,
+            boolean cyclic,
+            int commonFrames,
+            List<StackTraceElement> frames,
+            List<Key> suppressed,
+            Key cause) {
+
+        static @NotNull Key of(@NotNull IThrowableProxy tp) {
+            StackTraceElementProxy[] steps = tp.getStackTraceElementProxyArray();
+            StackTraceElement[] frames = new StackTraceElement[steps == null ? 0 : steps.length];
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = steps[i].getStackTraceElement();
+            }
+            IThrowableProxy[] suppressed = tp.getSuppressed();
+            List<Key> suppressedKeys = new ArrayList<>(suppressed == null ? 0 : suppressed.length);
+            if (suppressed != null) {
+                for (IThrowableProxy s : suppressed) {
+                    suppressedKeys.add(of(s));
+                }
+            }
+            IThrowableProxy cause = tp.getCause();
+            return new Key(
+                    tp.getClassName(),
+                    tp.getMessage(),
+                    tp.getOverridingMessage(),
+                    tp.isCyclic(),
+                    tp.getCommonFrames(),
+                    Arrays.asList(frames),
+                    suppressedKeys,
+                    cause == null ? null : of(cause));
+        }
+    }
+
+    private static final class State {
+        private final long generation;
+        private final int maskingVersion;
+        private final ConcurrentMap<Key, String> traces = new ConcurrentHashMap<>();
+
+        State(long generation, int maskingVersion) {
+            this.generation = generation;
+            this.maskingVersion = maskingVersion;
+        }
+    }
+}
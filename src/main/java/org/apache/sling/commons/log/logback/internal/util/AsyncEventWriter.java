@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Bounded queue passing the queued events to a sink on a worker thread. Used by
+ * the {@link SlingRollingFileAppender} to format and write the events off the
+ * logging threads. The worker is taken from an {@link AsyncWriterPool}, either one
+ * shared with other appenders or a dedicated one with a single thread.
+ *
+ * @param <E> the type of the events
+ */
+final class AsyncEventWriter<E> {
+    /**
+     * Default number of events which can be queued before the logging threads block
+     */
+    static final int DEFAULT_QUEUE_SIZE = 1024;
+
+    /**
+     * Default time in milliseconds to wait for the queued events to be written when stopped
+     */
+    static final long DEFAULT_MAX_FLUSH_TIME = 1000;
+
+    /**
+     * Max number of events written in one turn of a worker
+     */
+    static final int MAX_BATCH_SIZE = 64;
+
+    /**
+     * Time in milliseconds between the checks for the queue being written when stopped
+     */
+    private static final long STOP_POLL_TIMEOUT = 100;
+
+    private final String name;
+    private final BlockingQueue<E> queue;
+    private final Consumer<E> sink;
+    private final boolean neverBlock;
+    private final int discardingThreshold;
+    private final List<E> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile AsyncWriterPool pool;
+    private boolean ownPool;
+    private Runnable batchListener;
+
+    /**
+     * Constructor
+     *
+     * @param name the name of the dedicated worker thread
+     * @param queueSize the capacity of the queue
+     * @param sink the sink to write the events to, called on the worker thread only
+     */
+    AsyncEventWriter(@NotNull String name, int queueSize, @NotNull Consumer<E> sink) {
+        this(name, queueSize, false, sink);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param name the name of the dedicated worker thread
+     * @param queueSize the capacity of the queue
+     * @param neverBlock true to drop the events instead of blocking while the queue is full
+     * @param sink the sink to write the events to, called on the worker thread only
+     */
+    AsyncEventWriter(@NotNull String name, int queueSize, boolean neverBlock, @NotNull Consumer<E> sink) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.sink = sink;
+        this.neverBlock = neverBlock;
+        // same threshold as used by the logback AsyncAppender
+        this.discardingThreshold = queueSize / 5;
+    }
+
+    /**
+     * Sets a listener which is called on the worker thread after each batch of
+     * events was passed to the sink. Must be set before the writer is started.
+     *
+     * @param batchListener the listener or null
+     */
+    void setBatchListener(@Nullable Runnable batchListener) {
+        this.batchListener = batchListener;
+    }
+
+    /**
+     * Starts the writer on a dedicated worker thread
+     */
+    void start() {
+        this.ownPool = true;
+        this.pool = new AsyncWriterPool(name, 1);
+        schedule();
+    }
+
+    /**
+     * Starts the writer on the workers of the shared pool
+     *
+     * @param pool the pool
+     */
+    void start(@NotNull AsyncWriterPool pool) {
+        this.ownPool = false;
+        this.pool = pool;
+        schedule();
+    }
+
+    /**
+     * Queues the event. If the queue is full the event is dropped in the never block
+     * mode, otherwise the call blocks until there is space. Interrupts are deferred
+     * until the event was queued.
+     *
+     * @param event the event to queue
+     */
+    void put(@NotNull E event) {
+        if (neverBlock) {
+            if (!queue.offer(event)) {
+                dropped.increment();
+            }
+            schedule();
+            return;
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    queue.put(event);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * Waits until the queued events were written. A dedicated worker is stopped
+     * afterwards.
+     *
+     * @param maxFlushTime max time in milliseconds to wait for the queued events to be written,
+     *                     0 to wait forever
+     * @return true if all events were written in time
+     */
+    boolean stop(long maxFlushTime) {
+        long deadline = maxFlushTime == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + maxFlushTime;
+        boolean interrupted = false;
+        synchronized (this) {
+            while (!isIdle()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    wait(Math.min(remaining, STOP_POLL_TIMEOUT));
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    break;
+                }
+            }
+        }
+        boolean idle = isIdle();
+        if (ownPool) {
+            // the worker still writes the pending events after a timeout and ends then
+            pool.shutdown();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return idle;
+    }
+
+    int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Checks if less than a fifth of the queue is left, less important events
+     * should be discarded then
+     *
+     * @return true if the queue is nearly full
+     */
+    boolean isNearlyFull() {
+        return queue.remainingCapacity() < discardingThreshold;
+    }
+
+    /**
+     * Counts an event which was discarded as the queue was nearly full
+     */
+    void discarded() {
+        discarded.increment();
+    }
+
+    /**
+     * Number of events discarded as the queue was nearly full
+     */
+    long getDiscardedCount() {
+        return discarded.sum();
+    }
+
+    /**
+     * Number of events dropped in the never block mode as the queue was full
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Number of events written since the writer was started
+     */
+    long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * Writes one batch of the queued events, called by a worker of the pool. The
+     * writer is scheduled again if more events are waiting.
+     */
+    void writeBatch() {
+        if (queue.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+            writeBatch(batch);
+        }
+        scheduled.set(false);
+        if (!queue.isEmpty()) {
+            schedule();
+        } else {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes all the queued events on the calling thread, used once the pool was
+     * shut down
+     */
+    void drain() {
+        do {
+            while (queue.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+                writeBatch(batch);
+            }
+            scheduled.set(false);
+        } while (!queue.isEmpty() && scheduled.compareAndSet(false, true));
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private boolean isIdle() {
+        return queue.isEmpty() && !scheduled.get();
+    }
+
+    private void schedule() {
+        // the events stay queued until the writer is started
+        AsyncWriterPool current = pool;
+        if (current != null && !queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            current.schedule(this);
+        }
+    }
+
+    private void writeBatch(List<E> batch) {
+        for (E event : batch) {
+            sink.accept(event);
+        }
+        written.add(batch.size());
+        batch.clear();
+        if (batchListener != null) {
+            batchListener.run();
+        }
+    }
+}
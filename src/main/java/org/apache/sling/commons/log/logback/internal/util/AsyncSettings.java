@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import ch.qos.logback.classic.Level;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Settings for the queue of a {@link SlingRollingFileAppender} writing the events
+ * on a separate thread
+ *
+ * @param queueSize the number of events which can be queued
+ * @param discardLevel once the queue is nearly full, events with a level below this one are discarded
+ * @param neverBlock true to drop the events instead of blocking the logging threads if the queue is full
+ * @param maxFlushTime max time in milliseconds to wait for the queued events to be written when
+ *      the appender is stopped, 0 to wait until all are written
+ */
+public record AsyncSettings(int queueSize, @NotNull Level discardLevel, boolean neverBlock, long maxFlushTime) {
+    /**
+     * Blocking queue of the default size which never discards events
+     */
+    public static final AsyncSettings DEFAULT = new AsyncSettings(
+            AsyncEventWriter.DEFAULT_QUEUE_SIZE, Level.TRACE, false, AsyncEventWriter.DEFAULT_MAX_FLUSH_TIME);
+
+    /**
+     * Constructor, invalid values are replaced by the defaults
+     */
+    public AsyncSettings {
+        if (queueSize < 1) {
+            queueSize = AsyncEventWriter.DEFAULT_QUEUE_SIZE;
+        }
+        if (maxFlushTime < 0) {
+            maxFlushTime = AsyncEventWriter.DEFAULT_MAX_FLUSH_TIME;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Small set of worker threads shared by the asynchronous {@link SlingRollingFileAppender}s.
+ * Each appender keeps its own bounded queue (see {@link AsyncEventWriter}) and is
+ * scheduled here once events are queued. A worker takes the next scheduled writer,
+ * writes at most one batch of its events and schedules it again at the end if more
+ * events are waiting, so busy appenders take turns and cannot starve the quiet ones.
+ */
+public final class AsyncWriterPool {
+    /**
+     * Default number of worker threads
+     */
+    public static final int DEFAULT_THREAD_COUNT = 1;
+
+    /**
+     * Default time in milliseconds to wait for the workers to end after a shutdown
+     */
+    public static final long DEFAULT_MAX_WAIT = 1000;
+
+    /**
+     * Time in milliseconds the workers wait for a writer before checking if the pool
+     * was shut down. The workers are not interrupted as that would close interruptible
+     * channels they write to.
+     */
+    private static final long POLL_TIMEOUT = 100;
+
+    private final String name;
+    private final BlockingQueue<AsyncEventWriter<?>> ready = new LinkedBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final LongAdder batches = new LongAdder();
+    private volatile int threadCount;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor
+     *
+     * @param name the name of the worker threads, suffixed by their number
+     * @param threadCount the number of worker threads, at least 1
+     */
+    public AsyncWriterPool(@NotNull String name, int threadCount) {
+        this.name = name;
+        setThreadCount(threadCount);
+    }
+
+    /**
+     * Changes the number of worker threads. Surplus workers end after their current
+     * batch.
+     *
+     * @param threadCount the number of worker threads, at least 1
+     */
+    public synchronized void setThreadCount(int threadCount) {
+        if (!running) {
+            return;
+        }
+        this.threadCount = Math.max(1, threadCount);
+        for (int i = 0; i < this.threadCount; i++) {
+            if (i == workers.size()) {
+                workers.add(null);
+            }
+            Thread worker = workers.get(i);
+            if (worker == null || !worker.isAlive()) {
+                final int index = i;
+                worker = new Thread(() -> run(index), name + "-" + (i + 1));
+                worker.setDaemon(true);
+                worker.start();
+                workers.set(i, worker);
+            }
+        }
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Number of writers waiting for a worker
+     *
+     * @return the number of scheduled writers
+     */
+    public int getReadyCount() {
+        return ready.size();
+    }
+
+    /**
+     * Number of batches written since the pool was created
+     *
+     * @return the number of batches
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops the workers once they wrote the events of the writers scheduled until
+     * then. Writers scheduled afterwards write their events on the logging threads.
+     * Does not wait for the workers, see {@link #awaitTermination(long)}.
+     */
+    public synchronized void shutdown() {
+        running = false;
+    }
+
+    /**
+     * Waits for the workers to end after the pool was shut down
+     *
+     * @param maxWait max time in milliseconds to wait for each worker, 0 to wait forever
+     * @return true if all workers ended in time
+     */
+    public boolean awaitTermination(long maxWait) {
+        List<Thread> stopped;
+        synchronized (this) {
+            stopped = new ArrayList<>(workers);
+        }
+        boolean interrupted = false;
+        boolean terminated = true;
+        for (Thread worker : stopped) {
+            if (worker != null && worker != Thread.currentThread()) {
+                try {
+                    worker.join(maxWait);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                terminated &= !worker.isAlive();
+            }
+        }
+        if (terminated) {
+            // writers scheduled while the workers were ending
+            AsyncEventWriter<?> writer;
+            while ((writer = ready.poll()) != null) {
+                writer.drain();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return terminated;
+    }
+
+    /**
+     * Schedules the writer to write its queued events. Called by the writer only,
+     * which makes sure it is scheduled at most once at a time.
+     *
+     * @param writer the writer with queued events
+     */
+    void schedule(@NotNull AsyncEventWriter<?> writer) {
+        if (running) {
+            ready.add(writer);
+            if (running || !ready.remove(writer)) {
+                return;
+            }
+        }
+        // the workers may have ended already
+        writer.drain();
+    }
+
+    private void run(int index) {
+        while (running && index < threadCount) {
+            try {
+                AsyncEventWriter<?> writer = ready.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (writer != null) {
+                    writer.writeBatch();
+                    batches.increment();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (!running) {
+            AsyncEventWriter<?> writer;
+            while ((writer = ready.poll()) != null) {
+                writer.writeBatch();
+                batches.increment();
+            }
+        }
+    }
+}
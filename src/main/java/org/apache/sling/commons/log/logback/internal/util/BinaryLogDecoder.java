@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ch.qos.logback.core.CoreConstants;
+import org.apache.sling.commons.log.logback.internal.LogConstants;
+import org.apache.sling.commons.log.logback.internal.MaskingMessageUtil;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Decodes the records written by the {@link BinaryLogEncoder} into text formatted
+ * like the {@link LogConstants#LOG_PATTERN_DEFAULT} pattern with the throwables
+ * following the message. The stream reads the records lazily so large files are
+ * never fully held in memory. A record which was only partially written (e.g. the
+ * file is still being written) ends the stream.
+ */
+public class BinaryLogDecoder extends InputStream {
+    /**
+     * Upper bound for the length of a record to detect a corrupt stream
+     */
+    static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss.SSS");
+
+    private final InputStream in;
+    private final List<String> dictionary = new ArrayList<>();
+    private final DateTimeFormatter dateFormat = DATE_FORMAT.withZone(ZoneId.systemDefault());
+    private final StringBuilder text = new StringBuilder();
+    private byte[] record = new byte[256];
+    private int recordPos;
+    private int recordLength;
+    private long lastTimestamp;
+    private byte[] output = new byte[0];
+    private int outputPos;
+    private boolean eof;
+
+    /**
+     * Constructor
+     *
+     * @param in the stream with the binary records
+     */
+    public BinaryLogDecoder(@NotNull InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Checks if the stream starts with the header written by the {@link BinaryLogEncoder}.
+     * The stream is reset to the start after the check.
+     *
+     * @param in the stream to check which must support mark and reset
+     * @return true if the stream contains binary records
+     * @throws IOException if the stream cannot be read
+     */
+    public static boolean isBinary(@NotNull InputStream in) throws IOException {
+        byte[] header = BinaryLogEncoder.HEADER;
+        in.mark(header.length);
+        try {
+            byte[] start = in.readNBytes(header.length);
+            return Arrays.equals(header, start);
+        } finally {
+            in.reset();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return output[outputPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(len, output.length - outputPos);
+        System.arraycopy(output, outputPos, b, off, count);
+        outputPos += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Decodes records until there is text to return
+     *
+     * @return false once the end of the stream is reached
+     */
+    private boolean fill() throws IOException {
+        while (outputPos >= output.length) {
+            if (eof || !readRecord()) {
+                eof = true;
+                return false;
+            }
+            text.setLength(0);
+            decodeRecord();
+            output = text.toString().getBytes(StandardCharsets.UTF_8);
+            outputPos = 0;
+        }
+        return true;
+    }
+
+    private boolean readRecord() throws IOException {
+        long length = readStreamVarLong();
+        if (length < 0) {
+            return false;
+        }
+        if (length == 0 || length > MAX_RECORD_LENGTH) {
+            throw new IOException("Invalid record length " + length);
+        }
+        if (record.length < length) {
+            record = new byte[(int) length];
+        }
+        int read = in.readNBytes(record, 0, (int) length);
+        recordPos = 0;
+        recordLength = read;
+        return read == length;
+    }
+
+    /**
+     * Reads the length of the next record
+     *
+     * @return the length or -1 at the end of the stream
+     */
+    private long readStreamVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                return -1;
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed record length");
+    }
+
+    private void decodeRecord() throws IOException {
+        byte type = readByte();
+        switch (type) {
+            case BinaryLogEncoder.TYPE_HEADER:
+            case BinaryLogEncoder.TYPE_RESET:
+                dictionary.clear();
+                if (type == BinaryLogEncoder.TYPE_HEADER) {
+                    lastTimestamp = 0;
+                }
+                break;
+            case BinaryLogEncoder.TYPE_DEFINE:
+                define(readVarLong(), readString());
+                break;
+            case BinaryLogEncoder.TYPE_EVENT:
+                decodeEvent();
+                break;
+            default:
+                // records of a newer version are skipped
+                break;
+        }
+    }
+
+    private void define(long id, String value) throws IOException {
+        // the ids are assigned in sequence, an entry is only ever added at the end
+        if (id <= 0 || id > dictionary.size() + 1) {
+            throw new IOException("Invalid dictionary id " + id);
+        }
+        if (id > dictionary.size()) {
+            dictionary.add(value);
+        } else {
+            dictionary.set((int) id - 1, value);
+        }
+    }
+
+    private void decodeEvent() throws IOException {
+        long timestamp = lastTimestamp + unZigZag(readVarLong());
+        lastTimestamp = timestamp;
+        int level = readByte();
+        String logger = lookup(readVarLong());
+        String thread = lookup(readVarLong());
+        int flags = readByte();
+
+        dateFormat.formatTo(Instant.ofEpochMilli(timestamp), text);
+        text.append(" *");
+        text.append(level >= 0 && level < BinaryLogEncoder.LEVELS.length ? BinaryLogEncoder.LEVELS[level] : "?");
+        text.append("* [").append(thread).append("] ").append(logger).append(' ');
+        if ((flags & BinaryLogEncoder.FLAG_FORMATTED) != 0) {
+            text.append(readString());
+        } else {
+            String pattern = lookup(readVarLong());
+            long count = readVarLong();
+            // each argument takes at least one byte
+            if (count < 0 || count > recordLength - recordPos) {
+                throw new EOFException("Truncated record");
+            }
+            Object[] arguments = new Object[(int) count];
+            for (int i = 0; i < count; i++) {
+                arguments[i] = readArgument();
+            }
+            MaskingMessageUtil.appendMasked(text, MessageFormatter.basicArrayFormat(pattern, arguments));
+        }
+        text.append(CoreConstants.LINE_SEPARATOR);
+        if ((flags & BinaryLogEncoder.FLAG_THROWABLE) != 0) {
+            text.append(readString());
+        }
+    }
+
+    private Object readArgument() throws IOException {
+        byte tag = readByte();
+        switch (tag) {
+            case BinaryLogEncoder.ARG_NULL:
+                return null;
+            case BinaryLogEncoder.ARG_STRING:
+                return readString();
+            case BinaryLogEncoder.ARG_LONG:
+                return unZigZag(readVarLong());
+            case BinaryLogEncoder.ARG_DOUBLE:
+                long bits = 0;
+                for (int i = 0; i < 8; i++) {
+                    bits = (bits << 8) | (readByte() & 0xFF);
+                }
+                return Double.longBitsToDouble(bits);
+            case BinaryLogEncoder.ARG_TRUE:
+                return Boolean.TRUE;
+            case BinaryLogEncoder.ARG_FALSE:
+                return Boolean.FALSE;
+            default:
+                throw new IOException("Unknown argument type " + tag);
+        }
+    }
+
+    private String lookup(long id) {
+        if (id <= 0 || id > dictionary.size()) {
+            return id == 0 ? null : "?";
+        }
+        return dictionary.get((int) id - 1);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private byte readByte() throws IOException {
+        if (recordPos >= recordLength) {
+            throw new EOFException("Truncated record");
+        }
+        return record[recordPos++];
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private String readString() throws IOException {
+        long length = readVarLong();
+        if (length < 0 || length > recordLength - recordPos) {
+            throw new EOFException("Truncated record");
+        }
+        String value = new String(record, recordPos, (int) length, StandardCharsets.UTF_8);
+        recordPos += (int) length;
+        return value;
+    }
+}
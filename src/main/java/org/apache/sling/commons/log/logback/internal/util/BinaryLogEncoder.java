@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.EncoderBase;
+import org.apache.sling.commons.log.logback.internal.MaskingMessageUtil;
+import org.apache.sling.commons.log.logback.internal.MaskingMessageUtil.MaskingThrowableProxyConverter;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Encoder writing the events as compact binary records which can be turned back
+ * into text with the {@link BinaryLogDecoder}.
+ * <p>
+ * Each record is prefixed with its length (as varint) followed by the record type.
+ * The logger names, thread names and message patterns are written only once per
+ * file as dictionary records and later referenced by their id. The events hold the
+ * difference to the timestamp of the previous event and the raw argument values
+ * of the message. The dictionary is reset with the header written at the start of
+ * each file so each file can be decoded on its own.
+ * <p>
+ * If the masking rules are configured the message is formatted and masked before
+ * it is written so the raw arguments never reach the file. Throwables are always
+ * written as masked text.
+ * <p>
+ * As the records depend on the ones written before, the encoder is stateful and
+ * the events must be written in the order they were encoded.
+ */
+public class BinaryLogEncoder extends EncoderBase<ILoggingEvent> implements BufferEncoder {
+    static final int VERSION = 1;
+
+    static final byte TYPE_HEADER = 0;
+    static final byte TYPE_DEFINE = 1;
+    static final byte TYPE_EVENT = 2;
+    static final byte TYPE_RESET = 3;
+
+    static final int FLAG_THROWABLE = 1;
+    static final int FLAG_FORMATTED = 2;
+
+    static final byte ARG_NULL = 0;
+    static final byte ARG_STRING = 1;
+    static final byte ARG_LONG = 2;
+    static final byte ARG_DOUBLE = 3;
+    static final byte ARG_TRUE = 4;
+    static final byte ARG_FALSE = 5;
+
+    static final Level[] LEVELS = {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR};
+
+    /**
+     * Header starting each file, it is a record on its own so it can also be
+     * recognized when a file is appended to
+     */
+    static final byte[] HEADER = {6, TYPE_HEADER, 'S', 'L', 'O', 'G', VERSION};
+
+    /**
+     * Max number of dictionary entries after which the dictionary is reset
+     */
+    static final int MAX_DICTIONARY_SIZE = 4096;
+
+    /**
+     * Buffers which grew beyond this size are not kept for the next event
+     */
+    static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final MaskingThrowableProxyConverter throwableConverter = new MaskingThrowableProxyConverter();
+    private final StringBuilder text = new StringBuilder();
+    private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+    private int size;
+    private long lastTimestamp;
+
+    @Override
+    public void start() {
+        throwableConverter.setContext(getContext());
+        throwableConverter.start();
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        throwableConverter.stop();
+        super.stop();
+    }
+
+    @Override
+    public boolean isStateful() {
+        return true;
+    }
+
+    /**
+     * Returns the header and resets the dictionary as a new file is started
+     */
+    @Override
+    public synchronized byte[] headerBytes() {
+        dictionary.clear();
+        lastTimestamp = 0;
+        return HEADER.clone();
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+
+    @Override
+    public synchronized byte[] encode(ILoggingEvent event) {
+        ByteBuffer buffer = encodeToBuffer(event);
+        return Arrays.copyOfRange(buffer.array(), buffer.position(), buffer.limit());
+    }
+
+    /**
+     * Encodes the event into a buffer owned by the encoder. Besides consuming the
+     * buffer before the next event is encoded the caller must also write it before
+     * any other event encoded later.
+     *
+     * @param event the event to encode
+     * @return a heap buffer with the dictionary records required by the event followed
+     *      by the event record
+     */
+    @Override
+    public synchronized @NotNull ByteBuffer encodeToBuffer(@NotNull ILoggingEvent event) {
+        if (size > MAX_RETAINED_BUFFER_SIZE || bytes.length > MAX_RETAINED_BUFFER_SIZE) {
+            bytes = new byte[INITIAL_BUFFER_SIZE];
+        }
+        size = 0;
+        if (dictionary.size() + 3 > MAX_DICTIONARY_SIZE) {
+            // unique messages are logged, start over instead of growing without bounds
+            dictionary.clear();
+            int start = beginRecord(TYPE_RESET);
+            endRecord(start);
+        }
+
+        int loggerId = intern(event.getLoggerName());
+        int threadId = intern(event.getThreadName());
+        Object[] arguments = event.getArgumentArray();
+        boolean formatted = MaskingMessageUtil.hasMaskingRules();
+        int patternId = formatted ? 0 : intern(event.getMessage());
+
+        int start = beginRecord(TYPE_EVENT);
+        long timestamp = event.getTimeStamp();
+        writeVarLong(zigZag(timestamp - lastTimestamp));
+        lastTimestamp = timestamp;
+        writeByte(levelIndex(event.getLevel()));
+        writeVarLong(loggerId);
+        writeVarLong(threadId);
+        int flags = (formatted ? FLAG_FORMATTED : 0) | (event.getThrowableProxy() != null ? FLAG_THROWABLE : 0);
+        writeByte(flags);
+        if (formatted) {
+            text.setLength(0);
+            MaskingMessageUtil.appendMasked(text, event.getFormattedMessage());
+            writeString(text);
+        } else {
+            writeVarLong(patternId);
+            int count = arguments == null ? 0 : arguments.length;
+            writeVarLong(count);
+            for (int i = 0; i < count; i++) {
+                writeArgument(arguments[i]);
+            }
+        }
+        if (event.getThrowableProxy() != null) {
+            text.setLength(0);
+            throwableConverter.appendTo(text, event);
+            writeString(text);
+        }
+        endRecord(start);
+        if (text.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            text.setLength(0);
+            text.trimToSize();
+        }
+        return ByteBuffer.wrap(bytes, 0, size);
+    }
+
+    /**
+     * Returns the id of the string, the string is defined in the dictionary first
+     * if it was not seen before. The id 0 is used for null.
+     */
+    private int intern(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer id = dictionary.get(value);
+        if (id == null) {
+            id = dictionary.size() + 1;
+            dictionary.put(value, id);
+            int start = beginRecord(TYPE_DEFINE);
+            writeVarLong(id);
+            writeString(value);
+            endRecord(start);
+        }
+        return id;
+    }
+
+    private void writeArgument(Object arg) {
+        if (arg == null) {
+            writeByte(ARG_NULL);
+        } else if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            writeByte(ARG_LONG);
+            writeVarLong(zigZag(((Number) arg).longValue()));
+        } else if (arg instanceof Double) {
+            writeByte(ARG_DOUBLE);
+            long bits = Double.doubleToRawLongBits((Double) arg);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (bits >>> shift));
+            }
+        } else if (arg instanceof Boolean) {
+            writeByte(((Boolean) arg) ? ARG_TRUE : ARG_FALSE);
+        } else {
+            writeByte(ARG_STRING);
+            // the same text the message formatter would use, including arrays
+            writeString(
+                    arg instanceof String ? (String) arg : MessageFormatter.basicArrayFormat("{}", new Object[] {arg}));
+        }
+    }
+
+    private static int levelIndex(Level level) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].equals(level)) {
+                return i;
+            }
+        }
+        return Arrays.asList(LEVELS).indexOf(Level.INFO);
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Starts a record, the space for the length is reserved as the length is
+     * only known at the end
+     */
+    private int beginRecord(byte type) {
+        ensure(5);
+        int start = size;
+        size += 5;
+        writeByte(type);
+        return start;
+    }
+
+    /**
+     * Writes the length of the record started at the given offset and moves
+     * the record to follow the length directly
+     */
+    private void endRecord(int start) {
+        int bodyStart = start + 5;
+        int length = size - bodyStart;
+        size = start;
+        writeVarLong(length);
+        int lengthEnd = size;
+        System.arraycopy(bytes, bodyStart, bytes, lengthEnd, length);
+        size = lengthEnd + length;
+    }
+
+    private void writeString(CharSequence value) {
+        byte[] utf8 = value.toString().getBytes(StandardCharsets.UTF_8);
+        writeVarLong(utf8.length);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, bytes, size, utf8.length);
+        size += utf8.length;
+    }
+
+    private void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensure(1);
+        bytes[size++] = (byte) value;
+    }
+
+    private void ensure(int additional) {
+        if (size + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(size + additional, bytes.length * 2));
+        }
+    }
+}
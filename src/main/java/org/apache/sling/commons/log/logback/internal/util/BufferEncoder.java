@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.nio.ByteBuffer;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Encoder which can encode an event into a buffer owned by the calling thread
+ * so the {@link SlingRollingFileAppender} can write it without a byte array per event
+ */
+public interface BufferEncoder {
+
+    /**
+     * Encodes the event into a buffer owned by the calling thread. The returned
+     * buffer must be consumed before the thread encodes the next event.
+     *
+     * @param event the event to encode
+     * @return a heap buffer with the encoded bytes between position and limit
+     */
+    @NotNull
+    ByteBuffer encodeToBuffer(@NotNull ILoggingEvent event);
+
+    /**
+     * Checks if the output for an event depends on the events encoded before. The
+     * events of such an encoder must be encoded and written while holding the lock
+     * of the stream so the output is in the order of encoding.
+     *
+     * @return true if the encoder is stateful
+     */
+    default boolean isStateful() {
+        return false;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Trie of logger categories split at the dots, used to find the most
+ * specific category configured for a logger in O(depth of the logger name)
+ *
+ * @param <T> the type of value associated with a category
+ */
+final class CategoryTrie<T> {
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Associates the value with the category
+     *
+     * @param category the category (logger name prefix)
+     * @param value the value to associate
+     */
+    void put(@NotNull String category, @NotNull T value) {
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            int dot = category.indexOf('.', start);
+            String segment = dot < 0 ? category.substring(start) : category.substring(start, dot);
+            node = node.children.computeIfAbsent(segment, s -> new Node<>());
+            if (dot < 0) {
+                break;
+            }
+            start = dot + 1;
+        }
+        node.value = value;
+    }
+
+    /**
+     * Finds the value of the longest category which either equals the name or
+     * is a prefix of it followed by a dot
+     *
+     * @param name the logger name to match
+     * @return the value of the best matching category or null if none matches
+     */
+    @Nullable
+    T findBestMatch(@NotNull String name) {
+        T result = null;
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            int dot = name.indexOf('.', start);
+            String segment = dot < 0 ? name.substring(start) : name.substring(start, dot);
+            node = node.children.get(segment);
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                result = node.value;
+            }
+            if (dot < 0) {
+                break;
+            }
+            start = dot + 1;
+        }
+        return result;
+    }
+
+    private static final class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private T value;
+    }
+}
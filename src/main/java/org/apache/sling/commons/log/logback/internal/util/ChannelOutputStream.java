@@ -0,0 +1,418 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.qos.logback.core.Context;
+import ch.qos.logback.core.recovery.RecoveryCoordinator;
+import ch.qos.logback.core.recovery.RecoveryListener;
+import ch.qos.logback.core.status.ErrorStatus;
+import ch.qos.logback.core.status.InfoStatus;
+import ch.qos.logback.core.status.Status;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * OutputStream collecting the written bytes in a direct buffer which is written to
+ * a {@link FileChannel} when full or flushed. Writes larger than the buffer are
+ * passed to the channel along with the buffered bytes in one gathering write.
+ * <p>
+ * Like the logback ResilientFileOutputStream the stream does not pass IO errors
+ * on, it reports them as status and reopens the file after a growing back-off.
+ * The bytes which could not be written stay buffered and are written on recovery,
+ * writes which do not fit into the buffer meanwhile are dropped.
+ * <p>
+ * With a preallocation size the file is extended by chunks of zero bytes ahead of
+ * the writes so the filesystem allocates the blocks in larger extents instead of
+ * block by block. The zero bytes past the written content are cut off when the
+ * stream is closed, the readers use {@link Util#logicalLength(FileChannel)} to skip
+ * them while the file is written.
+ */
+final class ChannelOutputStream extends OutputStream {
+    /**
+     * Default size of the buffer if the appender does not group the flushes
+     */
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Zero bytes written to preallocate the chunks, duplicated for each write
+     */
+    private static final ByteBuffer ZEROS =
+            ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE).asReadOnlyBuffer();
+
+    /**
+     * Limit of the failure statuses reported until the stream recovers
+     */
+    private static final int STATUS_COUNT_LIMIT = 8;
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final ByteBuffer[] gather = new ByteBuffer[2];
+    private final long preallocationSize;
+
+    /**
+     * End of the preallocated space, the position of the channel marks the end of the content
+     */
+    private long allocated;
+
+    private FileChannel channel;
+
+    private boolean closed;
+
+    private Context context;
+    private final List<RecoveryListener> recoveryListeners = new ArrayList<>(0);
+
+    /**
+     * Set while the stream is failing
+     */
+    private RecoveryCoordinator recoveryCoordinator;
+
+    private int statusCount;
+
+    /**
+     * Constructor
+     *
+     * @param file the file to write to
+     * @param append true to append to an existing file, false to truncate it
+     * @param bufferSize the size of the buffer in bytes
+     * @throws IOException if the file cannot be opened
+     */
+    ChannelOutputStream(@NotNull File file, boolean append, int bufferSize) throws IOException {
+        this(file, append, bufferSize, 0);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param file the file to write to
+     * @param append true to append to an existing file, false to truncate it
+     * @param bufferSize the size of the buffer in bytes
+     * @param preallocationSize the size of the chunks to preallocate in bytes, 0 to not preallocate
+     * @throws IOException if the file cannot be opened
+     */
+    ChannelOutputStream(@NotNull File file, boolean append, int bufferSize, long preallocationSize) throws IOException {
+        this.file = file;
+        this.preallocationSize = preallocationSize;
+        this.channel = open(append);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Sets the context the failures are reported to
+     *
+     * @param context the context
+     */
+    void setContext(@Nullable Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Registers a listener which is notified when writing starts to fail and when
+     * it works again
+     *
+     * @param listener the listener to add
+     */
+    void addRecoveryListener(@NotNull RecoveryListener listener) {
+        recoveryListeners.add(listener);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (isFailing()) {
+            keep(new byte[] {(byte) b}, 0, 1);
+            return;
+        }
+        try {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        } catch (IOException e) {
+            postIOFailure(e);
+            keep(new byte[] {(byte) b}, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (isFailing()) {
+            keep(b, off, len);
+            return;
+        }
+        if (len <= buffer.remaining()) {
+            buffer.put(b, off, len);
+        } else if (len < buffer.capacity()) {
+            // fill the buffer up so the channel always gets full buffers
+            int ahead = buffer.position();
+            int head = buffer.remaining();
+            buffer.put(b, off, head);
+            try {
+                drain();
+                buffer.put(b, off + head, len - head);
+            } catch (IOException e) {
+                postIOFailure(e);
+                if (ahead + head - buffer.position() <= ahead) {
+                    // none of the event got written, taken back so it is kept or dropped as a whole
+                    buffer.position(buffer.position() - head);
+                    keep(b, off, len);
+                } else {
+                    // the start of the event is in the file already
+                    keep(b, off + head, len - head);
+                }
+            }
+        } else {
+            // too large to be buffered, written along with the buffered bytes
+            buffer.flip();
+            ByteBuffer bytes = ByteBuffer.wrap(b, off, len);
+            gather[0] = buffer;
+            gather[1] = bytes;
+            try {
+                preallocate(buffer.remaining() + (long) len);
+                while (bytes.hasRemaining()) {
+                    channel.write(gather);
+                }
+            } catch (IOException e) {
+                postIOFailure(e);
+            } finally {
+                gather[1] = null;
+                buffer.compact();
+            }
+            if (bytes.hasRemaining()) {
+                keep(bytes.array(), bytes.position(), bytes.remaining());
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (isFailing()) {
+            return;
+        }
+        try {
+            drain();
+        } catch (IOException e) {
+            postIOFailure(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                drain();
+                if (preallocationSize > 0) {
+                    channel.truncate(channel.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Number of bytes written to the stream which were not yet written to the channel
+     */
+    int getBufferedCount() {
+        return buffer.position();
+    }
+
+    /**
+     * Length of the content of the file, including the bytes not yet written to the channel
+     *
+     * @throws IOException if the position of the channel cannot be read
+     */
+    long getContentLength() throws IOException {
+        return channel.position() + buffer.position();
+    }
+
+    /**
+     * The channel currently written to, replaced when the stream recovers
+     */
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * End of the preallocated space, equal to the file size
+     */
+    long getAllocatedLength() {
+        return allocated;
+    }
+
+    /**
+     * Writes the buffered bytes to the channel, the bytes which could not be written
+     * stay buffered
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        try {
+            preallocate(buffer.remaining());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    /**
+     * Buffers the bytes which could not be written if they fit, to not write a part
+     * of an event
+     */
+    private void keep(byte[] b, int off, int len) {
+        if (len <= buffer.remaining()) {
+            buffer.put(b, off, len);
+        }
+    }
+
+    /**
+     * Opens the channel positioned at the end of the content and sets the end of the
+     * preallocated space
+     */
+    private FileChannel open(boolean append) throws IOException {
+        if (preallocationSize <= 0) {
+            return append
+                    ? FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                    : FileChannel.open(
+                            file.toPath(),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        // positioned explicitly as appending would write behind the preallocated space,
+        // read to find the end of the content
+        FileChannel opened = FileChannel.open(
+                file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long length = append ? Util.logicalLength(opened) : 0;
+            opened.truncate(length);
+            opened.position(length);
+            allocated = length;
+            return opened;
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether the stream is failing, after the back-off the file is reopened
+     * and the buffered bytes are written
+     *
+     * @return true if the stream is still failing
+     */
+    private boolean isFailing() {
+        if (recoveryCoordinator == null) {
+            return false;
+        }
+        if (recoveryCoordinator.isTooSoon()) {
+            return true;
+        }
+        addStatusIfCountNotOverLimit(
+                new InfoStatus("Attempting to recover from IO failure on " + getDescription(), this));
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // reopened anyway
+        }
+        try {
+            channel = open(true);
+            drain();
+        } catch (IOException e) {
+            addStatusIfCountNotOverLimit(new ErrorStatus("Failed to recover " + getDescription(), this, e));
+            return true;
+        }
+        recoveryCoordinator = null;
+        statusCount = 0;
+        recoveryListeners.forEach(RecoveryListener::recoveryOccured);
+        addStatus(new InfoStatus("Recovered from IO failure on " + getDescription(), this));
+        return false;
+    }
+
+    private void postIOFailure(IOException e) {
+        addStatusIfCountNotOverLimit(new ErrorStatus("IO failure while writing to " + getDescription(), this, e));
+        if (recoveryCoordinator == null) {
+            recoveryCoordinator = new RecoveryCoordinator();
+            recoveryListeners.forEach(listener -> listener.newFailure(e));
+        }
+    }
+
+    private void addStatusIfCountNotOverLimit(Status status) {
+        statusCount++;
+        if (statusCount <= STATUS_COUNT_LIMIT) {
+            addStatus(status);
+        }
+        if (statusCount == STATUS_COUNT_LIMIT) {
+            addStatus(new InfoStatus("Will suppress future messages regarding " + getDescription(), this));
+        }
+    }
+
+    private void addStatus(Status status) {
+        Context ctx = context;
+        if (ctx != null) {
+            ctx.getStatusManager().add(status);
+        }
+    }
+
+    private String getDescription() {
+        return "file [" + file + "]";
+    }
+
+    /**
+     * Extends the file by chunks of zero bytes until the next write fits, the end is
+     * aligned to the chunk size. As Java has no fallocate the zero bytes are written,
+     * positional so the channel position stays at the end of the content.
+     */
+    private void preallocate(long length) throws IOException {
+        if (preallocationSize <= 0 || length == 0) {
+            return;
+        }
+        long end = channel.position() + length;
+        if (end <= allocated) {
+            return;
+        }
+        long chunkEnd = (end + preallocationSize - 1) / preallocationSize * preallocationSize;
+        ByteBuffer zeros = ZEROS.duplicate();
+        long pos = allocated;
+        while (pos < chunkEnd) {
+            zeros.clear();
+            zeros.limit((int) Math.min(zeros.capacity(), chunkEnd - pos));
+            pos += channel.write(zeros, pos);
+        }
+        allocated = chunkEnd;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
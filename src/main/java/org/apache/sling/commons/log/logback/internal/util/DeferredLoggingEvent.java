@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.temporal.TemporalAccessor;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Marker;
+import org.slf4j.event.KeyValuePair;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Snapshot of a logging event which can be handed over to another thread
+ * before the message is formatted.
+ * <p>
+ * Everything depending on the logging thread (thread name, MDC) is captured
+ * when the snapshot is taken. Arguments of well known immutable types are kept
+ * as they are, all other arguments are turned into their string representation
+ * right away as they might be changed once the logging call returned. The
+ * message itself is only formatted when first requested, usually by the
+ * layout on the writing thread. Caller data is not captured.
+ */
+final class DeferredLoggingEvent implements ILoggingEvent {
+    private final String threadName;
+    private final Level level;
+    private final String message;
+    private final Object[] argumentArray;
+    private final String loggerName;
+    private final LoggerContextVO loggerContextVO;
+    private final IThrowableProxy throwableProxy;
+    private final List<Marker> markerList;
+    private final Map<String, String> mdcPropertyMap;
+    private final Instant instant;
+    private final long sequenceNumber;
+    private final List<KeyValuePair> keyValuePairs;
+    private String formattedMessage;
+
+    private DeferredLoggingEvent(@NotNull ILoggingEvent event) {
+        this.threadName = event.getThreadName();
+        this.level = event.getLevel();
+        this.message = event.getMessage();
+        this.argumentArray = snapshotArguments(event.getArgumentArray());
+        this.loggerName = event.getLoggerName();
+        this.loggerContextVO = event.getLoggerContextVO();
+        this.throwableProxy = event.getThrowableProxy();
+        this.markerList = event.getMarkerList();
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        this.mdcPropertyMap = mdc == null || mdc.isEmpty() ? Collections.emptyMap() : new HashMap<>(mdc);
+        this.instant = event.getInstant();
+        this.sequenceNumber = event.getSequenceNumber();
+        this.keyValuePairs = event.getKeyValuePairs();
+    }
+
+    /**
+     * Takes the snapshot of the event. Must be called on the logging thread.
+     *
+     * @param event the event to capture
+     * @return the snapshot
+     */
+    static @NotNull ILoggingEvent snapshot(@NotNull ILoggingEvent event) {
+        if (event instanceof DeferredLoggingEvent) {
+            return event;
+        }
+        return new DeferredLoggingEvent(event);
+    }
+
+    private static Object[] snapshotArguments(Object[] arguments) {
+        if (arguments == null || arguments.length == 0) {
+            return arguments;
+        }
+        Object[] copy = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            Object arg = arguments[i];
+            if (arg == null || isImmutable(arg)) {
+                copy[i] = arg;
+            } else {
+                // same text the message formatter would produce, including arrays and failing toString
+                copy[i] = MessageFormatter.basicArrayFormat("{}", new Object[] {arg});
+            }
+        }
+        return copy;
+    }
+
+    static boolean isImmutable(@NotNull Object arg) {
+        return arg instanceof String
+                || arg instanceof Integer
+                || arg instanceof Long
+                || arg instanceof Boolean
+                || arg instanceof Double
+                || arg instanceof Float
+                || arg instanceof Short
+                || arg instanceof Byte
+                || arg instanceof Character
+                || arg instanceof BigInteger
+                || arg instanceof BigDecimal
+                || arg instanceof Enum
+                || arg instanceof UUID
+                || arg instanceof Class
+                || (arg instanceof TemporalAccessor && arg.getClass().getName().startsWith("java.time."));
+    }
+
+    @Override
+    public String getThreadName() {
+        return threadName;
+    }
+
+    @Override
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public Object[] getArgumentArray() {
+        return argumentArray;
+    }
+
+    @Override
+    public String getFormattedMessage() {
+        String result = formattedMessage;
+        if (result == null) {
+            result = argumentArray == null ? message : MessageFormatter.basicArrayFormat(message, argumentArray);
+            formattedMessage = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String getLoggerName() {
+        return loggerName;
+    }
+
+    @Override
+    public LoggerContextVO getLoggerContextVO() {
+        return loggerContextVO;
+    }
+
+    @Override
+    public IThrowableProxy getThrowableProxy() {
+        return throwableProxy;
+    }
+
+    @Override
+    public StackTraceElement[] getCallerData() {
+        return new StackTraceElement[0];
+    }
+
+    @Override
+    public boolean hasCallerData() {
+        return false;
+    }
+
+    @Override
+    public List<Marker> getMarkerList() {
+        return markerList;
+    }
+
+    @Override
+    public Map<String, String> getMDCPropertyMap() {
+        return mdcPropertyMap;
+    }
+
+    /**
+     * @deprecated replaced by {@link #getMDCPropertyMap()}
+     */
+    @Override
+    @Deprecated
+    public Map<String, String> getMdc() {
+        return mdcPropertyMap;
+    }
+
+    @Override
+    public long getTimeStamp() {
+        return instant.toEpochMilli();
+    }
+
+    @Override
+    public int getNanoseconds() {
+        return instant.getNano();
+    }
+
+    @Override
+    public Instant getInstant() {
+        return instant;
+    }
+
+    @Override
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    @Override
+    public List<KeyValuePair> getKeyValuePairs() {
+        return keyValuePairs;
+    }
+
+    @Override
+    public void prepareForDeferredProcessing() {
+        // already captured
+    }
+
+    @Override
+    public String toString() {
+        return "[" + level + "] " + getFormattedMessage();
+    }
+}
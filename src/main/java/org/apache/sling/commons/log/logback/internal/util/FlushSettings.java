@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import ch.qos.logback.classic.Level;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Settings for a {@link SlingRollingFileAppender} which does not flush each event
+ * but groups the writes of several events into one flush
+ *
+ * @param maxInterval max time in milliseconds written events stay unflushed, 0 to only
+ *      flush once {@code maxBytes} are pending
+ * @param maxBytes max number of bytes which are buffered before they are flushed
+ * @param flushLevel events with this or a higher level are flushed immediately
+ */
+public record FlushSettings(
+        long maxInterval, int maxBytes, @NotNull Level flushLevel) {
+    /**
+     * Default max time in milliseconds between flushes
+     */
+    public static final long DEFAULT_MAX_INTERVAL = 200;
+
+    /**
+     * Default max number of unflushed bytes
+     */
+    public static final int DEFAULT_MAX_BYTES = 256 * 1024;
+
+    /**
+     * Flushes at least every 200 ms or 256 KB and immediately for errors
+     */
+    public static final FlushSettings DEFAULT = new FlushSettings(DEFAULT_MAX_INTERVAL, DEFAULT_MAX_BYTES, Level.ERROR);
+
+    /**
+     * Constructor, invalid values are replaced by the defaults
+     */
+    public FlushSettings {
+        if (maxInterval < 0) {
+            maxInterval = DEFAULT_MAX_INTERVAL;
+        }
+        if (maxBytes < 1) {
+            maxBytes = DEFAULT_MAX_BYTES;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.core.encoder.EncoderBase;
+import org.apache.sling.commons.log.logback.internal.MaskingMessageUtil;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Marker;
+
+/**
+ * Encoder writing each event as one JSON object per line (JSON lines). The fields
+ * are written straight to UTF-8 bytes using precomputed key prefixes. The MDC and
+ * the throwable are written as nested objects. The message and the exception
+ * messages are masked the same way as done by the masking converters of the
+ * pattern layouts.
+ * <p>
+ * Example (without the line breaks):
+ * <pre>
+ * {"timestamp":"2024-01-01T10:00:00.000Z","level":"ERROR","thread":"main","logger":"org.example.Foo",
+ *  "message":"failed","mdc":{"user":"admin"},"throwable":{"class":"java.io.IOException",
+ *  "message":"boom","stack":["org.example.Foo.bar(Foo.java:10)"]}}
+ * </pre>
+ */
+public class JsonLinesEncoder extends EncoderBase<ILoggingEvent> implements BufferEncoder {
+    /**
+     * Buffers which grew beyond this size (in chars or bytes) are not kept
+     * for the next event of the thread
+     */
+    static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] KEY_TIMESTAMP = key("timestamp", true);
+    private static final byte[] KEY_LEVEL = key("level", false);
+    private static final byte[] KEY_THREAD = key("thread", false);
+    private static final byte[] KEY_LOGGER = key("logger", false);
+    private static final byte[] KEY_MESSAGE = key("message", false);
+    private static final byte[] KEY_MARKERS = key("markers", false);
+    private static final byte[] KEY_MDC = key("mdc", false);
+    private static final byte[] KEY_THROWABLE = key("throwable", false);
+    private static final byte[] KEY_CLASS = key("class", true);
+    private static final byte[] KEY_CYCLIC = key("cyclic", false);
+    private static final byte[] KEY_STACK = key("stack", false);
+    private static final byte[] KEY_COMMON_FRAMES = key("commonFrames", false);
+    private static final byte[] KEY_SUPPRESSED = key("suppressed", false);
+    private static final byte[] KEY_CAUSE = key("cause", false);
+
+    private static final DateTimeFormatter SECONDS_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    /**
+     * Outputs of the threads shared by all instances
+     */
+    private static final ThreadScratch<Output> OUTPUTS = new ThreadScratch<>(Output::new, Output::isRetainable);
+
+    /**
+     * Creates the prefix for a key as it is written before the value
+     */
+    private static byte[] key(String name, boolean first) {
+        Output out = new Output();
+        if (!first) {
+            out.write(',');
+        }
+        out.string(name);
+        out.write(':');
+        return Arrays.copyOf(out.bytes, out.size);
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return null;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        ByteBuffer bytes = encodeToBuffer(event);
+        return Arrays.copyOfRange(
+                bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.arrayOffset() + bytes.limit());
+    }
+
+    @Override
+    public @NotNull ByteBuffer encodeToBuffer(@NotNull ILoggingEvent event) {
+        Output out = OUTPUTS.acquire();
+        try {
+            return write(out, event);
+        } finally {
+            OUTPUTS.release(out);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!isStarted()) {
+            OUTPUTS.register();
+        }
+        super.start();
+    }
+
+    /**
+     * Also releases the per thread outputs once no encoder is started anymore
+     */
+    @Override
+    public void stop() {
+        if (isStarted()) {
+            OUTPUTS.unregister();
+        }
+        super.stop();
+    }
+
+    private static ByteBuffer write(Output out, ILoggingEvent event) {
+        out.size = 0;
+
+        out.write('{');
+        out.write(KEY_TIMESTAMP);
+        out.timestamp(event.getTimeStamp());
+        out.write(KEY_LEVEL);
+        out.string(event.getLevel().toString());
+        out.write(KEY_THREAD);
+        out.string(event.getThreadName());
+        out.write(KEY_LOGGER);
+        out.string(event.getLoggerName());
+        out.write(KEY_MESSAGE);
+        out.maskedString(event.getFormattedMessage());
+
+        List<Marker> markers = event.getMarkerList();
+        if (markers != null && !markers.isEmpty()) {
+            out.write(KEY_MARKERS);
+            out.write('[');
+            for (int i = 0; i < markers.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.string(markers.get(i).getName());
+            }
+            out.write(']');
+        }
+
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        if (mdc != null && !mdc.isEmpty()) {
+            out.write(KEY_MDC);
+            out.write('{');
+            boolean first = true;
+            for (Map.Entry<String, String> entry : mdc.entrySet()) {
+                if (!first) {
+                    out.write(',');
+                }
+                first = false;
+                out.string(entry.getKey());
+                out.write(':');
+                out.string(entry.getValue());
+            }
+            out.write('}');
+        }
+
+        IThrowableProxy tp = event.getThrowableProxy();
+        if (tp != null) {
+            out.write(KEY_THROWABLE);
+            out.throwable(tp);
+        }
+        out.write('}');
+        out.write('\n');
+
+        return out.toBuffer();
+    }
+
+    /**
+     * Growable per thread byte buffer with the JSON writing primitives
+     */
+    private static final class Output {
+        private byte[] bytes = new byte[INITIAL_BUFFER_SIZE];
+        private int size;
+        private ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        private final StringBuilder text = new StringBuilder();
+        private long cachedSecond = Long.MIN_VALUE;
+        private final byte[] cachedSecondBytes = new byte[19];
+
+        boolean isRetainable() {
+            return bytes.length <= MAX_RETAINED_BUFFER_SIZE && text.capacity() <= MAX_RETAINED_BUFFER_SIZE;
+        }
+
+        ByteBuffer toBuffer() {
+            if (buffer.array() != bytes) {
+                buffer = ByteBuffer.wrap(bytes);
+            }
+            buffer.clear().limit(size);
+            return buffer;
+        }
+
+        private void ensure(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + additional, bytes.length * 2));
+            }
+        }
+
+        void write(int b) {
+            ensure(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+
+        void timestamp(long millis) {
+            long second = Math.floorDiv(millis, 1000L);
+            if (second != cachedSecond) {
+                String formatted = SECONDS_FORMAT.format(LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC));
+                for (int i = 0; i < cachedSecondBytes.length; i++) {
+                    cachedSecondBytes[i] = (byte) formatted.charAt(i);
+                }
+                cachedSecond = second;
+            }
+            int fraction = (int) Math.floorMod(millis, 1000L);
+            ensure(cachedSecondBytes.length + 7);
+            bytes[size++] = '"';
+            System.arraycopy(cachedSecondBytes, 0, bytes, size, cachedSecondBytes.length);
+            size += cachedSecondBytes.length;
+            bytes[size++] = '.';
+            bytes[size++] = (byte) ('0' + fraction / 100);
+            bytes[size++] = (byte) ('0' + fraction / 10 % 10);
+            bytes[size++] = (byte) ('0' + fraction % 10);
+            bytes[size++] = 'Z';
+            bytes[size++] = '"';
+        }
+
+        void number(int value) {
+            text.setLength(0);
+            text.append(value);
+            ensure(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                bytes[size++] = (byte) text.charAt(i);
+            }
+        }
+
+        /**
+         * Write the message as JSON string after applying the masking rules
+         */
+        void maskedString(String value) {
+            if (value == null) {
+                nullValue();
+                return;
+            }
+            text.setLength(0);
+            MaskingMessageUtil.appendMasked(text, value);
+            string(text, 0, text.length());
+        }
+
+        void string(String value) {
+            if (value == null) {
+                nullValue();
+            } else {
+                string(value, 0, value.length());
+            }
+        }
+
+        private void nullValue() {
+            write('n');
+            write('u');
+            write('l');
+            write('l');
+        }
+
+        void string(CharSequence value, int start, int end) {
+            // worst case is 6 bytes for an escaped control character
+            ensure((end - start) * 6 + 2);
+            byte[] b = bytes;
+            int pos = size;
+            b[pos++] = '"';
+            for (int i = start; i < end; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    if (c >= 0x20 && c != '"' && c != '\\') {
+                        b[pos++] = (byte) c;
+                    } else {
+                        pos = escape(b, pos, c);
+                    }
+                } else if (c < 0x800) {
+                    b[pos++] = (byte) (0xc0 | (c >> 6));
+                    b[pos++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c)
+                        && i + 1 < end
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, value.charAt(++i));
+                    b[pos++] = (byte) (0xf0 | (cp >> 18));
+                    b[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    b[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    b[pos++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    // unpaired surrogate, same replacement as String#getBytes
+                    b[pos++] = '?';
+                } else {
+                    b[pos++] = (byte) (0xe0 | (c >> 12));
+                    b[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    b[pos++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            b[pos++] = '"';
+            size = pos;
+        }
+
+        private static int escape(byte[] b, int pos, char c) {
+            b[pos++] = '\\';
+            switch (c) {
+                case '"':
+                case '\\':
+                    b[pos++] = (byte) c;
+                    break;
+                case '\n':
+                    b[pos++] = 'n';
+                    break;
+                case '\r':
+                    b[pos++] = 'r';
+                    break;
+                case '\t':
+                    b[pos++] = 't';
+                    break;
+                case '\b':
+                    b[pos++] = 'b';
+                    break;
+                case '\f':
+                    b[pos++] = 'f';
+                    break;
+                default:
+                    b[pos++] = 'u';
+                    b[pos++] = '0';
+                    b[pos++] = '0';
+                    b[pos++] = HEX[c >> 4];
+                    b[pos++] = HEX[c & 0xf];
+            }
+            return pos;
+        }
+
+        void throwable(IThrowableProxy tp) {
+            write('{');
+            write(KEY_CLASS);
+            string(tp.getClassName());
+            write(KEY_MESSAGE);
+            String overridingMessage = tp.getOverridingMessage();
+            maskedString(overridingMessage != null ? overridingMessage : tp.getMessage());
+            if (tp.isCyclic()) {
+                // the throwable was already written as cause or suppressed one
+                write(KEY_CYCLIC);
+                write(TRUE);
+                write('}');
+                return;
+            }
+
+            StackTraceElementProxy[] steps = tp.getStackTraceElementProxyArray();
+            int commonFrames = tp.getCommonFrames();
+            write(KEY_STACK);
+            write('[');
+            if (steps != null) {
+                int count = Math.max(0, steps.length - commonFrames);
+                for (int i = 0; i < count; i++) {
+                    if (i > 0) {
+                        write(',');
+                    }
+                    String ste = steps[i].getSTEAsString();
+                    // skip the "at " prefix
+                    int start = ste.startsWith("at ") ? 3 : 0;
+                    string(ste, start, ste.length());
+                }
+            }
+            write(']');
+            if (commonFrames > 0) {
+                write(KEY_COMMON_FRAMES);
+                number(commonFrames);
+            }
+
+            IThrowableProxy[] suppressed = tp.getSuppressed();
+            if (suppressed != null && suppressed.length > 0) {
+                write(KEY_SUPPRESSED);
+                write('[');
+                for (int i = 0; i < suppressed.length; i++) {
+                    if (i > 0) {
+                        write(',');
+                    }
+                    throwable(suppressed[i]);
+                }
+                write(']');
+            }
+
+            IThrowableProxy cause = tp.getCause();
+            if (cause != null) {
+                write(KEY_CAUSE);
+                throwable(cause);
+            }
+            write('}');
+        }
+    }
+}
@@ -18,8 +18,18 @@
  */
 package org.apache.sling.commons.log.logback.internal.util;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import ch.qos.logback.classic.LoggerContext;
@@ -33,9 +43,29 @@ import org.slf4j.LoggerFactory;
 /**
  * Pattern layout encoder for specific loggers
  */
-public class LoggerSpecificEncoder extends PatternLayoutEncoderBase<ILoggingEvent> {
+public class LoggerSpecificEncoder extends PatternLayoutEncoderBase<ILoggingEvent> implements BufferEncoder {
+    /**
+     * Max number of logger names for which the resolved layout is cached
+     */
+    static final int MAX_CACHED_LOGGERS = 10000;
+
+    /**
+     * Buffers which grew beyond this size (in chars or bytes) are not kept
+     * for the next event of the thread
+     */
+    static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    /**
+     * Buffers of the threads shared by all instances
+     */
+    private static final ThreadScratch<EncodingBuffers> BUFFERS =
+            new ThreadScratch<>(EncodingBuffers::new, EncodingBuffers::isRetainable);
+
     private Map<String, Layout<ILoggingEvent>> layoutByCategory = new ConcurrentHashMap<>();
     private final Layout<ILoggingEvent> defaultLayout;
+    private volatile LayoutResolver resolver;
 
     /**
      * Constructor
@@ -44,6 +74,7 @@ public class LoggerSpecificEncoder extends PatternLayoutEncoderBase<ILoggingEven
      */
     public LoggerSpecificEncoder(Layout<ILoggingEvent> defaultLayout) {
         this.defaultLayout = defaultLayout;
+        this.resolver = new LayoutResolver(layoutByCategory, defaultLayout);
     }
 
     /**
@@ -53,58 +84,82 @@ public class LoggerSpecificEncoder extends PatternLayoutEncoderBase<ILoggingEven
      */
     @Override
     public byte[] encode(ILoggingEvent event) {
-        String txt = getLayout(event.getLoggerName()).doLayout(event);
-        return convertToBytes(txt);
+        ByteBuffer bytes = encodeToBuffer(event);
+        return Arrays.copyOfRange(
+                bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.arrayOffset() + bytes.limit());
     }
 
     /**
-     * Get layout for the supplied logger
+     * Encodes the text for the event into a buffer owned by the calling thread. The
+     * event is rendered and encoded without creating an intermediate string or byte
+     * array so the returned buffer must be consumed before the thread encodes the
+     * next event.
      *
-     * @param loggerName the name of the logger to match
-     * @return the found layout or the default layout if not found
+     * @param event the event to encode
+     * @return a heap buffer with the encoded bytes between position and limit
      */
-    private @NotNull Layout<ILoggingEvent> getLayout(@NotNull String loggerName) {
-        String bestMatchLayoutKey = getBestMatchLayoutKey(loggerName);
-        return layoutByCategory.getOrDefault(bestMatchLayoutKey, defaultLayout);
+    @Override
+    public @NotNull ByteBuffer encodeToBuffer(@NotNull ILoggingEvent event) {
+        EncodingBuffers b = BUFFERS.acquire();
+        try {
+            StringBuilder text = b.text;
+            text.setLength(0);
+            Layout<ILoggingEvent> layout = getLayout(event.getLoggerName());
+            if (layout instanceof SlingPatternLayout) {
+                ((SlingPatternLayout) layout).doLayout(event, text);
+            } else {
+                text.append(layout.doLayout(event));
+            }
+            return b.encode(charset());
+        } finally {
+            BUFFERS.release(b);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!isStarted()) {
+            BUFFERS.register();
+        }
+        super.start();
+    }
+
+    /**
+     * Also releases the per thread buffers once no encoder is started anymore
+     */
+    @Override
+    public void stop() {
+        if (isStarted()) {
+            BUFFERS.unregister();
+        }
+        super.stop();
+    }
+
+    private @NotNull Charset charset() {
+        Charset charset = getCharset();
+        return charset == null ? Charset.defaultCharset() : charset;
     }
 
     /**
-     * Get the best match layout for the supplied logger
+     * Get layout for the supplied logger
      *
      * @param loggerName the name of the logger to match
-     * @return the key for the best match or the original loggerName if not found
+     * @return the found layout or the default layout if not found
      */
-    private @NotNull String getBestMatchLayoutKey(@NotNull String loggerName) {
-        if (layoutByCategory.containsKey(loggerName)) {
-            // fastpath for exact name match
-            return loggerName;
-        }
-        String bestMatch = loggerName;
-        int bestMatchLength = 0;
-        for (String layoutKey : layoutByCategory.keySet()) {
-            if (loggerName.startsWith(layoutKey)
-                    && loggerName.charAt(layoutKey.length()) == '.'
-                    && layoutKey.length() > bestMatchLength) {
-                bestMatch = layoutKey;
-                bestMatchLength = layoutKey.length();
-            }
-        }
-        return bestMatch;
+    private @NotNull Layout<ILoggingEvent> getLayout(@NotNull String loggerName) {
+        return resolver.resolve(loggerName);
     }
 
     /**
-     * Covert the string to bytes using the current charset
+     * Get all the layouts used by this encoder
      *
-     * @param s the string to convert
-     * @return the string as bytes
+     * @return the default layout followed by the logger specific ones
      */
-    private byte[] convertToBytes(String s) {
-        Charset charset = getCharset();
-        if (charset == null) {
-            return s.getBytes();
-        } else {
-            return s.getBytes(charset);
-        }
+    public @NotNull Collection<Layout<ILoggingEvent>> getLayouts() {
+        Set<Layout<ILoggingEvent>> layouts = new LinkedHashSet<>();
+        layouts.add(defaultLayout);
+        layouts.addAll(layoutByCategory.values());
+        return layouts;
     }
 
     /**
@@ -116,8 +171,100 @@ public class LoggerSpecificEncoder extends PatternLayoutEncoderBase<ILoggingEven
     public void addLogConfig(LogConfig config) {
         LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
         Layout<ILoggingEvent> layout = config.createLayout(loggerContext);
-        for (String category : config.getCategories()) {
-            layoutByCategory.put(category, layout);
+        synchronized (this) {
+            for (String category : config.getCategories()) {
+                layoutByCategory.put(category, layout);
+            }
+            // the resolver comes with its own cache which is dropped with it
+            resolver = new LayoutResolver(layoutByCategory, defaultLayout);
+        }
+    }
+
+    /**
+     * Immutable lookup of the layout for a logger name backed by a trie
+     * of the configured categories and a bounded cache of resolved names
+     */
+    private static final class LayoutResolver {
+        private final CategoryTrie<Layout<ILoggingEvent>> trie = new CategoryTrie<>();
+        private final Map<String, Layout<ILoggingEvent>> cache = new ConcurrentHashMap<>();
+        private final Layout<ILoggingEvent> defaultLayout;
+
+        LayoutResolver(Map<String, Layout<ILoggingEvent>> layoutByCategory, Layout<ILoggingEvent> defaultLayout) {
+            this.defaultLayout = defaultLayout;
+            layoutByCategory.forEach(trie::put);
+        }
+
+        Layout<ILoggingEvent> resolve(String loggerName) {
+            Layout<ILoggingEvent> layout = cache.get(loggerName);
+            if (layout == null) {
+                layout = trie.findBestMatch(loggerName);
+                if (layout == null) {
+                    layout = defaultLayout;
+                }
+                if (layout != null) {
+                    if (cache.size() >= MAX_CACHED_LOGGERS) {
+                        // logger names are usually a bounded set, start over if not
+                        cache.clear();
+                    }
+                    cache.put(loggerName, layout);
+                }
+            }
+            return layout;
+        }
+    }
+
+    /**
+     * Per thread buffers used to turn the rendered text into bytes
+     */
+    private static final class EncodingBuffers {
+        private final StringBuilder text = new StringBuilder(INITIAL_BUFFER_SIZE);
+        private char[] chars = new char[INITIAL_BUFFER_SIZE];
+        private CharBuffer charBuffer = CharBuffer.wrap(chars);
+        private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        private CharsetEncoder encoder;
+
+        boolean isRetainable() {
+            return text.capacity() <= MAX_RETAINED_BUFFER_SIZE
+                    && chars.length <= MAX_RETAINED_BUFFER_SIZE
+                    && bytes.capacity() <= MAX_RETAINED_BUFFER_SIZE;
+        }
+
+        ByteBuffer encode(Charset charset) {
+            int length = text.length();
+            if (chars.length < length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+                charBuffer = CharBuffer.wrap(chars);
+            }
+            text.getChars(0, length, chars, 0);
+            charBuffer.clear().limit(length);
+
+            if (encoder == null || !encoder.charset().equals(charset)) {
+                // same replacement behavior as String#getBytes
+                encoder = charset.newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            encoder.reset();
+            int estimate = (int) Math.ceil(length * (double) encoder.maxBytesPerChar());
+            if (bytes.capacity() < estimate) {
+                bytes = ByteBuffer.allocate(estimate);
+            }
+            bytes.clear();
+            try {
+                CoderResult result = encoder.encode(charBuffer, bytes, true);
+                if (!result.isUnderflow()) {
+                    result.throwException();
+                }
+                result = encoder.flush(bytes);
+                if (!result.isUnderflow()) {
+                    result.throwException();
+                }
+            } catch (CharacterCodingException e) {
+                // cannot happen with a buffer sized for the worst case and replacement enabled
+                throw new IllegalStateException(e);
+            }
+            bytes.flip();
+            return bytes;
         }
     }
 }
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.util.zip.Deflater;
+
+/**
+ * Settings for the rotation of the files of a log writer
+ *
+ * @param compressionLevel the gzip compression level from 1 to 9 of the rotated files,
+ *      0 to keep them uncompressed
+ * @param async true to only rename the active file on the logging thread and to shift
+ *      the files rotated by size on a background thread
+ * @param maxFileSize the max size in bytes of a file rotated by date, 0 for no limit
+ * @param totalSizeCap the max total size in bytes of the files rotated by date, 0 for no limit
+ */
+public record RolloverSettings(int compressionLevel, boolean async, long maxFileSize, long totalSizeCap) {
+    /**
+     * Keeps the rotated files uncompressed and shifts them on the logging thread
+     */
+    public static final RolloverSettings DEFAULT = new RolloverSettings(0, false);
+
+    /**
+     * Constructor, the compression level is limited to the valid range and
+     * negative sizes mean no limit
+     */
+    public RolloverSettings {
+        compressionLevel = Math.max(0, Math.min(compressionLevel, Deflater.BEST_COMPRESSION));
+        maxFileSize = Math.max(0, maxFileSize);
+        totalSizeCap = Math.max(0, totalSizeCap);
+    }
+
+    /**
+     * Constructor without size limits for the files rotated by date
+     *
+     * @param compressionLevel the gzip compression level from 1 to 9 of the rotated files,
+     *      0 to keep them uncompressed
+     * @param async true to shift the files rotated by size on a background thread
+     */
+    public RolloverSettings(int compressionLevel, boolean async) {
+        this(compressionLevel, async, 0, 0);
+    }
+
+    /**
+     * Checks if the rotation by size needs a background thread
+     *
+     * @return true if the rotated files are compressed or shifted asynchronously
+     */
+    public boolean isBackground() {
+        return compressionLevel > 0 || async;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * State of a {@link SlingRollingFileAppender} which sheds its events while the
+ * file cannot be written, see {@link SheddingSettings}. Holds the spill buffer
+ * with the encoded events kept until the file can be written again.
+ */
+final class SheddingGuard {
+    private final SheddingSettings settings;
+    private final Deque<byte[]> spill = new ArrayDeque<>();
+    private volatile boolean shedding;
+    private int spilledBytes;
+    private long since;
+    private long nextProbe;
+    private String cause;
+    private long shedCount;
+    private long overflowCount;
+    private long degradationCount;
+
+    SheddingGuard(@NotNull SheddingSettings settings) {
+        this.settings = settings;
+    }
+
+    @NotNull
+    SheddingSettings getSettings() {
+        return settings;
+    }
+
+    boolean isShedding() {
+        return shedding;
+    }
+
+    /**
+     * Starts shedding the events after a failed or slow write. The next attempt to
+     * write the file is made after the probe interval.
+     *
+     * @param cause the reason
+     * @param now the current time in milliseconds
+     * @return true if the file was written until now
+     */
+    synchronized boolean degrade(@NotNull String cause, long now) {
+        this.cause = cause;
+        this.nextProbe = now + settings.probeInterval();
+        if (shedding) {
+            return false;
+        }
+        shedding = true;
+        since = now;
+        degradationCount++;
+        return true;
+    }
+
+    /**
+     * Checks if the caller may write to the file. While shedding this is true for
+     * a single caller per probe interval which tries if the file can be written again.
+     *
+     * @param now the current time in milliseconds
+     * @return true if the caller may write to the file
+     */
+    synchronized boolean tryWrite(long now) {
+        if (!shedding) {
+            return true;
+        }
+        if (now < nextProbe) {
+            return false;
+        }
+        nextProbe = now + settings.probeInterval();
+        return true;
+    }
+
+    /**
+     * Keeps the encoded event until the file can be written again
+     *
+     * @param bytes the encoded event
+     * @return false if the shedding ended meanwhile and the caller should write the event
+     */
+    synchronized boolean spill(@NotNull byte[] bytes) {
+        if (!shedding) {
+            return false;
+        }
+        if (spilledBytes + (long) bytes.length > settings.spillSize()) {
+            overflowCount++;
+        } else {
+            spill.addLast(bytes);
+            spilledBytes += bytes.length;
+        }
+        return true;
+    }
+
+    /**
+     * Counts an event which was dropped while shedding
+     */
+    synchronized void shed() {
+        shedCount++;
+    }
+
+    synchronized @Nullable byte[] pollSpilled() {
+        byte[] bytes = spill.pollFirst();
+        if (bytes != null) {
+            spilledBytes -= bytes.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Puts back an event which could not be written
+     *
+     * @param bytes the encoded event taken by {@link #pollSpilled()}
+     */
+    synchronized void requeue(@NotNull byte[] bytes) {
+        spill.addFirst(bytes);
+        spilledBytes += bytes.length;
+    }
+
+    /**
+     * Ends the shedding if all spilled events were written
+     *
+     * @return false if events were spilled meanwhile which need to be written first
+     */
+    synchronized boolean recover() {
+        if (!spill.isEmpty()) {
+            return false;
+        }
+        shedding = false;
+        cause = null;
+        return true;
+    }
+
+    synchronized long getSince() {
+        return since;
+    }
+
+    synchronized @Nullable String getCause() {
+        return cause;
+    }
+
+    /**
+     * Number of events dropped as their level was below the spill level
+     */
+    synchronized long getShedCount() {
+        return shedCount;
+    }
+
+    /**
+     * Number of events dropped as the spill buffer was full
+     */
+    synchronized long getOverflowCount() {
+        return overflowCount;
+    }
+
+    /**
+     * Number of times the appender started shedding
+     */
+    synchronized long getDegradationCount() {
+        return degradationCount;
+    }
+
+    synchronized int getSpilledCount() {
+        return spill.size();
+    }
+
+    synchronized int getSpilledBytes() {
+        return spilledBytes;
+    }
+}
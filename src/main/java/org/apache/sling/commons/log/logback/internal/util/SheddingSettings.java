@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import ch.qos.logback.classic.Level;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Settings for a {@link SlingRollingFileAppender} which stops writing to its file
+ * for a while once a write failed or took too long, e.g. as the disk is full or
+ * stalls. The events are shed meanwhile, except those with the spill level or a
+ * higher level which are kept in memory until the file can be written again.
+ *
+ * @param maxLatency max time in milliseconds a write may take before the appender
+ *      starts shedding, 0 to only shed after failed writes
+ * @param spillLevel events with this or a higher level are kept in the spill buffer
+ *      instead of being shed
+ * @param spillSize max number of bytes of the encoded events kept in the spill buffer,
+ *      0 to shed all events
+ * @param probeInterval time in milliseconds between the attempts to write to the file again
+ */
+public record SheddingSettings(long maxLatency, @NotNull Level spillLevel, int spillSize, long probeInterval) {
+    /**
+     * Default max time in milliseconds of a write
+     */
+    public static final long DEFAULT_MAX_LATENCY = 1000;
+
+    /**
+     * Default max number of bytes in the spill buffer
+     */
+    public static final int DEFAULT_SPILL_SIZE = 1024 * 1024;
+
+    /**
+     * Default time in milliseconds between the attempts to write to the file again
+     */
+    public static final long DEFAULT_PROBE_INTERVAL = 5000;
+
+    /**
+     * Sheds after failures or writes taking more than a second, keeps up to 1 MB of
+     * warnings and errors and tries to write again every 5 seconds
+     */
+    public static final SheddingSettings DEFAULT =
+            new SheddingSettings(DEFAULT_MAX_LATENCY, Level.WARN, DEFAULT_SPILL_SIZE, DEFAULT_PROBE_INTERVAL);
+
+    /**
+     * Constructor, invalid values are replaced by the defaults
+     */
+    public SheddingSettings {
+        if (maxLatency < 0) {
+            maxLatency = DEFAULT_MAX_LATENCY;
+        }
+        if (spillSize < 0) {
+            spillSize = DEFAULT_SPILL_SIZE;
+        }
+        if (probeInterval < 1) {
+            probeInterval = DEFAULT_PROBE_INTERVAL;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.pattern.Converter;
+import ch.qos.logback.core.pattern.PostCompileProcessor;
+import org.apache.sling.commons.log.logback.internal.MaskingMessageUtil.MaskingConverter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Pattern layout which can render an event into a supplied buffer so the
+ * {@link LoggerSpecificEncoder} does not need an intermediate string per event
+ */
+public class SlingPatternLayout extends PatternLayout {
+    private Converter<ILoggingEvent> converters;
+
+    @Override
+    public void start() {
+        // the head of the converter chain is not accessible to sub classes, hence
+        // it is captured while the pattern gets compiled
+        final PostCompileProcessor<ILoggingEvent> delegate = postCompileProcessor;
+        postCompileProcessor = (context, head) -> {
+            converters = head;
+            if (delegate != null) {
+                delegate.process(context, head);
+            }
+        };
+        try {
+            super.start();
+        } finally {
+            postCompileProcessor = delegate;
+        }
+    }
+
+    /**
+     * Renders the event into the supplied buffer
+     *
+     * @param event the event to render
+     * @param buffer the buffer to append to
+     */
+    public void doLayout(@NotNull ILoggingEvent event, @NotNull StringBuilder buffer) {
+        if (!isStarted()) {
+            return;
+        }
+        Converter<ILoggingEvent> c = converters;
+        while (c != null) {
+            if (c instanceof MaskingConverter && ((MaskingConverter) c).isAppendable()) {
+                ((MaskingConverter) c).appendTo(buffer, event);
+            } else {
+                c.write(buffer, event);
+            }
+            c = c.getNext();
+        }
+    }
+}
@@ -18,9 +18,27 @@
  */
 package org.apache.sling.commons.log.logback.internal.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.recovery.RecoveryListener;
+import ch.qos.logback.core.recovery.ResilientOutputStreamBase;
+import ch.qos.logback.core.rolling.LengthCounter;
 import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.rolling.TriggeringPolicy;
+import ch.qos.logback.core.util.FileSize;
+import ch.qos.logback.core.util.FileUtil;
 import org.apache.sling.commons.log.logback.internal.LogWriter;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -32,6 +50,41 @@ import org.jetbrains.annotations.Nullable;
 @SuppressWarnings("java:S110")
 public class SlingRollingFileAppender<E> extends RollingFileAppender<E> {
     private LogWriter logWriter;
+    private final List<Runnable> appendListeners = new CopyOnWriteArrayList<>();
+    private boolean async;
+    private AsyncSettings asyncSettings = AsyncSettings.DEFAULT;
+    private AsyncWriterPool writerPool;
+    private volatile AsyncEventWriter<E> asyncWriter;
+    private FlushSettings flushSettings;
+    private ScheduledFuture<?> flushTask;
+    private boolean channelOutput;
+    private long preallocationSize;
+    private boolean flushAfterBatch;
+    private SheddingSettings sheddingSettings;
+    private volatile SheddingGuard sheddingGuard;
+
+    /**
+     * True while the output stream failed to write, set by the recovery listener of the
+     * default and the channel stream and by the write failures of the other streams
+     */
+    private volatile boolean outputFailed;
+
+    private final RecoveryListener recoveryListener = new RecoveryListener() {
+        @Override
+        public void newFailure(IOException e) {
+            outputFailed = true;
+        }
+
+        @Override
+        public void recoveryOccured() {
+            outputFailed = false;
+        }
+    };
+
+    /**
+     * True if bytes were written since the last flush, guarded by the streamWriteLock
+     */
+    private boolean unflushed;
 
     /**
      * Get the LogWriter config associated with this appender
@@ -50,4 +103,600 @@ public class SlingRollingFileAppender<E> extends RollingFileAppender<E> {
     public void setLogWriter(@Nullable LogWriter logWriter) {
         this.logWriter = logWriter;
     }
+
+    /**
+     * Registers a listener which is notified after an event was written to the file.
+     * The listener is called on the logging thread so it must return quickly.
+     *
+     * @param listener the listener to add
+     */
+    public void addAppendListener(@NotNull Runnable listener) {
+        appendListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener registered via {@link #addAppendListener(Runnable)}
+     *
+     * @param listener the listener to remove
+     */
+    public void removeAppendListener(@NotNull Runnable listener) {
+        appendListeners.remove(listener);
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * Enables writing the events on a separate thread. The logging threads only
+     * take a snapshot of the event (see {@link DeferredLoggingEvent}) while the
+     * message is formatted, masked and written by the writer thread. Caller data
+     * is not available for the layouts in this mode. Must be set before the
+     * appender is started.
+     *
+     * @param async true to write the events on a separate thread
+     */
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    public @NotNull AsyncSettings getAsyncSettings() {
+        return asyncSettings;
+    }
+
+    /**
+     * Sets the queue size and the policies applied while the queue is (nearly) full
+     * for the asynchronous mode. Must be set before the appender is started.
+     *
+     * @param asyncSettings the settings
+     */
+    public void setAsyncSettings(@NotNull AsyncSettings asyncSettings) {
+        this.asyncSettings = asyncSettings;
+    }
+
+    public @Nullable AsyncWriterPool getWriterPool() {
+        return writerPool;
+    }
+
+    /**
+     * Sets the pool whose worker threads write the events in the asynchronous mode,
+     * shared with other appenders. Without a pool the appender starts a dedicated
+     * writer thread. Must be set before the appender is started.
+     *
+     * @param writerPool the pool or null
+     */
+    public void setWriterPool(@Nullable AsyncWriterPool writerPool) {
+        this.writerPool = writerPool;
+    }
+
+    /**
+     * Number of events which are waiting to be written by the writer thread
+     *
+     * @return the number of queued events, 0 if the appender is not asynchronous
+     */
+    public int getQueuedCount() {
+        AsyncEventWriter<E> writer = asyncWriter;
+        return writer == null ? 0 : writer.getQueuedCount();
+    }
+
+    /**
+     * Number of events written by the writer thread since the appender was started
+     *
+     * @return the number of written events, 0 if the appender is not asynchronous
+     */
+    public long getWrittenCount() {
+        AsyncEventWriter<E> writer = asyncWriter;
+        return writer == null ? 0 : writer.getWrittenCount();
+    }
+
+    /**
+     * Number of events discarded since the appender was started as their level was
+     * below the discard level while the queue was nearly full
+     *
+     * @return the number of discarded events
+     */
+    public long getDiscardedCount() {
+        AsyncEventWriter<E> writer = asyncWriter;
+        return writer == null ? 0 : writer.getDiscardedCount();
+    }
+
+    /**
+     * Number of events dropped since the appender was started as the queue was full
+     * in the never block mode
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedCount() {
+        AsyncEventWriter<E> writer = asyncWriter;
+        return writer == null ? 0 : writer.getDroppedCount();
+    }
+
+    public @Nullable FlushSettings getFlushSettings() {
+        return flushSettings;
+    }
+
+    /**
+     * Enables grouping the writes of several events into one flush. The output is
+     * flushed once the buffered bytes or the time since the first unflushed write
+     * exceed the limits of the settings and immediately for events with the flush
+     * level. Must be set before the appender is started.
+     *
+     * @param flushSettings the settings or null to keep the immediate flush setting
+     */
+    public void setFlushSettings(@Nullable FlushSettings flushSettings) {
+        this.flushSettings = flushSettings;
+    }
+
+    public boolean isChannelOutput() {
+        return channelOutput;
+    }
+
+    /**
+     * Enables writing the file through a {@link FileChannel} from a large direct
+     * buffer instead of the logback output stream. Along with the asynchronous mode
+     * the output is flushed after each batch of events taken from the queue instead
+     * of after each event. Not used in prudent mode. Must be set before the appender
+     * is started.
+     *
+     * @param channelOutput true to write through a file channel
+     */
+    public void setChannelOutput(boolean channelOutput) {
+        this.channelOutput = channelOutput;
+    }
+
+    public long getPreallocationSize() {
+        return preallocationSize;
+    }
+
+    /**
+     * Extends the file written through the {@link #setChannelOutput(boolean) channel}
+     * by chunks of zero bytes ahead of the writes, cut off when the file is closed.
+     * Space left behind by a previous run is cut off when the file is opened.
+     * Only for text formats as the readers take the zero bytes at the end of the file
+     * as preallocated space. Must be set before the appender is started.
+     *
+     * @param preallocationSize the size of the chunks in bytes, 0 to not preallocate
+     */
+    public void setPreallocationSize(long preallocationSize) {
+        this.preallocationSize = preallocationSize;
+    }
+
+    public @Nullable SheddingSettings getSheddingSettings() {
+        return sheddingSettings;
+    }
+
+    /**
+     * Enables shedding the events for a while once a write failed or took too long,
+     * e.g. as the disk is full or stalls. Events with the spill level or above are
+     * kept in a bounded buffer meanwhile and written once the file can be written
+     * again, the others are dropped. Stateful encoders like the binary format do not
+     * spill as the records following a dropped one would be corrupt. Must be set
+     * before the appender is started.
+     *
+     * @param sheddingSettings the settings or null to always write to the file
+     */
+    public void setSheddingSettings(@Nullable SheddingSettings sheddingSettings) {
+        this.sheddingSettings = sheddingSettings;
+    }
+
+    /**
+     * Checks if the events are shed at the moment as the file could not be written
+     *
+     * @return true while shedding
+     */
+    public boolean isShedding() {
+        SheddingGuard guard = sheddingGuard;
+        return guard != null && guard.isShedding();
+    }
+
+    /**
+     * Describes the shedding state for the web console
+     *
+     * @return the description or null if shedding is not enabled
+     */
+    public @Nullable String getSheddingStatus() {
+        SheddingGuard guard = sheddingGuard;
+        if (guard == null) {
+            return null;
+        }
+        String state = guard.isShedding()
+                ? String.format("shedding since %tT (%s)", guard.getSince(), guard.getCause())
+                : "writing";
+        return String.format(
+                "%s, %d spilled (%d bytes), %d shed, %d overflowed, %d degradations",
+                state,
+                guard.getSpilledCount(),
+                guard.getSpilledBytes(),
+                guard.getShedCount(),
+                guard.getOverflowCount(),
+                guard.getDegradationCount());
+    }
+
+    @Override
+    public void start() {
+        FlushSettings settings = flushSettings;
+        if (settings != null) {
+            setImmediateFlush(false);
+            // the stream buffer flushes itself once the max bytes are pending
+            setBufferSize(new FileSize(settings.maxBytes()));
+        } else if (channelOutput && async && isImmediateFlush()) {
+            // the writer thread flushes once per batch
+            setImmediateFlush(false);
+            flushAfterBatch = true;
+        }
+        if (sheddingSettings != null) {
+            sheddingGuard = new SheddingGuard(sheddingSettings);
+        }
+        super.start();
+        if (settings != null && settings.maxInterval() > 0 && isStarted()) {
+            flushTask = getContext()
+                    .getScheduledExecutorService()
+                    .scheduleAtFixedRate(
+                            this::flush, settings.maxInterval(), settings.maxInterval(), TimeUnit.MILLISECONDS);
+        }
+        if (async && isStarted()) {
+            AsyncEventWriter<E> writer = new AsyncEventWriter<>(
+                    "sling-log-writer-" + getName(),
+                    asyncSettings.queueSize(),
+                    asyncSettings.neverBlock(),
+                    this::appendDeferred);
+            if (flushAfterBatch) {
+                writer.setBatchListener(this::flush);
+            }
+            AsyncWriterPool pool = writerPool;
+            if (pool != null && pool.isRunning()) {
+                writer.start(pool);
+            } else {
+                writer.start();
+            }
+            asyncWriter = writer;
+        }
+    }
+
+    @Override
+    public void stop() {
+        AsyncEventWriter<E> writer = asyncWriter;
+        if (writer != null) {
+            asyncWriter = null;
+            if (!writer.stop(asyncSettings.maxFlushTime())) {
+                addWarn("Timed out waiting for the writer thread to write " + writer.getQueuedCount()
+                        + " queued events");
+            }
+            if (writer.getDiscardedCount() > 0 || writer.getDroppedCount() > 0) {
+                addWarn("Discarded " + writer.getDiscardedCount() + " and dropped " + writer.getDroppedCount()
+                        + " events as the queue was full");
+            }
+        }
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        SheddingGuard guard = sheddingGuard;
+        if (guard != null && guard.isShedding() && !writeSpilled(guard)) {
+            addWarn("Dropped " + guard.getSpilledCount() + " spilled events as " + getFile() + " cannot be written");
+        }
+        // closing the stream flushes what is still buffered
+        super.stop();
+        if (flushAfterBatch) {
+            flushAfterBatch = false;
+            setImmediateFlush(true);
+        }
+    }
+
+    /**
+     * Also registers for the failures and recoveries of the default and the channel
+     * stream which do not pass the failures on
+     */
+    @Override
+    public void setOutputStream(OutputStream outputStream) {
+        super.setOutputStream(outputStream);
+        outputFailed = false;
+        if (outputStream instanceof ResilientOutputStreamBase) {
+            ((ResilientOutputStreamBase) outputStream).addRecoveryListener(recoveryListener);
+        } else if (outputStream instanceof ChannelOutputStream) {
+            ((ChannelOutputStream) outputStream).addRecoveryListener(recoveryListener);
+        }
+    }
+
+    private boolean isRecovering(OutputStream outputStream) {
+        return outputStream instanceof ResilientOutputStreamBase || outputStream instanceof ChannelOutputStream;
+    }
+
+    /**
+     * Opens a {@link ChannelOutputStream} if enabled, the default stream otherwise.
+     * Also called to reopen the file after a rollover.
+     */
+    @Override
+    public void openFile(String fileName) throws IOException {
+        if (!channelOutput || isPrudent()) {
+            super.openFile(fileName);
+            return;
+        }
+        streamWriteLock.lock();
+        try {
+            File file = new File(fileName);
+            if (!FileUtil.createMissingParentDirectories(file)) {
+                addError("Failed to create parent directories for [" + file.getAbsolutePath() + "]");
+            }
+            FlushSettings settings = flushSettings;
+            int bufferSize = settings == null ? ChannelOutputStream.DEFAULT_BUFFER_SIZE : settings.maxBytes();
+            ChannelOutputStream stream =
+                    new ChannelOutputStream(file, isAppend(), bufferSize, isPreallocating() ? preallocationSize : 0);
+            stream.setContext(getContext());
+            setOutputStream(stream);
+            if (isPreallocating()) {
+                // the length the rolling file appender counted on start includes the
+                // preallocated space left behind, the stream cut it off on opening
+                seedLength(stream.getContentLength());
+            }
+        } finally {
+            streamWriteLock.unlock();
+        }
+    }
+
+    private boolean isPreallocating() {
+        return channelOutput && preallocationSize > 0 && !isPrudent();
+    }
+
+    /**
+     * Flushes the bytes written since the last flush
+     */
+    void flush() {
+        streamWriteLock.lock();
+        try {
+            OutputStream out = getOutputStream();
+            if (unflushed && isStarted() && out != null) {
+                out.flush();
+                unflushed = false;
+            }
+        } catch (IOException e) {
+            addError("Failed to flush " + getFile(), e);
+        } finally {
+            streamWriteLock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void append(E event) {
+        AsyncEventWriter<E> writer = asyncWriter;
+        if (writer != null && event instanceof ILoggingEvent) {
+            ILoggingEvent loggingEvent = (ILoggingEvent) event;
+            if (writer.isNearlyFull() && !loggingEvent.getLevel().isGreaterOrEqual(asyncSettings.discardLevel())) {
+                // discarded before taking the snapshot to relieve the logging thread
+                writer.discarded();
+                return;
+            }
+            writer.put((E) DeferredLoggingEvent.snapshot(loggingEvent));
+        } else {
+            super.append(event);
+        }
+    }
+
+    /**
+     * Writes an event taken from the queue, called on the writer thread
+     */
+    private void appendDeferred(E event) {
+        try {
+            super.append(event);
+        } catch (RuntimeException e) {
+            addError("Failed to write the event", e);
+        }
+    }
+
+    @Override
+    protected void subAppend(E event) {
+        super.subAppend(event);
+        FlushSettings settings = flushSettings;
+        if (settings != null
+                && event instanceof ILoggingEvent
+                && ((ILoggingEvent) event).getLevel().isGreaterOrEqual(settings.flushLevel())) {
+            flush();
+        }
+        if (!appendListeners.isEmpty()) {
+            for (Runnable listener : appendListeners) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Writes the event unless the appender sheds the events at the moment. A slow
+     * or failed write starts the shedding, see {@link #setSheddingSettings(SheddingSettings)}.
+     */
+    @Override
+    protected void writeOut(E event) throws IOException {
+        SheddingGuard guard = sheddingGuard;
+        if (guard == null) {
+            writeEvent(event);
+            return;
+        }
+        if (!guard.tryWrite(System.currentTimeMillis())) {
+            shedOrSpill(guard, event);
+            return;
+        }
+        boolean probing = guard.isShedding();
+        if (probing && !writeSpilled(guard)) {
+            degrade(guard, "Failed to write the spilled events", null);
+            shedOrSpill(guard, event);
+            return;
+        }
+        long start = System.nanoTime();
+        IOException failure = null;
+        try {
+            if (!isRecovering(getOutputStream())) {
+                // the other streams report each failure
+                outputFailed = false;
+            }
+            writeEvent(event);
+        } catch (IOException e) {
+            outputFailed = true;
+            failure = e;
+        }
+        long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long maxLatency = guard.getSettings().maxLatency();
+        if (outputFailed) {
+            degrade(guard, "Failed to write the file", failure);
+            shedOrSpill(guard, event);
+        } else if (maxLatency > 0 && latency > maxLatency) {
+            degrade(guard, "Writing took " + latency + " ms", null);
+        } else if (probing) {
+            resume(guard);
+        }
+    }
+
+    /**
+     * Writes the event straight from the per thread buffer of a {@link BufferEncoder}
+     * to avoid allocating a byte array for each event. Other encoders and prudent mode
+     * use the default implementation.
+     */
+    private void writeEvent(E event) throws IOException {
+        Encoder<E> encoder = getEncoder();
+        if (encoder instanceof BufferEncoder && event instanceof ILoggingEvent && !isPrudent()) {
+            BufferEncoder bufferEncoder = (BufferEncoder) encoder;
+            if (bufferEncoder.isStateful()) {
+                streamWriteLock.lock();
+                try {
+                    writeBuffer(bufferEncoder.encodeToBuffer((ILoggingEvent) event));
+                } finally {
+                    streamWriteLock.unlock();
+                }
+            } else {
+                writeBuffer(bufferEncoder.encodeToBuffer((ILoggingEvent) event));
+            }
+        } else {
+            super.writeOut(event);
+        }
+    }
+
+    /**
+     * Keeps an event with the spill level in the spill buffer, drops the others
+     */
+    private void shedOrSpill(SheddingGuard guard, E event) throws IOException {
+        SheddingSettings settings = guard.getSettings();
+        Encoder<E> encoder = getEncoder();
+        boolean spill = settings.spillSize() > 0
+                && !(encoder instanceof BufferEncoder && ((BufferEncoder) encoder).isStateful())
+                && (!(event instanceof ILoggingEvent)
+                        || ((ILoggingEvent) event).getLevel().isGreaterOrEqual(settings.spillLevel()));
+        if (!spill) {
+            guard.shed();
+        } else if (!guard.spill(encode(encoder, event))) {
+            // the shedding ended meanwhile
+            writeEvent(event);
+        }
+    }
+
+    private byte[] encode(Encoder<E> encoder, E event) {
+        if (encoder instanceof BufferEncoder && event instanceof ILoggingEvent) {
+            ByteBuffer buffer = ((BufferEncoder) encoder).encodeToBuffer((ILoggingEvent) event);
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+        return encoder.encode(event);
+    }
+
+    /**
+     * Writes the spilled events in the order they were logged
+     *
+     * @return false if the file could not be written, the remaining events stay spilled
+     */
+    private boolean writeSpilled(SheddingGuard guard) {
+        byte[] bytes;
+        while ((bytes = guard.pollSpilled()) != null) {
+            try {
+                if (!isRecovering(getOutputStream())) {
+                    outputFailed = false;
+                }
+                writeBuffer(ByteBuffer.wrap(bytes));
+            } catch (IOException e) {
+                outputFailed = true;
+            }
+            if (outputFailed) {
+                guard.requeue(bytes);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void degrade(SheddingGuard guard, String cause, IOException failure) {
+        if (guard.degrade(cause, System.currentTimeMillis())) {
+            String message = "Shedding the events as " + getFile() + " cannot be written: " + cause;
+            if (failure != null) {
+                addError(message, failure);
+            } else {
+                addWarn(message);
+            }
+        }
+    }
+
+    /**
+     * Ends the shedding after a successful probe once all spilled events were written
+     */
+    private void resume(SheddingGuard guard) {
+        while (!guard.recover()) {
+            if (!writeSpilled(guard)) {
+                degrade(guard, "Failed to write the spilled events", null);
+                return;
+            }
+        }
+        addInfo("Resumed writing " + getFile() + " after shedding " + guard.getShedCount() + " events");
+    }
+
+    private void writeBuffer(@NotNull ByteBuffer bytes) throws IOException {
+        int length = bytes.remaining();
+        if (length == 0) {
+            return;
+        }
+        streamWriteLock.lock();
+        try {
+            if (isStarted()) {
+                OutputStream out = getOutputStream();
+                out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), length);
+                if (isImmediateFlush()) {
+                    out.flush();
+                } else {
+                    unflushed = true;
+                }
+                updateLength(length);
+            }
+        } finally {
+            streamWriteLock.unlock();
+        }
+    }
+
+    /**
+     * Called for the default write path while holding the streamWriteLock
+     */
+    @Override
+    protected void updateByteCount(byte[] byteArray) {
+        super.updateByteCount(byteArray);
+        unflushed = true;
+    }
+
+    /**
+     * Restarts counting the bytes of the size based triggering policies at the given length
+     */
+    private void seedLength(long length) {
+        TriggeringPolicy<E> policy = getTriggeringPolicy();
+        LengthCounter counter = policy == null ? null : policy.getLengthCounter();
+        if (counter != null) {
+            counter.reset();
+            counter.add(length);
+        }
+    }
+
+    /**
+     * Keeps the size based triggering policies informed about the written bytes
+     * as done by the {@link RollingFileAppender} for the default write path
+     */
+    private void updateLength(int length) {
+        TriggeringPolicy<E> policy = getTriggeringPolicy();
+        LengthCounter counter = policy == null ? null : policy.getLengthCounter();
+        if (counter != null) {
+            counter.add(length);
+        }
+    }
 }
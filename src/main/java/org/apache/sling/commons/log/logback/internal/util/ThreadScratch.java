@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Scratch object per thread shared by all instances of an encoder class, so the
+ * number of retained buffers does not grow with the number of encoders.
+ * <p>
+ * A scratch object which grew beyond the bound of the retain check is dropped
+ * after use. Once the last started encoder is stopped the scratch objects of all
+ * threads are dropped, the other threads release theirs on the next use. A nested
+ * use on the same thread (like an event logged while rendering one) gets a
+ * temporary scratch object.
+ *
+ * @param <T> the type of the scratch object
+ */
+final class ThreadScratch<T> {
+    private final Supplier<T> factory;
+    private final Predicate<T> retain;
+    private final ThreadLocal<Slot<T>> slots = new ThreadLocal<>();
+    private final AtomicInteger users = new AtomicInteger();
+    private volatile int generation;
+
+    /**
+     * Constructor
+     *
+     * @param factory creates the scratch objects
+     * @param retain checks if a used scratch object is small enough to be kept
+     */
+    ThreadScratch(@NotNull Supplier<T> factory, @NotNull Predicate<T> retain) {
+        this.factory = factory;
+        this.retain = retain;
+    }
+
+    /**
+     * Called when an encoder is started
+     */
+    void register() {
+        users.incrementAndGet();
+    }
+
+    /**
+     * Called when an encoder is stopped, releases the scratch object of the calling
+     * thread and the ones of all threads if it was the last started encoder
+     */
+    void unregister() {
+        slots.remove();
+        if (users.decrementAndGet() <= 0) {
+            users.set(0);
+            generation++;
+        }
+    }
+
+    /**
+     * Gets the scratch object of the calling thread which must be passed to
+     * {@link #release(Object)} after use
+     *
+     * @return the scratch object
+     */
+    @NotNull
+    T acquire() {
+        Slot<T> slot = slots.get();
+        int current = generation;
+        if (slot == null || slot.generation != current) {
+            slot = new Slot<>(factory.get(), current);
+            slots.set(slot);
+        } else if (slot.busy) {
+            return factory.get();
+        }
+        slot.busy = true;
+        return slot.scratch;
+    }
+
+    /**
+     * Ends the use of a scratch object, the content stays valid until the thread
+     * acquires it again
+     *
+     * @param scratch the scratch object returned by {@link #acquire()}
+     */
+    void release(@NotNull T scratch) {
+        Slot<T> slot = slots.get();
+        if (slot != null && slot.scratch == scratch) {
+            slot.busy = false;
+            if (!retain.test(scratch)) {
+                // do not pin the memory of an exceptionally large event to the thread
+                slots.remove();
+            }
+        }
+    }
+
+    private static final class Slot<T> {
+        private final T scratch;
+        private final int generation;
+        private boolean busy;
+
+        Slot(T scratch, int generation) {
+            this.scratch = scratch;
+            this.generation = generation;
+        }
+    }
+}
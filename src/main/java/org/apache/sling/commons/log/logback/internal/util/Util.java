@@ -20,7 +20,10 @@ package org.apache.sling.commons.log.logback.internal.util;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.xml.sax.InputSource;
 
@@ -53,4 +56,63 @@ public class Util {
             }
         }
     }
+
+    /**
+     * Size of the blocks read backwards to find the end of the content
+     */
+    private static final int SCAN_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Get the length of the content of a log file which may end with space preallocated
+     * by the appender, i.e. zero bytes not written yet. The zero bytes are skipped by
+     * reading backwards from the end of the file up to the last non-zero byte, so zero
+     * bytes within the content are kept. For files without preallocated space only the
+     * last byte is read. Not suitable for binary files whose content may end with zero
+     * bytes.
+     *
+     * @param channel the channel of the file to check
+     * @return the length of the content in bytes
+     * @throws IOException if the file cannot be read
+     */
+    public static long logicalLength(@NotNull FileChannel channel) throws IOException {
+        return logicalLength(channel, 0);
+    }
+
+    /**
+     * Get the length of the content of a log file which may end with space preallocated
+     * by the appender, reading backwards at most down to a position known to be part of
+     * the content
+     *
+     * @param channel the channel of the file to check
+     * @param minLength the length the content has at least
+     * @return the length of the content in bytes, at least the min length unless the file
+     *      got shorter
+     * @throws IOException if the file cannot be read
+     */
+    public static long logicalLength(@NotNull FileChannel channel, long minLength) throws IOException {
+        long end = channel.size();
+        if (end <= minLength) {
+            return end;
+        }
+        ByteBuffer block = ByteBuffer.allocate((int) Math.min(SCAN_BLOCK_SIZE, end - minLength));
+        while (end > minLength) {
+            long start = Math.max(minLength, end - block.capacity());
+            block.clear();
+            block.limit((int) (end - start));
+            while (block.hasRemaining()) {
+                if (channel.read(block, start + block.position()) < 0) {
+                    // got shorter meanwhile, the rest of the block is treated as zero bytes
+                    break;
+                }
+            }
+            byte[] bytes = block.array();
+            for (int i = block.position() - 1; i >= 0; i--) {
+                if (bytes[i] != 0) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return minLength;
+    }
 }
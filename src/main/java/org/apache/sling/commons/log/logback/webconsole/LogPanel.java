@@ -42,6 +42,42 @@ public interface LogPanel {
      * Request param capturing the regular expression to search
      */
     String PARAM_TAIL_GREP = "grep";
+
+    /**
+     * Request param to also include the rotated (possibly compressed) log files
+     *
+     * @since 1.1.0
+     */
+    String PARAM_TAIL_ROTATED = "rotated";
+
+    /**
+     * Request param to keep streaming the lines appended to the log file
+     *
+     * @since 1.1.0
+     */
+    String PARAM_TAIL_FOLLOW = "follow";
+
+    /**
+     * Request param with the number of lines to include before a matching line
+     *
+     * @since 1.1.0
+     */
+    String PARAM_TAIL_BEFORE = "before";
+
+    /**
+     * Request param with the number of lines to include after a matching line
+     *
+     * @since 1.1.0
+     */
+    String PARAM_TAIL_AFTER = "after";
+
+    /**
+     * Request param to filter multi-line log events (e.g. with stack traces) as a unit
+     *
+     * @since 1.1.0
+     */
+    String PARAM_TAIL_GROUP_EVENTS = "events";
+
     /**
      * Let the path end with extension. In that case WebConsole logic would by pass this request's
      * response completely
@@ -59,7 +95,12 @@ public interface LogPanel {
     String RES_LOC = APP_ROOT + "/res/ui";
 
     /**
-     * Tails the content of the given appender to the supplied print writer
+     * Tails the content of the given appender to the supplied print writer. If
+     * {@link TailerOptions#isFollow()} is set this method only returns once the
+     * client went away (detected via {@link PrintWriter#checkError()}) or the
+     * maximum follow duration passed. Implementations may limit the number of
+     * clients following at the same time and only write the initial content
+     * once the limit is reached.
      *
      * @param pw the print writer to render to
      * @param appenderName the name of the appender to tail
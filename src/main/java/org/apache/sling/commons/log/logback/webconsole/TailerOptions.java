@@ -24,6 +24,11 @@ package org.apache.sling.commons.log.logback.webconsole;
 public final class TailerOptions {
     private final int numOfLines;
     private final String regex;
+    private final boolean includeRotated;
+    private final boolean follow;
+    private final int linesBefore;
+    private final int linesAfter;
+    private final boolean groupEvents;
 
     /**
      * Constructor
@@ -35,8 +40,73 @@ public final class TailerOptions {
      *              case insensitive way
      */
     public TailerOptions(int numOfLines, String regex) {
+        this(numOfLines, regex, false, false, 0, 0, false);
+    }
+
+    private TailerOptions(
+            int numOfLines,
+            String regex,
+            boolean includeRotated,
+            boolean follow,
+            int linesBefore,
+            int linesAfter,
+            boolean groupEvents) {
         this.numOfLines = numOfLines;
         this.regex = regex;
+        this.includeRotated = includeRotated;
+        this.follow = follow;
+        this.linesBefore = linesBefore;
+        this.linesAfter = linesAfter;
+        this.groupEvents = groupEvents;
+    }
+
+    /**
+     * Returns a copy of these options which also include the rotated (possibly
+     * compressed) files
+     *
+     * @param includeRotated true to also include the rotated files
+     * @return the new options
+     * @since 1.1.0
+     */
+    public TailerOptions withRotated(boolean includeRotated) {
+        return new TailerOptions(numOfLines, regex, includeRotated, follow, linesBefore, linesAfter, groupEvents);
+    }
+
+    /**
+     * Returns a copy of these options which keep writing the lines appended to the
+     * file after the initial content was written
+     *
+     * @param follow true to follow the file
+     * @return the new options
+     * @since 1.1.0
+     */
+    public TailerOptions withFollow(boolean follow) {
+        return new TailerOptions(numOfLines, regex, includeRotated, follow, linesBefore, linesAfter, groupEvents);
+    }
+
+    /**
+     * Returns a copy of these options including context around the matching lines
+     * (like grep -B and -A)
+     *
+     * @param linesBefore the number of lines (or events if grouped) to include before a match
+     * @param linesAfter the number of lines (or events if grouped) to include after a match
+     * @return the new options
+     * @since 1.1.0
+     */
+    public TailerOptions withContext(int linesBefore, int linesAfter) {
+        return new TailerOptions(numOfLines, regex, includeRotated, follow, linesBefore, linesAfter, groupEvents);
+    }
+
+    /**
+     * Returns a copy of these options which treat multi-line log events (e.g. with
+     * stack traces) as a unit when filtering
+     *
+     * @param groupEvents true to group the lines of an event
+     * @return the new options
+     * @since 1.1.0
+     */
+    public TailerOptions withEventGrouping(boolean groupEvents) {
+        return new TailerOptions(numOfLines, regex, includeRotated, follow, linesBefore, linesAfter, groupEvents);
     }
 
     /**
@@ -68,4 +138,55 @@ public final class TailerOptions {
     public String getRegex() {
         return regex;
     }
+
+    /**
+     * Returns if the rotated files of the appender should be included
+     *
+     * @return true to include the rotated files or false to only include the active file
+     * @since 1.1.0
+     */
+    public boolean isIncludeRotated() {
+        return includeRotated;
+    }
+
+    /**
+     * Returns if lines appended to the file should be streamed once the initial
+     * content was written (like "tail -f")
+     *
+     * @return true to follow the file or false otherwise
+     * @since 1.1.0
+     */
+    public boolean isFollow() {
+        return follow;
+    }
+
+    /**
+     * Get the number of lines (or events if grouped) to include before a match
+     *
+     * @return the number of lines before a match
+     * @since 1.1.0
+     */
+    public int getLinesBefore() {
+        return linesBefore;
+    }
+
+    /**
+     * Get the number of lines (or events if grouped) to include after a match
+     *
+     * @return the number of lines after a match
+     * @since 1.1.0
+     */
+    public int getLinesAfter() {
+        return linesAfter;
+    }
+
+    /**
+     * Returns if the lines of multi-line log events are filtered as a unit
+     *
+     * @return true to group the lines of an event
+     * @since 1.1.0
+     */
+    public boolean isGroupEvents() {
+        return groupEvents;
+    }
 }
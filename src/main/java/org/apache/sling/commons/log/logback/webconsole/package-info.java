@@ -22,7 +22,7 @@
  *
  * @version 1.0
  */
-@Version("1.0.2")
+@Version("1.1.0")
 package org.apache.sling.commons.log.logback.webconsole;
 
 import org.osgi.annotation.versioning.Version;
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import org.apache.sling.commons.log.logback.internal.util.JsonLinesEncoder;
+import org.apache.sling.commons.log.logback.internal.util.LoggerSpecificEncoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class EventBoundaryTest {
+
+    @ParameterizedTest
+    @CsvSource(
+            delimiter = '|',
+            value = {
+                "18.10.2026 12:00:00.000 *INFO* [main] started|true",
+                "2026-10-18 12:00:00,000 INFO started|true",
+                "12:00:00.000 INFO started|true",
+                "2026/10/18 started|true",
+                "123.45 is not a date|false",
+                "1-2|false",
+                "java.lang.IllegalStateException: broken|false",
+                "'\tat Foo.bar(Foo.java:1)'|false",
+                "''|false"
+            })
+    void testTimestamp(String line, boolean start) {
+        assertEquals(start, EventBoundary.TIMESTAMP.isStart(line));
+    }
+
+    @ParameterizedTest
+    @CsvSource(
+            delimiter = '|',
+            value = {
+                "*INFO* [main] started|true",
+                "java.lang.IllegalStateException: broken|true",
+                "'\tat Foo.bar(Foo.java:1)'|false",
+                "'    at Foo.bar(Foo.java:1)'|false",
+                "Caused by: java.lang.Exception|false",
+                "Suppressed: java.lang.Exception|false",
+                "... 42 more|false",
+                "''|true"
+            })
+    void testContinuation(String line, boolean start) {
+        assertEquals(start, EventBoundary.CONTINUATION.isStart(line));
+    }
+
+    @Test
+    void testLine() {
+        assertTrue(EventBoundary.LINE.isStart("\tat Foo.bar(Foo.java:1)"));
+    }
+
+    @Test
+    void testForAppenderWithPatternLayoutEncoder() {
+        assertEquals(EventBoundary.TIMESTAMP, EventBoundary.forAppender(appender(encoder("%d %level %msg%n"))));
+        assertEquals(EventBoundary.CONTINUATION, EventBoundary.forAppender(appender(encoder("%level %msg%n"))));
+    }
+
+    @Test
+    void testForAppenderWithLoggerSpecificEncoder() {
+        PatternLayout layout = new PatternLayout();
+        layout.setPattern(LogConstants.LOG_PATTERN_DEFAULT);
+        assertEquals(EventBoundary.TIMESTAMP, EventBoundary.forAppender(appender(new LoggerSpecificEncoder(layout))));
+    }
+
+    @Test
+    void testForAppenderWithJsonLinesEncoder() {
+        assertEquals(EventBoundary.LINE, EventBoundary.forAppender(appender(new JsonLinesEncoder())));
+    }
+
+    @Test
+    void testForAppenderWithoutEncoder() {
+        assertEquals(EventBoundary.CONTINUATION, EventBoundary.forAppender(new FileAppender<>()));
+    }
+
+    private static PatternLayoutEncoder encoder(String pattern) {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(new LoggerContext());
+        encoder.setPattern(pattern);
+        encoder.start();
+        return encoder;
+    }
+
+    private static FileAppender<ILoggingEvent> appender(Encoder<ILoggingEvent> encoder) {
+        FileAppender<ILoggingEvent> appender = new FileAppender<>();
+        appender.setEncoder(encoder);
+        return appender;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.log.logback.internal.Tailer.TailerListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class FileFollowerTest {
+    @TempDir
+    Path tempDir;
+
+    private File file;
+    private final List<String> lines = new ArrayList<>();
+    private final TailerListener listener = lines::add;
+
+    @BeforeEach
+    protected void beforeEach() throws IOException {
+        file = tempDir.resolve("error.log").toFile();
+        Files.writeString(file.toPath(), "a\nb\n");
+    }
+
+    @Test
+    void testReadAppended() throws IOException {
+        FileFollower follower = new FileFollower(file, file.length(), listener);
+        follower.readAppended();
+        assertThat(lines, empty());
+
+        append("c\nd");
+        follower.readAppended();
+        assertThat(lines, contains("c"));
+
+        // the incomplete line is completed by the next write
+        append("d\n");
+        follower.readAppended();
+        assertThat(lines, contains("c", "dd"));
+    }
+
+    @Test
+    void testReadAppendedAfterRotation() throws IOException {
+        FileFollower follower = new FileFollower(file, file.length(), listener);
+        Files.move(file.toPath(), tempDir.resolve("error.log.1"));
+        Files.writeString(file.toPath(), "new\n");
+        follower.readAppended();
+        assertThat(lines, contains("new"));
+    }
+
+    @Test
+    void testReadAppendedAfterTruncation() throws IOException {
+        FileFollower follower = new FileFollower(file, file.length(), listener);
+        Files.writeString(file.toPath(), "x\n", StandardOpenOption.TRUNCATE_EXISTING);
+        follower.readAppended();
+        assertThat(lines, contains("x"));
+    }
+
+    @Test
+    void testReadAppendedPreallocated() throws IOException {
+        FileFollower follower = new FileFollower(file, file.length(), listener);
+        // the zero bytes preallocated ahead of the writes are not read
+        Files.write(file.toPath(), new byte[64], StandardOpenOption.APPEND);
+        follower.readAppended();
+        assertThat(lines, empty());
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("c\nd\n".getBytes(StandardCharsets.UTF_8)), 4);
+        }
+        follower.readAppended();
+        assertThat(lines, contains("c", "d"));
+    }
+
+    @Test
+    void testReadAppendedWithZeroBytesInContent() throws IOException {
+        FileFollower follower = new FileFollower(file, file.length(), listener);
+        Files.write(file.toPath(), new byte[] {'c', 0, 'd', '\n', 0, 0}, StandardOpenOption.APPEND);
+        follower.readAppended();
+        assertThat(lines, contains("c\0d"));
+    }
+
+    @Test
+    void testFollowWithNotification() throws Exception {
+        StopWriter writer = new StopWriter();
+        PrintWriter pw = new PrintWriter(writer);
+        FileFollower follower = new FileFollower(file, file.length(), new FilteringListener(pw, null));
+        CompletableFuture<Void> result = CompletableFuture.runAsync(() -> follow(follower, pw, null));
+
+        append("c\nstop\n");
+        follower.run();
+        result.get(10, TimeUnit.SECONDS);
+        assertTrue(writer.content.toString().startsWith(String.format("c%n")));
+    }
+
+    @Test
+    void testFollowWithWatchService() throws Exception {
+        StopWriter writer = new StopWriter();
+        PrintWriter pw = new PrintWriter(writer);
+        FileFollower follower = new FileFollower(file, file.length(), new FilteringListener(pw, null));
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            tempDir.register(watchService, StandardWatchEventKinds.ENTRY_MODIFY);
+            CompletableFuture<Void> result = CompletableFuture.runAsync(() -> follow(follower, pw, watchService));
+
+            append("c\nstop\n");
+            result.get(10, TimeUnit.SECONDS);
+        }
+        assertTrue(writer.content.toString().startsWith(String.format("c%n")));
+    }
+
+    @Test
+    void testFollowMaxDuration() throws Exception {
+        PrintWriter pw = new PrintWriter(new StringWriter());
+        FileFollower follower = new FileFollower(file, file.length(), new FilteringListener(pw, null));
+        long start = System.currentTimeMillis();
+        follower.follow(pw, 50, null);
+        assertTrue(System.currentTimeMillis() - start < FileFollower.POLL_INTERVAL_MS * 5);
+    }
+
+    private void append(String content) throws IOException {
+        Files.writeString(file.toPath(), content, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    private static void follow(FileFollower follower, PrintWriter pw, WatchService watchService) {
+        try {
+            follower.follow(pw, TimeUnit.SECONDS.toMillis(10), watchService);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writer failing once "stop" got written to simulate a client going away
+     */
+    private static class StopWriter extends Writer {
+        private final StringBuilder content = new StringBuilder();
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            content.append(cbuf, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (content.indexOf("stop") >= 0) {
+                throw new IOException("client went away");
+            }
+        }
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+    }
+}
@@ -20,10 +20,14 @@ package org.apache.sling.commons.log.logback.internal;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.sling.commons.log.logback.internal.Tailer.TailerListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.NullSource;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -31,7 +35,9 @@ import org.junit.jupiter.params.provider.ValueSource;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -110,4 +116,80 @@ class FilteringListenerTest {
         assertThat(sw.toString(), containsString("bar"));
         assertThat(sw.toString(), containsString("talks"));
     }
+
+    @Test
+    void booleanQuery() throws Exception {
+        TailerListener l = new FilteringListener(pw, "query:foo AND NOT bar");
+        l.handle("foo baz");
+        assertThat(sw.toString(), containsString("foo baz"));
+
+        l.handle("foo bar");
+        assertThat(sw.toString(), not(containsString("foo bar")));
+    }
+
+    @Test
+    void invalidRegex() {
+        assertThrows(PatternSyntaxException.class, () -> new FilteringListener(pw, "foo("));
+    }
+
+    @Test
+    void contextLines() throws Exception {
+        TailerListener l = new FilteringListener(pw, "match", 1, 1, EventBoundary.LINE);
+        for (String line : new String[] {"a", "b", "match 1", "c", "d", "e", "match 2", "match 3", "f", "g"}) {
+            l.handle(line);
+        }
+        l.finish();
+        assertEquals(lines("b", "match 1", "c", "--", "e", "match 2", "match 3", "f"), sw.toString());
+    }
+
+    @Test
+    void contextLinesAdjacentGroups() throws Exception {
+        TailerListener l = new FilteringListener(pw, "match", 1, 1, EventBoundary.LINE);
+        for (String line : new String[] {"match 1", "a", "b", "match 2"}) {
+            l.handle(line);
+        }
+        l.finish();
+        assertEquals(lines("match 1", "a", "b", "match 2"), sw.toString());
+    }
+
+    @Test
+    void groupedEvents() throws Exception {
+        TailerListener l = new FilteringListener(pw, "ERROR", 0, 0, EventBoundary.TIMESTAMP);
+        for (String line : new String[] {
+            "18.10.2026 12:00:00.000 *INFO* [main] started",
+            "18.10.2026 12:00:01.000 *ERROR* [main] failed",
+            "java.lang.IllegalStateException: broken",
+            "\tat Foo.bar(Foo.java:1)",
+            "18.10.2026 12:00:02.000 *INFO* [main] done",
+            "18.10.2026 12:00:03.000 *WARN* [main] retry",
+            "Caused by: java.lang.Exception: ERROR in nested"
+        }) {
+            l.handle(line);
+        }
+        l.finish();
+        assertEquals(
+                lines(
+                        "18.10.2026 12:00:01.000 *ERROR* [main] failed",
+                        "java.lang.IllegalStateException: broken",
+                        "\tat Foo.bar(Foo.java:1)",
+                        "18.10.2026 12:00:03.000 *WARN* [main] retry",
+                        "Caused by: java.lang.Exception: ERROR in nested"),
+                sw.toString());
+    }
+
+    @Test
+    void groupedEventsWithTailer(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("error.log");
+        Files.writeString(file, "12:00:00.000 *INFO* started\n12:00:01.000 *ERROR* failed\n\tat Foo.bar(Foo.java:1)\n");
+        new Tailer(new FilteringListener(pw, "error", 0, 0, EventBoundary.TIMESTAMP), -1).tail(file.toFile());
+        assertEquals(lines("12:00:01.000 *ERROR* failed", "\tat Foo.bar(Foo.java:1)"), sw.toString());
+    }
+
+    private static String lines(String... lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
 }
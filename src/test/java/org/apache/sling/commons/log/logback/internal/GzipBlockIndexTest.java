@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class GzipBlockIndexTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testIsIndexFile() {
+        assertTrue(GzipBlockIndex.isIndexFile("error.log.1.gz.idx"));
+        assertFalse(GzipBlockIndex.isIndexFile("error.log.1.gz"));
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        File archive = tempDir.resolve("error.log.1.gz").toFile();
+        String content = createContent(100);
+        try (OutputStream out = new GzipBlockIndex.BlockWriter(archive, Deflater.DEFAULT_COMPRESSION, 256)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // the archive must still be a valid gzip file
+        assertEquals(content, read(archive));
+
+        GzipBlockIndex index = GzipBlockIndex.read(archive);
+        assertNotNull(index);
+        assertEquals(100, index.getTotalLines());
+        assertTrue(index.getBlockCount() > 1);
+        assertEquals(0, index.getOffset(0));
+        assertEquals(0, index.getFirstLine(0));
+
+        for (int i = 1; i < index.getBlockCount(); i++) {
+            assertTrue(index.getOffset(i) > index.getOffset(i - 1));
+            assertTrue(index.getFirstLine(i) >= index.getFirstLine(i - 1));
+        }
+
+        assertEquals(0, index.blockForLine(0));
+        int last = index.blockForLine(99);
+        assertTrue(index.getFirstLine(last) < 99);
+    }
+
+    @Test
+    void testReadWithoutIndex() throws IOException {
+        File archive = tempDir.resolve("error.log.1.gz").toFile();
+        assertTrue(archive.createNewFile());
+        assertNull(GzipBlockIndex.read(archive));
+    }
+
+    @Test
+    void testReadStaleIndex() throws IOException {
+        File archive = tempDir.resolve("error.log.1.gz").toFile();
+        try (OutputStream out = new GzipBlockIndex.BlockWriter(archive, Deflater.BEST_SPEED, 256)) {
+            out.write(createContent(10).getBytes(StandardCharsets.UTF_8));
+        }
+        assertNotNull(GzipBlockIndex.read(archive));
+
+        // archive replaced without updating the index
+        try (OutputStream out = new FileOutputStream(archive, true)) {
+            out.write(0);
+        }
+        assertNull(GzipBlockIndex.read(archive));
+    }
+
+    @Test
+    void testReadBrokenIndex() throws IOException {
+        File archive = tempDir.resolve("error.log.1.gz").toFile();
+        assertTrue(archive.createNewFile());
+        Files.write(GzipBlockIndex.indexFileFor(archive).toPath(), new byte[] {1, 2, 3});
+        assertNull(GzipBlockIndex.read(archive));
+    }
+
+    private static String createContent(int numOfLines) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= numOfLines; i++) {
+            sb.append("log message ").append(i).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String read(File archive) throws IOException {
+        try (InputStream in = LogFiles.openStream(archive)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
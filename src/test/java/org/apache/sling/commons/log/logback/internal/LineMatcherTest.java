@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class LineMatcherTest {
+
+    @Test
+    void testMatchAll() {
+        assertNull(LineMatcher.compile(null));
+        assertNull(LineMatcher.compile(FilteringListener.MATCH_ALL));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "error, 12:00 *ERROR* [main] failed, true",
+        "ERROR, 12:00 *error* [main] failed, true",
+        "Failed, 12:00 *ERROR* [main] failed, true",
+        "d, 12:00 *ERROR* [main] failed, true",
+        "ailex, 12:00 *ERROR* [main] failed, false",
+        "failed now, 12:00 *ERROR* [main] failed, false",
+        "Straße, ERROR STRASSE straße, true",
+        "something longer than the line, short, false",
+        "'', anything, true",
+    })
+    void testLiteral(String query, String line, boolean expected) {
+        LineMatcher matcher = LineMatcher.compile(query);
+        assertInstanceOf(LineMatcher.Literal.class, matcher);
+        assertEquals(expected, matcher.matches(line));
+    }
+
+    @Test
+    void testLiteralWithRepeatedCharacters() {
+        LineMatcher matcher = LineMatcher.compile("aab");
+        assertTrue(matcher.matches("aaaaaaab"));
+        assertFalse(matcher.matches("aaaaaaaa"));
+        assertTrue(LineMatcher.compile("abab").matches("abaabab"));
+    }
+
+    @Test
+    void testRegex() {
+        LineMatcher matcher = LineMatcher.compile("foo.*bar");
+        assertInstanceOf(LineMatcher.Regex.class, matcher);
+        assertTrue(matcher.matches("foo talks to bar"));
+        assertFalse(matcher.matches("foo"));
+        // regex is matched against the whole line
+        assertFalse(matcher.matches("say foo to bar"));
+        // but still found as literal
+        assertTrue(matcher.matches("grep for FOO.*BAR"));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "query:ERROR AND timeout, ERROR connection timeout, true",
+        "query:ERROR AND timeout, ERROR connection refused, false",
+        "query:ERROR OR WARN, WARN connection refused, true",
+        "query:ERROR OR WARN, INFO connection refused, false",
+        "query:ERROR AND NOT timeout, ERROR connection timeout, false",
+        "query:ERROR AND NOT timeout, ERROR connection refused, true",
+        "query:NOT debug, INFO started, true",
+        "query:NOT NOT debug, INFO started, false",
+        "query:ERROR AND refused OR FATAL, ERROR connection timeout, false",
+        "query:ERROR AND refused OR FATAL, FATAL out of memory, true",
+        "query:connection refused OR timeout, ERROR connection refused, true",
+        "query:connection refused OR timeout, ERROR refused connection, false",
+        "query:ERROR AND time.*, ERROR connection timeout, false",
+        "query:ERROR AND .*time.*, ERROR connection timeout, true",
+        "query:OR ERROR AND, ERROR connection timeout, true",
+    })
+    void testQuery(String query, String line, boolean expected) {
+        assertEquals(expected, LineMatcher.compile(query).matches(line));
+    }
+
+    @Test
+    void testOnlyKeywords() {
+        assertNull(LineMatcher.compile("query:AND OR"));
+        assertNull(LineMatcher.compile(LineMatcher.QUERY_PREFIX));
+    }
+
+    @Test
+    void testLowerCaseKeywordsAreLiterals() {
+        LineMatcher matcher = LineMatcher.compile("black and white");
+        assertInstanceOf(LineMatcher.Literal.class, matcher);
+        assertTrue(matcher.matches("black and white"));
+        assertFalse(matcher.matches("black"));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "NOT FOUND, 12:00 *ERROR* [main] 404 NOT FOUND, true",
+        "NOT FOUND, 12:00 *ERROR* [main] NOT AVAILABLE, false",
+        "NOT, 12:00 *ERROR* [main] NOT AVAILABLE, true",
+        "NOT, 12:00 *INFO* [main] started, false",
+        "SELECT a OR b, SELECT a OR b FROM t, true",
+        "SELECT a OR b, SELECT a FROM t, false",
+    })
+    void testKeywordsWithoutPrefixAreLiterals(String query, String line, boolean expected) {
+        LineMatcher matcher = LineMatcher.compile(query);
+        assertInstanceOf(LineMatcher.Literal.class, matcher);
+        assertEquals(expected, matcher.matches(line));
+    }
+
+    @Test
+    void testInvalidRegex() {
+        assertThrows(PatternSyntaxException.class, () -> LineMatcher.compile("[main"));
+        assertThrows(PatternSyntaxException.class, () -> LineMatcher.compile("query:ERROR AND [main"));
+    }
+}
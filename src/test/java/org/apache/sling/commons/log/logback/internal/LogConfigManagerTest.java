@@ -53,6 +53,11 @@ import org.apache.sling.commons.log.helpers.LogCapture;
 import org.apache.sling.commons.log.helpers.ReflectionTools;
 import org.apache.sling.commons.log.logback.internal.LogConfigManager.LoggerStateContext;
 import org.apache.sling.commons.log.logback.internal.config.ConfigurationException;
+import org.apache.sling.commons.log.logback.internal.util.AsyncSettings;
+import org.apache.sling.commons.log.logback.internal.util.AsyncWriterPool;
+import org.apache.sling.commons.log.logback.internal.util.FlushSettings;
+import org.apache.sling.commons.log.logback.internal.util.RolloverSettings;
+import org.apache.sling.commons.log.logback.internal.util.SheddingSettings;
 import org.apache.sling.commons.log.logback.internal.util.SlingRollingFileAppender;
 import org.apache.sling.commons.log.logback.internal.util.TestUtils;
 import org.apache.sling.testing.mock.osgi.junit5.OsgiContext;
@@ -430,6 +435,15 @@ class LogConfigManagerTest {
         assertFalse(manager.isPackagingDataEnabled());
     }
 
+    /**
+     * Test method for {@link org.apache.sling.commons.log.logback.internal.LogConfigManager#getPackagingDataMode()}.
+     */
+    @Test
+    void testGetPackagingDataMode() {
+        assertEquals(LogConstants.LOG_PACKAGING_DATA_MODE_WEAVING, manager.getPackagingDataMode());
+        assertFalse(manager.isLazyPackagingData());
+    }
+
     /**
      * Test method for {@link org.apache.sling.commons.log.logback.internal.LogConfigManager#getMaxCallerDataDepth()}.
      */
@@ -903,6 +917,47 @@ class LogConfigManagerTest {
         assertEquals(expectedPath, ((RollingFileAppender<ILoggingEvent>) appender).getFile());
     }
 
+    @Test
+    void testUpdateGlobalConfigurationWithLazyPackagingData() throws Exception {
+        manager.start();
+
+        Dictionary<String, String> config = new Hashtable<>(Map.of(
+                LogConstants.LOG_PACKAGING_DATA,
+                "true",
+                LogConstants.LOG_PACKAGING_DATA_MODE,
+                LogConstants.LOG_PACKAGING_DATA_MODE_LAZY));
+        doWaitForAsyncResetAfterWork(() -> {
+            manager.updateGlobalConfiguration(config);
+            return null;
+        });
+        assertTrue(manager.isLazyPackagingData());
+        assertSame(context.bundleContext(), manager.getPackageInfoCollector().getBundleContext());
+
+        // stopping the manager disables the lookup
+        manager.stop();
+        assertNull(manager.getPackageInfoCollector().getBundleContext());
+    }
+
+    @Test
+    void testUpdateGlobalConfigurationWithMaskingRules() throws Exception {
+        manager.start();
+
+        Dictionary<String, String> config = new Hashtable<>(Map.of(
+                LogConstants.LOG_LEVEL, "warn",
+                LogConstants.LOG_MASKING_RULES, "key:password",
+                LogConstants.LOG_MASKING_REPLACEMENT, "#"));
+        doWaitForAsyncResetAfterWork(() -> {
+            manager.updateGlobalConfiguration(config);
+            return null;
+        });
+        assertEquals(1, MaskingMessageUtil.getMaskingEngine().getRuleCount());
+        assertEquals("password=#", MaskingMessageUtil.mask("password=secret"));
+
+        // stopping the manager restores the default masking
+        manager.stop();
+        assertSame(MaskingEngine.LINE_BREAKS_ONLY, MaskingMessageUtil.getMaskingEngine());
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {"", LogConstants.FILE_NAME_CONSOLE})
     void testUpdateGlobalConfigurationWithConsoleAppender(String file) throws Exception {
@@ -999,6 +1054,287 @@ class LogConfigManagerTest {
                 manager.getLogWriter(filename1).getLogNumber());
     }
 
+    @Test
+    void testUpdateLogWriterWithAsyncSettings() throws ConfigurationException {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(
+                        LogConstants.LOG_FILE, filename1,
+                        LogConstants.LOG_FILE_ASYNC, "true",
+                        LogConstants.LOG_FILE_ASYNC_QUEUE_SIZE, "256",
+                        LogConstants.LOG_FILE_ASYNC_DISCARD_LEVEL, "info",
+                        LogConstants.LOG_FILE_ASYNC_NEVER_BLOCK, "true",
+                        LogConstants.LOG_FILE_ASYNC_MAX_FLUSH_TIME, "0")),
+                false);
+        assertEquals(
+                new AsyncSettings(256, Level.INFO, true, 0),
+                manager.getLogWriter(filename1).getAsyncSettings());
+
+        // the settings only apply to asynchronous writers
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(
+                        Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_ASYNC_QUEUE_SIZE, "256")),
+                false);
+        assertNull(manager.getLogWriter(filename1).getAsyncSettings());
+    }
+
+    @Test
+    void testUpdateLogWriterWithSheddingSettings() throws ConfigurationException {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(
+                        LogConstants.LOG_FILE, filename1,
+                        LogConstants.LOG_FILE_SHEDDING, "true",
+                        LogConstants.LOG_FILE_SHEDDING_MAX_LATENCY, "250",
+                        LogConstants.LOG_FILE_SHEDDING_SPILL_LEVEL, "error",
+                        LogConstants.LOG_FILE_SHEDDING_SPILL_SIZE, "64KB",
+                        LogConstants.LOG_FILE_SHEDDING_PROBE_INTERVAL, "2000")),
+                false);
+        assertEquals(
+                new SheddingSettings(250, Level.ERROR, 64 * 1024, 2000),
+                manager.getLogWriter(filename1).getSheddingSettings());
+
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_SHEDDING, "true")),
+                false);
+        assertEquals(SheddingSettings.DEFAULT, manager.getLogWriter(filename1).getSheddingSettings());
+
+        // the settings only apply when shedding is enabled
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(
+                        Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_SHEDDING_SPILL_SIZE, "1KB")),
+                false);
+        assertNull(manager.getLogWriter(filename1).getSheddingSettings());
+
+        Hashtable<String, Object> invalidLevel = new Hashtable<>(Map.of(
+                LogConstants.LOG_FILE, filename1,
+                LogConstants.LOG_FILE_SHEDDING, "true",
+                LogConstants.LOG_FILE_SHEDDING_SPILL_LEVEL, "invalid"));
+        assertThrows(ConfigurationException.class, () -> manager.updateLogWriter(pid, invalidLevel, false));
+        Hashtable<String, Object> invalidSize = new Hashtable<>(Map.of(
+                LogConstants.LOG_FILE, filename1,
+                LogConstants.LOG_FILE_SHEDDING, "true",
+                LogConstants.LOG_FILE_SHEDDING_SPILL_SIZE, "invalid"));
+        assertThrows(ConfigurationException.class, () -> manager.updateLogWriter(pid, invalidSize, false));
+    }
+
+    @Test
+    void testUpdateLogWriterWithPreallocation() throws ConfigurationException {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_PREALLOCATION, "64MB")),
+                false);
+        assertEquals(64 * 1024 * 1024, manager.getLogWriter(filename1).getPreallocationSize());
+        assertTrue(manager.getLogWriter(filename1).isChannelOutput());
+
+        manager.updateLogWriter(pid, new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1)), false);
+        assertEquals(0, manager.getLogWriter(filename1).getPreallocationSize());
+
+        Hashtable<String, Object> invalidSize = new Hashtable<>(
+                Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_PREALLOCATION, "invalid"));
+        assertThrows(ConfigurationException.class, () -> manager.updateLogWriter(pid, invalidSize, false));
+    }
+
+    @Test
+    void testGetWriterPool() throws ConfigurationException {
+        manager.start();
+        assertEquals(LogConstants.LOG_WRITER_THREADS_DEFAULT, manager.getWriterThreads());
+        assertNull(manager.getWriterPoolIfCreated());
+
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_ASYNC, "true")),
+                false);
+        LogWriter asyncWriter = manager.getLogWriter(filename1);
+        AsyncWriterPool pool = manager.getWriterPool(asyncWriter);
+        assertNotNull(pool);
+        assertSame(pool, manager.getWriterPool(asyncWriter));
+        assertSame(pool, manager.getWriterPoolIfCreated());
+        assertEquals(1, pool.getThreadCount());
+        // only the asynchronous writers use the pool
+        String filename2 = manager.getAbsoluteFilePath("logs/logwriter2.log");
+        manager.updateLogWriter(
+                String.format("%s~logwriter2", LogConstants.FACTORY_PID_CONFIGS),
+                new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename2)),
+                false);
+        assertNull(manager.getWriterPool(manager.getLogWriter(filename2)));
+
+        Dictionary<String, String> config = new Hashtable<>(Map.of(LogConstants.LOG_WRITER_THREADS, "3"));
+        manager.updateGlobalConfiguration(config);
+        assertEquals(3, manager.getWriterThreads());
+        assertEquals(3, pool.getThreadCount());
+
+        config = new Hashtable<>(Map.of(LogConstants.LOG_WRITER_THREADS, "0"));
+        manager.updateGlobalConfiguration(config);
+        assertEquals(0, manager.getWriterThreads());
+        assertNull(manager.getWriterPool(asyncWriter));
+
+        manager.stop();
+        assertFalse(pool.isRunning());
+        manager = null;
+    }
+
+    @Test
+    void testUpdateLogWriterWithFlushSettings() throws ConfigurationException {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(
+                        LogConstants.LOG_FILE, filename1,
+                        LogConstants.LOG_FILE_BUFFERED, "true",
+                        LogConstants.LOG_FILE_BUFFERED_FLUSH_INTERVAL, "500",
+                        LogConstants.LOG_FILE_BUFFERED_FLUSH_SIZE, "1MB",
+                        LogConstants.LOG_FILE_BUFFERED_FLUSH_LEVEL, "warn")),
+                false);
+        assertEquals(
+                new FlushSettings(500, 1024 * 1024, Level.WARN),
+                manager.getLogWriter(filename1).getFlushSettings());
+
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_BUFFERED, "true")),
+                false);
+        assertEquals(FlushSettings.DEFAULT, manager.getLogWriter(filename1).getFlushSettings());
+
+        manager.updateLogWriter(pid, new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1)), false);
+        assertNull(manager.getLogWriter(filename1).getFlushSettings());
+    }
+
+    @Test
+    void testUpdateLogWriterWithChannelOutput() throws ConfigurationException {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_CHANNEL, "true")),
+                false);
+        assertTrue(manager.getLogWriter(filename1).isChannelOutput());
+    }
+
+    @Test
+    void testUpdateLogWriterWithCompression() throws ConfigurationException {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(
+                        LogConstants.LOG_FILE, filename1,
+                        LogConstants.LOG_FILE_COMPRESSION, "gzip",
+                        LogConstants.LOG_FILE_COMPRESSION_LEVEL, "1")),
+                false);
+        assertEquals(1, manager.getLogWriter(filename1).getCompressionLevel());
+
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_COMPRESSION, "gzip")),
+                false);
+        assertEquals(
+                LogConstants.LOG_FILE_COMPRESSION_LEVEL_DEFAULT,
+                manager.getLogWriter(filename1).getCompressionLevel());
+
+        manager.updateLogWriter(pid, new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1)), false);
+        assertEquals(0, manager.getLogWriter(filename1).getCompressionLevel());
+    }
+
+    @Test
+    void testUpdateLogWriterWithAsyncRollover() throws ConfigurationException {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_ASYNC_ROLLOVER, "true")),
+                false);
+        assertEquals(
+                new RolloverSettings(0, true), manager.getLogWriter(filename1).getRolloverSettings());
+
+        manager.updateLogWriter(pid, new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1)), false);
+        assertEquals(RolloverSettings.DEFAULT, manager.getLogWriter(filename1).getRolloverSettings());
+    }
+
+    @Test
+    void testUpdateLogWriterWithSizeLimits() throws ConfigurationException {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        manager.updateLogWriter(
+                pid,
+                new Hashtable<>(Map.of(
+                        LogConstants.LOG_FILE, filename1,
+                        LogConstants.LOG_FILE_SIZE, "'.'yyyy-MM-dd",
+                        LogConstants.LOG_FILE_MAX_SIZE, "500MB",
+                        LogConstants.LOG_FILE_TOTAL_SIZE_CAP, "10GB")),
+                false);
+        RolloverSettings settings = manager.getLogWriter(filename1).getRolloverSettings();
+        assertEquals(500L * 1024 * 1024, settings.maxFileSize());
+        assertEquals(10L * 1024 * 1024 * 1024, settings.totalSizeCap());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {LogConstants.LOG_FILE_MAX_SIZE, LogConstants.LOG_FILE_TOTAL_SIZE_CAP})
+    void testUpdateLogWriterWithInvalidSizeLimit(String property) {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        Hashtable<String, Object> config =
+                new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1, property, "invalid"));
+        ConfigurationException e =
+                assertThrows(ConfigurationException.class, () -> manager.updateLogWriter(pid, config, false));
+        assertEquals(property, e.getProperty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"zstd", "gzip:0", "gzip:10"})
+    void testUpdateLogWriterWithInvalidCompression(String compression) {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        String[] parts = compression.split(":");
+        Hashtable<String, Object> config =
+                new Hashtable<>(Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_COMPRESSION, parts[0]));
+        if (parts.length > 1) {
+            config.put(LogConstants.LOG_FILE_COMPRESSION_LEVEL, parts[1]);
+        }
+        ConfigurationException e =
+                assertThrows(ConfigurationException.class, () -> manager.updateLogWriter(pid, config, false));
+        assertEquals(
+                parts.length > 1 ? LogConstants.LOG_FILE_COMPRESSION_LEVEL : LogConstants.LOG_FILE_COMPRESSION,
+                e.getProperty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {LogConstants.LOG_FILE_BUFFERED_FLUSH_SIZE, LogConstants.LOG_FILE_BUFFERED_FLUSH_LEVEL})
+    void testUpdateLogWriterWithInvalidFlushSettings(String property) {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        Hashtable<String, Object> config = new Hashtable<>(
+                Map.of(LogConstants.LOG_FILE, filename1, LogConstants.LOG_FILE_BUFFERED, "true", property, "invalid"));
+        ConfigurationException e =
+                assertThrows(ConfigurationException.class, () -> manager.updateLogWriter(pid, config, false));
+        assertEquals(property, e.getProperty());
+    }
+
+    @Test
+    void testUpdateLogWriterWithInvalidDiscardLevel() {
+        String pid = String.format("%s~logwriter1", LogConstants.FACTORY_PID_CONFIGS);
+        String filename1 = manager.getAbsoluteFilePath("logs/logwriter1.log");
+        Hashtable<String, Object> config = new Hashtable<>(Map.of(
+                LogConstants.LOG_FILE, filename1,
+                LogConstants.LOG_FILE_ASYNC, "true",
+                LogConstants.LOG_FILE_ASYNC_DISCARD_LEVEL, "invalid"));
+        ConfigurationException e =
+                assertThrows(ConfigurationException.class, () -> manager.updateLogWriter(pid, config, false));
+        assertEquals(LogConstants.LOG_FILE_ASYNC_DISCARD_LEVEL, e.getProperty());
+    }
+
     @ParameterizedTest
     @NullAndEmptySource
     void testUpdateLogWriterWithNullFileName(String filename) throws ConfigurationException {
@@ -1357,6 +1693,48 @@ class LogConfigManagerTest {
         assertEquals(expectedPath, ((RollingFileAppender<ILoggingEvent>) appender).getFile());
     }
 
+    @Test
+    void testAddOrUpdateAppenderFromConfigWithSizeLimits() {
+        String appenderName = LogConstants.FACTORY_PID_CONFIGS + "~myappender1";
+        Hashtable<String, Object> appenderConfig = new Hashtable<>(Map.of(
+                LogConstants.LOG_FILE, "logs/testAddOrUpdateAppenderFromConfigWithSizeLimits.log",
+                LogConstants.LOG_LOGGERS, List.of("log.testAddOrUpdateAppenderFromConfigWithSizeLimits"),
+                LogConstants.LOG_FILE_MAX_SIZE, "500MB",
+                LogConstants.LOG_FILE_TOTAL_SIZE_CAP, "10GB"));
+        manager.addOrUpdateAppender(AppenderOrigin.CONFIGSERVICE, appenderName, appenderConfig);
+
+        ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger)
+                LoggerFactory.getLogger("log.testAddOrUpdateAppenderFromConfigWithSizeLimits");
+        RollingFileAppender<ILoggingEvent> appender =
+                (RollingFileAppender<ILoggingEvent>) logger.getAppender(appenderName);
+        assertTrue(appender.getRollingPolicy() instanceof SlingSizeAndTimeBasedRollingPolicy);
+        SlingSizeAndTimeBasedRollingPolicy<?> policy =
+                (SlingSizeAndTimeBasedRollingPolicy<?>) appender.getRollingPolicy();
+        assertTrue(policy.getFileNamePattern()
+                .endsWith("testAddOrUpdateAppenderFromConfigWithSizeLimits.log.%d{yyyy-MM-dd}.%i"));
+        assertEquals(10L * 1024 * 1024 * 1024, policy.getTotalSizeCap());
+        appender.stop();
+    }
+
+    @Test
+    void testAddOrUpdateAppenderFromConfigWithInvalidSizeLimit() {
+        String appenderName = LogConstants.FACTORY_PID_CONFIGS + "~myappender1";
+        Hashtable<String, Object> appenderConfig = new Hashtable<>(Map.of(
+                LogConstants.LOG_FILE, "logs/testAddOrUpdateAppenderFromConfigWithInvalidSizeLimit.log",
+                LogConstants.LOG_LOGGERS, List.of("log.testAddOrUpdateAppenderFromConfigWithInvalidSizeLimit"),
+                LogConstants.LOG_FILE_TOTAL_SIZE_CAP, "invalid"));
+        manager.addOrUpdateAppender(AppenderOrigin.CONFIGSERVICE, appenderName, appenderConfig);
+
+        // the invalid value is ignored
+        ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger)
+                LoggerFactory.getLogger("log.testAddOrUpdateAppenderFromConfigWithInvalidSizeLimit");
+        RollingFileAppender<ILoggingEvent> appender =
+                (RollingFileAppender<ILoggingEvent>) logger.getAppender(appenderName);
+        assertTrue(appender.getRollingPolicy() instanceof SlingTimeBasedRollingPolicy);
+        assertEquals(0, ((SlingTimeBasedRollingPolicy<?>) appender.getRollingPolicy()).getTotalSizeCap());
+        appender.stop();
+    }
+
     @ParameterizedTest
     @NullAndEmptySource
     @ValueSource(strings = {LogConstants.FILE_NAME_CONSOLE})
@@ -41,7 +41,9 @@ import org.slf4j.LoggerFactory;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
@@ -199,6 +201,25 @@ class LogConfigTest {
         }
     }
 
+    @Test
+    void testCreateLayoutWithLayoutCache() {
+        LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutCache cache = new PatternLayoutCache();
+        LogConfig config1 = createConfig("{0,date,dd.MM.yyyy HH:mm:ss.SSS} *{4}* [{2}] {3} {5}");
+        LogConfig config2 = createConfig("%d{dd.MM.yyyy HH:mm:ss.SSS} *%level* [%thread] %logger %message%n");
+        config1.setLayoutCache(cache);
+        config2.setLayoutCache(cache);
+
+        // both patterns are the same once converted so the layout is shared
+        PatternLayout layout = config1.createLayout(loggerContext);
+        assertSame(layout, config2.createLayout(loggerContext));
+        assertSame(layout, config1.createLayout(loggerContext));
+
+        // without the cache each call creates a new layout
+        config1.setLayoutCache(null);
+        assertNotSame(layout, config1.createLayout(loggerContext));
+    }
+
     /**
      * Test method for {@link org.apache.sling.commons.log.logback.internal.LogConfig#toString()}.
      */
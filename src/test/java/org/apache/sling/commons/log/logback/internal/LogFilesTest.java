@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.apache.sling.commons.log.logback.internal.util.BinaryLogEncoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class LogFilesTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testIsCompressed() {
+        assertTrue(LogFiles.isCompressed(new File("error.log.1.gz")));
+        assertTrue(LogFiles.isCompressed(new File("error.log.1.zip")));
+        assertFalse(LogFiles.isCompressed(new File("error.log.1")));
+    }
+
+    @Test
+    void testOpenPlain() throws IOException {
+        File file = tempDir.resolve("error.log").toFile();
+        Files.writeString(file.toPath(), "plain");
+        assertEquals("plain", read(file));
+    }
+
+    @Test
+    void testOpenPreallocated() throws IOException {
+        File file = tempDir.resolve("error.log").toFile();
+        Files.writeString(file.toPath(), "plain");
+        Files.write(file.toPath(), new byte[100], StandardOpenOption.APPEND);
+        assertEquals("plain", read(file));
+    }
+
+    @Test
+    void testLogicalLength() throws IOException {
+        File file = tempDir.resolve("error.log").toFile();
+        assertEquals(0, LogFiles.logicalLength(file));
+        Files.writeString(file.toPath(), "plain");
+        Files.write(file.toPath(), new byte[100], StandardOpenOption.APPEND);
+        assertEquals(5, LogFiles.logicalLength(file));
+        assertEquals(5, LogFiles.textLength(file));
+
+        // never preallocated
+        File binary = tempDir.resolve("binary.log").toFile();
+        writeBinary(binary, "binary {}", 1);
+        assertEquals(binary.length(), LogFiles.logicalLength(binary));
+        File gzip = tempDir.resolve("error.log.1.gz").toFile();
+        try (GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(gzip))) {
+            out.write(new byte[10]);
+        }
+        assertEquals(gzip.length(), LogFiles.logicalLength(gzip));
+    }
+
+    @Test
+    void testOpenGzip() throws IOException {
+        File file = tempDir.resolve("error.log.1.gz").toFile();
+        try (GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write("gzip".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("gzip", read(file));
+    }
+
+    @Test
+    void testOpenBinary() throws IOException {
+        File file = tempDir.resolve("error.log").toFile();
+        MaskingMessageUtil.setMaskingEngine(MaskingEngine.compile(new String[] {"key:password"}, null));
+        try {
+            writeBinary(file, "login password={}", "secret");
+        } finally {
+            MaskingMessageUtil.setMaskingEngine(null);
+        }
+        assertTrue(LogFiles.isBinary(file));
+        // with masking rules the message is masked before being written
+        String text = read(file);
+        assertTrue(text.endsWith("*INFO* [main] foo login password=****" + System.lineSeparator()), text);
+        assertFalse(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).contains("secret"));
+
+        writeBinary(file, "login {}", "admin");
+        assertTrue(read(file).endsWith("*INFO* [main] foo login admin" + System.lineSeparator()));
+    }
+
+    @Test
+    void testOpenBinaryGzip() throws IOException {
+        File plain = tempDir.resolve("error.log").toFile();
+        writeBinary(plain, "compressed {}", 1);
+        File file = tempDir.resolve("error.log.1.gz").toFile();
+        try (GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(Files.readAllBytes(plain.toPath()));
+        }
+        assertTrue(LogFiles.isBinary(file));
+        assertTrue(read(file).endsWith("foo compressed 1" + System.lineSeparator()));
+    }
+
+    @Test
+    void testIsBinary() throws IOException {
+        File file = tempDir.resolve("error.log").toFile();
+        assertFalse(LogFiles.isBinary(file));
+        Files.writeString(file.toPath(), "plain");
+        assertFalse(LogFiles.isBinary(file));
+    }
+
+    private static void writeBinary(File file, String message, Object arg) throws IOException {
+        LoggerContext loggerContext = new LoggerContext();
+        BinaryLogEncoder encoder = new BinaryLogEncoder();
+        encoder.setContext(loggerContext);
+        encoder.start();
+        LoggingEvent event = new LoggingEvent(
+                LogFilesTest.class.getName(), loggerContext.getLogger("foo"), Level.INFO, message, null, new Object[] {
+                    arg
+                });
+        event.setThreadName("main");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(encoder.headerBytes());
+            out.write(encoder.encode(event));
+        }
+    }
+
+    @Test
+    void testOpenZip() throws IOException {
+        File file = tempDir.resolve("error.log.1.zip").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("dir/"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("dir/error.log.1"));
+            out.write("zip".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        assertEquals("zip", read(file));
+    }
+
+    @Test
+    void testListRotatedFiles() throws IOException {
+        File active = createFile("error.log", 0);
+        File rotated1 = createFile("error.log.1.gz", 1000);
+        File rotated2 = createFile("error.log.2.gz", 2000);
+        createFile("error.log.2.gz.idx", 1000);
+        createFile("request.log", 1000);
+
+        assertArrayEquals(new File[] {active, rotated1, rotated2}, LogFiles.listRotatedFiles(active));
+    }
+
+    @Test
+    void testListRotatedFilesWithoutDir() {
+        File file = tempDir.resolve("missing/error.log").toFile();
+        assertEquals(0, LogFiles.listRotatedFiles(file).length);
+    }
+
+    private File createFile(String name, long age) throws IOException {
+        File file = tempDir.resolve(name).toFile();
+        assertTrue(file.createNewFile());
+        assertTrue(file.setLastModified(System.currentTimeMillis() - age * 1000));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        try (InputStream in = LogFiles.openStream(file)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.sling.commons.log.logback.internal;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -29,10 +30,15 @@ import ch.qos.logback.core.encoder.Encoder;
 import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
 import ch.qos.logback.core.rolling.FixedWindowRollingPolicy;
 import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy;
 import ch.qos.logback.core.rolling.SizeBasedTriggeringPolicy;
 import ch.qos.logback.core.rolling.TimeBasedRollingPolicy;
 import ch.qos.logback.core.rolling.TriggeringPolicy;
 import org.apache.commons.io.FileUtils;
+import org.apache.sling.commons.log.logback.internal.util.AsyncSettings;
+import org.apache.sling.commons.log.logback.internal.util.FlushSettings;
+import org.apache.sling.commons.log.logback.internal.util.RolloverSettings;
+import org.apache.sling.commons.log.logback.internal.util.SheddingSettings;
 import org.apache.sling.commons.log.logback.internal.util.SlingRollingFileAppender;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -46,6 +52,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -77,6 +84,25 @@ class LogWriterTest {
         assertEquals(LogConstants.LOG_FILE_NUMBER_DEFAULT, logWriter3.getLogNumber());
     }
 
+    @Test
+    void testConstructorWithSettingsDefaults() {
+        LogWriter lw = new LogWriter(
+                "pid",
+                "settings",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                "target/logs/settings.log",
+                new WriterSettings(null, "", null, false, null, null, -1));
+        assertEquals(LogConstants.LOG_FILE_FORMAT_TEXT, lw.getFormat());
+        assertEquals(RolloverSettings.DEFAULT, lw.getRolloverSettings());
+        assertEquals(0, lw.getPreallocationSize());
+        assertNull(lw.getFlushSettings());
+        assertFalse(lw.isAsyncLogging());
+
+        // the original constructor maps the buffered logging to the default flush settings
+        assertEquals(FlushSettings.DEFAULT, logWriter2.getFlushSettings());
+    }
+
     @ParameterizedTest
     @NullAndEmptySource
     void testConstructorWithNullLogRotation(String logRotation) {
@@ -243,6 +269,308 @@ class LogWriterTest {
         assertNotNull(logWriter2.toString());
     }
 
+    @Test
+    void testFormat() {
+        assertEquals(LogConstants.LOG_FILE_FORMAT_TEXT, logWriter1.getFormat());
+        assertFalse(logWriter1.isJsonFormat());
+
+        LogWriter lw = new LogWriter(
+                "pid",
+                "json",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                "target/logs/json.log",
+                WriterSettings.DEFAULT.withFormat("JSON"));
+        assertEquals("JSON", lw.getFormat());
+        assertTrue(lw.isJsonFormat());
+        assertFalse(lw.isBinaryFormat());
+
+        lw = new LogWriter(
+                "pid",
+                "binary",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                "target/logs/binary.log",
+                WriterSettings.DEFAULT.withFormat("binary"));
+        assertTrue(lw.isBinaryFormat());
+
+        // the console is always written as text
+        lw = new LogWriter(
+                "pid",
+                "binary",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                null,
+                WriterSettings.DEFAULT.withFormat("binary"));
+        assertFalse(lw.isBinaryFormat());
+    }
+
+    @Test
+    void testAsyncLogging() {
+        assertFalse(logWriter1.isAsyncLogging());
+
+        LogWriter lw = new LogWriter(
+                "pid",
+                "async",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                "target/logs/async.log",
+                WriterSettings.DEFAULT.withAsyncSettings(AsyncSettings.DEFAULT));
+        assertTrue(lw.isAsyncLogging());
+        Appender<ILoggingEvent> appender = createappender(lw);
+        assertTrue(((SlingRollingFileAppender<ILoggingEvent>) appender).isAsync());
+        appender.stop();
+
+        // the console is always written on the logging thread
+        lw = new LogWriter(
+                "pid",
+                "async",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                null,
+                WriterSettings.DEFAULT.withAsyncSettings(AsyncSettings.DEFAULT));
+        assertFalse(lw.isAsyncLogging());
+    }
+
+    @Test
+    void testFlushSettings() {
+        assertNull(logWriter1.getFlushSettings());
+
+        FlushSettings settings = new FlushSettings(50, 1024, Level.WARN);
+        LogWriter lw = new LogWriter(
+                "pid",
+                "buffered",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                "target/logs/buffered.log",
+                WriterSettings.DEFAULT.withFlushSettings(settings));
+        assertSame(settings, lw.getFlushSettings());
+        Appender<ILoggingEvent> appender = createappender(lw);
+        assertSame(settings, ((SlingRollingFileAppender<ILoggingEvent>) appender).getFlushSettings());
+        assertFalse(((SlingRollingFileAppender<ILoggingEvent>) appender).isImmediateFlush());
+        appender.stop();
+
+        lw = new LogWriter("pid", "buffered", 1, LogConstants.LOG_FILE_SIZE_DEFAULT, "target/logs/buffered.log", true);
+        assertSame(FlushSettings.DEFAULT, lw.getFlushSettings());
+
+        // the console is not grouping the flushes
+        lw = new LogWriter(
+                "pid",
+                "buffered",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                null,
+                WriterSettings.DEFAULT.withFlushSettings(settings));
+        appender = createappender(lw);
+        assertInstanceOf(appender, ConsoleAppender.class);
+        appender.stop();
+    }
+
+    @Test
+    void testChannelOutput() {
+        assertFalse(logWriter1.isChannelOutput());
+
+        LogWriter lw = new LogWriter(
+                "pid",
+                "channel",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                "target/logs/channel.log",
+                WriterSettings.DEFAULT.withChannelOutput(true));
+        assertTrue(lw.isChannelOutput());
+        Appender<ILoggingEvent> appender = createappender(lw);
+        assertTrue(((SlingRollingFileAppender<ILoggingEvent>) appender).isChannelOutput());
+        appender.stop();
+
+        // the console is always written through the stream
+        lw = new LogWriter(
+                "pid",
+                "channel",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                null,
+                WriterSettings.DEFAULT.withChannelOutput(true));
+        assertFalse(lw.isChannelOutput());
+    }
+
+    @Test
+    void testCompression() {
+        assertEquals(0, logWriter1.getCompressionLevel());
+
+        LogWriter lw = new LogWriter(
+                "pid",
+                "compressed",
+                3,
+                "4k",
+                "target/logs/compressed.log",
+                WriterSettings.DEFAULT.withRolloverSettings(new RolloverSettings(9, false)));
+        assertEquals(9, lw.getCompressionLevel());
+        Appender<ILoggingEvent> appender = createappender(lw);
+        SlingFixedWindowRollingPolicy policy =
+                (SlingFixedWindowRollingPolicy) ((SlingRollingFileAppender<ILoggingEvent>) appender).getRollingPolicy();
+        assertEquals(new RolloverSettings(9, false), policy.getSettings());
+        assertEquals("target/logs/compressed.log%i.gz", policy.getFileNamePattern());
+        appender.stop();
+
+        // logback compresses the files rotated by date
+        lw = new LogWriter(
+                "pid",
+                "compressed",
+                3,
+                "'.'yyyy-MM",
+                "target/logs/compressed.log",
+                WriterSettings.DEFAULT.withRolloverSettings(new RolloverSettings(6, false)));
+        appender = createappender(lw);
+        TimeBasedRollingPolicy<ILoggingEvent> tbrp = (TimeBasedRollingPolicy<ILoggingEvent>)
+                ((SlingRollingFileAppender<ILoggingEvent>) appender).getTriggeringPolicy();
+        assertEquals("target/logs/compressed.log.%d{yyyy-MM}.gz", tbrp.getFileNamePattern());
+        appender.stop();
+
+        // the console is never rotated
+        lw = new LogWriter(
+                "pid",
+                "compressed",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                null,
+                WriterSettings.DEFAULT.withRolloverSettings(new RolloverSettings(6, false)));
+        assertEquals(0, lw.getCompressionLevel());
+    }
+
+    @Test
+    void testSizeAndTimeBasedRotation() {
+        LogWriter lw = new LogWriter(
+                "pid",
+                "capped",
+                7,
+                "'.'yyyy-MM-dd",
+                "target/logs/capped.log",
+                WriterSettings.DEFAULT.withRolloverSettings(
+                        new RolloverSettings(6, false, 500 * FileUtils.ONE_MB, 10 * FileUtils.ONE_GB)));
+        Appender<ILoggingEvent> appender = createappender(lw);
+        SlingRollingFileAppender<ILoggingEvent> sr = (SlingRollingFileAppender<ILoggingEvent>) appender;
+        assertInstanceOf(sr.getRollingPolicy(), SizeAndTimeBasedRollingPolicy.class);
+        SizeAndTimeBasedRollingPolicy<ILoggingEvent> policy =
+                (SizeAndTimeBasedRollingPolicy<ILoggingEvent>) sr.getRollingPolicy();
+        assertEquals("target/logs/capped.log.%d{yyyy-MM-dd}.%i.gz", policy.getFileNamePattern());
+        assertEquals(7, policy.getMaxHistory());
+        assertEquals(
+                10 * FileUtils.ONE_GB, ((SlingSizeAndTimeBasedRollingPolicy<ILoggingEvent>) policy).getTotalSizeCap());
+        appender.stop();
+    }
+
+    @Test
+    void testCreateFileNamePatternWithRolloverSettings() {
+        assertEquals(
+                "error.log.%d{yyyy-MM-dd}",
+                LogWriter.createFileNamePattern("error.log", "'.'yyyy-MM-dd", RolloverSettings.DEFAULT));
+        assertEquals(
+                "error.log.%d{yyyy-MM-dd}.%i",
+                LogWriter.createFileNamePattern("error.log", "'.'yyyy-MM-dd", new RolloverSettings(0, false, 1024, 0)));
+        // the number is placed before a configured compression suffix
+        assertEquals(
+                "error.log.%d{yyyy-MM-dd}.%i.zip",
+                LogWriter.createFileNamePattern(
+                        "error.log", ".%d{yyyy-MM-dd}.zip", new RolloverSettings(6, false, 1024, 0)));
+        assertInstanceOf(
+                LogWriter.createTimeBasedRollingPolicy(RolloverSettings.DEFAULT), SlingTimeBasedRollingPolicy.class);
+        assertInstanceOf(
+                LogWriter.createTimeBasedRollingPolicy(new RolloverSettings(0, false, 1024, 0)),
+                SlingSizeAndTimeBasedRollingPolicy.class);
+    }
+
+    @Test
+    void testAsyncSettings() {
+        assertNull(logWriter1.getAsyncSettings());
+
+        AsyncSettings settings = new AsyncSettings(16, Level.INFO, true, 0);
+        LogWriter lw = new LogWriter(
+                "pid",
+                "async",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                "target/logs/async.log",
+                WriterSettings.DEFAULT.withAsyncSettings(settings));
+        assertTrue(lw.isAsyncLogging());
+        assertSame(settings, lw.getAsyncSettings());
+        Appender<ILoggingEvent> appender = createappender(lw);
+        assertSame(settings, ((SlingRollingFileAppender<ILoggingEvent>) appender).getAsyncSettings());
+        appender.stop();
+
+        lw = new LogWriter(
+                "pid",
+                "async",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                "target/logs/async.log",
+                WriterSettings.DEFAULT.withAsyncSettings(AsyncSettings.DEFAULT));
+        assertSame(AsyncSettings.DEFAULT, lw.getAsyncSettings());
+    }
+
+    @Test
+    void testSheddingSettings() {
+        assertNull(logWriter1.getSheddingSettings());
+
+        SheddingSettings settings = new SheddingSettings(100, Level.ERROR, 1024, 500);
+        LogWriter lw = new LogWriter(
+                "pid",
+                "shedding",
+                1,
+                LogConstants.LOG_FILE_SIZE_DEFAULT,
+                "target/logs/shedding.log",
+                WriterSettings.DEFAULT.withSheddingSettings(settings));
+        assertSame(settings, lw.getSheddingSettings());
+        Appender<ILoggingEvent> appender = createappender(lw);
+        SlingRollingFileAppender<ILoggingEvent> rollingAppender = (SlingRollingFileAppender<ILoggingEvent>) appender;
+        assertSame(settings, rollingAppender.getSheddingSettings());
+        assertFalse(rollingAppender.isShedding());
+        appender.stop();
+    }
+
+    @Test
+    void testPreallocation() {
+        assertEquals(0, logWriter1.getPreallocationSize());
+
+        LogWriter lw = new LogWriter(
+                "pid",
+                "preallocated",
+                1,
+                "4k",
+                "target/logs/preallocated.log",
+                WriterSettings.DEFAULT.withPreallocationSize(1024));
+        assertEquals(1024, lw.getPreallocationSize());
+        // implied by the preallocation
+        assertTrue(lw.isChannelOutput());
+        Appender<ILoggingEvent> appender = createappender(lw);
+        SlingRollingFileAppender<ILoggingEvent> rollingAppender = (SlingRollingFileAppender<ILoggingEvent>) appender;
+        assertTrue(rollingAppender.isChannelOutput());
+        assertEquals(1024, rollingAppender.getPreallocationSize());
+        assertTrue(rollingAppender.getTriggeringPolicy() instanceof SlingSizeBasedTriggeringPolicy);
+        appender.stop();
+
+        // the end of the binary records cannot be told by the zero bytes
+        lw = new LogWriter(
+                "pid",
+                "preallocated",
+                1,
+                "4k",
+                "target/logs/preallocated.log",
+                WriterSettings.DEFAULT
+                        .withFormat(LogConstants.LOG_FILE_FORMAT_BINARY)
+                        .withPreallocationSize(1024));
+        assertEquals(0, lw.getPreallocationSize());
+        assertFalse(lw.isChannelOutput());
+        appender = createappender(lw);
+        rollingAppender = (SlingRollingFileAppender<ILoggingEvent>) appender;
+        assertEquals(0, rollingAppender.getPreallocationSize());
+        assertFalse(rollingAppender.getTriggeringPolicy() instanceof SlingSizeBasedTriggeringPolicy);
+        appender.stop();
+
+        lw = new LogWriter("pid", "preallocated", 1, "4k", null, WriterSettings.DEFAULT.withPreallocationSize(1024));
+        assertEquals(0, lw.getPreallocationSize());
+        assertFalse(lw.isChannelOutput());
+    }
+
     @Test
     void specialHandlingForConsole() {
         LogWriter lw = new LogWriter(null, null, 5, null);
@@ -18,16 +18,24 @@
  */
 package org.apache.sling.commons.log.logback.internal;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.PatternLayout;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
 import ch.qos.logback.core.encoder.Encoder;
 import org.apache.sling.commons.log.logback.internal.MaskingMessageUtil.MaskingPatternLayoutEncoder;
+import org.apache.sling.commons.log.logback.internal.util.SlingPatternLayout;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -63,4 +71,80 @@ class MaskingMessageUtilTest {
         assertNull(MaskingMessageUtil.mask(null));
         assertEquals("hello__world", MaskingMessageUtil.mask("hello\r\nworld"));
     }
+
+    @Test
+    void testMaskWithoutLineBreaks() {
+        String msg = "hello world";
+        assertSame(msg, MaskingMessageUtil.mask(msg));
+        assertEquals("_a_b_", MaskingMessageUtil.mask("\na\rb\n"));
+    }
+
+    /**
+     * Test method for {@link org.apache.sling.commons.log.logback.internal.MaskingMessageUtil#appendMasked(StringBuilder, String)}.
+     */
+    @Test
+    void testAppendMasked() {
+        StringBuilder buf = new StringBuilder(">");
+        MaskingMessageUtil.appendMasked(buf, "hello\r\nworld");
+        MaskingMessageUtil.appendMasked(buf, "|");
+        MaskingMessageUtil.appendMasked(buf, "\n");
+        MaskingMessageUtil.appendMasked(buf, null);
+        assertEquals(">hello__world|_null", buf.toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+            strings = {
+                "%level %msg%n%ex",
+                "%level %m %rEx",
+                "%level %message%n%xEx",
+                "%msg",
+                "%-10.20msg%n%ex{2}",
+                "%msg %ex{full, java.lang.reflect}"
+            })
+    void testAppendedOutputMatchesWrittenOutput(String pattern) {
+        LoggerContext loggerContext = new LoggerContext();
+        PatternLayout written = new PatternLayout();
+        SlingPatternLayout appended = new SlingPatternLayout();
+        for (PatternLayout pl : new PatternLayout[] {written, appended}) {
+            pl.setContext(loggerContext);
+            pl.setPattern(pattern);
+            MaskingMessageUtil.setMessageConverter(pl);
+            pl.start();
+        }
+
+        Exception cause = new IllegalStateException("root\ncause");
+        Exception e = new RuntimeException("outer\r\nmessage", cause);
+        e.addSuppressed(new IllegalArgumentException("suppressed\nmessage"));
+        ILoggingEvent event = new LoggingEvent(
+                getClass().getName(), loggerContext.getLogger("test"), Level.INFO, "multi\nline\rmessage", e, null);
+
+        String expected = written.doLayout(event);
+        StringBuilder buf = new StringBuilder();
+        appended.doLayout(event, buf);
+        assertEquals(expected, buf.toString());
+        assertFalse(expected.contains("multi\n"));
+        assertFalse(expected.contains("root\n"));
+        assertFalse(expected.contains("outer\r"));
+        assertFalse(expected.contains("suppressed\n"));
+    }
+
+    @Test
+    void testMaskingEngine() {
+        int version = MaskingMessageUtil.getMaskingVersion();
+        try {
+            MaskingMessageUtil.setMaskingEngine(MaskingEngine.compile(new String[] {"key:password"}, null));
+            assertNotEquals(version, MaskingMessageUtil.getMaskingVersion());
+            assertTrue(MaskingMessageUtil.hasMaskingRules());
+            assertEquals("login_password=****", MaskingMessageUtil.mask("login\npassword=secret"));
+            StringBuilder buf = new StringBuilder();
+            MaskingMessageUtil.appendMasked(buf, "password=secret");
+            assertEquals("password=****", buf.toString());
+        } finally {
+            MaskingMessageUtil.setMaskingEngine(null);
+        }
+        assertSame(MaskingEngine.LINE_BREAKS_ONLY, MaskingMessageUtil.getMaskingEngine());
+        assertFalse(MaskingMessageUtil.hasMaskingRules());
+        assertEquals("password=secret", MaskingMessageUtil.mask("password=secret"));
+    }
 }
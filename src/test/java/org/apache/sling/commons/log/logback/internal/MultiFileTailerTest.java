@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *
+ */
+class MultiFileTailerTest {
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService executor;
+    private File rotated;
+    private File active;
+
+    @BeforeEach
+    protected void beforeEach() throws IOException {
+        executor = Executors.newFixedThreadPool(2);
+        rotated = tempDir.resolve("error.log.1.gz").toFile();
+        try (GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(rotated))) {
+            out.write("old 1\nold 2 ERROR\nold 3\n".getBytes(StandardCharsets.UTF_8));
+        }
+        active = tempDir.resolve("error.log").toFile();
+        Files.writeString(active.toPath(), "new 1 ERROR\nnew 2\nnew 3\n");
+    }
+
+    @AfterEach
+    protected void afterEach() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testTailAll() throws IOException {
+        String output = tail(new MultiFileTailer(executor, -1, FilteringListener.MATCH_ALL), rotated, active);
+        assertEquals(
+                String.format(
+                        "==> error.log.1.gz <==%nold 1%nold 2 ERROR%nold 3%n==> error.log <==%nnew 1 ERROR%nnew 2%nnew 3%n"),
+                output);
+    }
+
+    @Test
+    void testTailLines() throws IOException {
+        String output = tail(new MultiFileTailer(executor, 1, null), rotated, active);
+        assertEquals(String.format("==> error.log.1.gz <==%nold 3%n==> error.log <==%nnew 3%n"), output);
+    }
+
+    @Test
+    void testGrep() throws IOException {
+        String output = tail(new MultiFileTailer(executor, -1, "error"), active, rotated);
+        assertEquals(String.format("==> error.log <==%nnew 1 ERROR%n==> error.log.1.gz <==%nold 2 ERROR%n"), output);
+    }
+
+    @Test
+    void testGrepWithContext() throws IOException {
+        String output = tail(new MultiFileTailer(executor, 10, "error", 0, 1, EventBoundary.LINE), rotated, active);
+        assertEquals(
+                String.format("==> error.log.1.gz <==%nold 2 ERROR%nold 3%n==> error.log <==%nnew 1 ERROR%nnew 2%n"),
+                output);
+    }
+
+    @Test
+    void testMissingFile() {
+        MultiFileTailer tailer = new MultiFileTailer(executor, 10, "error");
+        File missing = tempDir.resolve("missing.log").toFile();
+        assertThrows(FileNotFoundException.class, () -> tail(tailer, active, missing));
+    }
+
+    private static String tail(MultiFileTailer tailer, File... files) throws IOException {
+        StringWriter sw = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(sw)) {
+            tailer.tail(pw, files);
+        }
+        return sw.toString();
+    }
+}
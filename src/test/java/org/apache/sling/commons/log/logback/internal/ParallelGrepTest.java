@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class ParallelGrepTest {
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService pool;
+    private File file;
+
+    @BeforeEach
+    protected void beforeEach() {
+        pool = new ForkJoinPool(4);
+        file = tempDir.resolve("error.log").toFile();
+    }
+
+    @AfterEach
+    protected void afterEach() {
+        pool.shutdownNow();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 16, 1024, ParallelGrep.REGION_SIZE})
+    void testSameResultAsSequential(int regionSize) throws IOException {
+        StringBuilder content = new StringBuilder();
+        Random rnd = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            content.append(rnd.nextBoolean() ? "ERROR " : "INFO ")
+                    .append("message ")
+                    .append(i);
+            for (int j = rnd.nextInt(20); j > 0; j--) {
+                content.append('x');
+            }
+            content.append(i % 7 == 0 ? "\r\n" : "\n");
+        }
+        content.append("ERROR without line feed");
+        Files.writeString(file.toPath(), content);
+
+        for (String query : new String[] {"error", "query:ERROR AND NOT 1", ".*message 4.*", "*"}) {
+            assertEquals(sequential(query), grep(new ParallelGrep(pool, query, regionSize, 3)), query);
+        }
+    }
+
+    @Test
+    void testBoundedPendingRegions() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("ERROR message ").append(i).append('\n');
+        }
+        Files.writeString(file.toPath(), content);
+
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger maxPending = new AtomicInteger();
+        Executor counting = task -> {
+            maxPending.accumulateAndGet(submitted.incrementAndGet() - written.get(), Math::max);
+            pool.execute(task);
+        };
+        StringWriter sw = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(sw) {
+            @Override
+            public void print(String s) {
+                written.incrementAndGet();
+                super.print(s);
+            }
+        }) {
+            new ParallelGrep(counting, "error", 64, 3).grep(pw, file);
+        }
+        assertEquals(sequential("error"), sw.toString());
+        assertTrue(submitted.get() > 100);
+        assertEquals(3, maxPending.get());
+    }
+
+    @Test
+    void testExecutor() throws Exception {
+        String threadName = CompletableFuture.supplyAsync(
+                        () -> Thread.currentThread().getName(), ParallelGrep.executor())
+                .get();
+        assertTrue(threadName.startsWith("sling-log-grep-"), threadName);
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        assertTrue(file.createNewFile());
+        assertEquals("", grep(new ParallelGrep(pool, "error", 16, 2)));
+    }
+
+    @Test
+    void testCompressedFile() throws IOException {
+        file = tempDir.resolve("error.log.1.gz").toFile();
+        try (GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write("INFO a\nERROR b\nINFO c\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(String.format("ERROR b%n"), grep(new ParallelGrep(pool, "error", 4, 2)));
+    }
+
+    @Test
+    void testPreallocatedFile() throws IOException {
+        Files.writeString(file.toPath(), "INFO a\nERROR b");
+        Files.write(file.toPath(), new byte[100], StandardOpenOption.APPEND);
+        assertEquals(String.format("ERROR b%n"), grep(new ParallelGrep(pool, "error", 4, 2)));
+    }
+
+    @Test
+    void testLatin1() throws IOException {
+        Files.write(file.toPath(), "café ERROR\nINFO\n".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(String.format("café ERROR%n"), grep(new ParallelGrep(pool, "error", 4, 2)));
+    }
+
+    @Test
+    void testMissingFile() {
+        ParallelGrep grep = new ParallelGrep(pool, "error");
+        assertThrows(NoSuchFileException.class, () -> grep(grep));
+    }
+
+    private String grep(ParallelGrep grep) throws IOException {
+        StringWriter sw = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(sw)) {
+            grep.grep(pw, file);
+        }
+        return sw.toString();
+    }
+
+    private String sequential(String query) throws IOException {
+        StringWriter sw = new StringWriter();
+        try (PrintWriter pw = new PrintWriter(sw)) {
+            new Tailer(new FilteringListener(pw, query), -1).tail(file);
+        }
+        return sw.toString();
+    }
+}
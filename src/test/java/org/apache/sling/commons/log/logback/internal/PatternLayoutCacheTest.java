@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.PatternLayout;
+import org.apache.sling.commons.log.logback.internal.stacktrace.OSGiAwareExceptionHandling;
+import org.apache.sling.commons.log.logback.internal.stacktrace.PackageInfoCollector;
+import org.apache.sling.commons.log.logback.internal.util.SlingPatternLayout;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class PatternLayoutCacheTest {
+
+    private PatternLayoutCache cache;
+    private LoggerContext loggerContext;
+
+    @BeforeEach
+    protected void beforeEach() {
+        cache = new PatternLayoutCache();
+        loggerContext = new LoggerContext();
+    }
+
+    @Test
+    void testGetLayout() {
+        PatternLayout layout = cache.getLayout(loggerContext, "%msg%n", null);
+        assertTrue(layout instanceof SlingPatternLayout);
+        assertTrue(layout.isStarted());
+        assertEquals("%msg%n", layout.getPattern());
+        assertSame(layout, cache.getLayout(loggerContext, "%msg%n", null));
+        assertNotSame(layout, cache.getLayout(loggerContext, "%level %msg%n", null));
+        assertNotSame(layout, cache.getLayout(new LoggerContext(), "%msg%n", null));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void testGetLayoutWithPostProcessor() {
+        PackageInfoCollector collector = new PackageInfoCollector();
+        PatternLayout layout = cache.getLayout(loggerContext, "%msg%n", new OSGiAwareExceptionHandling(collector));
+        assertSame(layout, cache.getLayout(loggerContext, "%msg%n", new OSGiAwareExceptionHandling(collector)));
+        assertNotSame(layout, cache.getLayout(loggerContext, "%msg%n", null));
+        assertNotSame(
+                layout,
+                cache.getLayout(loggerContext, "%msg%n", new OSGiAwareExceptionHandling(new PackageInfoCollector())));
+    }
+
+    @Test
+    void testPrune() {
+        PatternLayout layout1 = cache.getLayout(loggerContext, "%msg%n", null);
+        cache.getLayout(loggerContext, "%level %msg%n", null);
+        cache.prune();
+        assertEquals(2, cache.size());
+
+        // only the first layout was used since the previous prune
+        assertSame(layout1, cache.getLayout(loggerContext, "%msg%n", null));
+        cache.prune();
+        assertEquals(1, cache.size());
+        assertSame(layout1, cache.getLayout(loggerContext, "%msg%n", null));
+
+        cache.prune();
+        cache.prune();
+        assertEquals(0, cache.size());
+    }
+}
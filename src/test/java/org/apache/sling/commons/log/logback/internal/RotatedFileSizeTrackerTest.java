@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import ch.qos.logback.core.util.FileSize;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RotatedFileSizeTrackerTest {
+    @TempDir
+    Path tempDir;
+
+    private File write(String name, int size, long lastModified) throws IOException {
+        Path path = tempDir.resolve(name);
+        Files.writeString(path, "x".repeat(size));
+        File file = path.toFile();
+        file.setLastModified(lastModified);
+        return file;
+    }
+
+    private void scan(RotatedFileSizeTracker tracker) {
+        tracker.scan(
+                tempDir.toFile(),
+                "error.log.\\d{4}-\\d{2}-\\d{2}(\\.gz)?",
+                tempDir.resolve("error.log").toFile());
+    }
+
+    @Test
+    void testForCap() {
+        assertEquals(0, RotatedFileSizeTracker.forCap(null).getTotalSizeCap());
+        assertEquals(-1, RotatedFileSizeTracker.forCap(null).getTotalSize());
+        assertEquals(-1, RotatedFileSizeTracker.forCap(new FileSize(0)).getTotalSize());
+
+        RotatedFileSizeTracker tracker = RotatedFileSizeTracker.forCap(new FileSize(100));
+        assertEquals(100, tracker.getTotalSizeCap());
+        assertEquals(0, tracker.getTotalSize());
+    }
+
+    @Test
+    void testScan() throws IOException {
+        write("error.log", 1000, 3000);
+        write("error.log.2020-01-02", 20, 2000);
+        write("error.log.2020-01-01", 10, 1000);
+        write("error.log.2020-01-01.gz.idx", 5, 1000);
+        write("other.log.2020-01-01", 40, 1000);
+        // another writer whose file shares the name as prefix
+        write("error.log.json", 40, 1000);
+        write("error.log.json.2020-01-01", 40, 1000);
+
+        RotatedFileSizeTracker tracker = new RotatedFileSizeTracker(100);
+        scan(tracker);
+        assertEquals(2, tracker.getFileCount());
+        assertEquals(30, tracker.getTotalSize());
+    }
+
+    @Test
+    void testEnforceDeletesOldestFiles() throws IOException {
+        File first = write("error.log.2020-01-01", 40, 1000);
+        File second = write("error.log.2020-01-02", 40, 2000);
+        RotatedFileSizeTracker tracker = new RotatedFileSizeTracker(100);
+        scan(tracker);
+        assertEquals(List.of(), tracker.enforce());
+
+        File third = write("error.log.2020-01-03", 40, 3000);
+        tracker.rotated(third, null, 40);
+        assertEquals(List.of(first), tracker.enforce());
+        assertFalse(first.exists());
+        assertTrue(second.exists());
+        assertEquals(80, tracker.getTotalSize());
+    }
+
+    @Test
+    void testEnforceKeepsMostRecentFile() throws IOException {
+        File file = write("error.log.2020-01-01", 40, 1000);
+        RotatedFileSizeTracker tracker = new RotatedFileSizeTracker(10);
+        tracker.rotated(file, null, 40);
+        assertEquals(List.of(), tracker.enforce());
+        assertTrue(file.exists());
+    }
+
+    @Test
+    void testEnforceUsesSizeOfArchive() throws IOException {
+        File old = write("error.log.2020-01-01.gz", 50, 1000);
+        RotatedFileSizeTracker tracker = new RotatedFileSizeTracker(100);
+        scan(tracker);
+
+        // the estimate is used while the file is compressed
+        File file = tempDir.resolve("error.log.2020-01-02").toFile();
+        File archive = tempDir.resolve("error.log.2020-01-02.gz").toFile();
+        tracker.rotated(file, archive, 500);
+        assertEquals(List.of(old.getAbsoluteFile()), tracker.enforce());
+        assertEquals(500, tracker.getTotalSize());
+
+        write("error.log.2020-01-02.gz", 30, 2000);
+        write("error.log.2020-01-02.gz.idx", 5, 2000);
+        File next = tempDir.resolve("error.log.2020-01-03").toFile();
+        tracker.rotated(next, new File(next.getPath() + ".gz"), 80);
+        assertEquals(List.of(archive), tracker.enforce());
+        assertFalse(archive.exists());
+        assertFalse(new File(archive.getPath() + ".idx").exists());
+        assertEquals(80, tracker.getTotalSize());
+    }
+}
@@ -30,6 +30,7 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -295,6 +296,22 @@ class SlingConfigurationPrinterTest {
         }
     }
 
+    @Test
+    void testIncludeWholeFilePreallocated() throws IOException {
+        Path tempFile = Files.createTempFile("includeWholeFile", ".log");
+        try (StringWriter strWriter = new StringWriter();
+                PrintWriter pw = new PrintWriter(strWriter)) {
+            Files.writeString(tempFile, "log message\n");
+            Files.write(tempFile, new byte[100], StandardOpenOption.APPEND);
+
+            SlingConfigurationPrinter.includeWholeFile(pw, tempFile.toFile());
+
+            assertEquals("log message\n", strWriter.toString());
+        } finally {
+            Files.delete(tempFile);
+        }
+    }
+
     @Test
     void testIncludeWholeFileThatDoesNotExist() throws IOException {
         try (StringWriter strWriter = new StringWriter();
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.rolling.SizeBasedTriggeringPolicy;
+import ch.qos.logback.core.util.FileSize;
+import org.apache.sling.commons.log.logback.internal.util.RolloverSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlingFixedWindowRollingPolicyTest {
+    @TempDir
+    Path tempDir;
+
+    private final LoggerContext context = new LoggerContext();
+    private final Logger logger = context.getLogger(SlingFixedWindowRollingPolicyTest.class);
+    private RollingFileAppender<ILoggingEvent> appender;
+    private SlingFixedWindowRollingPolicy policy;
+    private File file;
+
+    @BeforeEach
+    void beforeEach() {
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        file = tempDir.resolve("error.log").toFile();
+    }
+
+    @AfterEach
+    void afterEach() {
+        if (appender != null) {
+            appender.stop();
+        }
+    }
+
+    private void start(int compressionLevel) {
+        start(new RolloverSettings(compressionLevel, false));
+    }
+
+    private void start(RolloverSettings settings) {
+        appender = new RollingFileAppender<>();
+        appender.setContext(context);
+        appender.setFile(file.getPath());
+
+        SizeBasedTriggeringPolicy<ILoggingEvent> triggeringPolicy = new SizeBasedTriggeringPolicy<>();
+        triggeringPolicy.setMaxFileSize(FileSize.valueOf("1GB"));
+        triggeringPolicy.setContext(context);
+        triggeringPolicy.start();
+        appender.setTriggeringPolicy(triggeringPolicy);
+
+        policy = new SlingFixedWindowRollingPolicy(settings);
+        policy.setMinIndex(1);
+        policy.setMaxIndex(2);
+        policy.setFileNamePattern(file.getPath() + "%i");
+        policy.setContext(context);
+        policy.setParent(appender);
+        policy.start();
+        appender.setRollingPolicy(policy);
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setPattern("%msg%n");
+        encoder.setContext(context);
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.start();
+    }
+
+    private void log(String message) {
+        appender.doAppend(new LoggingEvent(getClass().getName(), logger, Level.INFO, message, null, null));
+    }
+
+    private static String read(File file) throws IOException {
+        try (InputStream in = LogFiles.openStream(file)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testRolloverWithoutCompression() throws IOException {
+        start(0);
+        assertEquals(file.getPath() + "%i", policy.getFileNamePattern());
+        log("first");
+        appender.rollover();
+
+        File rotated = new File(file.getPath() + "1");
+        assertEquals("first\n", Files.readString(rotated.toPath()));
+        assertFalse(new File(file.getPath() + "1.gz").exists());
+    }
+
+    @Test
+    void testRolloverWithCompression() throws IOException {
+        start(6);
+        assertEquals(file.getPath() + "%i.gz", policy.getFileNamePattern());
+        log("first");
+        appender.rollover();
+        policy.awaitRollover();
+
+        File archive1 = new File(file.getPath() + "1.gz");
+        assertTrue(archive1.isFile());
+        assertFalse(new File(file.getPath() + "1").exists());
+        assertEquals("first\n", read(archive1));
+        assertNotNull(GzipBlockIndex.read(archive1));
+
+        log("second");
+        appender.rollover();
+        log("third");
+        appender.rollover();
+        policy.awaitRollover();
+
+        // the window keeps the two most recent files along with their index
+        File archive2 = new File(file.getPath() + "2.gz");
+        assertEquals("third\n", read(archive1));
+        assertEquals("second\n", read(archive2));
+        assertNotNull(GzipBlockIndex.read(archive2));
+        assertFalse(new File(file.getPath() + "3.gz").exists());
+
+        log("active");
+        assertEquals("active\n", Files.readString(file.toPath()));
+    }
+
+    @Test
+    void testAsyncRollover() throws IOException {
+        start(new RolloverSettings(0, true));
+        assertEquals(file.getPath() + "%i", policy.getFileNamePattern());
+        log("first");
+        appender.rollover();
+        log("second");
+        appender.rollover();
+        log("third");
+        appender.rollover();
+        log("active");
+        policy.awaitRollover();
+
+        assertEquals("third\n", Files.readString(tempDir.resolve("error.log1")));
+        assertEquals("second\n", Files.readString(tempDir.resolve("error.log2")));
+        assertFalse(tempDir.resolve("error.log3").toFile().exists());
+        assertEquals("active\n", Files.readString(file.toPath()));
+        assertEquals(0, listStagingFiles().length);
+    }
+
+    @Test
+    void testStartHandsOverLeftoverStagingFile() throws IOException {
+        Files.writeString(tempDir.resolve("error.log.12345" + SlingFixedWindowRollingPolicy.SUFFIX_STAGING), "left\n");
+        start(new RolloverSettings(0, true));
+        policy.awaitRollover();
+
+        assertEquals("left\n", Files.readString(tempDir.resolve("error.log1")));
+        assertEquals(0, listStagingFiles().length);
+    }
+
+    private File[] listStagingFiles() {
+        return tempDir.toFile().listFiles((dir, name) -> name.endsWith(SlingFixedWindowRollingPolicy.SUFFIX_STAGING));
+    }
+
+    @Test
+    void testRolloverShiftsUncompressedLeftover() throws IOException {
+        start(1);
+        // left over by a failed compression
+        Files.writeString(tempDir.resolve("error.log1"), "leftover\n");
+        log("first");
+        appender.rollover();
+        policy.awaitRollover();
+
+        assertEquals("leftover\n", Files.readString(tempDir.resolve("error.log2")));
+        assertEquals("first\n", read(new File(file.getPath() + "1.gz")));
+    }
+
+    @Test
+    void testRotationRunsOnLowPriorityThread() throws Exception {
+        start(6);
+        log("first");
+        appender.rollover();
+        policy.awaitRollover();
+
+        Thread compressor = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().equals("sling-log-rollover-error.log"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(Thread.MIN_PRIORITY, compressor.getPriority());
+        assertTrue(compressor.isDaemon());
+    }
+}
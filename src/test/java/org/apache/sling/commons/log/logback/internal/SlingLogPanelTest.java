@@ -19,12 +19,17 @@
 package org.apache.sling.commons.log.logback.internal;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -32,7 +37,10 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.StreamSupport;
+import java.util.zip.GZIPOutputStream;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
@@ -163,6 +171,143 @@ class SlingLogPanelTest {
         }
     }
 
+    @Test
+    void testTailAllWithGrep() throws IOException {
+        org.slf4j.Logger logger = LoggerFactory.getLogger(getClass());
+        for (int i = 1; i < 15; i++) {
+            logger.info(String.format("log message %d", i));
+        }
+        try (StringWriter strWriter = new StringWriter();
+                PrintWriter pw = new PrintWriter(strWriter)) {
+            logPanel.tail(pw, "/logs/slingLogPanelTest.log", new TailerOptions(-1, "message 1"));
+
+            String output = strWriter.toString();
+            assertTrue(output.contains("log message 1"));
+            assertTrue(output.contains("log message 14"));
+            assertFalse(output.contains("log message 3"));
+        }
+    }
+
+    @Test
+    void testTailWithEventGrouping() throws IOException {
+        org.slf4j.Logger logger = LoggerFactory.getLogger(getClass());
+        logger.info("log message before");
+        logger.error("log message failed", new IllegalStateException("grouped failure"));
+        logger.info("log message after");
+        try (StringWriter strWriter = new StringWriter();
+                PrintWriter pw = new PrintWriter(strWriter)) {
+            logPanel.tail(pw, "/logs/slingLogPanelTest.log", new TailerOptions(100, "failed").withEventGrouping(true));
+
+            String output = strWriter.toString();
+            assertTrue(output.contains("log message failed"));
+            assertTrue(output.contains("java.lang.IllegalStateException: grouped failure"));
+            assertFalse(output.contains("log message after"));
+        }
+
+        try (StringWriter strWriter = new StringWriter();
+                PrintWriter pw = new PrintWriter(strWriter)) {
+            logPanel.tail(
+                    pw,
+                    "/logs/slingLogPanelTest.log",
+                    new TailerOptions(100, "failed").withContext(0, 1).withEventGrouping(true));
+
+            String output = strWriter.toString();
+            assertTrue(output.contains("java.lang.IllegalStateException: grouped failure"));
+            assertTrue(output.contains("log message after"));
+        }
+    }
+
+    @Test
+    void testTailIncludeRotated() throws IOException {
+        org.slf4j.Logger logger = LoggerFactory.getLogger(getClass());
+        logger.info("log message current");
+
+        File rotated = new File("target", "logs/slingLogPanelTest.log.2000-01-01.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(rotated))) {
+            out.write("log message rotated\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertTrue(rotated.setLastModified(0));
+        try (StringWriter strWriter = new StringWriter();
+                PrintWriter pw = new PrintWriter(strWriter)) {
+            logPanel.tail(pw, "/logs/slingLogPanelTest.log", new TailerOptions(0, "log message").withRotated(true));
+
+            String output = strWriter.toString();
+            int rotatedIdx = output.indexOf("log message rotated");
+            int currentIdx = output.indexOf("log message current");
+            assertTrue(rotatedIdx >= 0);
+            assertTrue(currentIdx > rotatedIdx);
+            assertTrue(output.contains("==> slingLogPanelTest.log.2000-01-01.gz <=="));
+        } finally {
+            Files.delete(rotated.toPath());
+        }
+    }
+
+    @Test
+    void testTailFollow() throws Exception {
+        org.slf4j.Logger logger = LoggerFactory.getLogger(getClass());
+        logger.info("log message before follow");
+
+        StringBuilder content = new StringBuilder();
+        // fails once the expected line got written to simulate a client going away
+        Writer writer = new Writer() {
+            @Override
+            public synchronized void write(char[] cbuf, int off, int len) {
+                content.append(cbuf, off, len);
+            }
+
+            @Override
+            public synchronized void flush() throws IOException {
+                if (content.indexOf("log message followed") >= 0) {
+                    throw new IOException("client went away");
+                }
+            }
+
+            @Override
+            public void close() {
+                // nothing to do
+            }
+        };
+        PrintWriter pw = new PrintWriter(writer);
+        CompletableFuture<Void> result = CompletableFuture.runAsync(() -> {
+            try {
+                logPanel.tail(pw, "/logs/slingLogPanelTest.log", new TailerOptions(10, "log message").withFollow(true));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!result.isDone() && System.currentTimeMillis() < deadline) {
+            logger.info("log message followed");
+            Thread.sleep(50);
+        }
+        result.get(1, TimeUnit.SECONDS);
+
+        String output;
+        synchronized (writer) {
+            output = content.toString();
+        }
+        assertTrue(output.contains("log message before follow"));
+        assertTrue(output.contains("log message followed"));
+    }
+
+    @Test
+    void testTailFollowWithoutFreeFollower() throws Exception {
+        org.slf4j.Logger logger = LoggerFactory.getLogger(getClass());
+        logger.info("log message before follow");
+
+        logPanel.followers.acquire(SlingLogPanel.MAX_FOLLOWERS);
+        try (StringWriter strWriter = new StringWriter();
+                PrintWriter pw = new PrintWriter(strWriter)) {
+            // returns after the initial content instead of following the file
+            logPanel.tail(pw, "/logs/slingLogPanelTest.log", new TailerOptions(10, "log message").withFollow(true));
+
+            assertTrue(strWriter.toString().contains("log message before follow"));
+        } finally {
+            logPanel.followers.release(SlingLogPanel.MAX_FOLLOWERS);
+        }
+        assertEquals(SlingLogPanel.MAX_FOLLOWERS, logPanel.followers.availablePermits());
+    }
+
     @Test
     void testTailWithConsoleAppenderName() throws IOException {
         String appenderName = LogConstants.FACTORY_PID_CONFIGS + "~myappender1";
@@ -733,6 +878,22 @@ class SlingLogPanelTest {
         assertEquals("[others]", logPanel.formatPid(consoleAppRoot, appender, ctx));
     }
 
+    @Test
+    void testGetSheddingStatus() {
+        @SuppressWarnings("unchecked")
+        SlingRollingFileAppender<ILoggingEvent> appender = Mockito.mock(SlingRollingFileAppender.class);
+        Mockito.when(appender.getSheddingStatus()).thenReturn("shedding since 10:00:00 (Writing took 1200 ms)");
+        assertEquals(
+                "<br/>Shedding: shedding since 10:00:00 (Writing took 1200 ms)", logPanel.getSheddingStatus(appender));
+    }
+
+    @Test
+    void testGetAsyncStatus() {
+        SlingRollingFileAppender<ILoggingEvent> appender = new SlingRollingFileAppender<>();
+        appender.setAsync(true);
+        assertEquals("<br/>Async: 0 queued, 0 written, 0 discarded, 0 dropped", logPanel.getAsyncStatus(appender));
+    }
+
     @Test
     void testFormatPidForAppenderDynamic() {
         @SuppressWarnings("rawtypes")
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.io.File;
+
+import ch.qos.logback.core.util.FileSize;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlingSizeBasedTriggeringPolicyTest {
+
+    @Test
+    void testTriggersByWrittenBytes() {
+        SlingSizeBasedTriggeringPolicy<Object> policy = new SlingSizeBasedTriggeringPolicy<>();
+        policy.setMaxFileSize(new FileSize(100));
+        policy.start();
+        // the length of the file is ignored as it includes the preallocated space
+        File file = new File("target/does-not-matter.log");
+
+        policy.getLengthCounter().add(60);
+        assertFalse(policy.isTriggeringEvent(file, null));
+        policy.getLengthCounter().add(40);
+        assertTrue(policy.isTriggeringEvent(file, null));
+
+        // counted again for the next file
+        assertEquals(0, policy.getLengthCounter().getLength());
+        assertFalse(policy.isTriggeringEvent(file, null));
+    }
+}
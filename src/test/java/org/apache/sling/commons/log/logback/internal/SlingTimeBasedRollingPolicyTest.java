@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.rolling.DefaultTimeBasedFileNamingAndTriggeringPolicy;
+import ch.qos.logback.core.rolling.RollingFileAppender;
+import ch.qos.logback.core.util.FileSize;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlingTimeBasedRollingPolicyTest {
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @TempDir
+    Path tempDir;
+
+    private final LoggerContext context = new LoggerContext();
+    private final RollingFileAppender<ILoggingEvent> appender = new RollingFileAppender<>();
+    private final DefaultTimeBasedFileNamingAndTriggeringPolicy<ILoggingEvent> fnatp =
+            new DefaultTimeBasedFileNamingAndTriggeringPolicy<>();
+    private final SlingTimeBasedRollingPolicy<ILoggingEvent> policy = new SlingTimeBasedRollingPolicy<>();
+    private long time = LocalDate.of(2020, 1, 1)
+            .atStartOfDay(ZoneId.systemDefault())
+            .toInstant()
+            .toEpochMilli();
+
+    @BeforeEach
+    void beforeEach() {
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        appender.setContext(context);
+        appender.setFile(tempDir.resolve("test.log").toString());
+        fnatp.setCurrentTime(time);
+        policy.setContext(context);
+        policy.setParent(appender);
+        policy.setFileNamePattern(tempDir.resolve("test.log.%d").toString());
+        policy.setTimeBasedFileNamingAndTriggeringPolicy(fnatp);
+    }
+
+    @AfterEach
+    void afterEach() {
+        appender.stop();
+    }
+
+    private void start() {
+        policy.start();
+        appender.setRollingPolicy(policy);
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%msg");
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.start();
+    }
+
+    private void logNextDay(String message) {
+        time += DAY;
+        fnatp.setCurrentTime(time);
+        appender.doAppend(
+                new LoggingEvent(getClass().getName(), context.getLogger("test"), Level.INFO, message, null, null));
+    }
+
+    @Test
+    void testWithoutTotalSizeCap() {
+        start();
+        assertEquals(0, policy.getTotalSizeCap());
+        assertEquals(-1, policy.getRotatedFilesSize());
+        logNextDay("first");
+        logNextDay("second");
+        assertTrue(Files.exists(tempDir.resolve("test.log.2020-01-02")));
+    }
+
+    @Test
+    void testTotalSizeCapOnlyCountsFilesOfPattern() throws Exception {
+        Files.writeString(tempDir.resolve("test.log.2019-12-31"), "x".repeat(300));
+        // written by another writer whose file shares the name as prefix
+        Files.writeString(tempDir.resolve("test.log.json"), "x".repeat(100));
+        Files.writeString(tempDir.resolve("test.log.json.2019-12-31"), "x".repeat(100));
+        policy.setTotalSizeCap(new FileSize(500));
+        start();
+        assertEquals(300, policy.getRotatedFilesSize());
+    }
+
+    @Test
+    void testTotalSizeCap() throws Exception {
+        Path existing = tempDir.resolve("test.log.2019-12-31");
+        Files.writeString(existing, "x".repeat(300));
+        policy.setTotalSizeCap(new FileSize(500));
+        start();
+        assertEquals(500, policy.getTotalSizeCap());
+        assertEquals(300, policy.getRotatedFilesSize());
+
+        String message = "y".repeat(200);
+        logNextDay(message);
+        logNextDay(message);
+        assertTrue(Files.exists(tempDir.resolve("test.log.2020-01-02")));
+        assertEquals(500, policy.getRotatedFilesSize());
+        assertTrue(Files.exists(existing));
+
+        // the oldest file is deleted once the cap is exceeded
+        logNextDay(message);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.exists(existing) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(existing));
+        assertEquals(400, policy.getRotatedFilesSize());
+        assertTrue(Files.exists(tempDir.resolve("test.log.2020-01-02")));
+        assertTrue(Files.exists(tempDir.resolve("test.log.2020-01-03")));
+    }
+}
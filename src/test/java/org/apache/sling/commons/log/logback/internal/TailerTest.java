@@ -20,17 +20,31 @@ package org.apache.sling.commons.log.logback.internal;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
-
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
 import org.apache.commons.io.FileUtils;
+import org.apache.sling.commons.log.logback.internal.util.BinaryLogEncoder;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -106,6 +120,20 @@ class TailerTest {
         assertTrue(output.contains("log message 24"));
     }
 
+    @Test
+    void testTailPreallocated() throws IOException {
+        Files.writeString(tempFile, "1\n2\n3");
+        Files.write(tempFile, new byte[4096], StandardOpenOption.APPEND);
+
+        List<String> lines = new ArrayList<>();
+        assertEquals(5, new Tailer(lines::add, 2).tail(tempFile.toFile()));
+        assertThat(lines, contains("2", "3"));
+
+        lines.clear();
+        assertEquals(5, new Tailer(lines::add, -1).tail(tempFile.toFile()));
+        assertThat(lines, contains("1", "2", "3"));
+    }
+
     @Test
     void testTailEmptyFile() throws IOException {
         try (BufferedWriter writer = Files.newBufferedWriter(tempFile)) {
@@ -185,6 +213,15 @@ class TailerTest {
         assertThat(listener.lines, empty());
     }
 
+    @Test
+    void testTrailingLineFeed() throws Exception {
+        File f1 = tempFile.toFile();
+        FileUtils.write(f1, "a\nb\nc\n", StandardCharsets.UTF_8);
+        LineCollector listener = new LineCollector();
+        new Tailer(listener, 2).tail(f1);
+        assertThat(listener.lines, contains("b", "c"));
+    }
+
     @Test
     void testLessAndMore() throws Exception {
         File f1 = tempFile.toFile();
@@ -211,6 +248,92 @@ class TailerTest {
         assertEquals(listener.lines, lines.subList(numOfLines - n, numOfLines));
     }
 
+    @Test
+    void testTailGzip() throws Exception {
+        File gz = Files.createTempFile("tailGzip", ".log.gz").toFile();
+        try {
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(gz)))) {
+                writer.write("a\nb\nc\nd");
+            }
+            LineCollector listener = new LineCollector();
+            new Tailer(listener, 2).tail(gz);
+            assertThat(listener.lines, contains("c", "d"));
+
+            listener.reset();
+            new Tailer(listener, -1).tail(gz);
+            assertThat(listener.lines, contains("a", "b", "c", "d"));
+        } finally {
+            Files.delete(gz.toPath());
+        }
+    }
+
+    @Test
+    void testTailBinary() throws Exception {
+        LoggerContext loggerContext = new LoggerContext();
+        BinaryLogEncoder encoder = new BinaryLogEncoder();
+        encoder.setContext(loggerContext);
+        encoder.start();
+        try (OutputStream out = new FileOutputStream(tempFile.toFile())) {
+            out.write(encoder.headerBytes());
+            for (String message : asList("a", "b", "c")) {
+                LoggingEvent event = new LoggingEvent(
+                        getClass().getName(), loggerContext.getLogger("foo"), Level.INFO, message, null, null);
+                event.setThreadName("main");
+                out.write(encoder.encode(event));
+            }
+        }
+        LineCollector listener = new LineCollector();
+        long position = new Tailer(listener, 2).tail(tempFile.toFile());
+        assertEquals(2, listener.lines.size());
+        assertTrue(listener.lines.get(0).endsWith("*INFO* [main] foo b"));
+        assertTrue(listener.lines.get(1).endsWith("*INFO* [main] foo c"));
+        assertEquals(tempFile.toFile().length(), position);
+    }
+
+    @Test
+    void testTailZip() throws Exception {
+        File zip = Files.createTempFile("tailZip", ".log.zip").toFile();
+        try {
+            try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(zip))) {
+                zout.putNextEntry(new ZipEntry("test.log"));
+                zout.write("a\r\nb\r\nc\r\n".getBytes(StandardCharsets.UTF_8));
+                zout.closeEntry();
+            }
+            LineCollector listener = new LineCollector();
+            new Tailer(listener, 2).tail(zip);
+            assertThat(listener.lines, contains("b", "c"));
+        } finally {
+            Files.delete(zip.toPath());
+        }
+    }
+
+    @Test
+    void testTailIndexedGzip() throws Exception {
+        File gz = Files.createTempFile("tailIndexed", ".log.gz").toFile();
+        File index = GzipBlockIndex.indexFileFor(gz);
+        try {
+            List<String> lines = createRandomLines(Tailer.BUFFER_SIZE * 10);
+            lines.add("last");
+            int numOfLines = lines.size();
+            try (OutputStream out = new GzipBlockIndex.BlockWriter(gz, Deflater.BEST_SPEED, 512)) {
+                out.write(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+            }
+            assertTrue(index.exists());
+
+            int n = new Random().nextInt(numOfLines / 2);
+            LineCollector listener = new LineCollector();
+            new Tailer(listener, n).tail(gz);
+            assertEquals(lines.subList(numOfLines - n, numOfLines), listener.lines);
+
+            listener.reset();
+            new Tailer(listener, numOfLines + 10).tail(gz);
+            assertEquals(lines, listener.lines);
+        } finally {
+            Files.delete(gz.toPath());
+            Files.deleteIfExists(index.toPath());
+        }
+    }
+
     private List<String> createRandomLines(int totalSize) {
 
         List<String> result = new ArrayList<String>();
@@ -18,7 +18,11 @@
  */
 package org.apache.sling.commons.log.logback.internal.stacktrace;
 
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
 import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.classic.spi.ThrowableProxy;
 import org.apache.sling.commons.log.logback.internal.stacktrace.OSGiAwareExceptionHandling.OSGiAwareConverter;
 import org.apache.sling.testing.mock.osgi.junit5.OsgiContext;
 import org.apache.sling.testing.mock.osgi.junit5.OsgiContextBuilder;
@@ -27,8 +31,15 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.Version;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  *
@@ -62,6 +73,57 @@ class OSGiAwareConverterTest {
         assertEquals(" [mock-bundle:0.0.0]", builder.toString());
     }
 
+    @Test
+    void testRenderedTracesAreCached() {
+        collector.add(context.bundleContext().getBundle(), getClass().getName());
+        OSGiAwareConverter converter = new OSGiAwareConverter(collector);
+        converter.start();
+
+        String first = null;
+        for (int i = 0; i < 3; i++) {
+            String trace = render(converter, new IllegalStateException("boom"));
+            if (first == null) {
+                first = trace;
+            }
+            assertSame(first, trace);
+        }
+        assertTrue(first.startsWith("java.lang.IllegalStateException: boom"));
+        assertTrue(first.contains("OSGiAwareConverterTest.testRenderedTracesAreCached(OSGiAwareConverterTest.java"));
+        assertTrue(first.contains(" [mock-bundle:0.0.0]"));
+        assertEquals(1, converter.getTraceCache().size());
+
+        // the bundle infos changed, hence the trace is rendered again
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getSymbolicName()).thenReturn("other");
+        when(bundle.getVersion()).thenReturn(Version.emptyVersion);
+        collector.add(bundle, getClass().getName());
+        String trace = render(converter, new IllegalStateException("boom"));
+        assertNotSame(first, trace);
+        assertFalse(trace.contains(" [mock-bundle:0.0.0]"));
+    }
+
+    @Test
+    void testAppendTo() {
+        OSGiAwareConverter converter = new OSGiAwareConverter(collector);
+        converter.start();
+        LoggerContext loggerContext = new LoggerContext();
+        LoggingEvent event = new LoggingEvent(
+                getClass().getName(), loggerContext.getLogger("foo"), Level.INFO, "msg", new Exception("e"), null);
+        StringBuilder buf = new StringBuilder();
+        converter.appendTo(buf, event);
+        assertEquals(converter.convert(event), buf.toString());
+
+        buf.setLength(0);
+        converter.appendTo(
+                buf,
+                new LoggingEvent(getClass().getName(), loggerContext.getLogger("foo"), Level.INFO, "msg", null, null));
+        assertEquals("", buf.toString());
+    }
+
+    private static String render(OSGiAwareConverter converter, Throwable t) {
+        return converter.throwableProxyToString(new ThrowableProxy(t));
+    }
+
     @Test
     void testExtraDataWithNullStep() {
         OSGiAwareConverter converter = new OSGiAwareConverter(collector);
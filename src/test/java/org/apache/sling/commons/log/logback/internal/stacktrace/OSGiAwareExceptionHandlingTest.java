@@ -30,6 +30,7 @@ import org.junit.jupiter.api.Test;
 import org.slf4j.LoggerFactory;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
@@ -75,4 +76,13 @@ class OSGiAwareExceptionHandlingTest {
         Converter<ILoggingEvent> tail = ConverterUtil.findTail(converter);
         assertEquals(converter, tail);
     }
+
+    @Test
+    void testEqualsAndHashCode() {
+        OSGiAwareExceptionHandling sameCollector = new OSGiAwareExceptionHandling(collector);
+        assertEquals(exceptionHandling, sameCollector);
+        assertEquals(exceptionHandling.hashCode(), sameCollector.hashCode());
+        assertNotEquals(exceptionHandling, new OSGiAwareExceptionHandling(new PackageInfoCollector()));
+        assertNotEquals(exceptionHandling, null);
+    }
 }
@@ -18,9 +18,8 @@
  */
 package org.apache.sling.commons.log.logback.internal.stacktrace;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.sling.commons.log.helpers.ReflectionTools;
@@ -30,13 +29,22 @@ import org.apache.sling.testing.mock.osgi.junit5.OsgiContextExtension;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
 import org.osgi.framework.Version;
 import org.osgi.framework.hooks.weaving.WovenClass;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
 import org.osgi.framework.wiring.BundleWiring;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -48,6 +56,8 @@ class PackageInfoCollectorTest {
 
     private PackageInfoCollector collector = new PackageInfoCollector();
 
+    private long bundleId;
+
     /**
      * Test method for {@link org.apache.sling.commons.log.logback.internal.stacktrace.PackageInfoCollector#weave(org.osgi.framework.hooks.weaving.WovenClass)}.
      */
@@ -102,6 +112,29 @@ class PackageInfoCollectorTest {
         assertNull(collector.getBundleInfo(null));
     }
 
+    @Test
+    void testGetBundleSuffix() {
+        String className = "com.example.Foo";
+        assertEquals("", collector.getBundleSuffix(null));
+        assertEquals("", collector.getBundleSuffix(className));
+
+        long generation = collector.getGeneration();
+        collector.add(newBundle("foo.bundle", "0.0.7"), className);
+        assertNotEquals(generation, collector.getGeneration());
+        assertEquals(" [foo.bundle:0.0.7]", collector.getBundleSuffix(className));
+        assertSame(collector.getBundleSuffix(className), collector.getBundleSuffix(className));
+
+        // adding a known class again does not invalidate anything
+        generation = collector.getGeneration();
+        collector.add(newBundle("foo.bundle", "0.0.7"), "com.example.Bar");
+        assertEquals(generation, collector.getGeneration());
+
+        // an updated bundle makes the package ambiguous
+        collector.add(newBundle("foo.bundle", "0.0.8"), className);
+        assertNotEquals(generation, collector.getGeneration());
+        assertEquals("", collector.getBundleSuffix(className));
+    }
+
     /**
      * For case where same package is present in multiple bundles then no bundle info is provided
      */
@@ -118,20 +151,198 @@ class PackageInfoCollectorTest {
         assertNull(collector.getBundleInfo(className));
     }
 
+    /**
+     * A package found in more bundles stays ambiguous and adding a known
+     * bundle again does not change the mapping
+     */
+    @Test
+    void testAddForSplitPackage() {
+        String className = "com.example.Foo";
+        Bundle bundle1 = newBundle("foo.bundle", "0.0.7");
+        Bundle bundle2 = newBundle("bar.bundle", "0.0.6");
+        Bundle bundle3 = newBundle("baz.bundle", "1.0.0");
+        collector.add(bundle1, className);
+        collector.add(bundle2, className);
+        collector.add(bundle3, className);
+        long generation = collector.getGeneration();
+
+        collector.add(bundle1, "com.example.Bar");
+        collector.add(bundle3, className);
+        assertEquals(generation, collector.getGeneration());
+        assertNull(collector.getBundleInfo(className));
+        assertEquals(1, collector.size());
+    }
+
     @Test
     void testGetBundleInfoForEmptyPkgInfoSet() {
-        // mock the set being empty
+        // mock the set of infos being empty
         @SuppressWarnings("unchecked")
-        ConcurrentMap<String, Set<String>> pkgInfoMapping =
+        ConcurrentMap<String, Object> pkgInfoMapping =
                 ReflectionTools.getFieldWithReflection(collector, "pkgInfoMapping", ConcurrentMap.class);
-        pkgInfoMapping.put(
-                "org.apache.sling.commons.log.logback.internal.stacktrace",
-                Collections.synchronizedSet(new HashSet<>()));
+        pkgInfoMapping.put("org.apache.sling.commons.log.logback.internal.stacktrace", new String[0]);
 
         String className = getClass().getName();
         assertNull(collector.getBundleInfo(className));
     }
 
+    @Test
+    void testGetInfoIsInterned() {
+        Bundle bundle = newBundle("foo.bundle", "0.0.7");
+        when(bundle.getBundleId()).thenReturn(42L);
+        String info = collector.getInfo(bundle);
+        assertEquals("foo.bundle:0.0.7", info);
+        assertSame(info, collector.getInfo(bundle));
+
+        // another bundle object for the same bundle shares the instance
+        Bundle same = newBundle("foo.bundle", "0.0.7");
+        when(same.getBundleId()).thenReturn(43L);
+        assertSame(info, collector.getInfo(same));
+
+        // an updated bundle gets a new info
+        when(bundle.getVersion()).thenReturn(Version.parseVersion("0.0.8"));
+        assertEquals("foo.bundle:0.0.8", collector.getInfo(bundle));
+    }
+
+    @Test
+    void testAddForUpdatedBundle() {
+        Bundle bundle = newBundle("foo.bundle", "0.0.7");
+        String className = "com.example.Foo";
+        collector.add(bundle, className);
+        long generation = collector.getGeneration();
+
+        when(bundle.getVersion()).thenReturn(Version.parseVersion("0.0.8"));
+        collector.add(bundle, className);
+        assertNotEquals(generation, collector.getGeneration());
+        // both versions are known now, so the info is ambiguous
+        assertNull(collector.getBundleInfo(className));
+    }
+
+    @Test
+    void testLazyLookup() {
+        Bundle foo = newBundle("foo.bundle", "1.0.0", "com/example/Foo.class", "com/example/Foo$Inner.class");
+        Bundle bar = newBundle("bar.bundle", "2.0.0", "com/example/bar/Bar.class", "Root.class");
+        Bundle unresolved = newBundle("unresolved.bundle", "1.0.0");
+        BundleContext bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundles()).thenReturn(new Bundle[] {foo, bar, unresolved});
+        collector.setBundleContext(bundleContext);
+        assertSame(bundleContext, collector.getBundleContext());
+
+        assertEquals("foo.bundle:1.0.0", collector.getBundleInfo("com.example.Foo"));
+        assertEquals("foo.bundle:1.0.0", collector.getBundleInfo("com.example.Foo$Inner"));
+        assertEquals("bar.bundle:2.0.0", collector.getBundleInfo("com.example.bar.Bar"));
+        assertEquals("bar.bundle:2.0.0", collector.getBundleInfo("Root"));
+        assertNull(collector.getBundleInfo("com.example.missing.Missing"));
+        assertNull(collector.getBundleInfo("java.lang.String"));
+        assertEquals(0, collector.size());
+
+        // the classes of each bundle are listed once
+        verify(foo.adapt(BundleWiring.class), times(1))
+                .listResources("/", "*.class", BundleWiring.LISTRESOURCES_LOCAL | BundleWiring.LISTRESOURCES_RECURSE);
+
+        // nothing is looked up anymore once disabled
+        collector.setBundleContext(null);
+        assertNull(collector.getBundleInfo("com.example.Foo"));
+    }
+
+    @Test
+    void testLazyLookupOfExportedPackage() {
+        Bundle api = newBundle("api.bundle", "1.0.0");
+        BundleCapability capability = mock(BundleCapability.class);
+        when(capability.getAttributes()).thenReturn(Map.of(PackageNamespace.PACKAGE_NAMESPACE, "com.example.api"));
+        when(api.adapt(BundleWiring.class).getCapabilities(PackageNamespace.PACKAGE_NAMESPACE))
+                .thenReturn(List.of(capability));
+        BundleContext bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundles()).thenReturn(new Bundle[] {api});
+        collector.setBundleContext(bundleContext);
+
+        assertEquals("api.bundle:1.0.0", collector.getBundleInfo("com.example.api.Api"));
+    }
+
+    @Test
+    void testLazyLookupOfBundleResolvedLater() {
+        Bundle foo = newBundle("foo.bundle", "1.0.0", "com/example/Foo.class");
+        BundleWiring wiring = foo.adapt(BundleWiring.class);
+        when(foo.adapt(BundleWiring.class)).thenReturn(null);
+        BundleContext bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundles()).thenReturn(new Bundle[] {foo});
+        collector.setBundleContext(bundleContext);
+        assertNull(collector.getBundleInfo("com.example.Foo"));
+
+        when(foo.adapt(BundleWiring.class)).thenReturn(wiring);
+        long generation = collector.getGeneration();
+        assertEquals("foo.bundle:1.0.0", collector.getBundleInfo("com.example.Foo"));
+        // the suffixes cached while the bundle was not indexed are dropped
+        assertNotEquals(generation, collector.getGeneration());
+    }
+
+    @Test
+    void testLazyLookupForAmbiguousClass() {
+        Bundle foo = newBundle("foo.bundle", "1.0.0", "com/example/Foo.class");
+        Bundle foo2 = newBundle("foo.bundle", "2.0.0", "com/example/Bar.class");
+        BundleContext bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundles()).thenReturn(new Bundle[] {foo, foo2});
+        collector.setBundleContext(bundleContext);
+
+        assertNull(collector.getBundleInfo("com.example.Foo"));
+    }
+
+    @Test
+    void testLazyLookupWithInvalidContext() {
+        BundleContext bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundles()).thenThrow(IllegalStateException.class);
+        collector.setBundleContext(bundleContext);
+
+        assertNull(collector.getBundleInfo("com.example.Foo"));
+    }
+
+    @Test
+    void testLazyLookupPrefersWovenClasses() {
+        BundleContext bundleContext = mock(BundleContext.class);
+        collector.setBundleContext(bundleContext);
+        collector.add(newBundle("foo.bundle", "1.0.0"), "com.example.Foo");
+
+        assertEquals("foo.bundle:1.0.0", collector.getBundleInfo("com.example.Bar"));
+        verifyNoInteractions(bundleContext);
+    }
+
+    @Test
+    void testBundleChanged() {
+        Bundle foo = newBundle("foo.bundle", "1.0.0", "com/example/Foo.class");
+        Bundle bar = newBundle("bar.bundle", "1.0.0", "com/example/bar/Bar.class");
+        BundleContext bundleContext = mock(BundleContext.class);
+        when(bundleContext.getBundles()).thenReturn(new Bundle[] {foo, bar});
+
+        // events are ignored without the lazy lookup
+        long generation = collector.getGeneration();
+        collector.bundleChanged(new BundleEvent(BundleEvent.UPDATED, foo));
+        assertEquals(generation, collector.getGeneration());
+
+        collector.setBundleContext(bundleContext);
+        assertEquals(" [foo.bundle:1.0.0]", collector.getBundleSuffix("com.example.Foo"));
+
+        generation = collector.getGeneration();
+        for (int type : new int[] {BundleEvent.STARTED, BundleEvent.RESOLVED, BundleEvent.UNRESOLVED}) {
+            collector.bundleChanged(new BundleEvent(type, foo));
+        }
+        assertEquals(generation, collector.getGeneration());
+
+        when(foo.getVersion()).thenReturn(Version.parseVersion("1.0.1"));
+        collector.bundleChanged(new BundleEvent(BundleEvent.UPDATED, foo));
+        assertNotEquals(generation, collector.getGeneration());
+        assertEquals(" [foo.bundle:1.0.1]", collector.getBundleSuffix("com.example.Foo"));
+
+        // only the changed bundle is indexed again
+        BundleWiring barWiring = bar.adapt(BundleWiring.class);
+        verify(barWiring, times(1))
+                .listResources("/", "*.class", BundleWiring.LISTRESOURCES_LOCAL | BundleWiring.LISTRESOURCES_RECURSE);
+        verify(foo.adapt(BundleWiring.class), times(2))
+                .listResources("/", "*.class", BundleWiring.LISTRESOURCES_LOCAL | BundleWiring.LISTRESOURCES_RECURSE);
+
+        when(bundleContext.getBundles()).thenReturn(new Bundle[] {foo});
+        collector.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, bar));
+        assertNull(collector.getBundleInfo("com.example.bar.Bar"));
+    }
+
     /**
      * Test method for {@link org.apache.sling.commons.log.logback.internal.stacktrace.PackageInfoCollector#getPackageName(java.lang.String)}.
      */
@@ -143,8 +354,20 @@ class PackageInfoCollectorTest {
 
     private Bundle newBundle(String name, String version) {
         Bundle b = mock(Bundle.class);
+        when(b.getBundleId()).thenReturn(++bundleId);
         when(b.getSymbolicName()).thenReturn(name);
         when(b.getVersion()).thenReturn(Version.parseVersion(version));
+        BundleWiring wiring = mock(BundleWiring.class);
+        when(b.adapt(BundleWiring.class)).thenReturn(wiring);
+        return b;
+    }
+
+    private Bundle newBundle(String name, String version, String... classFiles) {
+        Bundle b = newBundle(name, version);
+        when(b.adapt(BundleWiring.class)
+                        .listResources(
+                                "/", "*.class", BundleWiring.LISTRESOURCES_LOCAL | BundleWiring.LISTRESOURCES_RECURSE))
+                .thenReturn(List.of(classFiles));
         return b;
     }
 
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.stacktrace;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ *
+ */
+class RenderedTraceCacheTest {
+
+    private final PackageInfoCollector collector = new PackageInfoCollector();
+
+    private static IThrowableProxy create(String message, Throwable cause) {
+        return new ThrowableProxy(new IllegalStateException(message, cause));
+    }
+
+    @Test
+    void testKey() {
+        RenderedTraceCache.Key[] keys = new RenderedTraceCache.Key[2];
+        for (int i = 0; i < 2; i++) {
+            keys[i] = RenderedTraceCache.Key.of(create("boom", null));
+        }
+        // same throw site and message
+        assertEquals(keys[0], keys[1]);
+
+        assertNotEquals(keys[0], RenderedTraceCache.Key.of(create("other", null)));
+        assertNotEquals(
+                RenderedTraceCache.Key.of(create("boom", new RuntimeException("a"))),
+                RenderedTraceCache.Key.of(create("boom", new RuntimeException("b"))));
+    }
+
+    @Test
+    void testCauseMessagesWithSameHashCode() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        RenderedTraceCache cache = new RenderedTraceCache(collector);
+        String[] traces = new String[2];
+        for (int i = 0; i < 2; i++) {
+            // same throw sites, only the messages of the causes differ
+            Throwable cause = new RuntimeException(i == 0 ? "Aa" : "BB");
+            traces[i] = cache.get(create("boom", cause), tp -> tp.getCause().getMessage());
+        }
+        assertEquals("Aa", traces[0]);
+        assertEquals("BB", traces[1]);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testGet() {
+        RenderedTraceCache cache = new RenderedTraceCache(collector);
+        AtomicInteger rendered = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("trace", cache.get(create("boom", null), tp -> {
+                rendered.incrementAndGet();
+                return "trace";
+            }));
+        }
+        assertEquals(1, rendered.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testMaxEntries() {
+        RenderedTraceCache cache = new RenderedTraceCache(collector);
+        for (int i = 0; i < RenderedTraceCache.MAX_ENTRIES + 1; i++) {
+            cache.get(create("boom " + i, null), tp -> "trace");
+        }
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testLongTracesAreNotCached() {
+        RenderedTraceCache cache = new RenderedTraceCache(collector);
+        String large = "x".repeat(RenderedTraceCache.MAX_TRACE_LENGTH + 1);
+        assertEquals(large, cache.get(create("boom", null), tp -> large));
+        assertEquals(0, cache.size());
+    }
+}
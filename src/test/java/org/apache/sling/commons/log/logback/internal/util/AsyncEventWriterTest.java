@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class AsyncEventWriterTest {
+
+    @Test
+    void testWritesInOrder() {
+        List<Integer> written = new CopyOnWriteArrayList<>();
+        AsyncEventWriter<Integer> writer = new AsyncEventWriter<>("test-writer", 4, written::add);
+        writer.start();
+        for (int i = 0; i < 100; i++) {
+            writer.put(i);
+        }
+        assertTrue(writer.stop(5000));
+        assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), written);
+        assertEquals(0, writer.getQueuedCount());
+        assertEquals(100, writer.getWrittenCount());
+    }
+
+    @Test
+    void testPutBlocksWhileFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> written = new CopyOnWriteArrayList<>();
+        AsyncEventWriter<Integer> writer = new AsyncEventWriter<>("test-writer", 1, e -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(e);
+        });
+        writer.start();
+        writer.put(1);
+        writer.put(2);
+
+        Thread producer = new Thread(() -> writer.put(3));
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertTrue(writer.stop(5000));
+        assertEquals(List.of(1, 2, 3), written);
+    }
+
+    @Test
+    void testStopTimesOut() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncEventWriter<Integer> writer = new AsyncEventWriter<>("test-writer", 4, e -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        writer.start();
+        writer.put(1);
+        writer.put(2);
+        assertFalse(writer.stop(50));
+        release.countDown();
+    }
+
+    @Test
+    void testPutKeepsInterruptStatus() {
+        List<Integer> written = new CopyOnWriteArrayList<>();
+        AsyncEventWriter<Integer> writer = new AsyncEventWriter<>("test-writer", 4, written::add);
+        writer.start();
+        Thread.currentThread().interrupt();
+        writer.put(1);
+        assertTrue(Thread.interrupted());
+        assertTrue(writer.stop(5000));
+        assertEquals(List.of(1), written);
+    }
+
+    @Test
+    void testNeverBlockDropsEvents() {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch taken = new CountDownLatch(1);
+        List<Integer> written = new CopyOnWriteArrayList<>();
+        AsyncEventWriter<Integer> writer = new AsyncEventWriter<>("test-writer", 1, true, e -> {
+            taken.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(e);
+        });
+        writer.start();
+        writer.put(1);
+        assertTrue(awaitQuietly(taken));
+        writer.put(2);
+        writer.put(3);
+        assertEquals(1, writer.getDroppedCount());
+
+        release.countDown();
+        assertTrue(writer.stop(5000));
+        assertEquals(List.of(1, 2), written);
+        assertEquals(0, writer.getDiscardedCount());
+    }
+
+    @Test
+    void testIsNearlyFull() {
+        AsyncEventWriter<Integer> writer = new AsyncEventWriter<>("test-writer", 10, e -> {});
+        // not started, so the events stay queued
+        for (int i = 0; i < 8; i++) {
+            writer.put(i);
+            assertFalse(writer.isNearlyFull());
+        }
+        writer.put(8);
+        assertTrue(writer.isNearlyFull());
+
+        writer.discarded();
+        assertEquals(1, writer.getDiscardedCount());
+        assertEquals(0, writer.getDroppedCount());
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class AsyncWriterPoolTest {
+
+    private AsyncWriterPool pool;
+
+    @AfterEach
+    void afterEach() {
+        if (pool != null) {
+            pool.shutdown();
+            pool.awaitTermination(5000);
+        }
+    }
+
+    @Test
+    void testSharedThreadWritesAllQueues() {
+        pool = new AsyncWriterPool("test-pool", 1);
+        List<List<Integer>> written = new ArrayList<>();
+        List<String> threads = new CopyOnWriteArrayList<>();
+        List<AsyncEventWriter<Integer>> writers = new ArrayList<>();
+        for (int w = 0; w < 3; w++) {
+            List<Integer> events = new CopyOnWriteArrayList<>();
+            written.add(events);
+            AsyncEventWriter<Integer> writer = new AsyncEventWriter<>("unused", 8, e -> {
+                threads.add(Thread.currentThread().getName());
+                events.add(e);
+            });
+            writer.start(pool);
+            writers.add(writer);
+        }
+        for (int i = 0; i < 200; i++) {
+            for (AsyncEventWriter<Integer> writer : writers) {
+                writer.put(i);
+            }
+        }
+        for (AsyncEventWriter<Integer> writer : writers) {
+            assertTrue(writer.stop(5000));
+            assertEquals(200, writer.getWrittenCount());
+        }
+        List<Integer> expected = IntStream.range(0, 200).boxed().collect(Collectors.toList());
+        for (List<Integer> events : written) {
+            assertEquals(expected, events);
+        }
+        assertTrue(threads.stream().allMatch("test-pool-1"::equals));
+        assertTrue(pool.getBatchCount() >= 3);
+        // the shared thread is still available to the other writers
+        assertTrue(pool.isRunning());
+    }
+
+    @Test
+    void testWritersTakeTurns() throws InterruptedException {
+        pool = new AsyncWriterPool("test-pool", 1);
+        CountDownLatch taken = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = new CopyOnWriteArrayList<>();
+        AsyncEventWriter<Integer> busy = new AsyncEventWriter<>("unused", 1024, e -> {
+            taken.countDown();
+            awaitQuietly(release);
+            written.add("busy-" + e);
+        });
+        AsyncEventWriter<Integer> quiet = new AsyncEventWriter<>("unused", 16, e -> written.add("quiet-" + e));
+        for (int i = 0; i < 500; i++) {
+            busy.put(i);
+        }
+        busy.start(pool);
+        assertTrue(taken.await(5, TimeUnit.SECONDS));
+        // scheduled while the worker is busy with the first batch of the other writer
+        quiet.put(0);
+        quiet.start(pool);
+        release.countDown();
+
+        assertTrue(busy.stop(5000));
+        assertTrue(quiet.stop(5000));
+        assertEquals(501, written.size());
+        assertEquals(AsyncEventWriter.MAX_BATCH_SIZE, written.indexOf("quiet-0"));
+    }
+
+    @Test
+    void testSetThreadCount() {
+        pool = new AsyncWriterPool("test-pool", 0);
+        assertEquals(1, pool.getThreadCount());
+        pool.setThreadCount(3);
+        assertEquals(3, pool.getThreadCount());
+        assertEquals(3, countThreads("test-pool-"));
+
+        List<String> threads = new CopyOnWriteArrayList<>();
+        AsyncEventWriter<Integer> writer = new AsyncEventWriter<>(
+                "unused", 8, e -> threads.add(Thread.currentThread().getName()));
+        writer.start(pool);
+        writer.put(1);
+        assertTrue(writer.stop(5000));
+        assertEquals(1, threads.size());
+        assertTrue(threads.get(0).startsWith("test-pool-"));
+        assertEquals(0, pool.getReadyCount());
+    }
+
+    @Test
+    void testShutdown() {
+        pool = new AsyncWriterPool("test-pool", 2);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        AsyncEventWriter<Integer> writer = new AsyncEventWriter<>(
+                "unused", 8, e -> threads.add(Thread.currentThread().getName()));
+        writer.start(pool);
+        pool.shutdown();
+        assertFalse(pool.isRunning());
+        assertTrue(pool.awaitTermination(5000));
+        assertEquals(0, countThreads("test-pool-"));
+
+        // written on the logging thread once the workers ended
+        writer.put(1);
+        assertEquals(List.of(Thread.currentThread().getName()), threads);
+        assertTrue(writer.stop(5000));
+
+        // no effect after the shutdown
+        pool.setThreadCount(4);
+        assertEquals(0, countThreads("test-pool-"));
+    }
+
+    @Test
+    void testDedicatedThreadEndsWhenStopped() {
+        AsyncEventWriter<Integer> writer = new AsyncEventWriter<>("test-dedicated", 8, e -> {});
+        writer.start();
+        writer.put(1);
+        assertTrue(writer.stop(5000));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (countThreads("test-dedicated-") > 0 && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0, countThreads("test-dedicated-"));
+    }
+
+    private static long countThreads(String prefix) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.isAlive() && t.getName().startsWith(prefix))
+                .count();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
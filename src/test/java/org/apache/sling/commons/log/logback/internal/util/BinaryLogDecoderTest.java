@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class BinaryLogDecoderTest {
+
+    private static byte[] encode(String... messages) {
+        LoggerContext loggerContext = new LoggerContext();
+        BinaryLogEncoder encoder = new BinaryLogEncoder();
+        encoder.setContext(loggerContext);
+        encoder.start();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(encoder.headerBytes());
+        for (String message : messages) {
+            LoggingEvent event = new LoggingEvent(
+                    BinaryLogDecoderTest.class.getName(),
+                    loggerContext.getLogger("foo"),
+                    Level.WARN,
+                    message,
+                    null,
+                    null);
+            event.setThreadName("main");
+            out.writeBytes(encoder.encode(event));
+        }
+        return out.toByteArray();
+    }
+
+    private static String decode(byte[] bytes) throws IOException {
+        try (InputStream in = new BinaryLogDecoder(new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void testIsBinary() throws IOException {
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(encode("a")));
+        assertTrue(BinaryLogDecoder.isBinary(in));
+        // the stream is reset
+        assertEquals(BinaryLogEncoder.HEADER[0], in.read());
+
+        assertFalse(BinaryLogDecoder.isBinary(
+                new BufferedInputStream(new ByteArrayInputStream("text".getBytes(StandardCharsets.UTF_8)))));
+        assertFalse(BinaryLogDecoder.isBinary(new BufferedInputStream(new ByteArrayInputStream(new byte[0]))));
+    }
+
+    @Test
+    void testReadSingleBytes() throws IOException {
+        byte[] bytes = encode("a", "b");
+        try (InputStream in = new BinaryLogDecoder(new ByteArrayInputStream(bytes))) {
+            StringBuilder sb = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1) {
+                sb.append((char) b);
+            }
+            assertEquals(decode(bytes), sb.toString());
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void testTruncatedRecord() throws IOException {
+        byte[] complete = encode("first", "second");
+        byte[] truncated = new byte[complete.length - 3];
+        System.arraycopy(complete, 0, truncated, 0, truncated.length);
+
+        String text = decode(truncated);
+        assertThat(text, endsWith("*WARN* [main] foo first" + System.lineSeparator()));
+    }
+
+    @Test
+    void testEmpty() throws IOException {
+        assertEquals("", decode(new byte[0]));
+    }
+
+    @Test
+    void testInvalidRecordLength() {
+        byte[] bytes = {0};
+        assertThrows(IOException.class, () -> decode(bytes));
+    }
+
+    @Test
+    void testInvalidDictionaryId() throws IOException {
+        // ids are defined in sequence
+        assertEquals("", decode(new byte[] {3, BinaryLogEncoder.TYPE_DEFINE, 1, 0}));
+        byte[] bytes = {3, BinaryLogEncoder.TYPE_DEFINE, 1, 0, 3, BinaryLogEncoder.TYPE_DEFINE, 3, 0};
+        assertThrows(IOException.class, () -> decode(bytes));
+        assertThrows(IOException.class, () -> decode(new byte[] {3, BinaryLogEncoder.TYPE_DEFINE, 0, 0}));
+    }
+
+    @Test
+    void testInvalidArgumentCount() {
+        // a count exceeding the record and a count negative as int
+        byte[] tooLarge = {12, BinaryLogEncoder.TYPE_EVENT, 0, 0, 0, 0, 0, 0, -1, -1, -1, -1, 7};
+        assertThrows(IOException.class, () -> decode(tooLarge));
+        byte[] negative = {12, BinaryLogEncoder.TYPE_EVENT, 0, 0, 0, 0, 0, 0, -1, -1, -1, -1, 15};
+        assertThrows(IOException.class, () -> decode(negative));
+    }
+
+    @Test
+    void testUnknownRecordTypeIsSkipped() throws IOException {
+        byte[] encoded = encode("a");
+        byte[] bytes = new byte[encoded.length + 2];
+        System.arraycopy(encoded, 0, bytes, 2, encoded.length);
+        bytes[0] = 1;
+        bytes[1] = 99;
+        assertEquals(decode(encoded), decode(bytes));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.CoreConstants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class BinaryLogEncoderTest {
+    private static final long TIMESTAMP = 1700000000123L;
+
+    private LoggerContext loggerContext;
+    private BinaryLogEncoder encoder;
+    private ByteArrayOutputStream out;
+
+    @BeforeEach
+    protected void beforeEach() {
+        loggerContext = new LoggerContext();
+        encoder = new BinaryLogEncoder();
+        encoder.setContext(loggerContext);
+        encoder.start();
+        out = new ByteArrayOutputStream();
+        out.writeBytes(encoder.headerBytes());
+    }
+
+    private LoggingEvent createEvent(long timestamp, String message, Throwable t, Object... args) {
+        LoggingEvent event = new LoggingEvent(
+                getClass().getName(), loggerContext.getLogger("org.example.Foo"), Level.INFO, message, t, args);
+        event.setThreadName("main");
+        event.setTimeStamp(timestamp);
+        return event;
+    }
+
+    private int write(ILoggingEvent event) {
+        ByteBuffer bytes = encoder.encodeToBuffer(event);
+        int length = bytes.remaining();
+        out.write(bytes.array(), bytes.position(), length);
+        return length;
+    }
+
+    private String decode() throws IOException {
+        try (InputStream in = new BinaryLogDecoder(new ByteArrayInputStream(out.toByteArray()))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String line(long timestamp, String level, String message) {
+        return new SimpleDateFormat("dd.MM.yyyy HH:mm:ss.SSS").format(new Date(timestamp)) + " *" + level
+                + "* [main] org.example.Foo " + message + CoreConstants.LINE_SEPARATOR;
+    }
+
+    @Test
+    void testHeaderAndFooter() {
+        assertArrayEquals(BinaryLogEncoder.HEADER, encoder.headerBytes());
+        assertNull(encoder.footerBytes());
+        assertTrue(encoder.isStateful());
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        write(createEvent(TIMESTAMP, "hello {} {} {} {} {}", null, "world", 42, 1.5d, true, null));
+        write(createEvent(TIMESTAMP - 5, "array {}", null, (Object) new int[] {1, 2}));
+        write(createEvent(TIMESTAMP + 1000, "line\nbreak", null));
+
+        assertEquals(
+                line(TIMESTAMP, "INFO", "hello world 42 1.5 true null")
+                        + line(TIMESTAMP - 5, "INFO", "array [1, 2]")
+                        + line(TIMESTAMP + 1000, "INFO", "line_break"),
+                decode());
+    }
+
+    @Test
+    void testDictionaryReuse() {
+        int first = write(createEvent(TIMESTAMP, "user {} logged in", null, "admin"));
+        int second = write(createEvent(TIMESTAMP + 1, "user {} logged in", null, "admin"));
+        // logger, thread and pattern are only referenced by the second event
+        assertThat(second, lessThan(first - "org.example.Foo".length()));
+    }
+
+    @Test
+    void testEncodeMatchesEncodeToBuffer() throws IOException {
+        ILoggingEvent event = createEvent(TIMESTAMP, "message", null);
+        out.writeBytes(encoder.encode(event));
+        assertEquals(line(TIMESTAMP, "INFO", "message"), decode());
+    }
+
+    @Test
+    void testHeaderResetsDictionary() throws IOException {
+        write(createEvent(TIMESTAMP, "first", null));
+        // appending to an existing file starts with another header
+        out.writeBytes(encoder.headerBytes());
+        write(createEvent(TIMESTAMP + 1, "first", null));
+
+        assertEquals(line(TIMESTAMP, "INFO", "first") + line(TIMESTAMP + 1, "INFO", "first"), decode());
+
+        // the second file can be decoded on its own
+        out.reset();
+        out.writeBytes(encoder.headerBytes());
+        write(createEvent(TIMESTAMP + 2, "first", null));
+        assertEquals(line(TIMESTAMP + 2, "INFO", "first"), decode());
+    }
+
+    @Test
+    void testDictionaryLimit() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < BinaryLogEncoder.MAX_DICTIONARY_SIZE + 10; i++) {
+            write(createEvent(TIMESTAMP + i, "unique " + i, null));
+            expected.append(line(TIMESTAMP + i, "INFO", "unique " + i));
+        }
+        assertEquals(expected.toString(), decode());
+    }
+
+    @Test
+    void testThrowable() throws IOException {
+        write(createEvent(TIMESTAMP, "failed", new IllegalStateException("boom\nagain")));
+        String text = decode();
+        assertThat(
+                text,
+                startsWith(line(TIMESTAMP, "INFO", "failed") + "java.lang.IllegalStateException: boom_again"
+                        + CoreConstants.LINE_SEPARATOR + "\tat "));
+        assertThat(text, containsString("BinaryLogEncoderTest.testThrowable"));
+    }
+
+    @Test
+    void testLargeEvent() throws IOException {
+        String large = "x".repeat(BinaryLogEncoder.MAX_RETAINED_BUFFER_SIZE * 2);
+        write(createEvent(TIMESTAMP, large, null));
+        write(createEvent(TIMESTAMP, "small", null));
+        assertEquals(line(TIMESTAMP, "INFO", large) + line(TIMESTAMP, "INFO", "small"), decode());
+    }
+
+    @Test
+    void testZigZag() {
+        assertEquals(0, BinaryLogEncoder.zigZag(0));
+        assertEquals(1, BinaryLogEncoder.zigZag(-1));
+        assertEquals(2, BinaryLogEncoder.zigZag(1));
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ *
+ */
+class CategoryTrieTest {
+
+    private CategoryTrie<String> trie;
+
+    @BeforeEach
+    protected void beforeEach() {
+        trie = new CategoryTrie<>();
+        trie.put("org", "org");
+        trie.put("org.apache.sling", "sling");
+        trie.put("org.apache.sling.commons.log", "log");
+        trie.put("com.example.Foo", "foo");
+    }
+
+    /**
+     * Test method for {@link org.apache.sling.commons.log.logback.internal.util.CategoryTrie#findBestMatch(String)}.
+     */
+    @ParameterizedTest
+    @CsvSource(
+            nullValues = "null",
+            value = {
+                "org, org",
+                "org.apache, org",
+                "org.apache.sling, sling",
+                "org.apache.sling.Foo, sling",
+                "org.apache.slingshot.Foo, org",
+                "org.apache.sling.commons.log.logback.Bar, log",
+                "com.example.Foo, foo",
+                "com.example.FooBar, null",
+                "com.example, null",
+                "orga, null",
+                "'', null"
+            })
+    void testFindBestMatch(String name, String expected) {
+        assertEquals(expected, trie.findBestMatch(name));
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.qos.logback.core.ContextBase;
+import ch.qos.logback.core.recovery.RecoveryListener;
+import ch.qos.logback.core.status.Status;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class ChannelOutputStreamTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testBuffersUntilFlushed() throws IOException {
+        File file = tempDir.resolve("test.log").toFile();
+        try (ChannelOutputStream out = new ChannelOutputStream(file, true, 16)) {
+            out.write("hello".getBytes(StandardCharsets.UTF_8));
+            out.write(' ');
+            assertEquals(6, out.getBufferedCount());
+            assertEquals(0, file.length());
+
+            out.flush();
+            assertEquals(0, out.getBufferedCount());
+            assertEquals("hello ", Files.readString(file.toPath()));
+        }
+    }
+
+    @Test
+    void testWritesFullBuffers() throws IOException {
+        File file = tempDir.resolve("test.log").toFile();
+        try (ChannelOutputStream out = new ChannelOutputStream(file, true, 8)) {
+            out.write("12345".getBytes(StandardCharsets.UTF_8));
+            out.write("6789".getBytes(StandardCharsets.UTF_8));
+            // the first 8 bytes were written, the rest stays buffered
+            assertEquals("12345678", Files.readString(file.toPath()));
+            assertEquals(1, out.getBufferedCount());
+        }
+        assertEquals("123456789", Files.readString(file.toPath()));
+    }
+
+    @Test
+    void testWriteLargerThanBuffer() throws IOException {
+        File file = tempDir.resolve("test.log").toFile();
+        byte[] large = new byte[100];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) ('a' + i % 26);
+        }
+        try (ChannelOutputStream out = new ChannelOutputStream(file, true, 8)) {
+            out.write('>');
+            out.write(large, 0, large.length);
+            // written in one go along with the buffered byte
+            assertEquals(101, file.length());
+            assertEquals(0, out.getBufferedCount());
+        }
+        byte[] content = Files.readAllBytes(file.toPath());
+        assertEquals('>', content[0]);
+        byte[] rest = new byte[100];
+        System.arraycopy(content, 1, rest, 0, 100);
+        assertArrayEquals(large, rest);
+    }
+
+    @Test
+    void testAppendAndTruncate() throws IOException {
+        File file = tempDir.resolve("test.log").toFile();
+        Files.writeString(file.toPath(), "existing ");
+        try (ChannelOutputStream out = new ChannelOutputStream(file, true, 16)) {
+            out.write("appended".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("existing appended", Files.readString(file.toPath()));
+
+        try (ChannelOutputStream out = new ChannelOutputStream(file, false, 16)) {
+            out.write("new".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("new", Files.readString(file.toPath()));
+    }
+
+    @Test
+    void testWriteAfterClose() throws IOException {
+        File file = tempDir.resolve("test.log").toFile();
+        ChannelOutputStream out = new ChannelOutputStream(file, true, 16);
+        out.close();
+        // closing twice is fine
+        out.close();
+        assertThrows(IOException.class, () -> out.write('a'));
+        assertThrows(IOException.class, out::flush);
+    }
+
+    @Test
+    void testPreallocatesChunks() throws IOException {
+        File file = tempDir.resolve("test.log").toFile();
+        try (ChannelOutputStream out = new ChannelOutputStream(file, true, 8, 32)) {
+            out.write("1234".getBytes(StandardCharsets.UTF_8));
+            // nothing written to the channel yet
+            assertEquals(0, file.length());
+
+            out.flush();
+            assertEquals(32, file.length());
+            assertEquals(32, out.getAllocatedLength());
+            assertEquals(4, logicalLength(file));
+
+            // larger than the buffer and the remaining chunk
+            out.write("a".repeat(40).getBytes(StandardCharsets.UTF_8));
+            assertEquals(64, file.length());
+            out.write("b".repeat(30).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals(96, file.length());
+        }
+        // the preallocated space is cut off on close
+        assertEquals("1234" + "a".repeat(40) + "b".repeat(30), Files.readString(file.toPath()));
+    }
+
+    @Test
+    void testPreallocatedAppend() throws IOException {
+        File file = tempDir.resolve("test.log").toFile();
+        // left behind by a stream which was not closed
+        Files.write(file.toPath(), new byte[] {'o', 'l', 'd', 0, 0, 0});
+        try (ChannelOutputStream out = new ChannelOutputStream(file, true, 8, 16)) {
+            assertEquals(3, file.length());
+            out.write("new".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("oldnew", Files.readString(file.toPath()));
+
+        try (ChannelOutputStream out = new ChannelOutputStream(file, false, 8, 16)) {
+            out.write("x".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("x", Files.readString(file.toPath()));
+    }
+
+    @Test
+    void testPreallocatedAppendKeepsZeroBytesOfContent() throws IOException {
+        File file = tempDir.resolve("test.log").toFile();
+        Files.write(file.toPath(), new byte[] {'a', 0, 'b', '\n', 0, 0, 0});
+        try (ChannelOutputStream out = new ChannelOutputStream(file, true, 8, 16)) {
+            assertEquals(4, out.getContentLength());
+            out.write('c');
+            assertEquals(5, out.getContentLength());
+        }
+        assertArrayEquals(new byte[] {'a', 0, 'b', '\n', 'c'}, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    void testRecoversFromWriteFailures() throws Exception {
+        File file = tempDir.resolve("test.log").toFile();
+        ContextBase context = new ContextBase();
+        List<String> notified = new ArrayList<>();
+        try (ChannelOutputStream out = new ChannelOutputStream(file, true, 8, 16)) {
+            out.setContext(context);
+            out.addRecoveryListener(new RecoveryListener() {
+                @Override
+                public void newFailure(IOException e) {
+                    notified.add("failure");
+                }
+
+                @Override
+                public void recoveryOccured() {
+                    notified.add("recovery");
+                }
+            });
+            out.write("a\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            out.getChannel().close();
+            // not passed on, the bytes stay buffered
+            out.write("b\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals(List.of("failure"), notified);
+            assertEquals(2, out.getBufferedCount());
+            // kept while failing as far as they fit
+            out.write("c\n".getBytes(StandardCharsets.UTF_8));
+            out.write("too large".getBytes(StandardCharsets.UTF_8));
+            assertEquals(4, out.getBufferedCount());
+
+            // reopened after the back-off
+            Thread.sleep(50);
+            out.write("d\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals(List.of("failure", "recovery"), notified);
+            assertEquals("a\nb\nc\n", Files.readString(file.toPath()).substring(0, 6));
+        }
+        assertEquals("a\nb\nc\nd\n", Files.readString(file.toPath()));
+        assertTrue(
+                context.getStatusManager().getCopyOfStatusList().stream().anyMatch(s -> s.getLevel() == Status.ERROR));
+    }
+
+    @Test
+    void testDropsWholeEventNotFittingWhenFailing() throws Exception {
+        File file = tempDir.resolve("test.log").toFile();
+        try (ChannelOutputStream out = new ChannelOutputStream(file, true, 8)) {
+            out.write("abcde\n".getBytes(StandardCharsets.UTF_8));
+
+            out.getChannel().close();
+            // does not fit into the rest of the buffer and the buffer cannot be drained
+            out.write("fghij\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals(6, out.getBufferedCount());
+
+            Thread.sleep(50);
+            out.write("k\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("abcde\nk\n", Files.readString(file.toPath()));
+    }
+
+    private static long logicalLength(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return Util.logicalLength(channel);
+        }
+    }
+}
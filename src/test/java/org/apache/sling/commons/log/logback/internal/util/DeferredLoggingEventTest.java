@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MarkerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class DeferredLoggingEventTest {
+
+    private final LoggerContext loggerContext = new LoggerContext();
+
+    private LoggingEvent createEvent(String message, Throwable t, Object... args) {
+        LoggingEvent event = new LoggingEvent(
+                getClass().getName(), loggerContext.getLogger("org.example.Foo"), Level.WARN, message, t, args);
+        event.setThreadName("worker-1");
+        event.setMDCPropertyMap(Map.of("user", "admin"));
+        event.addMarker(MarkerFactory.getMarker("AUDIT"));
+        return event;
+    }
+
+    @Test
+    void testSnapshot() {
+        LoggingEvent event = createEvent("hello {}", new IllegalStateException("boom"), "world");
+        ILoggingEvent snapshot = DeferredLoggingEvent.snapshot(event);
+
+        assertEquals("worker-1", snapshot.getThreadName());
+        assertEquals(Level.WARN, snapshot.getLevel());
+        assertEquals("hello {}", snapshot.getMessage());
+        assertArrayEquals(new Object[] {"world"}, snapshot.getArgumentArray());
+        assertEquals("hello world", snapshot.getFormattedMessage());
+        assertEquals("org.example.Foo", snapshot.getLoggerName());
+        assertSame(event.getLoggerContextVO(), snapshot.getLoggerContextVO());
+        assertSame(event.getThrowableProxy(), snapshot.getThrowableProxy());
+        assertEquals(event.getMarkerList(), snapshot.getMarkerList());
+        assertEquals(Map.of("user", "admin"), snapshot.getMDCPropertyMap());
+        assertEquals(Map.of("user", "admin"), snapshot.getMdc());
+        assertEquals(event.getTimeStamp(), snapshot.getTimeStamp());
+        assertEquals(event.getNanoseconds(), snapshot.getNanoseconds());
+        assertEquals(event.getInstant(), snapshot.getInstant());
+        assertEquals(event.getSequenceNumber(), snapshot.getSequenceNumber());
+        assertEquals(event.getKeyValuePairs(), snapshot.getKeyValuePairs());
+        assertFalse(snapshot.hasCallerData());
+        assertEquals(0, snapshot.getCallerData().length);
+        assertEquals("[WARN] hello world", snapshot.toString());
+
+        // snapshots are not taken twice
+        assertSame(snapshot, DeferredLoggingEvent.snapshot(snapshot));
+        snapshot.prepareForDeferredProcessing();
+    }
+
+    @Test
+    void testMessageIsFormattedLazily() {
+        LoggingEvent event = createEvent("plain", null);
+        ILoggingEvent snapshot = DeferredLoggingEvent.snapshot(event);
+        assertEquals("plain", snapshot.getFormattedMessage());
+        assertSame(snapshot.getFormattedMessage(), snapshot.getFormattedMessage());
+    }
+
+    @Test
+    void testMutableArgumentsAreCaptured() {
+        List<String> list = new ArrayList<>(List.of("a"));
+        int[] array = {1, 2};
+        LocalDate date = LocalDate.of(2024, 1, 1);
+        LoggingEvent event = createEvent("{} {} {} {} {}", null, list, array, 42, date, TimeUnit.SECONDS);
+        ILoggingEvent snapshot = DeferredLoggingEvent.snapshot(event);
+
+        list.add("b");
+        array[0] = 3;
+
+        assertEquals("[a] [1, 2] 42 2024-01-01 SECONDS", snapshot.getFormattedMessage());
+        Object[] args = snapshot.getArgumentArray();
+        assertEquals("[a]", args[0]);
+        assertSame(event.getArgumentArray()[2], args[2]);
+        assertSame(date, args[3]);
+        assertSame(TimeUnit.SECONDS, args[4]);
+        assertNotSame(event.getArgumentArray(), args);
+    }
+
+    @Test
+    void testIsImmutable() {
+        assertTrue(DeferredLoggingEvent.isImmutable("text"));
+        assertTrue(DeferredLoggingEvent.isImmutable(1L));
+        assertTrue(DeferredLoggingEvent.isImmutable(LocalDate.now()));
+        assertTrue(DeferredLoggingEvent.isImmutable(String.class));
+        assertFalse(DeferredLoggingEvent.isImmutable(new StringBuilder()));
+        assertFalse(DeferredLoggingEvent.isImmutable(new ArrayList<>()));
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MarkerFactory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ *
+ */
+class JsonLinesEncoderTest {
+
+    private LoggerContext loggerContext;
+    private JsonLinesEncoder encoder;
+
+    @BeforeEach
+    protected void beforeEach() {
+        loggerContext = new LoggerContext();
+        encoder = new JsonLinesEncoder();
+        encoder.setContext(loggerContext);
+        encoder.start();
+    }
+
+    @AfterEach
+    protected void afterEach() {
+        encoder.stop();
+    }
+
+    private LoggingEvent createEvent(String message, Throwable t) {
+        return createEvent(message, t, Map.of());
+    }
+
+    private LoggingEvent createEvent(String message, Throwable t, Map<String, String> mdc) {
+        LoggingEvent event = new LoggingEvent(
+                getClass().getName(), loggerContext.getLogger("org.example.Foo"), Level.WARN, message, t, null);
+        event.setThreadName("main");
+        event.setTimeStamp(1700000000123L);
+        event.setMDCPropertyMap(mdc);
+        return event;
+    }
+
+    private String encode(ILoggingEvent event) {
+        return new String(encoder.encode(event), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testHeaderAndFooter() {
+        assertNull(encoder.headerBytes());
+        assertNull(encoder.footerBytes());
+    }
+
+    @Test
+    void testEncode() {
+        assertEquals(
+                "{\"timestamp\":\"2023-11-14T22:13:20.123Z\",\"level\":\"WARN\",\"thread\":\"main\","
+                        + "\"logger\":\"org.example.Foo\",\"message\":\"hello world\"}\n",
+                encode(createEvent("hello world", null)));
+    }
+
+    @Test
+    void testEncodeToBuffer() {
+        ILoggingEvent event = createEvent("hello world", null);
+        ByteBuffer bytes = encoder.encodeToBuffer(event);
+        assertEquals(encode(event), StandardCharsets.UTF_8.decode(bytes).toString());
+    }
+
+    @Test
+    void testEncodeToBufferSharedByEncoders() {
+        JsonLinesEncoder other = new JsonLinesEncoder();
+        other.setContext(loggerContext);
+        other.start();
+        ByteBuffer bytes = encoder.encodeToBuffer(createEvent("first", null));
+        assertThat(StandardCharsets.UTF_8.decode(bytes).toString(), containsString("\"first\""));
+        ByteBuffer next = other.encodeToBuffer(createEvent("second", null));
+        assertSame(bytes, next);
+        assertThat(StandardCharsets.UTF_8.decode(next).toString(), containsString("\"second\""));
+
+        // released when stopped
+        other.stop();
+        assertNotSame(next, encoder.encodeToBuffer(createEvent("third", null)));
+    }
+
+    @Test
+    void testEscapingAndMasking() {
+        String json = encode(createEvent("quote \" backslash \\ tab \t ctrl \u0001 line\nbreak ü€😀", null));
+        // line breaks are masked like in the text format, the other characters escaped
+        assertThat(
+                json, containsString("\"message\":\"quote \\\" backslash \\\\ tab \\t ctrl \\u0001 line_break ü€😀\""));
+    }
+
+    @Test
+    void testMdcAndMarkers() {
+        LoggingEvent event = createEvent("msg", null, Map.of("user", "ad\"min"));
+        event.addMarker(MarkerFactory.getMarker("AUDIT"));
+        String json = encode(event);
+        assertThat(json, containsString(",\"markers\":[\"AUDIT\"]"));
+        assertThat(json, containsString(",\"mdc\":{\"user\":\"ad\\\"min\"}"));
+        assertThat(json, endsWith("}\n"));
+    }
+
+    @Test
+    void testThrowable() {
+        Exception cause = new IllegalStateException("root\ncause");
+        Exception e = new RuntimeException("outer", cause);
+        e.addSuppressed(new IllegalArgumentException("suppressed"));
+        String json = encode(createEvent("failed", e));
+
+        assertThat(
+                json,
+                containsString(",\"throwable\":{\"class\":\"java.lang.RuntimeException\",\"message\":\"outer\","));
+        assertThat(
+                json,
+                containsString(
+                        "\"stack\":[\"org.apache.sling.commons.log.logback.internal.util.JsonLinesEncoderTest.testThrowable("));
+        assertThat(
+                json,
+                containsString(
+                        ",\"suppressed\":[{\"class\":\"java.lang.IllegalArgumentException\",\"message\":\"suppressed\","));
+        assertThat(
+                json,
+                containsString(
+                        ",\"cause\":{\"class\":\"java.lang.IllegalStateException\",\"message\":\"root_cause\","));
+        assertThat(json, containsString(",\"commonFrames\":"));
+        // a single line per event
+        assertEquals(json.length() - 1, json.indexOf('\n'));
+    }
+
+    @Test
+    void testNullMessage() {
+        assertThat(encode(createEvent(null, null)), containsString(",\"message\":null}"));
+    }
+
+    @Test
+    void testLargeEvent() {
+        String large = "x".repeat(JsonLinesEncoder.MAX_RETAINED_BUFFER_SIZE * 2);
+        String json = encode(createEvent(large, null));
+        assertThat(json, containsString(large));
+        assertThat(encode(createEvent("small", null)), startsWith("{\"timestamp\""));
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.sling.commons.log.logback.internal.util;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -43,10 +44,13 @@ import org.mockito.Mockito;
 import org.slf4j.LoggerFactory;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -233,6 +237,113 @@ class LoggerSpecificEncoderTest {
         assertThat(tested.encode(mockTestEvent), is(equalTo("INITECH:test message".getBytes())));
     }
 
+    @Test
+    void testAddLogConfigInvalidatesResolvedLayouts() {
+        LoggerSpecificEncoder tested = new LoggerSpecificEncoder(new PrefixTestLayout("DEFAULT:"));
+        ILoggingEvent mockTestEvent = mockLoggingEvent("test message", "org.apache.sling.testing.FooBar");
+        assertThat(tested.encode(mockTestEvent), is(equalTo("DEFAULT:test message".getBytes())));
+
+        LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        LogConfig logConfigMock = mock(LogConfig.class);
+        when(logConfigMock.getCategories()).thenReturn(new HashSet<>(Arrays.asList("org.apache.sling")));
+        when(logConfigMock.createLayout(loggerContext)).thenReturn(new PrefixTestLayout("INITECH:"));
+        tested.addLogConfig(logConfigMock);
+
+        assertThat(tested.encode(mockTestEvent), is(equalTo("INITECH:test message".getBytes())));
+    }
+
+    @Test
+    void testManyLoggerNames() {
+        LoggerSpecificEncoder tested = new LoggerSpecificEncoder(new PrefixTestLayout("DEFAULT:"));
+        for (int i = 0; i < LoggerSpecificEncoder.MAX_CACHED_LOGGERS + 10; i++) {
+            ILoggingEvent mockTestEvent = mockLoggingEvent("test message", "org.apache.sling.Logger" + i);
+            assertThat(tested.encode(mockTestEvent), is(equalTo("DEFAULT:test message".getBytes())));
+        }
+    }
+
+    @Test
+    void testGetLayouts() {
+        PrefixTestLayout defaultLayout = new PrefixTestLayout("DEFAULT:");
+        PrefixTestLayout layout = new PrefixTestLayout("INITECH:");
+        LoggerSpecificEncoder tested = new LoggerSpecificEncoder(defaultLayout);
+        assertThat(tested.getLayouts(), contains(defaultLayout));
+
+        LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        LogConfig logConfigMock = mock(LogConfig.class);
+        when(logConfigMock.getCategories()).thenReturn(new HashSet<>(Arrays.asList("org.apache", "org.example")));
+        when(logConfigMock.createLayout(loggerContext)).thenReturn(layout);
+        tested.addLogConfig(logConfigMock);
+
+        assertThat(tested.getLayouts(), contains(defaultLayout, layout));
+    }
+
+    @Test
+    void testEncodeToBufferWithSlingPatternLayout() {
+        LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        SlingPatternLayout layout = new SlingPatternLayout();
+        layout.setPattern("%level %msg%n");
+        layout.setContext(loggerContext);
+        layout.start();
+        LoggerSpecificEncoder tested = new LoggerSpecificEncoder(layout);
+        tested.setCharset(StandardCharsets.UTF_8);
+
+        ILoggingEvent event = mockLoggingEvent("gr\u00FC\u00DFe \u20AC", "org.apache.sling.testing.FooBar");
+        String expected = "INFO gr\u00FC\u00DFe \u20AC" + System.lineSeparator();
+        ByteBuffer bytes = tested.encodeToBuffer(event);
+        assertEquals(expected, StandardCharsets.UTF_8.decode(bytes).toString());
+        assertEquals(expected, new String(tested.encode(event), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testEncodeToBufferReusesBuffer() {
+        LoggerSpecificEncoder tested = new LoggerSpecificEncoder(new PrefixTestLayout("DEFAULT:"));
+        ByteBuffer first = tested.encodeToBuffer(mockLoggingEvent("one", "org.apache.sling.testing.FooBar"));
+        ByteBuffer second = tested.encodeToBuffer(mockLoggingEvent("two", "org.apache.sling.testing.FooBar"));
+        assertSame(first, second);
+        assertEquals("DEFAULT:two", StandardCharsets.UTF_8.decode(second).toString());
+    }
+
+    @Test
+    void testEncodeToBufferLargeEvent() {
+        LoggerSpecificEncoder tested = new LoggerSpecificEncoder(new PrefixTestLayout("DEFAULT:"));
+        String large = "x".repeat(LoggerSpecificEncoder.MAX_RETAINED_BUFFER_SIZE * 2);
+        ByteBuffer bytes = tested.encodeToBuffer(mockLoggingEvent(large, "org.apache.sling.testing.FooBar"));
+        assertEquals(large.length() + "DEFAULT:".length(), bytes.remaining());
+
+        // the large buffer is not retained for the next event
+        ByteBuffer next = tested.encodeToBuffer(mockLoggingEvent("small", "org.apache.sling.testing.FooBar"));
+        assertNotSame(bytes, next);
+        assertEquals("DEFAULT:small", StandardCharsets.UTF_8.decode(next).toString());
+    }
+
+    @Test
+    void testEncodeToBufferSharedByEncoders() {
+        LoggerSpecificEncoder first = new LoggerSpecificEncoder(new PrefixTestLayout("FIRST:"));
+        LoggerSpecificEncoder second = new LoggerSpecificEncoder(new PrefixTestLayout("SECOND:"));
+        first.start();
+        second.start();
+        ByteBuffer bytes = first.encodeToBuffer(mockLoggingEvent("message", "org.apache.sling.testing.FooBar"));
+        assertEquals("FIRST:message", StandardCharsets.UTF_8.decode(bytes).toString());
+        ByteBuffer next = second.encodeToBuffer(mockLoggingEvent("message", "org.apache.sling.testing.FooBar"));
+        assertSame(bytes, next);
+        assertEquals("SECOND:message", StandardCharsets.UTF_8.decode(next).toString());
+
+        // released when stopped
+        first.stop();
+        assertNotSame(next, second.encodeToBuffer(mockLoggingEvent("message", "org.apache.sling.testing.FooBar")));
+        second.stop();
+    }
+
+    @Test
+    void testEncodeUnmappableCharacters() {
+        LoggerSpecificEncoder tested = new LoggerSpecificEncoder(new PrefixTestLayout(""));
+        tested.setCharset(StandardCharsets.US_ASCII);
+        String message = "caf\u00E9";
+        assertThat(
+                tested.encode(mockLoggingEvent(message, "org.apache.sling.testing.FooBar")),
+                is(equalTo(message.getBytes(StandardCharsets.US_ASCII))));
+    }
+
     /**
      * Simple partial implementation of {@link PatternLayout} that redirects all method calls that are not explicitly extended to an
      * underlying mock (available as a protected {@link PrefixTestLayout#wrapped} field).
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.nio.charset.StandardCharsets;
+
+import ch.qos.logback.classic.Level;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *
+ */
+class SheddingGuardTest {
+
+    @Test
+    void testDegradeAndProbe() {
+        SheddingGuard guard = new SheddingGuard(new SheddingSettings(100, Level.WARN, 16, 1000));
+        assertFalse(guard.isShedding());
+        assertTrue(guard.tryWrite(0));
+
+        assertTrue(guard.degrade("disk full", 10));
+        assertFalse(guard.degrade("still full", 20));
+        assertTrue(guard.isShedding());
+        assertEquals(10, guard.getSince());
+        assertEquals("still full", guard.getCause());
+        assertEquals(1, guard.getDegradationCount());
+
+        // the last failure delays the next probe
+        assertFalse(guard.tryWrite(1019));
+        assertTrue(guard.tryWrite(1020));
+        // only one caller probes per interval
+        assertFalse(guard.tryWrite(1021));
+        assertTrue(guard.tryWrite(2020));
+
+        assertTrue(guard.recover());
+        assertFalse(guard.isShedding());
+        assertNull(guard.getCause());
+        assertTrue(guard.tryWrite(2021));
+    }
+
+    @Test
+    void testSpill() {
+        SheddingGuard guard = new SheddingGuard(new SheddingSettings(100, Level.WARN, 16, 1000));
+        // not shedding, the caller writes the event
+        assertFalse(guard.spill(bytes("first")));
+
+        guard.degrade("disk full", 0);
+        assertTrue(guard.spill(bytes("first")));
+        assertTrue(guard.spill(bytes("second")));
+        // exceeds the spill size
+        assertTrue(guard.spill(bytes("third one")));
+        guard.shed();
+        assertEquals(2, guard.getSpilledCount());
+        assertEquals(11, guard.getSpilledBytes());
+        assertEquals(1, guard.getOverflowCount());
+        assertEquals(1, guard.getShedCount());
+
+        // events need to be written before the shedding ends
+        assertFalse(guard.recover());
+        byte[] first = guard.pollSpilled();
+        assertArrayEquals(bytes("first"), first);
+        guard.requeue(first);
+        assertArrayEquals(bytes("first"), guard.pollSpilled());
+        assertArrayEquals(bytes("second"), guard.pollSpilled());
+        assertNull(guard.pollSpilled());
+        assertEquals(0, guard.getSpilledBytes());
+        assertTrue(guard.recover());
+    }
+
+    @Test
+    void testSettingsDefaults() {
+        SheddingSettings settings = new SheddingSettings(-1, Level.ERROR, -1, 0);
+        assertEquals(SheddingSettings.DEFAULT_MAX_LATENCY, settings.maxLatency());
+        assertEquals(SheddingSettings.DEFAULT_SPILL_SIZE, settings.spillSize());
+        assertEquals(SheddingSettings.DEFAULT_PROBE_INTERVAL, settings.probeInterval());
+        assertEquals(0, new SheddingSettings(0, Level.ERROR, 0, 1).spillSize());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
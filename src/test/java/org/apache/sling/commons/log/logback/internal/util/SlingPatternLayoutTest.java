@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.pattern.PostCompileProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ *
+ */
+class SlingPatternLayoutTest {
+
+    private LoggerContext loggerContext;
+    private SlingPatternLayout layout;
+
+    @BeforeEach
+    protected void beforeEach() {
+        loggerContext = new LoggerContext();
+        layout = new SlingPatternLayout();
+        layout.setContext(loggerContext);
+        layout.setPattern("[%level] %logger - %msg");
+    }
+
+    /**
+     * Test method for {@link SlingPatternLayout#doLayout(ILoggingEvent, StringBuilder)}.
+     */
+    @Test
+    void testDoLayoutIntoBuffer() {
+        layout.start();
+        ILoggingEvent event = createEvent("message");
+
+        StringBuilder buffer = new StringBuilder("prefix:");
+        layout.doLayout(event, buffer);
+        assertEquals("prefix:" + layout.doLayout(event), buffer.toString());
+    }
+
+    @Test
+    void testDoLayoutNotStarted() {
+        StringBuilder buffer = new StringBuilder();
+        layout.doLayout(createEvent("message"), buffer);
+        assertEquals(0, buffer.length());
+    }
+
+    @Test
+    void testPostCompileProcessorIsKept() {
+        int[] calls = new int[1];
+        PostCompileProcessor<ILoggingEvent> processor = (context, head) -> calls[0]++;
+        layout.setPostCompileProcessor(processor);
+        layout.start();
+        assertEquals(1, calls[0]);
+
+        // the original processor is still in place when the layout gets restarted
+        layout.stop();
+        layout.start();
+        assertEquals(2, calls[0]);
+        StringBuilder buffer = new StringBuilder();
+        layout.doLayout(createEvent("message"), buffer);
+        assertEquals("[INFO] test - message", buffer.toString());
+    }
+
+    private ILoggingEvent createEvent(String message) {
+        return new LoggingEvent(getClass().getName(), loggerContext.getLogger("test"), Level.INFO, message, null, null);
+    }
+}
@@ -18,14 +18,47 @@
  */
 package org.apache.sling.commons.log.logback.internal.util;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.recovery.RecoveryListener;
+import ch.qos.logback.core.recovery.ResilientFileOutputStream;
+import ch.qos.logback.core.rolling.FixedWindowRollingPolicy;
+import ch.qos.logback.core.rolling.LengthCounter;
+import ch.qos.logback.core.rolling.LengthCounterBase;
+import ch.qos.logback.core.rolling.SizeAndTimeBasedRollingPolicy;
+import ch.qos.logback.core.rolling.TimeBasedRollingPolicy;
+import ch.qos.logback.core.rolling.TriggeringPolicyBase;
+import ch.qos.logback.core.util.FileSize;
 import org.apache.sling.commons.log.logback.internal.LogWriter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  *
@@ -59,4 +92,766 @@ class SlingRollingFileAppenderTest {
         appender.setLogWriter(mockLogWriter);
         assertEquals(mockLogWriter, appender.getLogWriter());
     }
+
+    /**
+     * Test method for {@link org.apache.sling.commons.log.logback.internal.util.SlingRollingFileAppender#addAppendListener(Runnable)}.
+     */
+    @Test
+    void testAppendListener(@TempDir Path tempDir) {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        appender.setContext(loggerContext);
+        appender.setFile(tempDir.resolve("test.log").toString());
+        TimeBasedRollingPolicy<ILoggingEvent> policy = new TimeBasedRollingPolicy<>();
+        policy.setContext(loggerContext);
+        policy.setParent(appender);
+        policy.setFileNamePattern(tempDir.resolve("test.log.%d").toString());
+        policy.start();
+        appender.setRollingPolicy(policy);
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%msg%n");
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.start();
+
+        AtomicInteger count = new AtomicInteger();
+        Runnable listener = count::incrementAndGet;
+        appender.addAppendListener(listener);
+        appender.doAppend(createEvent(loggerContext));
+        assertEquals(1, count.get());
+
+        appender.removeAppendListener(listener);
+        appender.doAppend(createEvent(loggerContext));
+        assertEquals(1, count.get());
+        appender.stop();
+    }
+
+    /**
+     * Test method for {@link org.apache.sling.commons.log.logback.internal.util.SlingRollingFileAppender#writeOut(Object)}.
+     */
+    @Test
+    void testWriteOutWithLoggerSpecificEncoder(@TempDir Path tempDir) throws IOException {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        Path file = tempDir.resolve("test.log");
+        appender.setContext(loggerContext);
+        appender.setFile(file.toString());
+        SizeAndTimeBasedRollingPolicy<ILoggingEvent> policy = new SizeAndTimeBasedRollingPolicy<>();
+        policy.setContext(loggerContext);
+        policy.setParent(appender);
+        policy.setFileNamePattern(tempDir.resolve("test.log.%d.%i").toString());
+        policy.setMaxFileSize(FileSize.valueOf("10MB"));
+        policy.start();
+        appender.setRollingPolicy(policy);
+        SlingPatternLayout layout = new SlingPatternLayout();
+        layout.setContext(loggerContext);
+        layout.setPattern("%level %msg%n");
+        layout.start();
+        LoggerSpecificEncoder encoder = new LoggerSpecificEncoder(layout);
+        encoder.setCharset(StandardCharsets.UTF_8);
+        encoder.setContext(loggerContext);
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.start();
+
+        appender.doAppend(createEvent(loggerContext));
+        appender.doAppend(createEvent(loggerContext));
+        appender.stop();
+
+        String expected = "INFO message" + System.lineSeparator() + "INFO message" + System.lineSeparator();
+        assertEquals(expected, Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals(expected.length(), policy.getLengthCounter().getLength());
+    }
+
+    @Test
+    void testWriteOutWithBinaryEncoder(@TempDir Path tempDir) throws Exception {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        Path file = tempDir.resolve("test.log");
+        appender.setContext(loggerContext);
+        appender.setFile(file.toString());
+        SizeAndTimeBasedRollingPolicy<ILoggingEvent> policy = new SizeAndTimeBasedRollingPolicy<>();
+        policy.setContext(loggerContext);
+        policy.setParent(appender);
+        policy.setFileNamePattern(tempDir.resolve("test.log.%d.%i").toString());
+        policy.setMaxFileSize(FileSize.valueOf("10MB"));
+        policy.start();
+        appender.setRollingPolicy(policy);
+        BinaryLogEncoder encoder = new BinaryLogEncoder();
+        encoder.setContext(loggerContext);
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.start();
+
+        // the records of concurrent threads must be written in the order of encoding
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    appender.doAppend(createEvent(loggerContext));
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        appender.stop();
+
+        String text;
+        try (InputStream in = new BinaryLogDecoder(Files.newInputStream(file))) {
+            text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String[] lines = text.split(System.lineSeparator());
+        assertEquals(400, lines.length);
+        for (String line : lines) {
+            assertTrue(line.endsWith("*INFO* [" + line.split("\\[|\\]")[1] + "] test message"), line);
+        }
+        assertEquals(Files.size(file), policy.getLengthCounter().getLength());
+    }
+
+    @Test
+    void testAsyncAppend(@TempDir Path tempDir) throws IOException {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        Path file = tempDir.resolve("test.log");
+        appender.setContext(loggerContext);
+        appender.setName("async");
+        appender.setFile(file.toString());
+        TimeBasedRollingPolicy<ILoggingEvent> policy = new TimeBasedRollingPolicy<>();
+        policy.setContext(loggerContext);
+        policy.setParent(appender);
+        policy.setFileNamePattern(tempDir.resolve("test.log.%d").toString());
+        policy.start();
+        appender.setRollingPolicy(policy);
+        SlingPatternLayout layout = new SlingPatternLayout();
+        layout.setContext(loggerContext);
+        layout.setPattern("%thread %msg%n");
+        layout.start();
+        LoggerSpecificEncoder encoder = new LoggerSpecificEncoder(layout);
+        encoder.setCharset(StandardCharsets.UTF_8);
+        encoder.setContext(loggerContext);
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.setAsync(true);
+        assertTrue(appender.isAsync());
+        AtomicInteger notified = new AtomicInteger();
+        appender.addAppendListener(notified::incrementAndGet);
+        appender.start();
+
+        StringBuilder mutable = new StringBuilder("before");
+        LoggingEvent event = new LoggingEvent(
+                SlingRollingFileAppenderTest.class.getName(),
+                loggerContext.getLogger("test"),
+                Level.INFO,
+                "message {}",
+                null,
+                new Object[] {mutable});
+        event.setThreadName("caller");
+        appender.doAppend(event);
+        mutable.setLength(0);
+        mutable.append("after");
+        appender.stop();
+
+        // the thread and the arguments are captured when the event is logged
+        assertEquals("caller message before" + System.lineSeparator(), Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals(1, notified.get());
+    }
+
+    @Test
+    void testAsyncAppendWithWriterPool(@TempDir Path tempDir) throws IOException {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        AsyncWriterPool pool = new AsyncWriterPool("test-pool", 1);
+        SlingRollingFileAppender<ILoggingEvent> other = new SlingRollingFileAppender<>();
+        try {
+            Path file = tempDir.resolve("test.log");
+            Path otherFile = tempDir.resolve("other.log");
+            for (SlingRollingFileAppender<ILoggingEvent> app : List.of(appender, other)) {
+                Path target = app == appender ? file : otherFile;
+                app.setContext(loggerContext);
+                app.setName(target.getFileName().toString());
+                app.setFile(target.toString());
+                TimeBasedRollingPolicy<ILoggingEvent> policy = new TimeBasedRollingPolicy<>();
+                policy.setContext(loggerContext);
+                policy.setParent(app);
+                policy.setFileNamePattern(target + ".%d");
+                policy.start();
+                app.setRollingPolicy(policy);
+                PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+                encoder.setContext(loggerContext);
+                encoder.setPattern("%msg%n");
+                encoder.start();
+                app.setEncoder(encoder);
+                app.setAsync(true);
+                app.setWriterPool(pool);
+                app.start();
+            }
+            assertEquals(pool, appender.getWriterPool());
+
+            for (int i = 0; i < 100; i++) {
+                appender.doAppend(createEvent(loggerContext, Level.INFO, "first " + i));
+                other.doAppend(createEvent(loggerContext, Level.INFO, "other " + i));
+            }
+            appender.stop();
+            other.stop();
+
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            assertEquals(100, lines.size());
+            assertEquals("first 99", lines.get(99));
+            assertEquals(
+                    100, Files.readAllLines(otherFile, StandardCharsets.UTF_8).size());
+            // no dedicated writer threads were started
+            assertTrue(Thread.getAllStackTraces().keySet().stream()
+                    .noneMatch(t -> t.getName().startsWith("sling-log-writer-test.log")));
+            assertTrue(pool.isRunning());
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(5000);
+        }
+    }
+
+    @Test
+    void testSheddingAfterFailedWrite(@TempDir Path tempDir) throws Exception {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        startSheddingAppender(loggerContext, tempDir, new SheddingSettings(0, Level.WARN, 1024, 50));
+        FailingOutputStream out = new FailingOutputStream();
+        appender.setOutputStream(out);
+
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "written"));
+        out.fail = true;
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "failed"));
+        assertTrue(appender.isShedding());
+        appender.doAppend(createEvent(loggerContext, Level.WARN, "spilled"));
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "shed"));
+        assertTrue(appender.getSheddingStatus().startsWith("shedding since "), appender.getSheddingStatus());
+        assertTrue(
+                appender.getSheddingStatus().endsWith("1 spilled (13 bytes), 2 shed, 0 overflowed, 1 degradations"),
+                appender.getSheddingStatus());
+
+        out.fail = false;
+        // not written before the probe interval passed
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "too early"));
+        Thread.sleep(100);
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "probe"));
+        assertFalse(appender.isShedding());
+        assertEquals(
+                "writing, 0 spilled (0 bytes), 3 shed, 0 overflowed, 1 degradations", appender.getSheddingStatus());
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "recovered"));
+        appender.stop();
+
+        assertEquals(
+                lines("INFO written", "WARN spilled", "INFO probe", "INFO recovered"),
+                out.written.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testSheddingAfterSlowWrite(@TempDir Path tempDir) throws Exception {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        startSheddingAppender(loggerContext, tempDir, new SheddingSettings(20, Level.ERROR, 0, 60000));
+        FailingOutputStream out = new FailingOutputStream();
+        appender.setOutputStream(out);
+
+        out.delay = 100;
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "slow"));
+        assertTrue(appender.isShedding());
+        assertTrue(appender.getSheddingStatus().contains("(Writing took "), appender.getSheddingStatus());
+        // no spill buffer
+        appender.doAppend(createEvent(loggerContext, Level.ERROR, "shed"));
+        assertTrue(appender.getSheddingStatus().endsWith("0 spilled (0 bytes), 1 shed, 0 overflowed, 1 degradations"));
+        appender.stop();
+
+        assertEquals(lines("INFO slow"), out.written.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testSheddingWithResilientStream(@TempDir Path tempDir) throws Exception {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        startSheddingAppender(loggerContext, tempDir, new SheddingSettings(0, Level.WARN, 1024, 50));
+
+        // the default stream reports the failures to its listeners instead of throwing them
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        AtomicReference<RecoveryListener> listener = new AtomicReference<>();
+        AtomicBoolean failing = new AtomicBoolean();
+        AtomicBoolean inError = new AtomicBoolean();
+        ResilientFileOutputStream stream = Mockito.mock(ResilientFileOutputStream.class);
+        Mockito.doAnswer(invocation -> {
+                    listener.set(invocation.getArgument(0));
+                    return null;
+                })
+                .when(stream)
+                .addRecoveryListener(Mockito.any());
+        Mockito.doAnswer(invocation -> {
+                    if (failing.get()) {
+                        if (inError.compareAndSet(false, true)) {
+                            listener.get().newFailure(new IOException("No space left on device"));
+                        }
+                    } else {
+                        if (inError.compareAndSet(true, false)) {
+                            listener.get().recoveryOccured();
+                        }
+                        written.write(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+                    }
+                    return null;
+                })
+                .when(stream)
+                .write(Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt());
+        Mockito.doCallRealMethod().when(stream).write(Mockito.any(byte[].class));
+        appender.setOutputStream(stream);
+
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "written"));
+        failing.set(true);
+        appender.doAppend(createEvent(loggerContext, Level.ERROR, "dropped by the stream"));
+        assertTrue(appender.isShedding());
+        failing.set(false);
+        Thread.sleep(100);
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "probe"));
+        assertFalse(appender.isShedding());
+        appender.stop();
+
+        assertEquals(
+                lines("INFO written", "ERROR dropped by the stream", "INFO probe"),
+                written.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testSheddingDropsSpilledEventsWhenStopped(@TempDir Path tempDir) {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        startSheddingAppender(loggerContext, tempDir, new SheddingSettings(0, Level.WARN, 1024, 60000));
+        FailingOutputStream out = new FailingOutputStream();
+        appender.setOutputStream(out);
+        out.fail = true;
+        appender.doAppend(createEvent(loggerContext, Level.ERROR, "spilled"));
+        appender.stop();
+
+        assertTrue(loggerContext.getStatusManager().getCopyOfStatusList().stream()
+                .anyMatch(status -> status.getMessage().startsWith("Dropped 1 spilled events")));
+        assertEquals(0, out.written.size());
+    }
+
+    @Test
+    void testAsyncAppendWithFullQueue(@TempDir Path tempDir) throws Exception {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        Path file = tempDir.resolve("test.log");
+        appender.setContext(loggerContext);
+        appender.setName("async");
+        appender.setFile(file.toString());
+        TimeBasedRollingPolicy<ILoggingEvent> policy = new TimeBasedRollingPolicy<>();
+        policy.setContext(loggerContext);
+        policy.setParent(appender);
+        policy.setFileNamePattern(tempDir.resolve("test.log.%d").toString());
+        policy.start();
+        appender.setRollingPolicy(policy);
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%level %msg%n");
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.setAsync(true);
+        AsyncSettings settings = new AsyncSettings(10, Level.WARN, true, 5000);
+        appender.setAsyncSettings(settings);
+        assertEquals(settings, appender.getAsyncSettings());
+
+        // block the writer thread after the first event
+        CountDownLatch taken = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        appender.addAppendListener(() -> {
+            taken.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        appender.start();
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "first"));
+        assertTrue(taken.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 9; i++) {
+            appender.doAppend(createEvent(loggerContext, Level.INFO, "queued"));
+        }
+        assertEquals(9, appender.getQueuedCount());
+        // the queue is nearly full, less important events are discarded
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "discarded"));
+        appender.doAppend(createEvent(loggerContext, Level.WARN, "important"));
+        // the queue is full and the appender never blocks
+        appender.doAppend(createEvent(loggerContext, Level.ERROR, "dropped"));
+        assertEquals(1, appender.getDiscardedCount());
+        assertEquals(1, appender.getDroppedCount());
+
+        release.countDown();
+        appender.stop();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(11, lines.size());
+        assertEquals("INFO first", lines.get(0));
+        assertEquals("WARN important", lines.get(10));
+        // counters are not available once stopped
+        assertEquals(0, appender.getDiscardedCount());
+        assertEquals(0, appender.getDroppedCount());
+        assertEquals(0, appender.getQueuedCount());
+    }
+
+    @Test
+    void testFlushLevel(@TempDir Path tempDir) throws IOException {
+        LoggerContext loggerContext = new LoggerContext();
+        Path file = tempDir.resolve("test.log");
+        FlushSettings settings = new FlushSettings(0, 1024 * 1024, Level.ERROR);
+        startBufferedAppender(loggerContext, file, settings, true);
+        assertEquals(settings, appender.getFlushSettings());
+
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "buffered"));
+        assertEquals(0, Files.size(file));
+        appender.doAppend(createEvent(loggerContext, Level.ERROR, "flushed"));
+        assertEquals(List.of("INFO buffered", "ERROR flushed"), Files.readAllLines(file, StandardCharsets.UTF_8));
+        appender.stop();
+    }
+
+    @Test
+    void testFlushSize(@TempDir Path tempDir) throws IOException {
+        LoggerContext loggerContext = new LoggerContext();
+        Path file = tempDir.resolve("test.log");
+        startBufferedAppender(loggerContext, file, new FlushSettings(0, 64, Level.OFF), false);
+
+        appender.doAppend(createEvent(loggerContext, Level.ERROR, "buffered"));
+        assertEquals(0, Files.size(file));
+        for (int i = 0; i < 10; i++) {
+            appender.doAppend(createEvent(loggerContext, Level.ERROR, "more"));
+        }
+        assertTrue(Files.size(file) > 0);
+
+        // stopping writes the remaining events
+        appender.stop();
+        assertEquals(11, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    void testFlushInterval(@TempDir Path tempDir) throws Exception {
+        LoggerContext loggerContext = new LoggerContext();
+        Path file = tempDir.resolve("test.log");
+        startBufferedAppender(loggerContext, file, new FlushSettings(20, 1024 * 1024, Level.OFF), true);
+
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "buffered"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.size(file) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("INFO buffered"), Files.readAllLines(file, StandardCharsets.UTF_8));
+        appender.stop();
+
+        // flushing a stopped appender does nothing
+        appender.flush();
+    }
+
+    @Test
+    void testChannelOutputWithRollover(@TempDir Path tempDir) throws IOException {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        Path file = tempDir.resolve("test.log");
+        appender.setContext(loggerContext);
+        appender.setName("channel");
+        appender.setFile(file.toString());
+        // same as the SizeBasedTriggeringPolicy without the delay between the checks
+        TriggeringPolicyBase<ILoggingEvent> triggeringPolicy = new TriggeringPolicyBase<>() {
+            @Override
+            public boolean isTriggeringEvent(File activeFile, ILoggingEvent event) {
+                return activeFile.length() >= 100;
+            }
+        };
+        triggeringPolicy.setContext(loggerContext);
+        triggeringPolicy.start();
+        appender.setTriggeringPolicy(triggeringPolicy);
+        FixedWindowRollingPolicy rollingPolicy = new FixedWindowRollingPolicy();
+        rollingPolicy.setMinIndex(1);
+        rollingPolicy.setMaxIndex(3);
+        rollingPolicy.setFileNamePattern(file + "%i");
+        rollingPolicy.setContext(loggerContext);
+        rollingPolicy.setParent(appender);
+        rollingPolicy.start();
+        appender.setRollingPolicy(rollingPolicy);
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%msg%n");
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.setChannelOutput(true);
+        assertTrue(appender.isChannelOutput());
+        appender.start();
+        assertTrue(appender.getOutputStream() instanceof ChannelOutputStream);
+
+        for (int i = 0; i < 30; i++) {
+            appender.doAppend(createEvent(loggerContext, Level.INFO, String.format("message %02d", i)));
+            // flushed after each event
+            assertEquals(0, ((ChannelOutputStream) appender.getOutputStream()).getBufferedCount());
+        }
+        appender.stop();
+
+        // the files are rolled the same way as with the default stream
+        assertTrue(Files.exists(tempDir.resolve("test.log1")));
+        assertTrue(Files.size(tempDir.resolve("test.log1")) >= 100);
+        StringBuilder all = new StringBuilder();
+        for (String name : new String[] {"test.log3", "test.log2", "test.log1", "test.log"}) {
+            Path p = tempDir.resolve(name);
+            if (Files.exists(p)) {
+                all.append(Files.readString(p, StandardCharsets.UTF_8));
+            }
+        }
+        assertTrue(all.toString().endsWith("message 29" + System.lineSeparator()));
+    }
+
+    @Test
+    void testPreallocationWithRollover(@TempDir Path tempDir) throws IOException {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        Path file = tempDir.resolve("test.log");
+        // left behind by a run which did not close the file, with a zero byte logged
+        Files.write(file, "o\0ld\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(file, new byte[50], StandardOpenOption.APPEND);
+        appender.setContext(loggerContext);
+        appender.setName("preallocated");
+        appender.setFile(file.toString());
+        LengthCounter lengthCounter = new LengthCounterBase();
+        TriggeringPolicyBase<ILoggingEvent> triggeringPolicy = new TriggeringPolicyBase<>() {
+            @Override
+            public boolean isTriggeringEvent(File activeFile, ILoggingEvent event) {
+                if (lengthCounter.getLength() >= 100) {
+                    lengthCounter.reset();
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public LengthCounter getLengthCounter() {
+                return lengthCounter;
+            }
+        };
+        triggeringPolicy.setContext(loggerContext);
+        triggeringPolicy.start();
+        appender.setTriggeringPolicy(triggeringPolicy);
+        FixedWindowRollingPolicy rollingPolicy = new FixedWindowRollingPolicy();
+        rollingPolicy.setMinIndex(1);
+        rollingPolicy.setMaxIndex(3);
+        rollingPolicy.setFileNamePattern(file + "%i");
+        rollingPolicy.setContext(loggerContext);
+        rollingPolicy.setParent(appender);
+        rollingPolicy.start();
+        appender.setRollingPolicy(rollingPolicy);
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%msg%n");
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.setChannelOutput(true);
+        appender.setPreallocationSize(64);
+        assertEquals(64, appender.getPreallocationSize());
+        appender.start();
+        // the leftover space is not counted
+        assertEquals(5, lengthCounter.getLength());
+
+        for (int i = 0; i < 30; i++) {
+            appender.doAppend(createEvent(loggerContext, Level.INFO, String.format("message %02d", i)));
+            // the active file grows by whole chunks
+            assertEquals(0, Files.size(file) % 64);
+        }
+        appender.stop();
+
+        // the preallocated space is cut off on rollover and stop
+        StringBuilder all = new StringBuilder();
+        for (String name : new String[] {"test.log3", "test.log2", "test.log1", "test.log"}) {
+            Path p = tempDir.resolve(name);
+            if (Files.exists(p)) {
+                all.append(Files.readString(p, StandardCharsets.UTF_8));
+            }
+        }
+        assertTrue(Files.size(tempDir.resolve("test.log1")) >= 100);
+        assertTrue(all.toString().startsWith("o\0ld\n"), all.toString());
+        assertFalse(all.substring(5).contains("\0"), all.toString());
+        assertTrue(all.toString().endsWith("message 29" + System.lineSeparator()));
+    }
+
+    @Test
+    void testChannelOutputFlushesAfterBatch(@TempDir Path tempDir) throws Exception {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        Path file = tempDir.resolve("test.log");
+        appender.setContext(loggerContext);
+        appender.setName("channel");
+        appender.setFile(file.toString());
+        TimeBasedRollingPolicy<ILoggingEvent> policy = new TimeBasedRollingPolicy<>();
+        policy.setContext(loggerContext);
+        policy.setParent(appender);
+        policy.setFileNamePattern(file + ".%d");
+        policy.start();
+        appender.setRollingPolicy(policy);
+        SlingPatternLayout layout = new SlingPatternLayout();
+        layout.setContext(loggerContext);
+        layout.setPattern("%msg%n");
+        layout.start();
+        LoggerSpecificEncoder encoder = new LoggerSpecificEncoder(layout);
+        encoder.setCharset(StandardCharsets.UTF_8);
+        encoder.setContext(loggerContext);
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.setChannelOutput(true);
+        appender.setAsync(true);
+        appender.start();
+        // the writer thread flushes once per batch instead
+        assertFalse(appender.isImmediateFlush());
+
+        for (int i = 0; i < 100; i++) {
+            appender.doAppend(createEvent(loggerContext, Level.INFO, "message"));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.readAllLines(file).size() < 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(100, Files.readAllLines(file).size());
+        appender.stop();
+        assertTrue(appender.isImmediateFlush());
+    }
+
+    @Test
+    void testChannelOutputRecoversFromWriteFailures(@TempDir Path tempDir) throws Exception {
+        LoggerContext loggerContext = new LoggerContext();
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        Path file = tempDir.resolve("test.log");
+        appender.setContext(loggerContext);
+        appender.setName("channel");
+        appender.setFile(file.toString());
+        TimeBasedRollingPolicy<ILoggingEvent> policy = new TimeBasedRollingPolicy<>();
+        policy.setContext(loggerContext);
+        policy.setParent(appender);
+        policy.setFileNamePattern(file + ".%d");
+        policy.start();
+        appender.setRollingPolicy(policy);
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%msg%n");
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.setChannelOutput(true);
+        appender.start();
+
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "before"));
+        ((ChannelOutputStream) appender.getOutputStream()).getChannel().close();
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "failed"));
+        // the appender is not stopped by the failure
+        assertTrue(appender.isStarted());
+        Thread.sleep(50);
+        appender.doAppend(createEvent(loggerContext, Level.INFO, "after"));
+        appender.stop();
+
+        assertEquals(lines("before", "failed", "after"), Files.readString(file));
+    }
+
+    private void startBufferedAppender(
+            LoggerContext loggerContext, Path file, FlushSettings settings, boolean bufferEncoder) {
+        loggerContext.setMDCAdapter(new LogbackMDCAdapter());
+        appender.setContext(loggerContext);
+        appender.setName("buffered");
+        appender.setFile(file.toString());
+        TimeBasedRollingPolicy<ILoggingEvent> policy = new TimeBasedRollingPolicy<>();
+        policy.setContext(loggerContext);
+        policy.setParent(appender);
+        policy.setFileNamePattern(file + ".%d");
+        policy.start();
+        appender.setRollingPolicy(policy);
+        if (bufferEncoder) {
+            SlingPatternLayout layout = new SlingPatternLayout();
+            layout.setContext(loggerContext);
+            layout.setPattern("%level %msg%n");
+            layout.start();
+            LoggerSpecificEncoder encoder = new LoggerSpecificEncoder(layout);
+            encoder.setCharset(StandardCharsets.UTF_8);
+            encoder.setContext(loggerContext);
+            encoder.start();
+            appender.setEncoder(encoder);
+        } else {
+            PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+            encoder.setContext(loggerContext);
+            encoder.setPattern("%level %msg%n");
+            encoder.start();
+            appender.setEncoder(encoder);
+        }
+        appender.setFlushSettings(settings);
+        appender.start();
+    }
+
+    private static ILoggingEvent createEvent(LoggerContext loggerContext) {
+        return createEvent(loggerContext, Level.INFO, "message");
+    }
+
+    private static ILoggingEvent createEvent(LoggerContext loggerContext, Level level, String message) {
+        return new LoggingEvent(
+                SlingRollingFileAppenderTest.class.getName(),
+                loggerContext.getLogger("test"),
+                level,
+                message,
+                null,
+                null);
+    }
+
+    private void startSheddingAppender(LoggerContext loggerContext, Path tempDir, SheddingSettings settings) {
+        Path file = tempDir.resolve("test.log");
+        appender.setContext(loggerContext);
+        appender.setName("shedding");
+        appender.setFile(file.toString());
+        TimeBasedRollingPolicy<ILoggingEvent> policy = new TimeBasedRollingPolicy<>();
+        policy.setContext(loggerContext);
+        policy.setParent(appender);
+        policy.setFileNamePattern(tempDir.resolve("test.log.%d").toString());
+        policy.start();
+        appender.setRollingPolicy(policy);
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%level %msg%n");
+        encoder.start();
+        appender.setEncoder(encoder);
+        appender.setSheddingSettings(settings);
+        assertEquals(settings, appender.getSheddingSettings());
+        appender.start();
+    }
+
+    private static String lines(String... lines) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Stream which fails or stalls on demand like a full or slow disk
+     */
+    private static final class FailingOutputStream extends OutputStream {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private volatile boolean fail;
+        private volatile long delay;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fail) {
+                throw new IOException("No space left on device");
+            }
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            written.write(b, off, len);
+        }
+    }
 }
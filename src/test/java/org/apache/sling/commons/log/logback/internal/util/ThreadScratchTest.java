@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.log.logback.internal.util;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ *
+ */
+class ThreadScratchTest {
+
+    private final ThreadScratch<StringBuilder> scratch =
+            new ThreadScratch<>(StringBuilder::new, sb -> sb.capacity() <= 100);
+
+    @Test
+    void testReusedByThread() throws InterruptedException {
+        StringBuilder first = use();
+        assertSame(first, use());
+
+        AtomicReference<StringBuilder> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> other.set(use()));
+        thread.start();
+        thread.join();
+        assertNotSame(first, other.get());
+    }
+
+    @Test
+    void testNestedUse() {
+        StringBuilder outer = scratch.acquire();
+        StringBuilder nested = scratch.acquire();
+        assertNotSame(outer, nested);
+        scratch.release(nested);
+        scratch.release(outer);
+        assertSame(outer, use());
+    }
+
+    @Test
+    void testLargeNotRetained() {
+        StringBuilder large = scratch.acquire();
+        large.append("x".repeat(200));
+        scratch.release(large);
+        assertNotSame(large, use());
+    }
+
+    @Test
+    void testReleasedWhenLastUserStops() throws InterruptedException {
+        scratch.register();
+        scratch.register();
+        AtomicReference<StringBuilder> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> other.set(use()));
+        thread.start();
+        thread.join();
+        StringBuilder first = use();
+
+        scratch.unregister();
+        // dropped for the calling thread only
+        StringBuilder second = use();
+        assertNotSame(first, second);
+        assertSame(second, use());
+
+        scratch.unregister();
+        // dropped for all threads
+        assertNotSame(second, use());
+    }
+
+    private StringBuilder use() {
+        StringBuilder sb = scratch.acquire();
+        scratch.release(sb);
+        return sb;
+    }
+}
@@ -20,17 +20,27 @@ package org.apache.sling.commons.log.logback.internal.util;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
 import org.xml.sax.InputSource;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
  *
  */
 class UtilTest {
+    @TempDir
+    Path tempDir;
 
     /**
      * Test method for {@link org.apache.sling.commons.log.logback.internal.util.Util#close(org.xml.sax.InputSource)}.
@@ -57,4 +67,63 @@ class UtilTest {
 
         assertDoesNotThrow(() -> Util.close(source));
     }
+
+    @Test
+    void testLogicalLength() throws IOException {
+        Path file = tempDir.resolve("error.log");
+        Files.createFile(file);
+        assertEquals(0, logicalLength(file));
+
+        Files.writeString(file, "a\nb\n");
+        assertEquals(4, logicalLength(file));
+
+        // zero bytes preallocated after the content
+        for (int zeros : new int[] {1, 2, 3, 100, 4097}) {
+            Files.write(file, new byte[zeros], StandardOpenOption.APPEND);
+            assertEquals(4, logicalLength(file), "after " + zeros + " zero bytes");
+        }
+
+        Files.write(file, new byte[10]);
+        assertEquals(0, logicalLength(file));
+    }
+
+    @Test
+    void testLogicalLengthOfLargeContent() throws IOException {
+        Path file = tempDir.resolve("error.log");
+        String content = "x".repeat(12345);
+        for (int zeros = 0; zeros < 3; zeros++) {
+            Files.writeString(file, content);
+            Files.write(file, new byte[zeros * 777], StandardOpenOption.APPEND);
+            assertEquals(content.getBytes(StandardCharsets.UTF_8).length, logicalLength(file));
+        }
+    }
+
+    @Test
+    void testLogicalLengthWithZeroBytesInContent() throws IOException {
+        Path file = tempDir.resolve("error.log");
+        // logged messages may contain zero bytes
+        byte[] content = new byte[200_000];
+        Arrays.fill(content, (byte) 'x');
+        content[10] = 0;
+        content[100_000] = 0;
+        content[content.length - 2] = 0;
+        Files.write(file, content);
+        assertEquals(content.length, logicalLength(file));
+
+        Files.write(file, new byte[70_000], StandardOpenOption.APPEND);
+        assertEquals(content.length, logicalLength(file));
+
+        // only checked after the min length
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(content.length, Util.logicalLength(channel, 150_000));
+            assertEquals(content.length + 70_000, Util.logicalLength(channel, content.length + 70_000));
+            assertEquals(content.length + 1000, Util.logicalLength(channel, content.length + 1000));
+        }
+    }
+
+    private static long logicalLength(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return Util.logicalLength(channel);
+        }
+    }
 }
@@ -63,4 +63,52 @@ class TailerOptionsTest {
     void testGetRegex() {
         assertEquals(".*", tailerOptions.getRegex());
     }
+
+    /**
+     * Test method for {@link org.apache.sling.commons.log.logback.webconsole.TailerOptions#isIncludeRotated()}.
+     */
+    @Test
+    void testIsIncludeRotated() {
+        assertFalse(tailerOptions.isIncludeRotated());
+        assertTrue(new TailerOptions(50, ".*").withRotated(true).isIncludeRotated());
+    }
+
+    /**
+     * Test method for {@link org.apache.sling.commons.log.logback.webconsole.TailerOptions#isFollow()}.
+     */
+    @Test
+    void testIsFollow() {
+        assertFalse(tailerOptions.isFollow());
+        assertFalse(new TailerOptions(50, ".*").withRotated(true).isFollow());
+        assertTrue(new TailerOptions(50, ".*").withFollow(true).isFollow());
+    }
+
+    /**
+     * Test method for {@link org.apache.sling.commons.log.logback.webconsole.TailerOptions#withContext(int, int)}.
+     */
+    @Test
+    void testWithContext() {
+        assertEquals(0, tailerOptions.getLinesBefore());
+        assertEquals(0, tailerOptions.getLinesAfter());
+
+        TailerOptions withContext = tailerOptions.withContext(2, 3);
+        assertEquals(2, withContext.getLinesBefore());
+        assertEquals(3, withContext.getLinesAfter());
+        assertEquals(50, withContext.getNumOfLines());
+        assertEquals(".*", withContext.getRegex());
+    }
+
+    /**
+     * Test method for {@link org.apache.sling.commons.log.logback.webconsole.TailerOptions#withEventGrouping(boolean)}.
+     */
+    @Test
+    void testWithEventGrouping() {
+        assertFalse(tailerOptions.isGroupEvents());
+        TailerOptions grouped =
+                new TailerOptions(50, ".*").withRotated(true).withFollow(true).withEventGrouping(true);
+        assertTrue(grouped.isGroupEvents());
+        assertTrue(grouped.isIncludeRotated());
+        assertTrue(grouped.isFollow());
+        assertTrue(grouped.withContext(1, 1).isGroupEvents());
+    }
 }